@@ -124,6 +124,41 @@ public class MongoDocumentStorageDriverImpl implements DocumentStorageDriver<Bso
         }
     }
 
+    @Override
+    public <T> Flux<T> asyncQueryStream(Bson filter, Integer batchSize, Class<T> clazz) {
+        Document document = AnnotationUtils.findAnnotation(clazz, Document.class);
+        String collectionName = document == null ? clazz.getSimpleName() : document.collectionName();
+        mongoHelper.checkIndex(clazz);
+        int pageSize = Optional.ofNullable(batchSize).orElse(100);
+        return queryPageAfter(collectionName, filter, null, pageSize)
+                .expand(page -> page.size() < pageSize ?
+                        Mono.empty() :
+                        queryPageAfter(collectionName, filter, page.get(page.size() - 1).get("_id"), pageSize))
+                .concatMapIterable(page -> page.stream()
+                        .map(obj -> BsonUtil.toBean(obj.get("value", org.bson.Document.class), clazz))
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * 查询_id大于lastId的一页数据，lastId为空时从头开始
+     */
+    private Mono<List<org.bson.Document>> queryPageAfter(String collectionName, Bson filter, Object lastId, int pageSize) {
+        List<Bson> filters = new ArrayList<>();
+        if (filter != null) {
+            filters.add(filter);
+        }
+        filters.add(Filters.eq(Key.DELETE_KEY, Key.DELETED_FALSE));
+        if (lastId != null) {
+            filters.add(Filters.gt("_id", lastId));
+        }
+        return Flux.from(mongoHelper.getMongoDatabase().getCollection(collectionName)
+                        .find(Filters.and(filters))
+                        .sort(Sorts.ascending("_id"))
+                        .limit(pageSize)
+                        .batchSize(pageSize))
+                .collectList();
+    }
+
     @Override
     public <T> Homo<Boolean> asyncFindAndModify(String logicType, String ownerId, String key, Bson filter, Bson update, Class<T> clazz) {
         try {
@@ -214,6 +249,21 @@ public class MongoDocumentStorageDriverImpl implements DocumentStorageDriver<Bso
     }
 
 
+    @Override
+    public <T, V> Flux<V> asyncAggregateStream(List<Bson> pipeLine, Integer batchSize, Class<V> viewClazz, Class<T> clazz) {
+        Document document = AnnotationUtils.findAnnotation(clazz, Document.class);
+        String collectionName = document == null ? clazz.getSimpleName() : document.collectionName();
+        mongoHelper.checkIndex(clazz);
+        int pageSize = Optional.ofNullable(batchSize).orElse(100);
+        return Flux.from(mongoHelper.getMongoDatabase().getCollection(collectionName)
+                        .aggregate(pipeLine)
+                        .batchSize(pageSize))
+                .limitRate(pageSize)
+                .map(result -> BsonUtil.toBean(result, viewClazz))
+                .doOnError(throwable -> log.error("asyncAggregateStream error !", throwable));
+    }
+
+
     @Override
     public <T> Homo<Map<String, T>> asyncGetAll(String appId, String regionId, String logicType, String ownerId, Class<T> clazz) {
         log.info("getAllKeysAndVal, appId {} regionId {} logicType {} ownerId {}", appId, regionId, logicType, ownerId);
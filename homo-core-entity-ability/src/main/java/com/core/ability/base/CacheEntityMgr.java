@@ -12,6 +12,7 @@ import com.homo.core.utils.reflect.HomoInterfaceUtil;
 import com.homo.core.utils.spring.GetBeanUtil;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import java.lang.reflect.Constructor;
 import java.util.*;
@@ -30,6 +31,8 @@ public class CacheEntityMgr implements AbilityEntityMgr {
     @Getter
     AtomicInteger entityCount = new AtomicInteger(0);
     KKMap<String, String, AbilityEntity> type2Id2ObjMap = new KKMap<>();
+    @Autowired(required = false)
+    EntityMemoryGovernor memoryGovernor;
     Map<Class<?>, Consumer<AbilityEntity>> createProcess = new HashMap<>();
     Map<Class<?>, Consumer<AbilityEntity>> addProcess = new HashMap<>();
     Map<Class<?>, Consumer<AbilityEntity>> getProcess = new HashMap<>();
@@ -58,6 +61,9 @@ public class CacheEntityMgr implements AbilityEntityMgr {
         }
         processConsumer(addProcess, abilityEntity);
         type2Id2ObjMap.set(abilityEntity.getType(), abilityEntity.getId(), abilityEntity);
+        if (memoryGovernor != null) {
+            memoryGovernor.add(abilityEntity);
+        }
         log.info("add entity success, type {} id {} type2Id2ObjMap {}", abilityEntity.getType(), abilityEntity.getId(),type2Id2ObjMap);
         GetBeanUtil.getBean(ServiceStateMgr.class).setLoad(entityCount.incrementAndGet());
         return true;
@@ -71,9 +77,26 @@ public class CacheEntityMgr implements AbilityEntityMgr {
             return null;
         }
         processConsumer(getProcess, abilityEntity);
+        if (memoryGovernor != null) {
+            memoryGovernor.touch(type, id);
+        }
         return abilityEntity;
     }
 
+    /**
+     * 获取实体，不触发get处理，也不记录访问
+     */
+    AbilityEntity peek(String type, String id) {
+        return type2Id2ObjMap.get(type, id);
+    }
+
+    /**
+     * 实体是否正在加载或初始化
+     */
+    boolean isLocked(AbilityEntity entity) {
+        return false;
+    }
+
     @Override
     public <T extends AbilityEntity> T get(Class<T> entityClazz, String id) {
         EntityType entityType = HomoAnnotationUtil.findAnnotation(entityClazz, EntityType.class);
@@ -105,6 +128,9 @@ public class CacheEntityMgr implements AbilityEntityMgr {
         } else {
             processConsumer(removeProcess, abilityEntity);
             type2Id2ObjMap.remove(type, id);
+            if (memoryGovernor != null) {
+                memoryGovernor.remove(type, id);
+            }
             GetBeanUtil.getBean(ServiceStateMgr.class).setLoad(entityCount.decrementAndGet());
         }
         return abilityEntity;
@@ -0,0 +1,660 @@
+package com.core.ability.base;
+
+import brave.Span;
+import com.core.ability.base.storage.StorageAbility;
+import com.google.protobuf.ByteString;
+import com.homo.core.configurable.ability.AbilityProperties;
+import com.homo.core.facade.ability.AbilityEntity;
+import com.homo.core.facade.ability.IEntityService;
+import com.homo.core.facade.ability.SaveAble;
+import com.homo.core.facade.rpc.RpcContent;
+import com.homo.core.facade.service.LoadInfo;
+import com.homo.core.facade.service.Service;
+import com.homo.core.facade.service.ServiceInfo;
+import com.homo.core.facade.service.ServiceStateMgr;
+import com.homo.core.rpc.base.service.ServiceMgr;
+import com.homo.core.rpc.base.state.ServiceStateMgrImpl;
+import com.homo.core.rpc.base.utils.ServiceUtil;
+import com.homo.core.rpc.client.RpcClientMgr;
+import com.homo.core.rpc.client.RpcHandlerInfoForClient;
+import com.homo.core.utils.concurrent.lock.AsyncIdLocker;
+import com.homo.core.utils.concurrent.queue.CallQueue;
+import com.homo.core.utils.concurrent.queue.CallQueueMgr;
+import com.homo.core.utils.concurrent.schedule.HomoTimerMgr;
+import com.homo.core.utils.concurrent.schedule.HomoTimerTask;
+import com.homo.core.utils.fun.SupplierWithException;
+import com.homo.core.utils.module.RootModule;
+import com.homo.core.utils.rector.Homo;
+import com.homo.core.utils.serial.HomoSerializationProcessor;
+import com.homo.core.utils.spring.GetBeanUtil;
+import com.homo.core.utils.trace.ZipkinUtil;
+import io.homo.proto.client.ParameterMsg;
+import io.homo.proto.entity.EntityHandoffCommit;
+import io.homo.proto.entity.EntityHandoffEntity;
+import io.homo.proto.entity.EntityHandoffRequest;
+import io.homo.proto.entity.EntityHandoffResponse;
+import io.homo.proto.entity.EntityRequest;
+import io.homo.proto.entity.EntityResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 实体热迁移
+ * pod下线时把内存中的实体直接移交给同服务的其他pod，避免新pod从存储重新加载。
+ * 连接信息按uid记录，所以同一uid的所有实体作为一个整体移交给同一个pod，两阶段完成：
+ * 1. 准备：标记为下线中，按uid加迁移锁（冻结该uid的调用、定时器和进程内访问）后在实体线程序列化，分批通过entityHandoff发给目标pod，
+ * 目标pod按uid加迁移锁后反序列化并初始化实体（不设置连接信息），等待确认
+ * 2. 提交：uid的实体全部准备成功后，下线pod把连接从本pod原子地转移到目标pod，转移成功的uid提交，其余取消，通过entityHandoffCommit通知目标pod。
+ * 目标pod保存提交的实体后解冻，丢弃取消的实体（不保存，也不删除连接）；提交消息丢失时超时后按连接归属决定提交或丢弃
+ * 3. 下线pod移除已提交的本地实体（不再保存，也不删除连接），期间到达本pod的调用转发给目标pod，直到调用方的连接信息切换过去
+ * 取消的uid在下线pod上仍按原流程保存后销毁，删除连接时只删除仍指向本pod的连接
+ */
+@Slf4j
+public class EntityHandoffMgr {
+    final AsyncIdLocker handoffLocker = new AsyncIdLocker();
+    /**
+     * 已移交的uid -> 目标pod
+     */
+    final Map<String, Integer> handedOffMap = new ConcurrentHashMap<>();
+    /**
+     * 迁移中的uid，期间冻结该uid实体的调用、定时器和进程内访问
+     */
+    final Set<String> frozenSet = ConcurrentHashMap.newKeySet();
+    /**
+     * 接收方已准备、等待确认的uid
+     */
+    final Map<String, PendingHandoff> pendingMap = new ConcurrentHashMap<>();
+    /**
+     * 接收方正在丢弃的uid
+     */
+    final Set<String> discardSet = ConcurrentHashMap.newKeySet();
+    final RpcHandlerInfoForClient entityServiceRpcInfo = new RpcHandlerInfoForClient(IEntityService.class);
+    volatile boolean draining;
+    @Autowired
+    AbilityProperties abilityProperties;
+    @Autowired
+    ServiceStateMgr serviceStateMgr;
+    @Autowired
+    ServiceMgr serviceMgr;
+    @Autowired
+    RpcClientMgr rpcClientMgr;
+    @Autowired
+    RootModule rootModule;
+    @Autowired(required = false)
+    HomoSerializationProcessor serializationProcessor;
+
+    static class PendingHandoff {
+        final Integer srcPodIndex;
+        final List<AbilityEntity> entities;
+        final AsyncIdLocker.Permit permit;
+        final AtomicBoolean resolved = new AtomicBoolean(false);
+        volatile HomoTimerTask timeoutTask;
+
+        PendingHandoff(Integer srcPodIndex, List<AbilityEntity> entities, AsyncIdLocker.Permit permit) {
+            this.srcPodIndex = srcPodIndex;
+            this.entities = entities;
+            this.permit = permit;
+        }
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * uid是否正在迁移
+     */
+    public boolean isFrozen(String id) {
+        return frozenSet.contains(id);
+    }
+
+    /**
+     * uid是否已准备接收、等待确认
+     */
+    public boolean isPending(String id) {
+        return pendingMap.containsKey(id);
+    }
+
+    /**
+     * uid是否已移交给其他pod
+     */
+    public boolean isHandedOff(String id) {
+        return handedOffMap.containsKey(id);
+    }
+
+    /**
+     * uid的调用是否需要经过迁移流程（等待迁移完成或转发给目标pod），这类调用不做过期路由检查
+     */
+    public boolean isHandingOff(String id) {
+        return frozenSet.contains(id) || pendingMap.containsKey(id) || handedOffMap.containsKey(id);
+    }
+
+    /**
+     * uid的实体是否已不属于本pod（已移交或正在丢弃），这些实体销毁时不保存，也不删除连接
+     */
+    public boolean isReleased(String id) {
+        return handedOffMap.containsKey(id) || discardSet.contains(id);
+    }
+
+    /**
+     * uid迁移中时等待迁移结束，只等待不持有迁移锁
+     *
+     * @return uid的实体是否仍属于本pod
+     */
+    public Homo<Boolean> awaitUnfrozen(String id) {
+        if (!frozenSet.contains(id)) {
+            return Homo.result(!isReleased(id));
+        }
+        return handoffLocker.acquire(id)
+                .nextValue(permit -> {
+                    permit.release();
+                    return !isReleased(id);
+                });
+    }
+
+    CacheEntityMgr entityMgr() {
+        return GetBeanUtil.getBean(CacheEntityMgr.class);
+    }
+
+    /**
+     * 把本pod内存中的实体按uid移交给其他可用pod
+     *
+     * @return 移交成功的实体数量
+     */
+    public Homo<Integer> drain() {
+        if (!abilityProperties.isHandoffEnable() || !serviceStateMgr.isStateful() || serializationProcessor == null) {
+            return Homo.result(0);
+        }
+        draining = true;
+        Map<String, List<AbilityEntity>> idEntityMap = new LinkedHashMap<>();
+        int entityCount = 0;
+        for (AbilityEntity entity : entityMgr().type2Id2ObjMap.getAll()) {
+            if (entity instanceof SaveAble) {
+                idEntityMap.computeIfAbsent(entity.getId(), k -> new ArrayList<>()).add(entity);
+                entityCount++;
+            }
+        }
+        if (idEntityMap.isEmpty()) {
+            return Homo.result(0);
+        }
+        int totalCount = entityCount;
+        Service mainService = serviceMgr.getMainService();
+        Integer selfPodIndex = serviceStateMgr.getPodIndex();
+        return serviceStateMgr.getServiceAllStateInfo(mainService.getHostName())
+                .nextDo(stateMap -> {
+                    List<Integer> targetPods = new ArrayList<>();
+                    if (stateMap != null) {
+                        for (LoadInfo loadInfo : stateMap.values()) {
+                            if (ServiceStateMgrImpl.AVAILABLE == loadInfo.state && !loadInfo.id.equals(selfPodIndex)) {
+                                targetPods.add(loadInfo.id);
+                            }
+                        }
+                    }
+                    if (targetPods.isEmpty()) {
+                        log.warn("EntityHandoffMgr drain no available pod, service {} selfPodIndex {} entityCount {}", mainService.getHostName(), selfPodIndex, totalCount);
+                        return Homo.result(0);
+                    }
+                    log.info("EntityHandoffMgr drain start selfPodIndex {} targetPods {} uidCount {} entityCount {}", selfPodIndex, targetPods, idEntityMap.size(), totalCount);
+                    //同一uid的实体不拆分到不同批次
+                    int batchSize = Math.max(1, abilityProperties.getHandoffBatchSize());
+                    List<Homo<Integer>> batchPromiseList = new ArrayList<>();
+                    Map<String, List<AbilityEntity>> batch = new LinkedHashMap<>();
+                    int batchEntityCount = 0;
+                    for (Map.Entry<String, List<AbilityEntity>> entry : idEntityMap.entrySet()) {
+                        batch.put(entry.getKey(), entry.getValue());
+                        batchEntityCount += entry.getValue().size();
+                        if (batchEntityCount >= batchSize) {
+                            batchPromiseList.add(handoff(batch, targetPods.get(batchPromiseList.size() % targetPods.size())));
+                            batch = new LinkedHashMap<>();
+                            batchEntityCount = 0;
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        batchPromiseList.add(handoff(batch, targetPods.get(batchPromiseList.size() % targetPods.size())));
+                    }
+                    return Homo.all(batchPromiseList, results -> {
+                        int count = 0;
+                        for (Object result : results) {
+                            count += (Integer) result;
+                        }
+                        log.info("EntityHandoffMgr drain finish selfPodIndex {} handoffCount {} entityCount {}", selfPodIndex, count, totalCount);
+                        return count;
+                    });
+                });
+    }
+
+    private Homo<Integer> handoff(Map<String, List<AbilityEntity>> batch, Integer targetPod) {
+        Integer selfPodIndex = serviceStateMgr.getPodIndex();
+        String serverName = rootModule.getServerInfo().serverName;
+        long startTime = System.currentTimeMillis();
+        Queue<AsyncIdLocker.Permit> permits = new ConcurrentLinkedQueue<>();
+        Map<String, Integer> serialCountMap = new ConcurrentHashMap<>();
+        List<Homo<List<EntityHandoffEntity>>> serialList = new ArrayList<>(batch.size());
+        for (Map.Entry<String, List<AbilityEntity>> entry : batch.entrySet()) {
+            String id = entry.getKey();
+            //持有迁移锁后在实体线程序列化，之后该uid的调用、定时器和进程内访问都在等待
+            serialList.add(handoffLocker.acquire(id)
+                    .nextDo(permit -> {
+                        permits.add(permit);
+                        frozenSet.add(id);
+                        List<Homo<EntityHandoffEntity>> entitySerialList = new ArrayList<>(entry.getValue().size());
+                        for (AbilityEntity entity : entry.getValue()) {
+                            if (entityMgr().peek(entity.getType(), id) != entity) {
+                                //等待迁移锁期间已经被释放
+                                continue;
+                            }
+                            entitySerialList.add(CallQueueMgr.getInstance().call(() -> EntityHandoffEntity.newBuilder()
+                                    .setType(entity.getType())
+                                    .setId(id)
+                                    .setData(ByteString.copyFrom(serializationProcessor.writeByte(entity)))
+                                    .build(), entity.getQueueId()));
+                        }
+                        serialCountMap.put(id, entitySerialList.size());
+                        if (entitySerialList.isEmpty()) {
+                            return Homo.result(Collections.<EntityHandoffEntity>emptyList());
+                        }
+                        return Homo.all(entitySerialList, results -> {
+                            List<EntityHandoffEntity> handoffEntities = new ArrayList<>(results.length);
+                            for (Object result : results) {
+                                handoffEntities.add((EntityHandoffEntity) result);
+                            }
+                            return handoffEntities;
+                        });
+                    }));
+        }
+        return Homo.all(serialList, results -> {
+                    EntityHandoffRequest.Builder builder = EntityHandoffRequest.newBuilder()
+                            .setSrcName(serverName)
+                            .setSrcPodIndex(selfPodIndex);
+                    for (Object result : results) {
+                        builder.addAllEntity((List<EntityHandoffEntity>) result);
+                    }
+                    return builder.build();
+                })
+                .nextDo(request -> sendHandoff(targetPod, request))
+                .nextDo(response -> {
+                    //uid的实体全部准备成功才转移连接
+                    Map<String, Integer> acceptedCountMap = new HashMap<>();
+                    for (EntityHandoffEntity accepted : response.getAcceptedList()) {
+                        acceptedCountMap.merge(accepted.getId(), 1, Integer::sum);
+                    }
+                    List<Homo<String>> transferList = new ArrayList<>();
+                    for (Map.Entry<String, Integer> entry : acceptedCountMap.entrySet()) {
+                        if (entry.getValue().equals(serialCountMap.get(entry.getKey()))) {
+                            transferList.add(transfer(entry.getKey(), selfPodIndex, targetPod, startTime));
+                        }
+                    }
+                    if (transferList.isEmpty()) {
+                        return Homo.result(Collections.<String>emptyList());
+                    }
+                    return Homo.all(transferList, transferResults -> {
+                        List<String> committed = new ArrayList<>();
+                        for (Object result : transferResults) {
+                            if (result != null && !"".equals(result)) {
+                                committed.add((String) result);
+                            }
+                        }
+                        return committed;
+                    });
+                })
+                .errorContinue(throwable -> {
+                    log.error("EntityHandoffMgr handoff error targetPod {} uidCount {}", targetPod, batch.size(), throwable);
+                    return Homo.result(Collections.<String>emptyList());
+                })
+                .nextDo(committed -> {
+                    EntityHandoffCommit.Builder commitBuilder = EntityHandoffCommit.newBuilder()
+                            .setSrcName(serverName)
+                            .setSrcPodIndex(selfPodIndex)
+                            .addAllCommitted(committed);
+                    for (String id : batch.keySet()) {
+                        if (!committed.contains(id)) {
+                            commitBuilder.addAborted(id);
+                        }
+                    }
+                    //通知失败时目标pod超时后按连接归属处理
+                    return sendCommit(targetPod, commitBuilder.build())
+                            .errorContinue(throwable -> {
+                                log.error("EntityHandoffMgr commit error targetPod {} committed {}", targetPod, committed, throwable);
+                                return Homo.result(EntityHandoffResponse.getDefaultInstance());
+                            })
+                            .nextDo(ret -> releaseCommitted(batch, committed));
+                })
+                .finallySignal(signalType -> {
+                    frozenSet.removeAll(batch.keySet());
+                    AsyncIdLocker.Permit permit;
+                    while ((permit = permits.poll()) != null) {
+                        permit.release();
+                    }
+                });
+    }
+
+    Homo<EntityHandoffResponse> sendHandoff(Integer targetPod, EntityHandoffRequest request) throws Exception {
+        return sendToPod(targetPod, IEntityService.default_entity_handoff_method, request);
+    }
+
+    Homo<EntityHandoffResponse> sendCommit(Integer targetPod, EntityHandoffCommit request) throws Exception {
+        return sendToPod(targetPod, IEntityService.default_entity_handoff_commit_method, request);
+    }
+
+    private Homo<EntityHandoffResponse> sendToPod(Integer targetPod, String method, Object request) throws Exception {
+        RpcContent rpcContent = entityServiceRpcInfo.serializeParamForInvokeRemoteMethod(method, new Object[]{targetPod, request});
+        return rpcClientMgr.getAgentClient(ServiceUtil.formatStatefulName(serviceMgr.getMainService().getTagName(), targetPod), mainServiceInfo())
+                .rpcCall(method, rpcContent)
+                .nextDo(ret -> Homo.result((EntityHandoffResponse) entityServiceRpcInfo.unSerializeReturnValue(method, rpcContent)));
+    }
+
+    /**
+     * 把uid的连接从本pod原子地转移到目标pod
+     * 超过一半超时时间不再转移，保证目标pod超时判断连接归属时转移已经完成
+     *
+     * @return 转移成功返回uid，否则返回空串
+     */
+    private Homo<String> transfer(String id, Integer selfPodIndex, Integer targetPod, long startTime) {
+        if (System.currentTimeMillis() - startTime > abilityProperties.getHandoffTimeoutMillis() / 2) {
+            log.error("EntityHandoffMgr transfer timeout id {} targetPod {}", id, targetPod);
+            return Homo.result("");
+        }
+        String serverName = rootModule.getServerInfo().serverName;
+        return serviceStateMgr.transferUserLinkedPod(id, serverName, selfPodIndex, targetPod)
+                .nextValue(linkedPod -> {
+                    if (!targetPod.equals(linkedPod)) {
+                        //连接已经指向其他pod，取消移交，本地实体按原流程保存
+                        log.error("EntityHandoffMgr transfer link fail id {} targetPod {} linkedPod {}", id, targetPod, linkedPod);
+                        return "";
+                    }
+                    //在释放迁移锁前记录，等待中的调用直接转发
+                    handedOffMap.put(id, targetPod);
+                    return id;
+                })
+                .errorContinue(throwable -> {
+                    log.error("EntityHandoffMgr transfer error id {} targetPod {}", id, targetPod, throwable);
+                    return Homo.result("");
+                });
+    }
+
+    /**
+     * 移除已提交的本地实体
+     */
+    private Homo<Integer> releaseCommitted(Map<String, List<AbilityEntity>> batch, List<String> committed) {
+        List<Homo<Boolean>> destroyList = new ArrayList<>();
+        for (String id : committed) {
+            for (AbilityEntity entity : batch.get(id)) {
+                if (entityMgr().peek(entity.getType(), id) == entity) {
+                    destroyList.add(destroy(entity));
+                }
+            }
+        }
+        if (destroyList.isEmpty()) {
+            return Homo.result(0);
+        }
+        return Homo.all(destroyList, results -> results.length);
+    }
+
+    private Homo<Boolean> destroy(AbilityEntity entity) {
+        return entity.promiseDestroy()
+                .nextValue(ret -> true)
+                .errorContinue(throwable -> {
+                    log.error("EntityHandoffMgr destroy error type {} id {}", entity.getType(), entity.getId(), throwable);
+                    return Homo.result(false);
+                });
+    }
+
+    /**
+     * 准备接收其他pod移交的实体，同一uid的实体全部接收或全部拒绝
+     */
+    public Homo<EntityHandoffResponse> accept(EntityHandoffRequest request) {
+        Map<String, List<EntityHandoffEntity>> idEntityMap = new LinkedHashMap<>();
+        for (EntityHandoffEntity handoffEntity : request.getEntityList()) {
+            idEntityMap.computeIfAbsent(handoffEntity.getId(), k -> new ArrayList<>()).add(handoffEntity);
+        }
+        if (idEntityMap.isEmpty()) {
+            return Homo.result(EntityHandoffResponse.getDefaultInstance());
+        }
+        List<Homo<List<EntityHandoffEntity>>> prepareList = new ArrayList<>(idEntityMap.size());
+        for (Map.Entry<String, List<EntityHandoffEntity>> entry : idEntityMap.entrySet()) {
+            prepareList.add(prepare(request.getSrcPodIndex(), entry.getKey(), entry.getValue()));
+        }
+        return Homo.all(prepareList, results -> {
+            EntityHandoffResponse.Builder builder = EntityHandoffResponse.newBuilder();
+            for (Object result : results) {
+                builder.addAllAccepted((List<EntityHandoffEntity>) result);
+            }
+            log.info("EntityHandoffMgr accept srcName {} srcPodIndex {} count {} prepared {}", request.getSrcName(), request.getSrcPodIndex(), request.getEntityCount(), builder.getAcceptedCount());
+            return builder.build();
+        });
+    }
+
+    private Homo<List<EntityHandoffEntity>> prepare(Integer srcPodIndex, String id, List<EntityHandoffEntity> handoffEntities) {
+        CacheEntityMgr entityMgr = entityMgr();
+        if (pendingMap.containsKey(id)) {
+            log.warn("EntityHandoffMgr accept skip pending id {} srcPodIndex {}", id, srcPodIndex);
+            return Homo.result(Collections.emptyList());
+        }
+        List<AbilityEntity> entities = new ArrayList<>(handoffEntities.size());
+        List<EntityHandoffEntity> accepted = new ArrayList<>(handoffEntities.size());
+        for (EntityHandoffEntity handoffEntity : handoffEntities) {
+            String type = handoffEntity.getType();
+            Class<AbilityEntity> entityClazz = StorageEntityMgr.typeToAbilityObjectClazzMap.get(type);
+            if (entityClazz == null || entityMgr.peek(type, id) != null) {
+                log.warn("EntityHandoffMgr accept skip type {} id {} srcPodIndex {} clazz {}", type, id, srcPodIndex, entityClazz);
+                return Homo.result(Collections.emptyList());
+            }
+            try {
+                AbilityEntity entity = serializationProcessor.readValue(handoffEntity.getData().toByteArray(), entityClazz);
+                entity.setId(id);
+                entities.add(entity);
+            } catch (Exception e) {
+                log.error("EntityHandoffMgr accept unSerial error type {} id {}", type, id, e);
+                return Homo.result(Collections.emptyList());
+            }
+            accepted.add(EntityHandoffEntity.newBuilder().setType(type).setId(id).build());
+        }
+        //持有迁移锁直到提交或丢弃，期间该uid的调用、定时器和进程内访问都在等待
+        return handoffLocker.acquire(id)
+                .nextDo(permit -> {
+                    PendingHandoff pending = new PendingHandoff(srcPodIndex, entities, permit);
+                    frozenSet.add(id);
+                    pendingMap.put(id, pending);
+                    List<Homo<Boolean>> initList = new ArrayList<>(entities.size());
+                    for (AbilityEntity entity : entities) {
+                        initList.add(entity.promiseInit()
+                                .nextValue(ret -> true)
+                                .errorContinue(throwable -> {
+                                    log.error("EntityHandoffMgr accept init error type {} id {}", entity.getType(), id, throwable);
+                                    return Homo.result(false);
+                                }));
+                    }
+                    return Homo.all(initList, results -> allTrue(results))
+                            .nextDo(success -> {
+                                if (!success) {
+                                    return discard(id, pending).nextValue(ret -> Collections.<EntityHandoffEntity>emptyList());
+                                }
+                                scheduleTimeout(id, pending);
+                                return Homo.result(accepted);
+                            });
+                });
+    }
+
+    /**
+     * 确认移交结果，提交的uid保存后解冻，取消的uid丢弃
+     */
+    public Homo<EntityHandoffResponse> commit(EntityHandoffCommit request) {
+        List<Homo<List<EntityHandoffEntity>>> resolveList = new ArrayList<>(request.getCommittedCount() + request.getAbortedCount());
+        for (String id : request.getCommittedList()) {
+            PendingHandoff pending = pendingMap.get(id);
+            if (pending == null) {
+                log.error("EntityHandoffMgr commit not pending id {} srcPodIndex {}", id, request.getSrcPodIndex());
+                continue;
+            }
+            resolveList.add(confirm(id, pending));
+        }
+        for (String id : request.getAbortedList()) {
+            PendingHandoff pending = pendingMap.get(id);
+            if (pending != null) {
+                resolveList.add(discard(id, pending).nextValue(ret -> Collections.<EntityHandoffEntity>emptyList()));
+            }
+        }
+        log.info("EntityHandoffMgr commit srcName {} srcPodIndex {} committed {} aborted {}", request.getSrcName(), request.getSrcPodIndex(), request.getCommittedCount(), request.getAbortedCount());
+        if (resolveList.isEmpty()) {
+            return Homo.result(EntityHandoffResponse.getDefaultInstance());
+        }
+        return Homo.all(resolveList, results -> {
+            EntityHandoffResponse.Builder builder = EntityHandoffResponse.newBuilder();
+            for (Object result : results) {
+                builder.addAllAccepted((List<EntityHandoffEntity>) result);
+            }
+            return builder.build();
+        });
+    }
+
+    private void scheduleTimeout(String id, PendingHandoff pending) {
+        pending.timeoutTask = HomoTimerMgr.getInstance().once("EntityHandoffTimeout:" + id, CallQueueMgr.getInstance().getQueueByUid(id),
+                () -> resolveTimeout(id, pending), abilityProperties.getHandoffTimeoutMillis());
+    }
+
+    /**
+     * 提交消息没有到达时，按连接归属决定提交或丢弃
+     */
+    private void resolveTimeout(String id, PendingHandoff pending) {
+        if (pending.resolved.get()) {
+            return;
+        }
+        serviceStateMgr.getUserLinkedPodNoCache(id, rootModule.getServerInfo().serverName)
+                .nextDo(linkedPod -> {
+                    log.warn("EntityHandoffMgr commit timeout id {} srcPodIndex {} linkedPod {}", id, pending.srcPodIndex, linkedPod);
+                    if (serviceStateMgr.getPodIndex().equals(linkedPod)) {
+                        return confirm(id, pending).nextValue(ret -> true);
+                    }
+                    return discard(id, pending);
+                })
+                .catchError(throwable -> {
+                    //连接查询失败，稍后重试
+                    log.error("EntityHandoffMgr resolve timeout error id {}", id, throwable);
+                    scheduleTimeout(id, pending);
+                })
+                .start();
+    }
+
+    private Homo<List<EntityHandoffEntity>> confirm(String id, PendingHandoff pending) {
+        if (!pending.resolved.compareAndSet(false, true)) {
+            return Homo.result(Collections.emptyList());
+        }
+        cancelTimeout(pending);
+        List<Homo<EntityHandoffEntity>> saveList = new ArrayList<>(pending.entities.size());
+        for (AbilityEntity entity : pending.entities) {
+            //接收后尽快保存一次
+            saveList.add(CallQueueMgr.getInstance().call(() -> {
+                StorageAbility storageAbility = entity.getAbility(StorageAbility.class);
+                if (storageAbility != null) {
+                    storageAbility.save();
+                }
+                return EntityHandoffEntity.newBuilder().setType(entity.getType()).setId(id).build();
+            }, entity.getQueueId()));
+        }
+        return Homo.all(saveList, results -> {
+                    List<EntityHandoffEntity> committed = new ArrayList<>(results.length);
+                    for (Object result : results) {
+                        committed.add((EntityHandoffEntity) result);
+                    }
+                    return committed;
+                })
+                .finallySignal(signalType -> finish(id, pending));
+    }
+
+    private Homo<Boolean> discard(String id, PendingHandoff pending) {
+        if (!pending.resolved.compareAndSet(false, true)) {
+            return Homo.result(false);
+        }
+        cancelTimeout(pending);
+        log.warn("EntityHandoffMgr discard id {} srcPodIndex {}", id, pending.srcPodIndex);
+        discardSet.add(id);
+        List<Homo<Boolean>> destroyList = new ArrayList<>(pending.entities.size());
+        for (AbilityEntity entity : pending.entities) {
+            if (entityMgr().peek(entity.getType(), id) == entity) {
+                destroyList.add(destroy(entity));
+            }
+        }
+        Homo<Boolean> promise = destroyList.isEmpty() ? Homo.result(true) : Homo.all(destroyList, results -> allTrue(results));
+        return promise.finallySignal(signalType -> {
+            discardSet.remove(id);
+            finish(id, pending);
+        });
+    }
+
+    private void cancelTimeout(PendingHandoff pending) {
+        HomoTimerTask timeoutTask = pending.timeoutTask;
+        if (timeoutTask != null) {
+            timeoutTask.cancel();
+        }
+    }
+
+    private void finish(String id, PendingHandoff pending) {
+        pendingMap.remove(id, pending);
+        frozenSet.remove(id);
+        pending.permit.release();
+    }
+
+    /**
+     * 迁移期间的实体调用：等待迁移完成，已移交的转发给目标pod，否则本地执行
+     */
+    public Homo<EntityResponse> callOrForward(EntityRequest request, ParameterMsg parameterMsg, SupplierWithException<Homo<EntityResponse>> localCall) {
+        String id = request.getId();
+        return handoffLocker.acquire(id)
+                .nextDo(permit -> {
+                    Integer targetPod = handedOffMap.get(id);
+                    if (targetPod == null) {
+                        return Homo.fromSupplier(localCall).finallySignal(signalType -> permit.release());
+                    }
+                    permit.release();
+                    return forward(targetPod, request, parameterMsg);
+                });
+    }
+
+    Homo<EntityResponse> forward(Integer targetPod, EntityRequest request, ParameterMsg parameterMsg) throws Exception {
+        log.debug("EntityHandoffMgr forward type {} id {} funName {} targetPod {}", request.getType(), request.getId(), request.getFunName(), targetPod);
+        String method;
+        Object[] params;
+        if (parameterMsg == null) {
+            method = IEntityService.default_entity_call_method;
+            params = new Object[]{targetPod, request};
+        } else {
+            method = IEntityService.default_entity_call_proxy_method;
+            params = new Object[]{targetPod, parameterMsg, request};
+        }
+        CallQueue callQueue = CallQueueMgr.getInstance().getLocalQueue();
+        Span span = ZipkinUtil.currentSpan();
+        RpcContent rpcContent = entityServiceRpcInfo.serializeParamForInvokeRemoteMethod(method, params);
+        return rpcClientMgr.getAgentClient(ServiceUtil.formatStatefulName(serviceMgr.getMainService().getTagName(), targetPod), mainServiceInfo())
+                .rpcCall(method, rpcContent)
+                .switchThread(callQueue, span)
+                .nextDo(ret -> Homo.result((EntityResponse) entityServiceRpcInfo.unSerializeReturnValue(method, rpcContent)));
+    }
+
+    private static boolean allTrue(Object[] results) {
+        for (Object result : results) {
+            if (!Boolean.TRUE.equals(result)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ServiceInfo mainServiceInfo() {
+        Service mainService = serviceMgr.getMainService();
+        String serviceHost = ServiceUtil.getServiceHostNameByTag(mainService.getTagName());
+        int servicePort = ServiceUtil.getServicePortByTag(mainService.getTagName());
+        return new ServiceInfo(mainService.getTagName(), serviceHost, servicePort, mainService.isStateful(), mainService.getType().ordinal());
+    }
+}
@@ -0,0 +1,261 @@
+package com.core.ability.base;
+
+import com.core.ability.base.call.CallAbility;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.homo.core.configurable.ability.AbilityProperties;
+import com.homo.core.facade.ability.AbilityEntity;
+import com.homo.core.facade.ability.SaveAble;
+import com.homo.core.utils.concurrent.queue.CallQueueMgr;
+import com.homo.core.utils.concurrent.schedule.HomoTimerMgr;
+import com.homo.core.utils.spring.GetBeanUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 实体内存预算管理
+ * 1. 按权重（估算的内存占用）跟踪所有可保存（SaveAble）实体，不区分实体类型，总权重超过预算时按W-TinyLFU淘汰
+ * 2. 权重默认取实体序列化后的大小乘以系数：加入时不序列化，先按同类型实体最近保存大小的滑动平均估算，
+ *    实体每次保存时（StorageSystem.save已经序列化）按实际大小更新；也可以按类型注册自定义权重计算
+ * 3. 淘汰即销毁实体，销毁时StorageAbility会先保存实体，落地完成前再次加载会从保存缓存中取到最新数据
+ * 4. 销毁在实体所在的CallQueue上执行，与实体的调用、定时保存串行；
+ *    执行中有调用、正在加载初始化或正在迁移的实体不销毁，延迟busyRetryMillis后重新加入预算等待下次淘汰，
+ *    立即加入会在全部实体都忙时反复淘汰
+ * 预算为0时不启用，实体只按各自的缓存时间释放
+ */
+@Slf4j
+public class EntityMemoryGovernor {
+    /**
+     * 该类型还没有保存记录时的默认权重
+     */
+    static final int DEFAULT_WEIGHT = 1024;
+    static final long BUSY_RETRY_MILLIS = 1000;
+
+    /**
+     * 实体权重计算
+     */
+    public interface EntityWeigher {
+        int weigh(AbilityEntity entity);
+    }
+
+    private static class WeightedEntity {
+        final String type;
+        final String id;
+        final int weight;
+
+        WeightedEntity(String type, String id, int weight) {
+            this.type = type;
+            this.id = id;
+            this.weight = weight;
+        }
+    }
+
+    private final long budget;
+    private final int weightFactor;
+    private final Cache<String, WeightedEntity> weightCache;
+    private final Map<String, EntityWeigher> typeWeigherMap = new ConcurrentHashMap<>();
+    private final AtomicLong evictCount = new AtomicLong();
+    private final AtomicLong busySkipCount = new AtomicLong();
+    @Autowired(required = false)
+    EntityHandoffMgr handoffMgr;
+    long busyRetryMillis = BUSY_RETRY_MILLIS;
+    /**
+     * type -> 该类型实体保存大小的滑动平均
+     */
+    private final Map<String, Integer> typeAvgSizeMap = new ConcurrentHashMap<>();
+
+    public EntityMemoryGovernor(AbilityProperties abilityProperties) {
+        this(abilityProperties, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor 执行淘汰回调的线程池，回调里只把销毁投递到实体的CallQueue
+     */
+    EntityMemoryGovernor(AbilityProperties abilityProperties, Executor executor) {
+        this.weightFactor = Math.max(1, abilityProperties.getEntityWeightFactor());
+        if (abilityProperties.getEntityMemoryBudgetBytes() > 0) {
+            this.budget = abilityProperties.getEntityMemoryBudgetBytes();
+        } else if (abilityProperties.getEntityMemoryBudgetRatio() > 0) {
+            this.budget = (long) (Runtime.getRuntime().maxMemory() * abilityProperties.getEntityMemoryBudgetRatio());
+        } else {
+            this.budget = 0;
+        }
+        if (budget > 0) {
+            weightCache = Caffeine.newBuilder()
+                    .maximumWeight(budget)
+                    .executor(executor)
+                    .<String, WeightedEntity>weigher((key, value) -> value.weight)
+                    .removalListener((key, value, cause) -> {
+                        if (value != null && cause.wasEvicted()) {
+                            evict(value);
+                        }
+                    })
+                    .build();
+        } else {
+            weightCache = null;
+        }
+        log.info("EntityMemoryGovernor init budget {} weightFactor {}", budget, weightFactor);
+    }
+
+    public boolean isEnable() {
+        return weightCache != null;
+    }
+
+    /**
+     * 注册某个实体类型的权重计算
+     */
+    public void registerWeigher(String type, EntityWeigher weigher) {
+        typeWeigherMap.put(type, weigher);
+    }
+
+    public void add(AbilityEntity entity) {
+        if (!isEnable() || !(entity instanceof SaveAble)) {
+            return;
+        }
+        weightCache.put(key(entity.getType(), entity.getId()), new WeightedEntity(entity.getType(), entity.getId(), weigh(entity)));
+    }
+
+    /**
+     * 实体保存时按最新的序列化大小更新权重
+     */
+    public void updateWeight(String type, String id, int serializedSize) {
+        if (!isEnable() || typeWeigherMap.containsKey(type)) {
+            return;
+        }
+        typeAvgSizeMap.merge(type, serializedSize, (avg, size) -> (int) (((long) avg * 7 + size) / 8));
+        String key = key(type, id);
+        weightCache.asMap().computeIfPresent(key, (k, old) -> new WeightedEntity(old.type, old.id, toWeight(serializedSize)));
+    }
+
+    /**
+     * 记录一次访问
+     */
+    public void touch(String type, String id) {
+        if (isEnable()) {
+            weightCache.getIfPresent(key(type, id));
+        }
+    }
+
+    public void remove(String type, String id) {
+        if (isEnable()) {
+            weightCache.invalidate(key(type, id));
+        }
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public long getWeightedSize() {
+        return isEnable() ? weightCache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L) : 0L;
+    }
+
+    public long getEvictCount() {
+        return evictCount.get();
+    }
+
+    /**
+     * 因实体正在使用而跳过淘汰的次数
+     */
+    public long getBusySkipCount() {
+        return busySkipCount.get();
+    }
+
+    /**
+     * 立即执行缓存的维护（包括超出预算的淘汰）
+     */
+    void cleanUp() {
+        if (isEnable()) {
+            weightCache.cleanUp();
+        }
+    }
+
+    CacheEntityMgr entityMgr() {
+        return GetBeanUtil.getBean(CacheEntityMgr.class);
+    }
+
+    private int weigh(AbilityEntity entity) {
+        EntityWeigher weigher = typeWeigherMap.get(entity.getType());
+        try {
+            if (weigher != null) {
+                return Math.max(1, weigher.weigh(entity));
+            }
+            Integer avgSize = typeAvgSizeMap.get(entity.getType());
+            if (avgSize != null) {
+                return toWeight(avgSize);
+            }
+        } catch (Exception e) {
+            log.warn("EntityMemoryGovernor weigh error type {} id {}", entity.getType(), entity.getId(), e);
+        }
+        return DEFAULT_WEIGHT;
+    }
+
+    private int toWeight(int serializedSize) {
+        long weight = (long) serializedSize * weightFactor;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, weight));
+    }
+
+    private void evict(WeightedEntity weightedEntity) {
+        AbilityEntity entity = entityMgr().peek(weightedEntity.type, weightedEntity.id);
+        if (entity == null) {
+            return;
+        }
+        Integer queueId = entity.getQueueId();
+        if (queueId == null) {
+            //还没有初始化完成
+            CallQueueMgr.getInstance().frameTask(() -> retryLater(weightedEntity, entity));
+            return;
+        }
+        CallQueueMgr.getInstance().task(() -> evictInQueue(weightedEntity, entity), queueId);
+    }
+
+    private void evictInQueue(WeightedEntity weightedEntity, AbilityEntity entity) {
+        if (entityMgr().peek(weightedEntity.type, weightedEntity.id) != entity) {
+            //已被销毁或替换
+            return;
+        }
+        if (isBusy(entity)) {
+            busySkipCount.incrementAndGet();
+            log.debug("EntityMemoryGovernor skip busy entity type {} id {}", weightedEntity.type, weightedEntity.id);
+            retryLater(weightedEntity, entity);
+            return;
+        }
+        evictCount.incrementAndGet();
+        log.info("EntityMemoryGovernor evict type {} id {} weight {} weightedSize {} budget {}",
+                weightedEntity.type, weightedEntity.id, weightedEntity.weight, getWeightedSize(), budget);
+        entity.promiseDestroy().start();
+    }
+
+    /**
+     * 有执行中的调用、正在加载初始化或正在迁移
+     */
+    boolean isBusy(AbilityEntity entity) {
+        if (handoffMgr != null && (handoffMgr.isFrozen(entity.getId()) || handoffMgr.isPending(entity.getId()))) {
+            return true;
+        }
+        CallAbility callAbility = entity.getAbility(CallAbility.class);
+        if (callAbility != null && callAbility.isInCall()) {
+            return true;
+        }
+        return entityMgr().isLocked(entity);
+    }
+
+    private void retryLater(WeightedEntity weightedEntity, AbilityEntity entity) {
+        String key = key(weightedEntity.type, weightedEntity.id);
+        HomoTimerMgr.getInstance().once("EntityMemoryGovernorRetry:" + key, CallQueueMgr.getInstance().getLocalQueue(), () -> {
+            if (entityMgr().peek(weightedEntity.type, weightedEntity.id) == entity) {
+                weightCache.asMap().putIfAbsent(key, weightedEntity);
+            }
+        }, busyRetryMillis);
+    }
+
+    private static String key(String type, String id) {
+        return type + ":" + id;
+    }
+}
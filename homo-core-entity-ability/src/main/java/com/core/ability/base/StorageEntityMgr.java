@@ -7,7 +7,8 @@ import com.homo.core.facade.ability.AbilityEntity;
 import com.homo.core.facade.ability.AbilitySystem;
 import com.homo.core.facade.ability.EntityType;
 import com.homo.core.facade.ability.SaveAble;
-import com.homo.core.utils.concurrent.lock.IdLocker;
+import com.homo.core.rpc.base.serial.MethodDispatchInfo;
+import com.homo.core.utils.concurrent.lock.AsyncIdLocker;
 import com.homo.core.utils.concurrent.queue.CallQueue;
 import com.homo.core.utils.concurrent.queue.CallQueueMgr;
 import com.homo.core.utils.fun.Func2PWithException;
@@ -19,6 +20,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.reflections.Reflections;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -34,7 +36,9 @@ public class StorageEntityMgr extends CacheEntityMgr implements ServiceModule {
     @Autowired
     StorageSystem storageSystem;
     Map<Class<? extends AbilitySystem>, AbilitySystem> systemMap = new HashMap<>();
-    IdLocker idLocker = new IdLocker();
+    AsyncIdLocker idLocker = new AsyncIdLocker();
+    @Autowired(required = false)
+    EntityHandoffMgr handoffMgr;
 
     @Autowired
     public StorageEntityMgr(Set<? extends AbilitySystem> abilitySystems, AbilityProperties abilityProperties) {
@@ -54,6 +58,8 @@ public class StorageEntityMgr extends CacheEntityMgr implements ServiceModule {
         for (Class<?> entityClazz : entityClazzSet) {
             EntityType entityType = HomoAnnotationUtil.findAnnotation(entityClazz, EntityType.class);
             String type = entityType.type();
+            //实体类可能作为rpc参数或迁移数据传输，启动时注册，类id冲突在这里暴露
+            MethodDispatchInfo.registerFallbackClass(entityClazz);
             typeToAbilityObjectClazzMap.computeIfAbsent(type, k -> (Class<AbilityEntity>) entityClazz);
             typeToAbilityObjectClazzMap.computeIfPresent(type, (k, oldClazz) -> {
                 if (!entityClazz.equals(oldClazz) && oldClazz.isAssignableFrom(entityClazz)) {//新的class是老的class的子类，代替老的class
@@ -69,6 +75,21 @@ public class StorageEntityMgr extends CacheEntityMgr implements ServiceModule {
     @Override
     @SuppressWarnings("unchecked")
     public <T extends AbilityEntity> Homo<T> getEntityPromise(String type, String id) {
+        if (handoffMgr != null && (handoffMgr.isFrozen(id) || handoffMgr.isHandedOff(id))) {
+            //迁移中等待迁移结束，已移交给其他pod的实体不再在本pod访问
+            return handoffMgr.awaitUnfrozen(id)
+                    .nextDo(local -> {
+                        if (handoffMgr.isHandedOff(id)) {
+                            return Homo.error(new RuntimeException(String.format("entity handed off type_%s id_%s", type, id)));
+                        }
+                        return doGetEntityPromise(type, id);
+                    });
+        }
+        return doGetEntityPromise(type, id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends AbilityEntity> Homo<T> doGetEntityPromise(String type, String id) {
         return Homo.queue(idCallQueue, () -> {
             Homo<T> ret;
             T entity = get(type, id);
@@ -110,34 +131,36 @@ public class StorageEntityMgr extends CacheEntityMgr implements ServiceModule {
                     .annotate(ZipkinUtil.CLIENT_SEND_TAG);
             return storageSystem.loadEntity(clazz, id)
                     .nextDo(entity -> {
-                        return idLocker.lockCallable(id, () -> {
+                        //锁内只做内存检查和加入内存（promiseInit同步执行add），后续的初始化在锁外执行，
+                        //避免初始化或创建过程中再次加载同一实体时互相等待
+                        Homo<Homo<T>> initPromise = idLocker.lock(getLockKey(clazz, id), () -> {
                             T inMenEntity = get(clazz, id);
                             if (inMenEntity != null) {
                                 //内存有了就直接使用
                                 log.info("asyncLoad get(clazz, id), clazz {} id {} entity {}", clazz, id, entity);
-                                return Homo.result(inMenEntity);
+                                return Homo.result(Homo.result(inMenEntity));
                             }
                             if (entity != null) {
-                                return entity.promiseInit()
+                                return Homo.result(entity.promiseInit()
                                         .nextDo(ret -> {
                                             log.info("asyncLoad loadEntity(clazz, id), clazz {} id {} entity {}", clazz, id, ret);
-                                            return Homo.result((T)ret);
-                                        });
+                                            return Homo.result((T) ret);
+                                        }));
                             } else {
                                 Func2PWithException<Class<? extends AbilityEntity>, String, Homo<? extends AbilityEntity>> createFun = notFoundCreateFunMap.get(clazz);
                                 if (createFun != null) {
                                     //如果注册了创建函数，则调用默认创建函数
-                                    return (Homo<T>) createFun.apply(clazz, id)
+                                    return Homo.result((Homo<T>) createFun.apply(clazz, id)
                                             .consumerValue(createEntity -> {
                                                 log.info("asyncLoad createFun.apply(clazz, id), clazz {} id {} entity {}", clazz, id, entity);
-                                            });
+                                            }));
                                 } else {
                                     log.info("asyncLoad not fund, clazz {} id {} entity {}", clazz, id, entity);
-                                    return Homo.result(null);
+                                    return Homo.result(Homo.result(null));
                                 }
                             }
-
                         });
+                        return initPromise.nextDo(init -> init);
                     })
                     .switchThread(callQueue,span)
                     .finallySignal(finallyEntity -> {
@@ -147,6 +170,16 @@ public class StorageEntityMgr extends CacheEntityMgr implements ServiceModule {
         }
     }
 
+    @Override
+    boolean isLocked(AbilityEntity entity) {
+        Class<AbilityEntity> clazz = typeToAbilityObjectClazzMap.get(entity.getType());
+        return clazz != null && idLocker.isLocked(getLockKey(clazz, entity.getId()));
+    }
+
+    private String getLockKey(Class<?> clazz, String id) {
+        return clazz.getName() + ":" + id;
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends AbilityEntity> Homo<T> asyncGetOrCreate(String type, String id, Object... params) {
         return (Homo<T>) getEntityPromise(type, id)
@@ -162,6 +195,17 @@ public class StorageEntityMgr extends CacheEntityMgr implements ServiceModule {
 
     @Override
     public void beforeClose() {
+        if (handoffMgr != null && CallQueueMgr.getInstance().isInCallQueue()) {
+            //移交需要在实体所在的CallQueue上序列化，在CallQueue线程上阻塞等待可能互相等待，不做移交
+            log.error("beforeClose on CallQueue thread {}, skip handoff", Thread.currentThread().getName());
+        } else if (handoffMgr != null) {
+            try {
+                Integer count = handoffMgr.drain().block(Duration.ofMillis(abilityProperties.getHandoffTimeoutMillis()));
+                log.info("beforeClose handoff entity count {}", count);
+            } catch (Exception e) {
+                log.error("beforeClose handoff error", e);
+            }
+        }
         removeAllEntity();
         assert storageSystem.allEntityLanded();
     }
@@ -18,12 +18,17 @@ import org.springframework.util.Assert;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 远程调用能力实现
  */
 public class CallAbility extends AbstractAbility implements ICallAbility {
     public static Map<Class<?>, CallDispatcher> entityDispatcherMap = new ConcurrentHashMap<>();
+    /**
+     * 执行中（包括等待异步结果）的调用数量
+     */
+    private final AtomicInteger inCallCount = new AtomicInteger();
 
     public CallAbility(AbilityEntity abilityEntity) {
         attach(abilityEntity);
@@ -65,8 +70,18 @@ public class CallAbility extends AbstractAbility implements ICallAbility {
         ByteRpcContent rpcContent = new ByteRpcContent();
         rpcContent.setMsgId(funName);
         rpcContent.setParam(data);
-        return callDispatcher.callFun(getOwner(), srcName, funName, rpcContent, idCallQueue, queueId, podId, parameterMsg);
+        return Homo.fromSupplier(() -> {
+                    inCallCount.incrementAndGet();
+                    return callDispatcher.callFun(getOwner(), srcName, funName, rpcContent, idCallQueue, queueId, podId, parameterMsg);
+                })
+                .finallySignal(signalType -> inCallCount.decrementAndGet());
+    }
 
+    /**
+     * 是否有执行中的调用
+     */
+    public boolean isInCall() {
+        return inCallCount.get() > 0;
     }
 
 
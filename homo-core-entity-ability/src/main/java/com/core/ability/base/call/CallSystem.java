@@ -2,6 +2,7 @@ package com.core.ability.base.call;
 
 import brave.Span;
 import brave.Tracer;
+import com.core.ability.base.EntityHandoffMgr;
 import com.google.protobuf.ByteString;
 import com.homo.core.configurable.ability.AbilityProperties;
 import com.homo.core.facade.ability.*;
@@ -20,6 +21,9 @@ import com.homo.core.utils.rector.Homo;
 import com.homo.core.utils.spring.GetBeanUtil;
 import com.homo.core.utils.trace.ZipkinUtil;
 import io.homo.proto.client.ParameterMsg;
+import io.homo.proto.entity.EntityHandoffCommit;
+import io.homo.proto.entity.EntityHandoffRequest;
+import io.homo.proto.entity.EntityHandoffResponse;
 import io.homo.proto.entity.EntityRequest;
 import io.homo.proto.entity.EntityResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -48,12 +52,18 @@ public class CallSystem implements ICallSystem, ServiceModule {
     AbilityProperties abilityProperties;
     @Autowired
     private RootModule rootModule;
+    @Autowired(required = false)
+    EntityHandoffMgr handoffMgr;
     Map<String, Boolean> methodInvokeByQueueMap = new ConcurrentHashMap<>();
     KKMap<String, String, ICallAbility> type2id2callAbilityMap = new KKMap<>();
     KKMap<String, String, Boolean> id2type2callLinkMap = new KKMap<>();
 
     @Override
     public void afterAllModuleInit() {
+        if (handoffMgr != null) {
+            //迁移中的uid先经过callOrForward转发，不能在分发时按过期路由拒绝
+            serviceStateMgr.addStaleRouteExemption(handoffMgr::isHandingOff);
+        }
         //将本服务的entity type 映射到主服务上，为其他服进行远程调用提供支持
         Reflections reflections = new Reflections(abilityProperties.getEntityScanPath());
         Set<Class<?>> entitySet = reflections.getTypesAnnotatedWith(EntityType.class);
@@ -112,6 +122,30 @@ public class CallSystem implements ICallSystem, ServiceModule {
 
     @Override
     public Homo call(String srcName, EntityRequest entityRequest, Integer podId, ParameterMsg parameterMsg) throws Exception {
+        if (handoffMgr != null && (handoffMgr.isDraining() || handoffMgr.isFrozen(entityRequest.getId()))) {
+            //下线迁移中或正在接收该实体，等待迁移完成，已移交的实体转发到目标pod
+            return handoffMgr.callOrForward(entityRequest, parameterMsg, () -> localCall(srcName, entityRequest, podId, parameterMsg));
+        }
+        return localCall(srcName, entityRequest, podId, parameterMsg);
+    }
+
+    @Override
+    public Homo<EntityHandoffResponse> acceptHandoff(EntityHandoffRequest request) {
+        if (handoffMgr == null) {
+            return Homo.error(new RuntimeException("entity handoff not support"));
+        }
+        return handoffMgr.accept(request);
+    }
+
+    @Override
+    public Homo<EntityHandoffResponse> commitHandoff(EntityHandoffCommit request) {
+        if (handoffMgr == null) {
+            return Homo.error(new RuntimeException("entity handoff not support"));
+        }
+        return handoffMgr.commit(request);
+    }
+
+    private Homo<EntityResponse> localCall(String srcName, EntityRequest entityRequest, Integer podId, ParameterMsg parameterMsg) {
         List<ByteString> paramBytesList = entityRequest.getContentList();
         byte[][] paramArr = new byte[paramBytesList.size()][];
         for (int i = 0; i < paramBytesList.size(); i++) {
@@ -228,6 +262,11 @@ public class CallSystem implements ICallSystem, ServiceModule {
         type2id2callAbilityMap.set(type, id, callAbility);
         //设置连接信息
         boolean linked = id2type2callLinkMap.containsFirstKey(id);
+        if (handoffMgr != null && handoffMgr.isPending(id)) {
+            //迁移过来的实体，连接由移交方转移
+            log.info("CallSystem accept handoff entity type {} id {}", type, id);
+            return Homo.result(true);
+        }
         if (linked) {
             log.info("CallSystem no need to link when add entity type {} id {}", type, id);
             return Homo.result(true);
@@ -253,8 +292,13 @@ public class CallSystem implements ICallSystem, ServiceModule {
         type2id2callAbilityMap.remove(type, id);
         //去除连接信息
         id2type2callLinkMap.remove(id, type);
+        if (handoffMgr != null && handoffMgr.isReleased(id)) {
+            //已移交给其他pod或取消接收，连接不属于本pod
+            return Homo.result(callAbility);
+        }
         if (!id2type2callLinkMap.containsFirstKey(id)) {
-            return serviceStateMgr.removeUserLinkedPod(id, rootModule.getServerInfo().serverName, false).nextValue(ret -> callAbility);
+            //只删除指向本pod的连接，连接已经转移到其他pod时保留
+            return serviceStateMgr.removeUserLinkedPodIfMatch(id, rootModule.getServerInfo().serverName, serviceStateMgr.getPodIndex(), false).nextValue(ret -> callAbility);
         } else {
             return Homo.result(callAbility);
         }
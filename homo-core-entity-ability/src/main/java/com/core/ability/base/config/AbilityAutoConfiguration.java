@@ -1,5 +1,7 @@
 package com.core.ability.base.config;
 
+import com.core.ability.base.EntityHandoffMgr;
+import com.core.ability.base.EntityMemoryGovernor;
 import com.core.ability.base.EntityProxyFactory;
 import com.core.ability.base.StorageEntityMgr;
 import com.core.ability.base.call.CallSystem;
@@ -58,6 +60,18 @@ public class AbilityAutoConfiguration {
         return new TimeSystem();
     }
 
+    @Bean("entityMemoryGovernor")
+    public EntityMemoryGovernor entityMemoryGovernor(){
+        log.info("register bean entityMemoryGovernor");
+        return new EntityMemoryGovernor(abilityProperties);
+    }
+
+    @Bean("entityHandoffMgr")
+    public EntityHandoffMgr entityHandoffMgr(){
+        log.info("register bean entityHandoffMgr");
+        return new EntityHandoffMgr();
+    }
+
     @Bean("entityMgr")
     public StorageEntityMgr storageEntityMgr(Set<? extends AbilitySystem> abilitySystems){
         log.info("register bean entityMgr");
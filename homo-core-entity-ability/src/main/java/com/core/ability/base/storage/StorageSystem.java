@@ -1,11 +1,12 @@
 package com.core.ability.base.storage;
 
+import com.core.ability.base.EntityHandoffMgr;
+import com.core.ability.base.EntityMemoryGovernor;
 import com.homo.core.configurable.ability.AbilityProperties;
 import com.homo.core.facade.ability.*;
 import com.homo.core.facade.storege.SaveObject;
 import com.homo.core.storage.ByteStorage;
 import com.homo.core.storage.ObjStorage;
-import com.homo.core.utils.concurrent.lock.IdLocker;
 import com.homo.core.utils.concurrent.queue.CallQueueMgr;
 import com.homo.core.utils.concurrent.schedule.HomoTimerMgr;
 import com.homo.core.utils.module.RootModule;
@@ -18,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -27,7 +29,7 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 @Slf4j
 public class StorageSystem implements AbilitySystem, ServiceModule {
-    final IdLocker idLocker = new IdLocker();
+    final Object saveLock = new Object();
     @Autowired
     AbilityProperties abilityProperties;
     @Autowired
@@ -36,6 +38,10 @@ public class StorageSystem implements AbilitySystem, ServiceModule {
     HomoSerializationProcessor serializationProcessor;
     @Autowired
     private RootModule rootModule;
+    @Autowired(required = false)
+    EntityMemoryGovernor memoryGovernor;
+    @Autowired(required = false)
+    EntityHandoffMgr handoffMgr;
     HomoTimerMgr timerMgr = HomoTimerMgr.getInstance();
 
     @Override
@@ -70,9 +76,17 @@ public class StorageSystem implements AbilitySystem, ServiceModule {
     }
 
     public <T extends SaveObject> void save(SaveAble saveAbleEntity) {
+        if (handoffMgr != null && handoffMgr.isReleased(saveAbleEntity.getId())) {
+            //已移交给其他pod（由接收方保存）或取消接收（由移交方保存）
+            return;
+        }
         long start = System.currentTimeMillis();
-        synchronized (idLocker) {
-            saveEntityMap.put(saveAbleEntity.getId(), new SaveCache(saveAbleEntity, serializationProcessor.writeByte(saveAbleEntity), false));
+        byte[] data = serializationProcessor.writeByte(saveAbleEntity);
+        synchronized (saveLock) {
+            saveEntityMap.put(saveAbleEntity.getId(), new SaveCache(saveAbleEntity, data, false));
+        }
+        if (memoryGovernor != null) {
+            memoryGovernor.updateWeight(saveAbleEntity.getType(), saveAbleEntity.getId(), data.length);
         }
         long end = System.currentTimeMillis();
         if (end - start > 500) {
@@ -84,21 +98,48 @@ public class StorageSystem implements AbilitySystem, ServiceModule {
         Map<String, SaveCache> lastEntityMap;
         long start = System.currentTimeMillis();
         // 切换队列, 需要加锁
-        synchronized (idLocker) {
+        synchronized (saveLock) {
             lastEntityMap = saveEntityMap;
             saveEntityMap = switchToOtherMap();
         }
-        List<Homo<Boolean>> storagePromiseList = new ArrayList<>();
+        //按逻辑类型分组，每组按批次大小拆分后批量保存
+        Map<String, List<Map<String, SaveCache>>> logicTypeBatchMap = new HashMap<>();
+        int batchSize = Math.max(1, abilityProperties.getLandingBatchSize());
         for (SaveCache saveCache : lastEntityMap.values()) {
-            SaveObject saveObject = saveCache.saveObject;
-            Homo<Boolean> savePromise = storage.save(rootModule.getServerInfo().appId, rootModule.getServerInfo().regionId, saveObject.getLogicType(), saveObject.getOwnerId(), ByteStorage.DEFAULT_DATA_KEY, saveCache.getData())
-                    .consumerValue(ret -> {
-                        if (ret) {
-                            saveCache.setSave(true);
-                        }
-                        log.info("byteStorage save ret {} type {} id {}", ret, saveObject.getLogicType(), saveObject.getOwnerId());
-                    });
-            storagePromiseList.add(savePromise);
+            List<Map<String, SaveCache>> batchList = logicTypeBatchMap.computeIfAbsent(saveCache.saveObject.getLogicType(), logicType -> new ArrayList<>());
+            if (batchList.isEmpty() || batchList.get(batchList.size() - 1).size() >= batchSize) {
+                batchList.add(new HashMap<>());
+            }
+            batchList.get(batchList.size() - 1).put(saveCache.saveObject.getOwnerId(), saveCache);
+        }
+        List<Homo<Map<String, Boolean>>> storagePromiseList = new ArrayList<>();
+        for (Map.Entry<String, List<Map<String, SaveCache>>> entry : logicTypeBatchMap.entrySet()) {
+            String logicType = entry.getKey();
+            for (Map<String, SaveCache> batch : entry.getValue()) {
+                Map<String, byte[]> ownerDataMap = new HashMap<>(batch.size() * 2);
+                for (Map.Entry<String, SaveCache> cacheEntry : batch.entrySet()) {
+                    ownerDataMap.put(cacheEntry.getKey(), cacheEntry.getValue().getData());
+                }
+                Homo<Map<String, Boolean>> savePromise = storage.batchSave(rootModule.getServerInfo().appId, rootModule.getServerInfo().regionId, logicType, ByteStorage.DEFAULT_DATA_KEY, ownerDataMap)
+                        .nextDo(ret -> {
+                            int failCount = 0;
+                            for (Map.Entry<String, SaveCache> cacheEntry : batch.entrySet()) {
+                                if (Boolean.TRUE.equals(ret.get(cacheEntry.getKey()))) {
+                                    cacheEntry.getValue().setSave(true);
+                                } else {
+                                    failCount++;
+                                    log.warn("byteStorage save fail type {} id {}", logicType, cacheEntry.getKey());
+                                }
+                            }
+                            log.info("byteStorage batchSave type {} count {} failCount {}", logicType, batch.size(), failCount);
+                            //有保存失败的实体时走异常流程，保留未保存的实体等待下次落地
+                            if (failCount > 0) {
+                                return Homo.error(new Exception(String.format("batchSave fail type %s failCount %s", logicType, failCount)));
+                            }
+                            return Homo.result(ret);
+                        });
+                storagePromiseList.add(savePromise);
+            }
         }
         Homo.when(storagePromiseList)
                 .consumerValue(ret -> {
@@ -151,8 +192,12 @@ public class StorageSystem implements AbilitySystem, ServiceModule {
                 });
     }
 
+    /**
+     * 加载存储数据，不加id锁：缓存读取本身是同步的，加载结果也不回写缓存，
+     * 并发加载同一id不会产生不一致，而锁住整个加载过程会让嵌套加载互相等待
+     */
     public <E extends SaveObject> Homo<E> load(String logicType, String id, Class<E> zz) {
-        return idLocker.lockCallable(id, () -> {
+        return Homo.fromSupplier(() -> {
             // 先取缓存中的值
             E cacheData = (E) getInCache(logicType, id);
             if (cacheData != null) {
@@ -1,9 +1,11 @@
 package com.core.ability.base.timer;
 
 import com.core.ability.base.AbstractAbility;
+import com.core.ability.base.EntityHandoffMgr;
 import com.homo.core.facade.ability.AbilityEntity;
 import com.homo.core.utils.concurrent.schedule.HomoTimerMgr;
 import com.homo.core.utils.concurrent.schedule.HomoTimerTask;
+import com.homo.core.utils.spring.GetBeanUtil;
 
 import java.util.*;
 
@@ -12,9 +14,33 @@ import java.util.*;
  */
 public class TimeAbility extends AbstractAbility {
     Map<String, HomoTimerTask> timeTaskMap = new HashMap<>();
+    EntityHandoffMgr handoffMgr;
 
     public TimeAbility(AbilityEntity abilityEntity) {
         attach(abilityEntity);
+        handoffMgr = GetBeanUtil.getBean(EntityHandoffMgr.class);
+    }
+
+    /**
+     * 实体迁移中时定时任务等待迁移结束，已移交给其他pod时不再执行
+     */
+    private Runnable freezable(Runnable task) {
+        return () -> {
+            String ownerId = getOwner().getId();
+            if (!handoffMgr.isFrozen(ownerId)) {
+                if (!handoffMgr.isReleased(ownerId)) {
+                    task.run();
+                }
+                return;
+            }
+            handoffMgr.awaitUnfrozen(ownerId)
+                    .consumerValue(local -> {
+                        if (local) {
+                            task.run();
+                        }
+                    })
+                    .start();
+        };
     }
 
     private void clearAll() {
@@ -41,19 +67,19 @@ public class TimeAbility extends AbstractAbility {
 
 
     public HomoTimerTask schedule(String id, Runnable task, long delayMilliSecond, long period) {
-        HomoTimerTask timerTask = HomoTimerMgr.getInstance().schedule(id, task, delayMilliSecond, period, HomoTimerMgr.UNLESS_TIMES);
+        HomoTimerTask timerTask = HomoTimerMgr.getInstance().schedule(id, freezable(task), delayMilliSecond, period, HomoTimerMgr.UNLESS_TIMES);
         addTimer(timerTask);
         return timerTask;
     }
 
     public HomoTimerTask newTimer(String id, Runnable task, long period, int runCount) {
-        HomoTimerTask timerTask = HomoTimerMgr.getInstance().schedule(id, task, 0, period, runCount);
+        HomoTimerTask timerTask = HomoTimerMgr.getInstance().schedule(id, freezable(task), 0, period, runCount);
         addTimer(timerTask);
         return timerTask;
     }
 
     public HomoTimerTask newTimer(String id, Runnable task, long delayMilliSecond, long period, int runCount) {
-        HomoTimerTask timerTask = HomoTimerMgr.getInstance().schedule(id, task, delayMilliSecond, period, runCount);
+        HomoTimerTask timerTask = HomoTimerMgr.getInstance().schedule(id, freezable(task), delayMilliSecond, period, runCount);
         addTimer(timerTask);
         return timerTask;
     }
@@ -0,0 +1,343 @@
+package com.core.ability.base;
+
+import brave.Tracing;
+import brave.sampler.Sampler;
+import com.core.ability.base.timer.TimeAbility;
+import com.homo.core.configurable.ability.AbilityProperties;
+import com.homo.core.facade.ability.Ability;
+import com.homo.core.facade.ability.AbilityEntity;
+import com.homo.core.facade.ability.SaveAble;
+import com.homo.core.facade.service.LoadInfo;
+import com.homo.core.facade.service.Service;
+import com.homo.core.facade.service.ServiceStateMgr;
+import com.homo.core.rpc.base.service.ServiceMgr;
+import com.homo.core.rpc.base.state.ServiceStateMgrImpl;
+import com.homo.core.utils.concurrent.queue.CallQueueMgr;
+import com.homo.core.utils.module.RootModule;
+import com.homo.core.utils.module.ServerInfo;
+import com.homo.core.utils.rector.Homo;
+import com.homo.core.utils.serial.HomoSerializationProcessor;
+import com.homo.core.utils.spring.GetBeanUtil;
+import com.homo.core.utils.trace.ZipkinUtil;
+import io.homo.proto.entity.EntityHandoffCommit;
+import io.homo.proto.entity.EntityHandoffRequest;
+import io.homo.proto.entity.EntityHandoffResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+public class EntityHandoffMgrTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final String SERVER_NAME = "role-service";
+    private static final int SRC_POD = 1;
+    private static final int TARGET_POD = 2;
+
+    public static class TestEntity implements AbilityEntity, SaveAble {
+        String type;
+        String id;
+        int value;
+        transient CacheEntityMgr entityMgr;
+        transient Map<String, Ability> abilityMap = new HashMap<>();
+
+        TestEntity(String type, String id, int value, CacheEntityMgr entityMgr) {
+            this.type = type;
+            this.id = id;
+            this.value = value;
+            this.entityMgr = entityMgr;
+        }
+
+        @Override
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public Integer getQueueId() {
+            return 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T extends Ability> T getAbility(String abilityName) {
+            return (T) abilityMap.get(abilityName);
+        }
+
+        @Override
+        public void setAbility(String abilityName, Ability ability) {
+            abilityMap.put(abilityName, ability);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <SELF> Homo<SELF> promiseInit() {
+            if (!entityMgr.add(this)) {
+                return Homo.error(new IllegalStateException("entity exist " + type + " " + id));
+            }
+            return Homo.result((SELF) this);
+        }
+
+        @Override
+        public Homo<Void> promiseDestroy() {
+            for (Ability ability : abilityMap.values()) {
+                ability.unAttach(this);
+            }
+            entityMgr.remove(type, id);
+            return Homo.result(null);
+        }
+    }
+
+    public static class RoleEntity extends TestEntity {
+        RoleEntity(String id, int value, CacheEntityMgr entityMgr) {
+            super("role", id, value, entityMgr);
+        }
+    }
+
+    public static class BagEntity extends TestEntity {
+        BagEntity(String id, int value, CacheEntityMgr entityMgr) {
+            super("bag", id, value, entityMgr);
+        }
+    }
+
+    static class TestHandoffMgr extends EntityHandoffMgr {
+        final CacheEntityMgr entityMgr = new CacheEntityMgr();
+        TestHandoffMgr peer;
+        volatile boolean dropCommit;
+        volatile Homo<Boolean> handoffGate = Homo.result(true);
+
+        @Override
+        CacheEntityMgr entityMgr() {
+            return entityMgr;
+        }
+
+        @Override
+        Homo<EntityHandoffResponse> sendHandoff(Integer targetPod, EntityHandoffRequest request) {
+            return handoffGate.nextDo(ret -> peer.accept(request));
+        }
+
+        @Override
+        Homo<EntityHandoffResponse> sendCommit(Integer targetPod, EntityHandoffCommit request) {
+            if (dropCommit) {
+                return Homo.error(new IllegalStateException("commit lost"));
+            }
+            return peer.commit(request);
+        }
+    }
+
+    private TestHandoffMgr source;
+    private TestHandoffMgr target;
+    private ServiceStateMgr sourceStateMgr;
+    private ServiceStateMgr targetStateMgr;
+
+    @BeforeEach
+    public void setUp() {
+        if (ZipkinUtil.tracing == null) {
+            ZipkinUtil.tracing = Tracing.newBuilder().sampler(Sampler.NEVER_SAMPLE).build();
+        }
+        StorageEntityMgr.typeToAbilityObjectClazzMap.put("role", (Class) RoleEntity.class);
+        StorageEntityMgr.typeToAbilityObjectClazzMap.put("bag", (Class) BagEntity.class);
+        sourceStateMgr = stateMgr(SRC_POD);
+        targetStateMgr = stateMgr(TARGET_POD);
+        source = newMgr(sourceStateMgr, 10000);
+        target = newMgr(targetStateMgr, 300);
+        source.peer = target;
+        target.peer = source;
+        ApplicationContext context = Mockito.mock(ApplicationContext.class);
+        Mockito.when(context.getBean(ServiceStateMgr.class)).thenReturn(Mockito.mock(ServiceStateMgr.class));
+        Mockito.when(context.getBean(EntityHandoffMgr.class)).thenReturn(source);
+        new GetBeanUtil().setApplicationContext(context);
+    }
+
+    private ServiceStateMgr stateMgr(int podIndex) {
+        ServiceStateMgr stateMgr = Mockito.mock(ServiceStateMgr.class);
+        Mockito.when(stateMgr.isStateful()).thenReturn(true);
+        Mockito.when(stateMgr.getPodIndex()).thenReturn(podIndex);
+        Map<Integer, LoadInfo> stateMap = new HashMap<>();
+        stateMap.put(SRC_POD, new LoadInfo(SRC_POD, 0, 0L, ServiceStateMgrImpl.AVAILABLE));
+        stateMap.put(TARGET_POD, new LoadInfo(TARGET_POD, 0, 0L, ServiceStateMgrImpl.AVAILABLE));
+        Mockito.when(stateMgr.getServiceAllStateInfo(SERVER_NAME)).thenReturn(Homo.result(stateMap));
+        Mockito.when(stateMgr.transferUserLinkedPod(ArgumentMatchers.anyString(), ArgumentMatchers.eq(SERVER_NAME), ArgumentMatchers.eq(SRC_POD), ArgumentMatchers.eq(TARGET_POD)))
+                .thenReturn(Homo.result(TARGET_POD));
+        return stateMgr;
+    }
+
+    private TestHandoffMgr newMgr(ServiceStateMgr stateMgr, long timeoutMillis) {
+        TestHandoffMgr mgr = new TestHandoffMgr();
+        AbilityProperties properties = new AbilityProperties();
+        properties.setHandoffEnable(true);
+        properties.setHandoffBatchSize(10);
+        properties.setHandoffTimeoutMillis(timeoutMillis);
+        mgr.abilityProperties = properties;
+        mgr.serviceStateMgr = stateMgr;
+        Service mainService = Mockito.mock(Service.class);
+        Mockito.when(mainService.getHostName()).thenReturn(SERVER_NAME);
+        mgr.serviceMgr = Mockito.mock(ServiceMgr.class);
+        Mockito.when(mgr.serviceMgr.getMainService()).thenReturn(mainService);
+        ServerInfo serverInfo = new ServerInfo();
+        serverInfo.serverName = SERVER_NAME;
+        mgr.rootModule = Mockito.mock(RootModule.class);
+        Mockito.when(mgr.rootModule.getServerInfo()).thenReturn(serverInfo);
+        HomoSerializationProcessor processor = Mockito.mock(HomoSerializationProcessor.class);
+        Mockito.when(processor.writeByte(ArgumentMatchers.any()))
+                .thenAnswer(invocation -> String.valueOf(((TestEntity) invocation.getArgument(0)).value).getBytes(StandardCharsets.UTF_8));
+        Mockito.when(processor.readValue(ArgumentMatchers.any(byte[].class), ArgumentMatchers.any(Class.class)))
+                .thenAnswer(invocation -> {
+                    int value = Integer.parseInt(new String((byte[]) invocation.getArgument(0), StandardCharsets.UTF_8));
+                    return RoleEntity.class.equals(invocation.getArgument(1)) ? new RoleEntity(null, value, mgr.entityMgr) : new BagEntity(null, value, mgr.entityMgr);
+                });
+        mgr.serializationProcessor = processor;
+        return mgr;
+    }
+
+    private void addSourceEntities() {
+        new RoleEntity("u1", 11, source.entityMgr).promiseInit().block(TIMEOUT);
+        new BagEntity("u1", 12, source.entityMgr).promiseInit().block(TIMEOUT);
+        new RoleEntity("u2", 21, source.entityMgr).promiseInit().block(TIMEOUT);
+    }
+
+    private static int value(CacheEntityMgr entityMgr, String type, String id) {
+        TestEntity entity = (TestEntity) entityMgr.peek(type, id);
+        return entity == null ? -1 : entity.value;
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT.toMillis();
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void testHandoffPerUid() {
+        addSourceEntities();
+        Assertions.assertEquals(3, source.drain().block(TIMEOUT));
+        //同一uid的实体一起移交，每个uid只转移一次连接
+        Assertions.assertEquals(11, value(target.entityMgr, "role", "u1"));
+        Assertions.assertEquals(12, value(target.entityMgr, "bag", "u1"));
+        Assertions.assertEquals(21, value(target.entityMgr, "role", "u2"));
+        Assertions.assertNull(source.entityMgr.peek("role", "u1"));
+        Assertions.assertNull(source.entityMgr.peek("bag", "u1"));
+        Mockito.verify(sourceStateMgr, Mockito.times(1)).transferUserLinkedPod("u1", SERVER_NAME, SRC_POD, TARGET_POD);
+        Mockito.verify(sourceStateMgr, Mockito.times(1)).transferUserLinkedPod("u2", SERVER_NAME, SRC_POD, TARGET_POD);
+        Assertions.assertTrue(source.isHandedOff("u1"));
+        //已移交的uid由本pod转发，不按过期路由拒绝
+        Assertions.assertTrue(source.isHandingOff("u1"));
+        Assertions.assertFalse(source.isHandingOff("u3"));
+        Assertions.assertFalse(source.isFrozen("u1"));
+        Assertions.assertFalse(target.isPending("u1"));
+        Assertions.assertFalse(target.isFrozen("u1"));
+        Assertions.assertFalse(target.isReleased("u1"));
+    }
+
+    @Test
+    public void testTransferFailAbort() {
+        //u1的连接已经被其他pod占用
+        Mockito.when(sourceStateMgr.transferUserLinkedPod("u1", SERVER_NAME, SRC_POD, TARGET_POD)).thenReturn(Homo.result(3));
+        addSourceEntities();
+        Assertions.assertEquals(1, source.drain().block(TIMEOUT));
+        //目标pod丢弃u1的所有实体，本地实体保留并按原流程保存
+        Assertions.assertNull(target.entityMgr.peek("role", "u1"));
+        Assertions.assertNull(target.entityMgr.peek("bag", "u1"));
+        Assertions.assertEquals(11, value(source.entityMgr, "role", "u1"));
+        Assertions.assertEquals(12, value(source.entityMgr, "bag", "u1"));
+        Assertions.assertFalse(source.isReleased("u1"));
+        Assertions.assertFalse(target.isPending("u1"));
+        Assertions.assertFalse(target.isReleased("u1"));
+        Assertions.assertEquals(21, value(target.entityMgr, "role", "u2"));
+        Assertions.assertNull(source.entityMgr.peek("role", "u2"));
+    }
+
+    @Test
+    public void testRejectUidInMemory() {
+        //目标pod已有u1的实体，u1整体拒绝
+        new BagEntity("u1", 99, target.entityMgr).promiseInit().block(TIMEOUT);
+        addSourceEntities();
+        Assertions.assertEquals(1, source.drain().block(TIMEOUT));
+        Mockito.verify(sourceStateMgr, Mockito.never()).transferUserLinkedPod("u1", SERVER_NAME, SRC_POD, TARGET_POD);
+        Assertions.assertNull(target.entityMgr.peek("role", "u1"));
+        Assertions.assertEquals(99, value(target.entityMgr, "bag", "u1"));
+        Assertions.assertEquals(11, value(source.entityMgr, "role", "u1"));
+    }
+
+    @Test
+    public void testCommitLostResolveByLink() throws InterruptedException {
+        source.dropCommit = true;
+        Mockito.when(sourceStateMgr.transferUserLinkedPod("u2", SERVER_NAME, SRC_POD, TARGET_POD)).thenReturn(Homo.result(3));
+        Mockito.when(targetStateMgr.getUserLinkedPodNoCache("u1", SERVER_NAME)).thenReturn(Homo.result(TARGET_POD));
+        Mockito.when(targetStateMgr.getUserLinkedPodNoCache("u2", SERVER_NAME)).thenReturn(Homo.result(3));
+        addSourceEntities();
+        Assertions.assertEquals(2, source.drain().block(TIMEOUT));
+        Assertions.assertTrue(target.isPending("u1"));
+        Assertions.assertTrue(target.isFrozen("u2"));
+        Assertions.assertTrue(target.isHandingOff("u2"));
+        //超时后按连接归属提交u1，丢弃u2
+        waitUntil(() -> !target.isPending("u1") && !target.isPending("u2"));
+        Assertions.assertEquals(11, value(target.entityMgr, "role", "u1"));
+        Assertions.assertEquals(12, value(target.entityMgr, "bag", "u1"));
+        Assertions.assertNull(target.entityMgr.peek("role", "u2"));
+        Assertions.assertFalse(target.isFrozen("u1"));
+        Assertions.assertFalse(target.isHandingOff("u1"));
+        Assertions.assertFalse(target.isReleased("u2"));
+        Assertions.assertEquals(21, value(source.entityMgr, "role", "u2"));
+    }
+
+    @Test
+    public void testTimerFrozenDuringHandoff() throws Exception {
+        RoleEntity entity = new RoleEntity("u1", 11, source.entityMgr);
+        entity.promiseInit().block(TIMEOUT);
+        TimeAbility timeAbility = new TimeAbility(entity);
+        CompletableFuture<Boolean> gate = new CompletableFuture<>();
+        source.handoffGate = Homo.warp(Mono.fromFuture(gate));
+        CompletableFuture<Integer> drain = source.drain().toFuture();
+        waitUntil(() -> source.isFrozen("u1"));
+        AtomicBoolean run = new AtomicBoolean(false);
+        AtomicBoolean fired = new AtomicBoolean(false);
+        CallQueueMgr.getInstance().getQueue(0).addEvent(() -> timeAbility.newTimer("u1", () -> run.set(true), 10, 10, 1)
+                .setOnErrorConsumer(task -> fired.set(true)));
+        Thread.sleep(100);
+        //迁移中定时任务等待
+        Assertions.assertFalse(run.get());
+        gate.complete(true);
+        Assertions.assertEquals(1, drain.get(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        //已移交给其他pod，定时任务不再执行
+        Assertions.assertFalse(run.get());
+        Assertions.assertFalse(fired.get());
+        Assertions.assertFalse(source.awaitUnfrozen("u1").block(TIMEOUT));
+        Assertions.assertEquals(11, value(target.entityMgr, "role", "u1"));
+    }
+
+    @Test
+    public void testTimerRunWhenNotFrozen() throws InterruptedException {
+        RoleEntity entity = new RoleEntity("u1", 11, source.entityMgr);
+        entity.promiseInit().block(TIMEOUT);
+        TimeAbility timeAbility = new TimeAbility(entity);
+        AtomicBoolean run = new AtomicBoolean(false);
+        CallQueueMgr.getInstance().getQueue(0).addEvent(() -> timeAbility.newTimer("u1", () -> run.set(true), 10, 10, 1));
+        waitUntil(run::get);
+        Assertions.assertTrue(source.awaitUnfrozen("u1").block(TIMEOUT));
+    }
+}
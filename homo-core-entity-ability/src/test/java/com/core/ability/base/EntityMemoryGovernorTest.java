@@ -0,0 +1,135 @@
+package com.core.ability.base;
+
+import brave.Tracing;
+import brave.sampler.Sampler;
+import com.core.ability.base.EntityHandoffMgrTest.RoleEntity;
+import com.core.ability.base.call.CallAbility;
+import com.homo.core.configurable.ability.AbilityProperties;
+import com.homo.core.facade.service.ServiceStateMgr;
+import com.homo.core.utils.spring.GetBeanUtil;
+import com.homo.core.utils.trace.ZipkinUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationContext;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+public class EntityMemoryGovernorTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final int WEIGHT = 1000;
+    private CacheEntityMgr entityMgr;
+    private EntityMemoryGovernor governor;
+
+    @BeforeEach
+    public void setUp() {
+        if (ZipkinUtil.tracing == null) {
+            ZipkinUtil.tracing = Tracing.newBuilder().sampler(Sampler.NEVER_SAMPLE).build();
+        }
+        ApplicationContext context = Mockito.mock(ApplicationContext.class);
+        Mockito.when(context.getBean(ServiceStateMgr.class)).thenReturn(Mockito.mock(ServiceStateMgr.class));
+        new GetBeanUtil().setApplicationContext(context);
+        AbilityProperties properties = new AbilityProperties();
+        properties.setEntityMemoryBudgetBytes(3 * WEIGHT);
+        properties.setEntityWeightFactor(1);
+        entityMgr = new CacheEntityMgr();
+        //淘汰回调在当前线程执行，销毁仍投递到实体的CallQueue
+        governor = new EntityMemoryGovernor(properties, Runnable::run) {
+            @Override
+            CacheEntityMgr entityMgr() {
+                return entityMgr;
+            }
+        };
+        governor.busyRetryMillis = 50;
+        governor.registerWeigher("role", entity -> WEIGHT);
+        entityMgr.memoryGovernor = governor;
+    }
+
+    private RoleEntity add(String id) {
+        RoleEntity entity = new RoleEntity(id, 0, entityMgr);
+        entity.promiseInit().block(TIMEOUT);
+        governor.cleanUp();
+        return entity;
+    }
+
+    private int roleCount() {
+        Set<?> all = entityMgr.getAll("role");
+        return all == null ? 0 : all.size();
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT.toMillis();
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void testEvictOverBudget() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            add("u" + i);
+        }
+        Assertions.assertEquals(3 * WEIGHT, governor.getWeightedSize());
+        Assertions.assertEquals(0, governor.getEvictCount());
+        //超出预算淘汰一个实体，销毁后从内存移除
+        add("u3");
+        waitUntil(() -> roleCount() == 3);
+        Assertions.assertEquals(1, governor.getEvictCount());
+        Assertions.assertTrue(governor.getWeightedSize() <= 3 * WEIGHT);
+        //手动销毁的实体不再占用预算
+        entityMgr.getAll("role").iterator().next().promiseDestroy().block(TIMEOUT);
+        Assertions.assertEquals(2 * WEIGHT, governor.getWeightedSize());
+    }
+
+    @Test
+    public void testSkipHandoffEntity() throws InterruptedException {
+        EntityHandoffMgr handoffMgr = Mockito.mock(EntityHandoffMgr.class);
+        Mockito.when(handoffMgr.isFrozen(ArgumentMatchers.anyString())).thenReturn(true);
+        governor.handoffMgr = handoffMgr;
+        for (int i = 0; i < 4; i++) {
+            add("u" + i);
+        }
+        //迁移中的实体不销毁，稍后重新加入预算
+        waitUntil(() -> governor.getBusySkipCount() > 0);
+        Assertions.assertEquals(4, roleCount());
+        Assertions.assertEquals(0, governor.getEvictCount());
+        //迁移结束后重新淘汰
+        Mockito.when(handoffMgr.isFrozen(ArgumentMatchers.anyString())).thenReturn(false);
+        waitUntil(() -> roleCount() == 3);
+        Assertions.assertEquals(1, governor.getEvictCount());
+    }
+
+    @Test
+    public void testSkipInCallEntity() throws InterruptedException {
+        CallAbility callAbility = Mockito.mock(CallAbility.class);
+        Mockito.when(callAbility.isInCall()).thenReturn(true);
+        RoleEntity[] entities = new RoleEntity[4];
+        for (int i = 0; i < 4; i++) {
+            entities[i] = new RoleEntity("u" + i, 0, entityMgr);
+            entities[i].setAbility("CallAbility", callAbility);
+            entities[i].promiseInit().block(TIMEOUT);
+            governor.cleanUp();
+        }
+        waitUntil(() -> governor.getBusySkipCount() > 0);
+        Assertions.assertEquals(4, roleCount());
+        Assertions.assertTrue(governor.isBusy(entities[0]));
+        //调用结束后可以淘汰
+        Mockito.when(callAbility.isInCall()).thenReturn(false);
+        Assertions.assertFalse(governor.isBusy(entities[0]));
+        waitUntil(() -> roleCount() == 3);
+    }
+
+    @Test
+    public void testDisabled() {
+        AbilityProperties properties = new AbilityProperties();
+        EntityMemoryGovernor disabled = new EntityMemoryGovernor(properties);
+        Assertions.assertFalse(disabled.isEnable());
+        disabled.add(new RoleEntity("u0", 0, entityMgr));
+        Assertions.assertEquals(0, disabled.getWeightedSize());
+    }
+}
@@ -2,6 +2,9 @@ package com.homo.core.facade.ability;
 
 import com.homo.core.utils.rector.Homo;
 import io.homo.proto.client.ParameterMsg;
+import io.homo.proto.entity.EntityHandoffCommit;
+import io.homo.proto.entity.EntityHandoffRequest;
+import io.homo.proto.entity.EntityHandoffResponse;
 import io.homo.proto.entity.EntityRequest;
 
 import java.lang.reflect.Method;
@@ -16,4 +19,14 @@ public interface ICallSystem extends AbilitySystem {
     Homo<ICallAbility> remove(ICallAbility callAbility);
 
     ICallAbility get(String type,String id);
+
+    /**
+     * 接收其他pod移交的实体
+     */
+    Homo<EntityHandoffResponse> acceptHandoff(EntityHandoffRequest request);
+
+    /**
+     * 确认或取消其他pod移交的实体
+     */
+    Homo<EntityHandoffResponse> commitHandoff(EntityHandoffCommit request);
 }
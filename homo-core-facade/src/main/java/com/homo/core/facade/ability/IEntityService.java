@@ -3,6 +3,9 @@ package com.homo.core.facade.ability;
 import com.homo.core.facade.service.InnerService;
 import com.homo.core.utils.rector.Homo;
 import io.homo.proto.client.ParameterMsg;
+import io.homo.proto.entity.EntityHandoffCommit;
+import io.homo.proto.entity.EntityHandoffRequest;
+import io.homo.proto.entity.EntityHandoffResponse;
 import io.homo.proto.entity.EntityRequest;
 import io.homo.proto.entity.EntityResponse;
 import io.homo.proto.entity.Ping;
@@ -13,6 +16,8 @@ public interface IEntityService {
     String default_entity_call_method = "entityCall";
     String default_entity_call_proxy_method = "entityCallForProxy";
     String default_entity_ping_method = "ping";
+    String default_entity_handoff_method = "entityHandoff";
+    String default_entity_handoff_commit_method = "entityHandoffCommit";
 
     Homo<EntityResponse> entityCall(Integer podIndex,  EntityRequest request) throws Exception;
 
@@ -20,4 +25,14 @@ public interface IEntityService {
 
 
     Homo<Pong> ping(Integer podIndex, ParameterMsg parameterMsg, Ping request);
+
+    /**
+     * 接收其他pod移交的实体
+     */
+    Homo<EntityHandoffResponse> entityHandoff(Integer podIndex, EntityHandoffRequest request) throws Exception;
+
+    /**
+     * 移交方转移连接后确认或取消移交
+     */
+    Homo<EntityHandoffResponse> entityHandoffCommit(Integer podIndex, EntityHandoffCommit request) throws Exception;
 }
@@ -5,6 +5,7 @@ import com.homo.core.utils.callback.CallBack;
 import com.homo.core.utils.rector.Homo;
 import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Map;
@@ -34,6 +35,15 @@ public interface DocumentStorageDriver<F, S, U, P> extends Driver {
      */
     <T, V> Homo<List<V>> asyncQuery(F filter, F viewFilter, S sort, @NotNull Integer limit, Integer skip, Class<V> viewClazz, Class<T> clazz);
 
+    /**
+     * 流式查询文档数据，按_id游标分批拉取（不使用skip），结果按_id升序返回
+     *
+     * @param filter    过滤条件
+     * @param batchSize 每批拉取数量
+     * @param clazz     文档对象类型
+     */
+    <T> Flux<T> asyncQueryStream(F filter, @NotNull Integer batchSize, Class<T> clazz);
+
     /**
      * 查找并修改
      *
@@ -50,6 +60,15 @@ public interface DocumentStorageDriver<F, S, U, P> extends Driver {
      */
     <T, V> Homo<List<V>> asyncAggregate(P pipeLine, Class<V> viewClazz, Class<T> clazz);
 
+    /**
+     * 流式聚合，按batchSize有界拉取游标数据
+     * @param pipeLine 聚合管道
+     * @param batchSize 每批拉取数量
+     * @param viewClazz 返回结果视图
+     * @param clazz 文档对象类型
+     */
+    <T, V> Flux<V> asyncAggregateStream(P pipeLine, @NotNull Integer batchSize, Class<V> viewClazz, Class<T> clazz);
+
     /**
      * 通过key列表获取value
      *
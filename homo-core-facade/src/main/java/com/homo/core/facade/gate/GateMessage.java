@@ -29,9 +29,14 @@ public interface GateMessage<T> {
 
     /**
      * 头结构: |bodySize(4B)|version(1B)|packType(1B)|opTime(8B)|sessionId(2B)|sendSeq(2B)|recvReq(2B)
-     * todo 数据压缩支持
      */
     int HEAD_LENGTH = 20;
+    /**
+     * packType最高位为压缩标记，body为 原始长度(4B) + lz4 block压缩数据，bodySize为压缩后的长度
+     * 客户端上行消息带该标记表示支持解压，之后服务器下发超过阈值的消息会压缩
+     */
+    int COMPRESS_FLAG = 0x80;
+    int TYPE_MASK = 0x7F;
 //    @Data
 //    public class Header implements Cloneable {
 //
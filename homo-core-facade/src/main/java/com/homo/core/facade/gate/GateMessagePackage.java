@@ -4,7 +4,7 @@ import com.google.protobuf.GeneratedMessageV3;
 import com.homo.core.utils.exception.HomoError;
 import com.homo.core.utils.serial.ProtoSerializationProcessor;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.PooledByteBufAllocator;
 import lombok.Getter;
 
 public class GateMessagePackage implements GateMessage<GateMessagePackage> {
@@ -117,15 +117,18 @@ public class GateMessagePackage implements GateMessage<GateMessagePackage> {
         buf.writeShort(header.getRecvSeq());
     }
 
+    /**
+     * 从内存池分配，使用方负责release
+     */
     public ByteBuf makeBuf() {
-        ByteBuf buf = Unpooled.buffer(this.getPackageLength());
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.buffer(this.getPackageLength());
         this.writeFullPack(buf);
         return buf;
     }
 
 
     public int getPackageLength(){
-        return GateMessage.HEAD_LENGTH + body.length;
+        return GateMessage.HEAD_LENGTH + (body == null ? 0 : body.length);
     }
 
     //从buffer中读取整个message消息
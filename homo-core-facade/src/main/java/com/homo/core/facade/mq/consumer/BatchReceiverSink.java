@@ -0,0 +1,16 @@
+package com.homo.core.facade.mq.consumer;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 业务层的批量消费接口
+ * 一次拉取到的同一topic的消息解码后按处理函数分组，整组作为一个任务投递，整组只需确认一次
+ *
+ * @param <T>
+ */
+@FunctionalInterface
+public interface BatchReceiverSink<T extends Serializable> extends Serializable {
+
+    void onSinkBatch(String topic, List<T> messages, ConsumerCallback callback);
+}
@@ -26,6 +26,16 @@ public interface MQConsumer extends MQSupport {
      * @throws Exception
      */
      void addReceiver(@NotNull final SinkHandler sinkHandler) throws Exception;
+
+    /**
+     * 注册批量消费者，topic存在批量消费者时该topic以批量模式消费
+     * @param originTopic 消费的topic
+     * @param messageClazz 消息类型（lambda无法获取List的泛型参数，需要显式指定）
+     * @param sink 批量消费者函数
+     * @param <T>
+     * @throws Exception
+     */
+    <T extends Serializable> void addBatchReceiver(@NotNull final String originTopic, @NotNull Class<T> messageClazz, @NotNull BatchReceiverSink<T> sink) throws Exception;
     /**
      * 注册指定topic编解码器
      * @param originTopic
@@ -2,6 +2,8 @@ package com.homo.core.facade.mq.consumer;
 
 import com.homo.core.facade.mq.MQSupport;
 
+import java.util.Collections;
+
 /**
  * 驱动层接收到的Topic就是真实的Topic。
  * 驱动层不处理Topic包装，只负责向队列服务器发送字节消息
@@ -16,6 +18,16 @@ public interface MQConsumerDriver extends MQSupport {
      */
     void subscribe(final String topic, ReceiverSink<byte[]> sink);
 
+    /**
+     * 批量消费一个Topic，每次拉取到的数据一起回调sink下沉，整批只确认一次
+     * 不支持批量拉取的驱动按单条回调
+     * @param topic
+     * @param sink
+     */
+    default void subscribeBatch(final String topic, BatchReceiverSink<byte[]> sink) {
+        subscribe(topic, (_topic, bytes, callback) -> sink.onSinkBatch(_topic, Collections.singletonList(bytes), callback));
+    }
+
     /**
      * 判断驱动是否已订阅指定的topic，
      * 在驱动层，应该一个topic只启动一个线程订阅一次
@@ -5,6 +5,10 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * 标记消费函数，签名为(String topic, T message, ConsumerCallback callback)
+ * 第二个参数声明为List<T>时为批量消费函数，同一次拉取中匹配的消息整组投递，整组确认一次
+ */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface SinkFunc {
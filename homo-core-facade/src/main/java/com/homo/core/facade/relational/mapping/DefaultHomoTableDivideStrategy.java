@@ -5,4 +5,9 @@ public class DefaultHomoTableDivideStrategy implements HomoTableDivideStrategy{
     public String genTableName(String tableName, Object[] args){
         return tableName; // default to use original table name
     }
+
+    @Override
+    public boolean cacheable() {
+        return true;
+    }
 }
@@ -4,4 +4,12 @@ public interface HomoTableDivideStrategy {
 
     String genTableName(String tableName, Object[] args);
 
+    /**
+     * 相同的参数是否总是得到相同的分表名
+     * 返回true时分表名会被缓存，按时间等外部状态分表的策略必须返回false
+     */
+    default boolean cacheable() {
+        return false;
+    }
+
 }
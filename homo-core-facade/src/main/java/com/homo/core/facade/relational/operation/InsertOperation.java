@@ -3,6 +3,7 @@ package com.homo.core.facade.relational.operation;
 import com.homo.core.utils.rector.Homo;
 
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * 数据保存操作接口
@@ -25,6 +26,42 @@ public interface InsertOperation {
      */
     <T> InsertSpec<T> insertIgnore(Class<T> domainType, Object... args);
 
+    /**
+     * 批量插入，按分表分组后拼成多行 INSERT 语句，在同一个连接上执行
+     * 值为null的字段不写入，使用列的默认值
+     * @param args 分表参数，所有对象写入同一张表
+     */
+    <T> BatchInsertSpec<T> insertAll(Class<T> domainType, Object... args);
+
+    /**
+     * 批量插入，按分表分组后拼成多行 INSERT 语句，在同一个连接上执行
+     * 值为null的字段不写入，使用列的默认值
+     * @param divideArgs 按对象解析分表参数
+     */
+    <T> BatchInsertSpec<T> insertAll(Class<T> domainType, Function<? super T, Object[]> divideArgs);
+
+    /**
+     * 批量保存，对象存在即更新（INSERT ... ON DUPLICATE KEY UPDATE）
+     * 所有字段都会写入，值为null的字段会被更新为NULL
+     * @param args 分表参数，所有对象写入同一张表
+     */
+    <T> BatchInsertSpec<T> upsertAll(Class<T> domainType, Object... args);
+
+    /**
+     * 批量保存，对象存在即更新（INSERT ... ON DUPLICATE KEY UPDATE）
+     * 所有字段都会写入，值为null的字段会被更新为NULL
+     * @param divideArgs 按对象解析分表参数
+     */
+    <T> BatchInsertSpec<T> upsertAll(Class<T> domainType, Function<? super T, Object[]> divideArgs);
+
+    interface BatchInsertSpec<T>{
+        /**
+         * 批量写入多个对象
+         * @return 数据库返回的影响行数之和（upsert时更新的行按2计）
+         */
+        Homo<Long> values(List<T> objs);
+    }
+
     interface InsertSpec<T>{
         /**
          * 保存单个对象
@@ -2,6 +2,7 @@ package com.homo.core.facade.relational.operation;
 
 import com.homo.core.facade.relational.query.HomoQuery;
 import com.homo.core.utils.rector.Homo;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 
@@ -23,6 +24,14 @@ public interface SelectOperation {
 
         Homo<List<T>> findAll();
 
+        /**
+         * 按主键游标(keyset)分批流式查询，不使用OFFSET，内存占用只与batchSize相关
+         * 结果按主键升序返回，matching中的sort、limit、offset会被忽略
+         *
+         * @param batchSize 每批从数据库拉取的行数
+         */
+        Flux<T> findStream(int batchSize);
+
         SelectSpec<T> matching(HomoQuery homoQuery);
     }
 }
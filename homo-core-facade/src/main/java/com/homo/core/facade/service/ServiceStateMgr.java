@@ -3,8 +3,10 @@ package com.homo.core.facade.service;
 import com.homo.core.utils.module.ServiceModule;
 import com.homo.core.utils.rector.Homo;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 /**
  * 服务器状态信息管理器
@@ -52,6 +54,16 @@ public interface ServiceStateMgr extends ServiceModule {
      */
     Homo<Integer> setUserLinkedPod(String uid, String serviceName, Integer podIndex, boolean persist);
 
+    /**
+     * 把唯一id下某服务的连接从fromPodIndex转移到toPodIndex（已连接到其他pod时不转移）
+     * @param uid
+     * @param serviceName
+     * @param fromPodIndex
+     * @param toPodIndex
+     * @return 实际连接的podIndex
+     */
+    Homo<Integer> transferUserLinkedPod(String uid, String serviceName, Integer fromPodIndex, Integer toPodIndex);
+
     /**
      * 获取唯一id下指定服务的连接index(会先去拿本地缓存)
      * @param uid
@@ -78,6 +90,46 @@ public interface ServiceStateMgr extends ServiceModule {
      */
     Homo<Integer> computeUserLinkedPodIfAbsent(String uid, String serviceName, Boolean persist);
 
+    /**
+     * 批量获取多个唯一id下指定服务的连接Index
+     * 不存在连接的id路由到可用的pod，所有未命中本地缓存的id只需要一次存储往返
+     * @param uids
+     * @param serviceName
+     * @param persist  是否需要永久保留连接信息,同computeUserLinkedPodIfAbsent
+     * @return uid : podIndex，连接的pod不可用的uid不在结果中
+     */
+    Homo<Map<String, Integer>> computeUsersLinkedPodIfAbsent(Collection<String> uids, String serviceName, Boolean persist);
+
+    /**
+     * 丢弃本地缓存的连接信息，下次路由重新查询
+     * @param uid
+     * @param serviceName
+     */
+    void invalidateUserLinkedPod(String uid, String serviceName);
+
+    /**
+     * 本地缓存的连接信息的版本号，随请求带给目标pod用于判断路由是否过期
+     * @param uid
+     * @param serviceName
+     * @return 没有缓存时返回0
+     */
+    long getLinkEpoch(String uid, String serviceName);
+
+    /**
+     * 路由到本pod的请求是否已过期（比请求方路由时更新的连接变化通知显示该用户已连接到其他pod）
+     * @param uid
+     * @param serviceName 本pod的服务名
+     * @param routeEpoch 请求方路由时使用的连接版本号，0表示未知，此时有连接变化就认为过期
+     * @return true 请求方使用了过期的连接信息，应拒绝
+     */
+    boolean isStaleRoute(String uid, String serviceName, long routeEpoch);
+
+    /**
+     * 添加过期路由检查的豁免条件，满足条件的uid不做检查（例如迁移中的uid由迁移流程转发到目标pod）
+     * @param exemption 参数为uid，返回true表示豁免
+     */
+    void addStaleRouteExemption(Predicate<String> exemption);
+
     /**
      * 移除唯一id下指定服务的连接index
      * @param uid
@@ -87,6 +139,16 @@ public interface ServiceStateMgr extends ServiceModule {
      */
     Homo<Boolean> removeUserLinkedPod(String uid, String serviceName, Boolean immediately);
 
+    /**
+     * 移除唯一id下指定服务的连接index，仅当连接的是podIndex时才移除（连接已转移到其他pod时不移除）
+     * @param uid
+     * @param serviceName
+     * @param podIndex 调用方的podIndex
+     * @param immediately 是否立即删除连接信息
+     * @return true 移除成功,false 连接已指向其他pod
+     */
+    Homo<Boolean> removeUserLinkedPodIfMatch(String uid, String serviceName, Integer podIndex, Boolean immediately);
+
     /**
      * 获取唯一id下所有连接的服务
      * @param uid
@@ -53,6 +53,32 @@ public interface StatefulDriver {
      */
     Homo<Integer> setLinkedPodIfAbsent(String appId, String regionId, String logicType,String uid,String serviceName,int podId,int persistSeconds);
 
+    /**
+     * 批量设置多个用户的连接信息(无对应服务连接信息的情况下)，分批执行，每批一次往返
+     * @param appId 游戏id
+     * @param regionId 区服id
+     * @param logicType 类型
+     * @param uidPodMap 用户唯一标识 : 没有连接信息时设置的服务实例id
+     * @param serviceName 用户连接的服务名
+     * @param persistSeconds 连接状态过期时间, {@link StatefulDriver#PERSIST_FOREVER} 即为永久有效.NOTE: 此参数只在连接信息不存在的情况下有效
+     * @return 用户唯一标识 : 实际连接的podId
+     */
+    Homo<Map<String, Integer>> setLinkedPodsIfAbsent(String appId, String regionId, String logicType, Map<String, Integer> uidPodMap, String serviceName, int persistSeconds);
+
+    /**
+     * 转移连接信息，仅当前连接的是fromPodId（或没有连接信息）时才改为toPodId，原子操作
+     * @param appId 游戏id
+     * @param regionId 区服id
+     * @param logicType 类型
+     * @param uid 用户唯一标识
+     * @param serviceName 用户连接的服务名
+     * @param fromPodId 原连接的服务实例id
+     * @param toPodId 新连接的服务实例id
+     * @param persistSeconds 没有连接信息时使用的过期时间, 有连接信息时保持原过期时间
+     * @return 实际连接的podId
+     */
+    Homo<Integer> transferLinkedPod(String appId, String regionId, String logicType, String uid, String serviceName, int fromPodId, int toPodId, int persistSeconds);
+
     /**
      * 获取uid下的连接信息
      * @param appId 游戏id
@@ -76,6 +102,19 @@ public interface StatefulDriver {
      */
     Homo<Boolean> removeLinkedPod(String appId, String regionId, String logicType, String uid, String serviceName, int persistSeconds);
 
+    /**
+     * 去除服务连接信息，仅当连接的是podId时才去除，原子操作
+     * @param appId 游戏id
+     * @param regionId 区服id
+     * @param logicType 类型
+     * @param uid 用户唯一标识
+     * @param serviceName 用户已连接的服务名
+     * @param podId 调用方的服务实例id
+     * @param persistSeconds 连接状态删除时间, {@link StatefulDriver#DELETE_NOW} 即为立即，指定时间则为过期时间
+     * @return true 移除成功,false 连接已指向其他pod
+     */
+    Homo<Boolean> removeLinkedPodIfMatch(String appId, String regionId, String logicType, String uid, String serviceName, int podId, int persistSeconds);
+
     /**
      * 获取Service所有pod的状态
      * @param appId 游戏is
@@ -97,4 +136,35 @@ public interface StatefulDriver {
      */
     Homo<Map<String, Integer>> getAllLinkService(String appId, String regionId, String logicType, String uid);
 
-}
\ No newline at end of file
+    /**
+     * 订阅连接变化通知，setLinkedPod、setLinkedPodIfAbsent（实际设置时）、transferLinkedPod（实际转移时）、removeLinkedPod都会发布通知
+     * @param appId 游戏id
+     * @param regionId 区服id
+     * @param logicType 类型
+     * @param listener 通知回调，在驱动的io线程中执行
+     * @return 驱动不支持通知时返回false
+     */
+    default boolean subscribeLinkChange(String appId, String regionId, String logicType, LinkChangeListener listener) {
+        return false;
+    }
+
+    /**
+     * 连接变化通知
+     */
+    interface LinkChangeListener {
+        /**
+         * @param uid 用户唯一标识
+         * @param serviceName 服务名
+         * @param podId 新连接的服务实例id，-1表示连接被移除
+         * @param epoch 连接版本号，同一appId、regionId、logicType下单调递增
+         */
+        void onLinkChange(String uid, String serviceName, int podId, long epoch);
+
+        /**
+         * 订阅断开或重新订阅后回调，期间的通知可能已经丢失，依赖通知的缓存需要清空
+         */
+        default void onReset() {
+        }
+    }
+
+}
@@ -4,6 +4,8 @@ import com.homo.core.utils.Driver;
 import com.homo.core.utils.lang.Pair;
 import com.homo.core.utils.rector.Homo;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -40,6 +42,36 @@ public interface StorageDriver extends Driver {
      */
     Homo<Pair<Boolean, Map<String, byte[]>>> asyncUpdate(String appId, String regionId, String logicType, String ownerId, Map<String, byte[]> data);
 
+    /**
+     * 批量更新同一逻辑类型下多个owner的数据，返回每个owner的更新结果
+     * 默认逐个调用asyncUpdate，驱动可以覆盖为批量实现
+     * @param appId     appid
+     * @param regionId  regionId
+     * @param logicType 逻辑类型
+     * @param ownerDataMap ownerId -> 待保存数据
+     * @return ownerId -> 是否成功
+     */
+    default Homo<Map<String, Boolean>> asyncBatchUpdate(String appId, String regionId, String logicType, Map<String, Map<String, byte[]>> ownerDataMap) {
+        if (ownerDataMap.isEmpty()) {
+            return Homo.result(new HashMap<>());
+        }
+        List<Homo<Pair<String, Boolean>>> updateList = new ArrayList<>(ownerDataMap.size());
+        for (Map.Entry<String, Map<String, byte[]>> entry : ownerDataMap.entrySet()) {
+            String ownerId = entry.getKey();
+            updateList.add(asyncUpdate(appId, regionId, logicType, ownerId, entry.getValue())
+                    .nextDo(ret -> Homo.result(new Pair<>(ownerId, ret.getKey())))
+                    .errorContinue(throwable -> Homo.result(new Pair<>(ownerId, false))));
+        }
+        return Homo.all(updateList, results -> {
+            Map<String, Boolean> retMap = new HashMap<>(results.length * 2);
+            for (Object result : results) {
+                Pair<String, Boolean> pair = (Pair<String, Boolean>) result;
+                retMap.put(pair.getKey(), pair.getValue());
+            }
+            return retMap;
+        });
+    }
+
     /**
      * 增加key列表的值
      * @param appId     appid
@@ -0,0 +1,719 @@
+package com.homo.core.gate.kcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+/**
+ * KCP协议的纯java实现，按ikcp.c移植，协议格式与原版一致（小端），可以与各语言的kcp客户端互通
+ * 段数据使用池化的ByteBuf，不是线程安全的，只在所属会话channel的事件循环上使用
+ */
+public class Kcp {
+    public static final int RTO_NDL = 30;
+    public static final int RTO_MIN = 100;
+    public static final int RTO_DEF = 200;
+    public static final int RTO_MAX = 60000;
+    public static final int CMD_PUSH = 81;
+    public static final int CMD_ACK = 82;
+    public static final int CMD_WASK = 83;
+    public static final int CMD_WINS = 84;
+    public static final int ASK_SEND = 1;
+    public static final int ASK_TELL = 2;
+    public static final int WND_SND = 32;
+    public static final int WND_RCV = 128;
+    public static final int MTU_DEF = 1400;
+    public static final int INTERVAL = 100;
+    public static final int OVERHEAD = 24;
+    public static final int DEADLINK = 20;
+    public static final int THRESH_INIT = 2;
+    public static final int THRESH_MIN = 2;
+    public static final int PROBE_INIT = 7000;
+    public static final int PROBE_LIMIT = 120000;
+    public static final int FASTACK_LIMIT = 5;
+    /**
+     * 消息模式下一条消息最多的分片数（frg只有1字节）
+     */
+    private static final int MAX_FRAGMENT = 255;
+
+    /**
+     * 输出一个udp包，data的所有权交给实现方
+     */
+    public interface Output {
+        void out(ByteBuf data, Kcp kcp);
+    }
+
+    private static class Segment {
+        int conv;
+        int cmd;
+        int frg;
+        int wnd;
+        int ts;
+        int sn;
+        int una;
+        int resendts;
+        int rto;
+        int fastack;
+        int xmit;
+        ByteBuf data;
+
+        Segment(ByteBuf data) {
+            this.data = data;
+        }
+
+        void release() {
+            if (data != null) {
+                data.release();
+                data = null;
+            }
+        }
+
+        void encode(ByteBuf buf) {
+            buf.writeIntLE(conv);
+            buf.writeByte(cmd);
+            buf.writeByte(frg);
+            buf.writeShortLE(wnd);
+            buf.writeIntLE(ts);
+            buf.writeIntLE(sn);
+            buf.writeIntLE(una);
+            buf.writeIntLE(data == null ? 0 : data.readableBytes());
+        }
+    }
+
+    private final int conv;
+    private final Output output;
+    private final ByteBufAllocator allocator;
+    private int mtu = MTU_DEF;
+    private int mss = MTU_DEF - OVERHEAD;
+    private int state;
+    private int sndUna;
+    private int sndNxt;
+    private int rcvNxt;
+    private int ssthresh = THRESH_INIT;
+    private int rxRttval;
+    private int rxSrtt;
+    private int rxRto = RTO_DEF;
+    private int rxMinrto = RTO_MIN;
+    private int sndWnd = WND_SND;
+    private int rcvWnd = WND_RCV;
+    private int rmtWnd = WND_RCV;
+    private int cwnd;
+    private int probe;
+    private int current;
+    private int interval = INTERVAL;
+    private int tsFlush = INTERVAL;
+    private int xmit;
+    private int nodelay;
+    private boolean updated;
+    private int tsProbe;
+    private int probeWait;
+    private int deadLink = DEADLINK;
+    private int incr;
+    private int fastresend;
+    private int fastlimit = FASTACK_LIMIT;
+    private boolean nocwnd;
+    private boolean stream;
+    private final ArrayDeque<Segment> sndQueue = new ArrayDeque<>();
+    private final ArrayDeque<Segment> rcvQueue = new ArrayDeque<>();
+    private final LinkedList<Segment> sndBuf = new LinkedList<>();
+    private final LinkedList<Segment> rcvBuf = new LinkedList<>();
+    private int[] ackList = new int[16];
+    private int ackCount;
+    private ByteBuf buffer;
+
+    public Kcp(int conv, Output output, ByteBufAllocator allocator) {
+        this.conv = conv;
+        this.output = output;
+        this.allocator = allocator;
+    }
+
+    private static int timediff(int later, int earlier) {
+        return later - earlier;
+    }
+
+    private static int bound(int lower, int middle, int upper) {
+        return Math.min(Math.max(lower, middle), upper);
+    }
+
+    public int getConv() {
+        return conv;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * 等待发送（含未确认）的段数
+     */
+    public int waitSnd() {
+        return sndBuf.size() + sndQueue.size();
+    }
+
+    public void setStream(boolean stream) {
+        this.stream = stream;
+    }
+
+    public void setDeadLink(int deadLink) {
+        this.deadLink = deadLink;
+    }
+
+    public void setMinRto(int minRto) {
+        this.rxMinrto = minRto;
+    }
+
+    public void setMtu(int mtu) {
+        if (mtu < 50 || mtu < OVERHEAD) {
+            throw new IllegalArgumentException("kcp mtu too small " + mtu);
+        }
+        this.mtu = mtu;
+        this.mss = mtu - OVERHEAD;
+    }
+
+    public void wndSize(int sndWnd, int rcvWnd) {
+        if (sndWnd > 0) {
+            this.sndWnd = sndWnd;
+        }
+        if (rcvWnd > 0) {
+            this.rcvWnd = Math.max(rcvWnd, WND_RCV);
+        }
+    }
+
+    /**
+     * @param nodelay  0不启用 1启用 2更激进的重传间隔
+     * @param interval 内部刷新间隔毫秒
+     * @param resend   快速重传的ack跨越次数，0关闭
+     * @param nc       是否关闭拥塞控制
+     */
+    public void nodelay(int nodelay, int interval, int resend, boolean nc) {
+        if (nodelay >= 0) {
+            this.nodelay = nodelay;
+            this.rxMinrto = nodelay != 0 ? RTO_NDL : RTO_MIN;
+        }
+        if (interval >= 0) {
+            this.interval = bound(10, interval, 5000);
+        }
+        if (resend >= 0) {
+            this.fastresend = resend;
+        }
+        this.nocwnd = nc;
+    }
+
+    /**
+     * 下一条完整消息的长度，没有时返回-1
+     */
+    public int peekSize() {
+        Segment seg = rcvQueue.peek();
+        if (seg == null) {
+            return -1;
+        }
+        if (seg.frg == 0) {
+            return seg.data.readableBytes();
+        }
+        if (rcvQueue.size() < seg.frg + 1) {
+            return -1;
+        }
+        int length = 0;
+        for (Segment item : rcvQueue) {
+            length += item.data.readableBytes();
+            if (item.frg == 0) {
+                break;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 取出一条完整消息，没有时返回null，返回的ByteBuf由调用方释放
+     */
+    public ByteBuf recv() {
+        int peekSize = peekSize();
+        if (peekSize < 0) {
+            return null;
+        }
+        boolean recover = rcvQueue.size() >= rcvWnd;
+        ByteBuf out = allocator.ioBuffer(peekSize);
+        while (!rcvQueue.isEmpty()) {
+            Segment seg = rcvQueue.poll();
+            out.writeBytes(seg.data);
+            int fragment = seg.frg;
+            seg.release();
+            if (fragment == 0) {
+                break;
+            }
+        }
+        moveRcvBuf();
+        //接收窗口恢复，告知对端
+        if (rcvQueue.size() < rcvWnd && recover) {
+            probe |= ASK_TELL;
+        }
+        return out;
+    }
+
+    /**
+     * 发送数据，数据被拷贝，buf由调用方释放
+     *
+     * @return 0成功 -2消息模式下分片过多
+     */
+    public int send(ByteBuf buf) {
+        int len = buf.readableBytes();
+        if (stream) {
+            //流模式先填满最后一个未发送的段
+            Segment last = sndQueue.peekLast();
+            if (last != null && last.data.readableBytes() < mss) {
+                int extend = Math.min(len, mss - last.data.readableBytes());
+                last.data.writeBytes(buf, extend);
+                len -= extend;
+            }
+            if (len <= 0) {
+                return 0;
+            }
+        }
+        int count = len <= mss ? 1 : (len + mss - 1) / mss;
+        if (!stream && count > MAX_FRAGMENT) {
+            return -2;
+        }
+        for (int i = 0; i < count; i++) {
+            int size = Math.min(len, mss);
+            //流模式预留到mss，便于后续合并
+            ByteBuf data = allocator.ioBuffer(stream ? mss : size);
+            data.writeBytes(buf, size);
+            Segment seg = new Segment(data);
+            seg.frg = stream ? 0 : count - i - 1;
+            sndQueue.add(seg);
+            len -= size;
+        }
+        return 0;
+    }
+
+    private void updateAck(int rtt) {
+        if (rxSrtt == 0) {
+            rxSrtt = rtt;
+            rxRttval = rtt / 2;
+        } else {
+            int delta = Math.abs(rtt - rxSrtt);
+            rxRttval = (3 * rxRttval + delta) / 4;
+            rxSrtt = (7 * rxSrtt + rtt) / 8;
+            if (rxSrtt < 1) {
+                rxSrtt = 1;
+            }
+        }
+        int rto = rxSrtt + Math.max(interval, 4 * rxRttval);
+        rxRto = bound(rxMinrto, rto, RTO_MAX);
+    }
+
+    private void shrinkBuf() {
+        Segment seg = sndBuf.peekFirst();
+        sndUna = seg == null ? sndNxt : seg.sn;
+    }
+
+    private void parseAck(int sn) {
+        if (timediff(sn, sndUna) < 0 || timediff(sn, sndNxt) >= 0) {
+            return;
+        }
+        Iterator<Segment> it = sndBuf.iterator();
+        while (it.hasNext()) {
+            Segment seg = it.next();
+            if (sn == seg.sn) {
+                it.remove();
+                seg.release();
+                break;
+            }
+            if (timediff(sn, seg.sn) < 0) {
+                break;
+            }
+        }
+    }
+
+    private void parseUna(int una) {
+        Iterator<Segment> it = sndBuf.iterator();
+        while (it.hasNext()) {
+            Segment seg = it.next();
+            if (timediff(una, seg.sn) > 0) {
+                it.remove();
+                seg.release();
+            } else {
+                break;
+            }
+        }
+    }
+
+    private void parseFastack(int sn) {
+        if (timediff(sn, sndUna) < 0 || timediff(sn, sndNxt) >= 0) {
+            return;
+        }
+        for (Segment seg : sndBuf) {
+            if (timediff(sn, seg.sn) < 0) {
+                break;
+            } else if (sn != seg.sn) {
+                seg.fastack++;
+            }
+        }
+    }
+
+    private void ackPush(int sn, int ts) {
+        int need = (ackCount + 1) * 2;
+        if (need > ackList.length) {
+            int[] newList = new int[ackList.length * 2];
+            System.arraycopy(ackList, 0, newList, 0, ackCount * 2);
+            ackList = newList;
+        }
+        ackList[ackCount * 2] = sn;
+        ackList[ackCount * 2 + 1] = ts;
+        ackCount++;
+    }
+
+    private void parseData(Segment newSeg) {
+        int sn = newSeg.sn;
+        if (timediff(sn, rcvNxt + rcvWnd) >= 0 || timediff(sn, rcvNxt) < 0) {
+            newSeg.release();
+            return;
+        }
+        boolean repeat = false;
+        ListIterator<Segment> it = rcvBuf.listIterator(rcvBuf.size());
+        while (it.hasPrevious()) {
+            Segment seg = it.previous();
+            if (seg.sn == sn) {
+                repeat = true;
+                break;
+            }
+            if (timediff(sn, seg.sn) > 0) {
+                it.next();
+                break;
+            }
+        }
+        if (repeat) {
+            newSeg.release();
+        } else {
+            it.add(newSeg);
+        }
+        moveRcvBuf();
+    }
+
+    private void moveRcvBuf() {
+        while (!rcvBuf.isEmpty()) {
+            Segment seg = rcvBuf.peekFirst();
+            if (seg.sn == rcvNxt && rcvQueue.size() < rcvWnd) {
+                rcvBuf.removeFirst();
+                rcvQueue.add(seg);
+                rcvNxt++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 输入一个udp包的数据
+     *
+     * @return 0成功 -1会话id不一致或数据过短 -2数据长度错误 -3未知命令
+     */
+    public int input(ByteBuf data) {
+        int prevUna = sndUna;
+        boolean flag = false;
+        int maxack = 0;
+        if (data.readableBytes() < OVERHEAD) {
+            return -1;
+        }
+        while (data.readableBytes() >= OVERHEAD) {
+            int segConv = data.readIntLE();
+            if (segConv != conv) {
+                return -1;
+            }
+            int cmd = data.readUnsignedByte();
+            int frg = data.readUnsignedByte();
+            int wnd = data.readUnsignedShortLE();
+            int ts = data.readIntLE();
+            int sn = data.readIntLE();
+            int una = data.readIntLE();
+            int len = data.readIntLE();
+            if (len < 0 || data.readableBytes() < len) {
+                return -2;
+            }
+            if (cmd != CMD_PUSH && cmd != CMD_ACK && cmd != CMD_WASK && cmd != CMD_WINS) {
+                return -3;
+            }
+            rmtWnd = wnd;
+            parseUna(una);
+            shrinkBuf();
+            if (cmd == CMD_ACK) {
+                if (timediff(current, ts) >= 0) {
+                    updateAck(timediff(current, ts));
+                }
+                parseAck(sn);
+                shrinkBuf();
+                if (!flag) {
+                    flag = true;
+                    maxack = sn;
+                } else if (timediff(sn, maxack) > 0) {
+                    maxack = sn;
+                }
+                data.skipBytes(len);
+            } else if (cmd == CMD_PUSH) {
+                if (timediff(sn, rcvNxt + rcvWnd) < 0) {
+                    ackPush(sn, ts);
+                    if (timediff(sn, rcvNxt) >= 0) {
+                        ByteBuf segData = allocator.ioBuffer(len);
+                        segData.writeBytes(data, len);
+                        Segment seg = new Segment(segData);
+                        seg.conv = segConv;
+                        seg.cmd = cmd;
+                        seg.frg = frg;
+                        seg.wnd = wnd;
+                        seg.ts = ts;
+                        seg.sn = sn;
+                        seg.una = una;
+                        parseData(seg);
+                    } else {
+                        data.skipBytes(len);
+                    }
+                } else {
+                    data.skipBytes(len);
+                }
+            } else if (cmd == CMD_WASK) {
+                //对端询问窗口，下次flush时告知
+                probe |= ASK_TELL;
+                data.skipBytes(len);
+            } else {
+                data.skipBytes(len);
+            }
+        }
+        if (flag) {
+            parseFastack(maxack);
+        }
+        if (timediff(sndUna, prevUna) > 0 && cwnd < rmtWnd) {
+            if (cwnd < ssthresh) {
+                cwnd++;
+                incr += mss;
+            } else {
+                if (incr < mss) {
+                    incr = mss;
+                }
+                incr += (mss * mss) / incr + (mss / 16);
+                if ((cwnd + 1) * mss <= incr) {
+                    cwnd = (incr + mss - 1) / (mss > 0 ? mss : 1);
+                }
+            }
+            if (cwnd > rmtWnd) {
+                cwnd = rmtWnd;
+                incr = rmtWnd * mss;
+            }
+        }
+        return 0;
+    }
+
+    private int wndUnused() {
+        return rcvQueue.size() < rcvWnd ? rcvWnd - rcvQueue.size() : 0;
+    }
+
+    private void makeSpace(int space) {
+        if (buffer == null) {
+            buffer = allocator.ioBuffer(mtu);
+        } else if (buffer.readableBytes() + space > mtu) {
+            output.out(buffer, this);
+            buffer = allocator.ioBuffer(mtu);
+        }
+    }
+
+    private void flushBuffer() {
+        if (buffer != null && buffer.readableBytes() > 0) {
+            output.out(buffer, this);
+            buffer = null;
+        }
+    }
+
+    /**
+     * 发送确认、窗口探测和数据段，需要先调用过update
+     */
+    public void flush() {
+        if (!updated) {
+            return;
+        }
+        int current = this.current;
+        Segment seg = new Segment(null);
+        seg.conv = conv;
+        seg.cmd = CMD_ACK;
+        seg.wnd = wndUnused();
+        seg.una = rcvNxt;
+        for (int i = 0; i < ackCount; i++) {
+            makeSpace(OVERHEAD);
+            seg.sn = ackList[i * 2];
+            seg.ts = ackList[i * 2 + 1];
+            seg.encode(buffer);
+        }
+        ackCount = 0;
+        //对端窗口为0时探测
+        if (rmtWnd == 0) {
+            if (probeWait == 0) {
+                probeWait = PROBE_INIT;
+                tsProbe = current + probeWait;
+            } else if (timediff(current, tsProbe) >= 0) {
+                if (probeWait < PROBE_INIT) {
+                    probeWait = PROBE_INIT;
+                }
+                probeWait += probeWait / 2;
+                if (probeWait > PROBE_LIMIT) {
+                    probeWait = PROBE_LIMIT;
+                }
+                tsProbe = current + probeWait;
+                probe |= ASK_SEND;
+            }
+        } else {
+            tsProbe = 0;
+            probeWait = 0;
+        }
+        seg.sn = 0;
+        seg.ts = 0;
+        if ((probe & ASK_SEND) != 0) {
+            seg.cmd = CMD_WASK;
+            makeSpace(OVERHEAD);
+            seg.encode(buffer);
+        }
+        if ((probe & ASK_TELL) != 0) {
+            seg.cmd = CMD_WINS;
+            makeSpace(OVERHEAD);
+            seg.encode(buffer);
+        }
+        probe = 0;
+        int cwndNow = Math.min(sndWnd, rmtWnd);
+        if (!nocwnd) {
+            cwndNow = Math.min(cwnd, cwndNow);
+        }
+        //发送队列移入发送缓冲
+        while (timediff(sndNxt, sndUna + cwndNow) < 0) {
+            Segment newSeg = sndQueue.poll();
+            if (newSeg == null) {
+                break;
+            }
+            newSeg.conv = conv;
+            newSeg.cmd = CMD_PUSH;
+            newSeg.wnd = seg.wnd;
+            newSeg.ts = current;
+            newSeg.sn = sndNxt++;
+            newSeg.una = rcvNxt;
+            newSeg.resendts = current;
+            newSeg.rto = rxRto;
+            newSeg.fastack = 0;
+            newSeg.xmit = 0;
+            sndBuf.add(newSeg);
+        }
+        int resent = fastresend > 0 ? fastresend : Integer.MAX_VALUE;
+        int rtomin = nodelay == 0 ? (rxRto >> 3) : 0;
+        boolean change = false;
+        boolean lost = false;
+        for (Segment segment : sndBuf) {
+            boolean needSend = false;
+            if (segment.xmit == 0) {
+                needSend = true;
+                segment.xmit++;
+                segment.rto = rxRto;
+                segment.resendts = current + segment.rto + rtomin;
+            } else if (timediff(current, segment.resendts) >= 0) {
+                needSend = true;
+                segment.xmit++;
+                xmit++;
+                if (nodelay == 0) {
+                    segment.rto += Math.max(segment.rto, rxRto);
+                } else {
+                    int step = nodelay < 2 ? segment.rto : rxRto;
+                    segment.rto += step / 2;
+                }
+                segment.resendts = current + segment.rto;
+                lost = true;
+            } else if (segment.fastack >= resent) {
+                if (segment.xmit <= fastlimit || fastlimit <= 0) {
+                    needSend = true;
+                    segment.xmit++;
+                    segment.fastack = 0;
+                    segment.resendts = current + segment.rto;
+                    change = true;
+                }
+            }
+            if (needSend) {
+                segment.ts = current;
+                segment.wnd = seg.wnd;
+                segment.una = rcvNxt;
+                makeSpace(OVERHEAD + segment.data.readableBytes());
+                segment.encode(buffer);
+                buffer.writeBytes(segment.data, segment.data.readerIndex(), segment.data.readableBytes());
+                if (segment.xmit >= deadLink) {
+                    state = -1;
+                }
+            }
+        }
+        flushBuffer();
+        if (change) {
+            int inflight = sndNxt - sndUna;
+            ssthresh = Math.max(inflight / 2, THRESH_MIN);
+            cwnd = ssthresh + resent;
+            incr = cwnd * mss;
+        }
+        if (lost) {
+            ssthresh = Math.max(cwndNow / 2, THRESH_MIN);
+            cwnd = 1;
+            incr = mss;
+        }
+        if (cwnd < 1) {
+            cwnd = 1;
+            incr = mss;
+        }
+    }
+
+    /**
+     * 按interval驱动刷新
+     *
+     * @param current 当前毫秒时间
+     */
+    public void update(int current) {
+        this.current = current;
+        if (!updated) {
+            updated = true;
+            tsFlush = current;
+        }
+        int slap = timediff(current, tsFlush);
+        if (slap >= 10000 || slap < -10000) {
+            tsFlush = current;
+            slap = 0;
+        }
+        if (slap >= 0) {
+            tsFlush += interval;
+            if (timediff(current, tsFlush) >= 0) {
+                tsFlush = current + interval;
+            }
+            flush();
+        }
+    }
+
+    /**
+     * 释放所有缓存的段
+     */
+    public void release() {
+        for (Segment seg : sndQueue) {
+            seg.release();
+        }
+        for (Segment seg : sndBuf) {
+            seg.release();
+        }
+        for (Segment seg : rcvQueue) {
+            seg.release();
+        }
+        for (Segment seg : rcvBuf) {
+            seg.release();
+        }
+        sndQueue.clear();
+        sndBuf.clear();
+        rcvQueue.clear();
+        rcvBuf.clear();
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+}
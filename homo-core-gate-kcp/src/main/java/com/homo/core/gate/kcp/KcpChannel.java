@@ -0,0 +1,199 @@
+package com.homo.core.gate.kcp;
+
+import com.homo.core.configurable.gate.GateKcpProperties;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.*;
+import io.netty.channel.socket.DatagramPacket;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * 一个kcp会话对应的虚拟channel，挂在udp channel下并注册到同一个事件循环
+ * 网关处理链（编解码、心跳、自定义处理器、TailHandler）与tcp连接完全一致，GateClient与会话一一对应
+ * 写入的网关消息字节流交给kcp发送，kcp输出的udp包通过父channel发出
+ * 会话只接受来自当前地址的数据，地址变化需要带会话密钥重新握手后调用migrate切换
+ */
+@Slf4j
+public class KcpChannel extends AbstractChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+    private final DefaultChannelConfig config = new DefaultChannelConfig(this);
+    private final Kcp kcp;
+    private final long sessionKey;
+    private volatile InetSocketAddress remoteAddress;
+    private volatile boolean open = true;
+
+    public KcpChannel(Channel parent, int conv, long sessionKey, InetSocketAddress remoteAddress, GateKcpProperties kcpProperties) {
+        super(parent);
+        this.sessionKey = sessionKey;
+        this.remoteAddress = remoteAddress;
+        this.kcp = new Kcp(conv, (data, kcp) -> parent.write(new DatagramPacket(data, this.remoteAddress)), parent.alloc());
+        kcp.nodelay(kcpProperties.nodelay, kcpProperties.interval, kcpProperties.resend, Boolean.TRUE.equals(kcpProperties.nocwnd));
+        kcp.wndSize(kcpProperties.sndWnd, kcpProperties.rcvWnd);
+        kcp.setMtu(kcpProperties.mtu);
+        kcp.setStream(Boolean.TRUE.equals(kcpProperties.stream));
+        kcp.setDeadLink(kcpProperties.deadLink);
+    }
+
+    public int getConv() {
+        return kcp.getConv();
+    }
+
+    public long getSessionKey() {
+        return sessionKey;
+    }
+
+    /**
+     * 客户端网络切换后重新握手通过，切换到新地址
+     */
+    public void migrate(InetSocketAddress address) {
+        log.info("KcpChannel migrate conv {} address {} -> {}", kcp.getConv(), remoteAddress, address);
+        remoteAddress = address;
+    }
+
+    /**
+     * 收到udp包，交给kcp并把完整的数据传入网关处理链
+     * 调用方已校验来源地址
+     */
+    public void input(ByteBuf data) {
+        if (!open) {
+            return;
+        }
+        int ret = kcp.input(data);
+        if (ret < 0) {
+            log.warn("KcpChannel input error conv {} address {} ret {}", kcp.getConv(), remoteAddress, ret);
+            return;
+        }
+        boolean read = false;
+        ByteBuf msg;
+        while (open && (msg = kcp.recv()) != null) {
+            read = true;
+            pipeline().fireChannelRead(msg);
+        }
+        if (read) {
+            pipeline().fireChannelReadComplete();
+        }
+    }
+
+    /**
+     * 驱动kcp刷新，连接失效时关闭
+     */
+    public void update(int current) {
+        if (!open) {
+            return;
+        }
+        kcp.update(current);
+        if (kcp.getState() < 0) {
+            log.info("KcpChannel dead link close conv {} address {}", kcp.getConv(), remoteAddress);
+            close();
+        }
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new KcpUnsafe();
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop == parent().eventLoop();
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return parent().localAddress();
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return remoteAddress;
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) throws Exception {
+        throw new UnsupportedOperationException("KcpChannel not support bind");
+    }
+
+    @Override
+    protected void doDisconnect() throws Exception {
+        doClose();
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (!open) {
+            return;
+        }
+        open = false;
+        kcp.release();
+    }
+
+    @Override
+    protected void doBeginRead() throws Exception {
+        //数据由父channel推入，不需要主动读取
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer in) throws Exception {
+        boolean written = false;
+        for (; ; ) {
+            Object msg = in.current();
+            if (msg == null) {
+                break;
+            }
+            ByteBuf buf = (ByteBuf) msg;
+            if (kcp.send(buf) < 0) {
+                in.remove(new IllegalStateException("kcp send fail conv " + kcp.getConv() + " length " + buf.readableBytes()));
+            } else {
+                in.remove();
+                written = true;
+            }
+        }
+        if (written) {
+            //立即发送，不等下一次update
+            kcp.flush();
+            parent().flush();
+        }
+    }
+
+    @Override
+    protected Object filterOutboundMessage(Object msg) throws Exception {
+        if (msg instanceof ByteBuf) {
+            return msg;
+        }
+        throw new UnsupportedOperationException("KcpChannel unsupported message type " + msg.getClass().getSimpleName());
+    }
+
+    @Override
+    public ChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isActive() {
+        return open;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return remoteAddress;
+    }
+
+    private class KcpUnsafe extends AbstractUnsafe {
+        @Override
+        public void connect(SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) {
+            promise.setFailure(new UnsupportedOperationException("KcpChannel not support connect"));
+        }
+    }
+}
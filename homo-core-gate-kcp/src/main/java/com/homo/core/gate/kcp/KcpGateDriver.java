@@ -0,0 +1,78 @@
+package com.homo.core.gate.kcp;
+
+import com.homo.core.configurable.gate.GateKcpProperties;
+import com.homo.core.facade.gate.GateServer;
+import com.homo.core.gate.kcp.handler.KcpServerHandler;
+import com.homo.core.gate.tcp.ServerChanelInitializer;
+import com.homo.core.gate.tcp.TcpGateDriver;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * kcp（可靠udp）网关驱动
+ * 每个kcp会话是挂在udp channel下的虚拟channel，网关处理链、连接管理、发送与tcp网关一致
+ * 支持epoll时每个worker线程绑定一个SO_REUSEPORT的udp channel，由内核按地址分流
+ * 新会话需要先完成cookie握手，见KcpSessionRegistry
+ */
+@Slf4j
+public class KcpGateDriver extends TcpGateDriver {
+    @Autowired(required = false)
+    private GateKcpProperties gateKcpProperties;
+    private final List<Channel> udpChannels = new ArrayList<>();
+
+    @Override
+    public void startGate(GateServer gateServer) {
+        try {
+            this.gateServer = gateServer;
+            ServerChanelInitializer gateInitializer = new ServerChanelInitializer(customHandlers, gateTcpProperties, gateCommonProperties);
+            //会话按conv全局登记，所有udp channel共享
+            KcpSessionRegistry registry = new KcpSessionRegistry(gateKcpProperties.maxSession);
+            boolean epoll = Epoll.isAvailable();
+            Bootstrap bootstrap = new Bootstrap()
+                    .group(workGroup)
+                    .channel(epoll ? EpollDatagramChannel.class : NioDatagramChannel.class)
+                    .handler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel ch) throws Exception {
+                            ch.pipeline().addLast(new KcpServerHandler(gateKcpProperties, gateInitializer, registry));
+                        }
+                    });
+            int channelNum = 1;
+            if (epoll) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+                channelNum = gateTcpProperties.workNum;
+            }
+            for (int i = 0; i < channelNum; i++) {
+                ChannelFuture channelFuture = bootstrap.bind(gateServer.getPort()).sync();
+                udpChannels.add(channelFuture.channel());
+            }
+            serverChannel = udpChannels.get(0);
+            isRunning = true;
+            log.info("KcpGateDriver {} startGateServer success listener port {} channelNum {} kcpProperties {}",
+                    gateServer.getName(), gateServer.getPort(), channelNum, gateKcpProperties);
+        } catch (Exception e) {
+            log.error("KcpGateDriver name {} port {} startGateServer fail", gateServer.getName(), gateServer.getPort(), e);
+            System.exit(-1);
+        }
+    }
+
+    @Override
+    public void closeGate() throws Exception {
+        for (int i = 1; i < udpChannels.size(); i++) {
+            udpChannels.get(i).close();
+        }
+        udpChannels.clear();
+        super.closeGate();
+    }
+}
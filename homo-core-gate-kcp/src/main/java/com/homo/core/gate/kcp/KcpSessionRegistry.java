@@ -0,0 +1,137 @@
+package com.homo.core.gate.kcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * kcp会话登记，所有udp channel共享
+ * 新会话需要先握手，握手包与kcp段的区别在于第5个字节（kcp段是cmd 81~84）：
+ * 1. 客户端发送HELLO，服务器按conv、客户端地址和时间窗口计算cookie回复COOKIE，不保存任何状态
+ * 2. 客户端带cookie发送CONNECT，cookie校验通过才创建会话，回复ACCEPT并下发会话密钥
+ * 3. 客户端地址变化后重新握手，CONNECT带上会话密钥才会把会话切换到新地址
+ * 握手包定长且请求与回复等长，不会被用来放大流量；会话数有上限；
+ * 按conv全局查找，SO_REUSEPORT下地址变化后分流到其他udp channel时仍然找到原会话
+ */
+@Slf4j
+public class KcpSessionRegistry {
+    public static final int CMD_HELLO = 0xF0;
+    public static final int CMD_COOKIE = 0xF1;
+    public static final int CMD_CONNECT = 0xF2;
+    public static final int CMD_ACCEPT = 0xF3;
+    /**
+     * conv(4) cmd(1) cookie(8) sessionKey(8)
+     */
+    public static final int HANDSHAKE_LENGTH = 21;
+    private static final long COOKIE_WINDOW_MILLIS = 10_000L;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private final Map<Integer, KcpChannel> sessionMap = new ConcurrentHashMap<>();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final SecureRandom random = new SecureRandom();
+    private final SecretKeySpec secret;
+    private final ThreadLocal<Mac> macLocal;
+    private final int maxSession;
+
+    public KcpSessionRegistry(int maxSession) {
+        this.maxSession = maxSession;
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        this.secret = new SecretKeySpec(key, MAC_ALGORITHM);
+        this.macLocal = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(secret);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("KcpSessionRegistry init mac error", e);
+            }
+        });
+    }
+
+    public static boolean isHandshake(int cmd) {
+        return cmd >= CMD_HELLO && cmd <= CMD_ACCEPT;
+    }
+
+    public static ByteBuf encode(ByteBufAllocator allocator, int conv, int cmd, long cookie, long sessionKey) {
+        ByteBuf buf = allocator.ioBuffer(HANDSHAKE_LENGTH);
+        buf.writeIntLE(conv);
+        buf.writeByte(cmd);
+        buf.writeLongLE(cookie);
+        buf.writeLongLE(sessionKey);
+        return buf;
+    }
+
+    public KcpChannel get(int conv) {
+        return sessionMap.get(conv);
+    }
+
+    public int getSessionCount() {
+        return sessionCount.get();
+    }
+
+    public boolean isFull() {
+        return sessionCount.get() >= maxSession;
+    }
+
+    /**
+     * 登记会话，超过上限或conv已被占用时失败
+     */
+    public boolean register(int conv, KcpChannel session) {
+        if (sessionCount.incrementAndGet() > maxSession) {
+            sessionCount.decrementAndGet();
+            return false;
+        }
+        if (sessionMap.putIfAbsent(conv, session) != null) {
+            sessionCount.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void unregister(int conv, KcpChannel session) {
+        if (sessionMap.remove(conv, session)) {
+            sessionCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 生成非0的会话密钥
+     */
+    public long newSessionKey() {
+        long sessionKey;
+        do {
+            sessionKey = random.nextLong();
+        } while (sessionKey == 0);
+        return sessionKey;
+    }
+
+    public long cookie(int conv, InetSocketAddress address) {
+        return cookie(conv, address, System.currentTimeMillis() / COOKIE_WINDOW_MILLIS);
+    }
+
+    /**
+     * 校验cookie，当前和上一个时间窗口的都有效
+     */
+    public boolean verifyCookie(int conv, InetSocketAddress address, long cookie) {
+        long window = System.currentTimeMillis() / COOKIE_WINDOW_MILLIS;
+        return cookie == cookie(conv, address, window) || cookie == cookie(conv, address, window - 1);
+    }
+
+    private long cookie(int conv, InetSocketAddress address, long window) {
+        byte[] ip = address.getAddress().getAddress();
+        ByteBuffer input = ByteBuffer.allocate(ip.length + 16);
+        input.putInt(conv).put(ip).putInt(address.getPort()).putLong(window);
+        Mac mac = macLocal.get();
+        return ByteBuffer.wrap(mac.doFinal(input.array())).getLong();
+    }
+}
@@ -0,0 +1,184 @@
+package com.homo.core.gate.kcp.handler;
+
+import com.homo.core.configurable.gate.GateKcpProperties;
+import com.homo.core.gate.kcp.Kcp;
+import com.homo.core.gate.kcp.KcpChannel;
+import com.homo.core.gate.kcp.KcpSessionRegistry;
+import com.homo.core.gate.tcp.ServerChanelInitializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * udp channel的入站处理：握手包按KcpSessionRegistry的流程建立或迁移会话，
+ * kcp段按会话id（conv）找到会话channel并输入数据，未握手的conv和非会话地址的数据直接丢弃
+ * 本channel创建的会话表和kcp刷新只在该udp channel的事件循环上访问，
+ * 其他udp channel收到的属于本channel会话的数据转到会话所在的事件循环处理
+ */
+@Slf4j
+public class KcpServerHandler extends SimpleChannelInboundHandler<DatagramPacket> {
+    private final GateKcpProperties kcpProperties;
+    private final ServerChanelInitializer gateInitializer;
+    private final KcpSessionRegistry registry;
+    private final Map<Integer, KcpChannel> sessionMap = new HashMap<>();
+    private ScheduledFuture<?> updateFuture;
+
+    public KcpServerHandler(GateKcpProperties kcpProperties, ServerChanelInitializer gateInitializer, KcpSessionRegistry registry) {
+        this.kcpProperties = kcpProperties;
+        this.gateInitializer = gateInitializer;
+        this.registry = registry;
+    }
+
+    private static int currentMillis() {
+        return (int) (System.nanoTime() / 1_000_000L);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        updateFuture = ctx.executor().scheduleAtFixedRate(() -> update(ctx), kcpProperties.interval, kcpProperties.interval, TimeUnit.MILLISECONDS);
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (updateFuture != null) {
+            updateFuture.cancel(false);
+        }
+        for (KcpChannel session : new ArrayList<>(sessionMap.values())) {
+            session.close();
+        }
+        sessionMap.clear();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket packet) throws Exception {
+        ByteBuf data = packet.content();
+        if (data.readableBytes() < KcpSessionRegistry.HANDSHAKE_LENGTH) {
+            return;
+        }
+        int conv = data.getIntLE(data.readerIndex());
+        int cmd = data.getUnsignedByte(data.readerIndex() + 4);
+        if (KcpSessionRegistry.isHandshake(cmd)) {
+            handshake(ctx, conv, cmd, data, packet.sender());
+            return;
+        }
+        if (data.readableBytes() < Kcp.OVERHEAD) {
+            return;
+        }
+        KcpChannel session = registry.get(conv);
+        if (session == null) {
+            //未握手的会话
+            return;
+        }
+        if (!packet.sender().equals(session.remoteAddress())) {
+            log.debug("KcpServerHandler drop conv {} sender {} address {}", conv, packet.sender(), session.remoteAddress());
+            return;
+        }
+        if (session.parent() == ctx.channel()) {
+            session.input(data);
+        } else {
+            //地址变化后被内核分流到了其他udp channel，转到会话所在的事件循环
+            ByteBuf copy = data.retainedDuplicate();
+            session.eventLoop().execute(() -> {
+                try {
+                    session.input(copy);
+                } finally {
+                    copy.release();
+                }
+            });
+        }
+    }
+
+    private void handshake(ChannelHandlerContext ctx, int conv, int cmd, ByteBuf data, InetSocketAddress sender) {
+        if (cmd == KcpSessionRegistry.CMD_HELLO) {
+            reply(ctx, sender, conv, KcpSessionRegistry.CMD_COOKIE, registry.cookie(conv, sender), 0);
+            return;
+        }
+        if (cmd != KcpSessionRegistry.CMD_CONNECT) {
+            return;
+        }
+        long cookie = data.getLongLE(data.readerIndex() + 5);
+        long sessionKey = data.getLongLE(data.readerIndex() + 13);
+        if (!registry.verifyCookie(conv, sender, cookie)) {
+            log.debug("KcpServerHandler handshake cookie mismatch conv {} sender {}", conv, sender);
+            return;
+        }
+        KcpChannel session = registry.get(conv);
+        if (session == null) {
+            if (sessionKey != 0) {
+                //会话已经不存在，客户端需要以新会话重连
+                log.debug("KcpServerHandler handshake session not found conv {} sender {}", conv, sender);
+                return;
+            }
+            session = newSession(ctx, conv, sender);
+            if (session == null) {
+                return;
+            }
+        } else if (sessionKey == session.getSessionKey()) {
+            if (!sender.equals(session.remoteAddress())) {
+                session.migrate(sender);
+            }
+        } else if (sessionKey != 0 || !sender.equals(session.remoteAddress())) {
+            //conv已被占用，只有会话原地址重发的CONNECT（ACCEPT丢失）才会再次下发密钥
+            log.warn("KcpServerHandler handshake sessionKey mismatch conv {} sender {} address {}", conv, sender, session.remoteAddress());
+            return;
+        }
+        reply(ctx, sender, conv, KcpSessionRegistry.CMD_ACCEPT, cookie, session.getSessionKey());
+    }
+
+    private void reply(ChannelHandlerContext ctx, InetSocketAddress sender, int conv, int cmd, long cookie, long sessionKey) {
+        ByteBuf buf = KcpSessionRegistry.encode(ctx.alloc(), conv, cmd, cookie, sessionKey);
+        ctx.writeAndFlush(new DatagramPacket(buf, sender));
+    }
+
+    private KcpChannel newSession(ChannelHandlerContext ctx, int conv, InetSocketAddress sender) {
+        if (registry.isFull()) {
+            log.warn("KcpServerHandler newSession reject conv {} address {} sessionCount {}", conv, sender, registry.getSessionCount());
+            return null;
+        }
+        KcpChannel session = new KcpChannel(ctx.channel(), conv, registry.newSessionKey(), sender, kcpProperties);
+        if (!registry.register(conv, session)) {
+            log.warn("KcpServerHandler newSession register fail conv {} address {} sessionCount {}", conv, sender, registry.getSessionCount());
+            session.unsafe().closeForcibly();
+            return null;
+        }
+        gateInitializer.addGateHandlers(session.pipeline());
+        sessionMap.put(conv, session);
+        session.closeFuture().addListener(future -> {
+            sessionMap.remove(conv, session);
+            registry.unregister(conv, session);
+        });
+        //在当前事件循环上直接完成注册，触发channelActive创建GateClient
+        ctx.channel().eventLoop().register(session);
+        //首次update之前kcp不会发送数据
+        session.update(currentMillis());
+        log.info("KcpServerHandler newSession conv {} address {} sessionCount {}", conv, sender, registry.getSessionCount());
+        return session;
+    }
+
+    private void update(ChannelHandlerContext ctx) {
+        if (sessionMap.isEmpty()) {
+            return;
+        }
+        int current = currentMillis();
+        for (KcpChannel session : new ArrayList<>(sessionMap.values())) {
+            session.update(current);
+        }
+        ctx.flush();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        log.error("KcpServerHandler exceptionCaught address {}", ctx.channel().localAddress(), cause);
+    }
+}
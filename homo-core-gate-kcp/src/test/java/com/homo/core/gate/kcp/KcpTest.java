@@ -0,0 +1,199 @@
+package com.homo.core.gate.kcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * 两个kcp在模拟时钟下直接互连，可以按包序号丢包
+ */
+public class KcpTest {
+    private static final int CONV = 0x11223344;
+    private static final int STEP = 10;
+    private final Deque<ByteBuf> toServer = new ArrayDeque<>();
+    private final Deque<ByteBuf> toClient = new ArrayDeque<>();
+    private IntPredicate dropToServer = index -> false;
+    private IntPredicate dropToClient = index -> false;
+    private int toServerCount;
+    private int toClientCount;
+    private int droppedCount;
+    private int current;
+    private final Kcp client = new Kcp(CONV, (data, kcp) -> {
+        if (dropToServer.test(toServerCount++)) {
+            droppedCount++;
+            data.release();
+        } else {
+            toServer.add(data);
+        }
+    }, ByteBufAllocator.DEFAULT);
+    private final Kcp server = new Kcp(CONV, (data, kcp) -> {
+        if (dropToClient.test(toClientCount++)) {
+            droppedCount++;
+            data.release();
+        } else {
+            toClient.add(data);
+        }
+    }, ByteBufAllocator.DEFAULT);
+
+    @AfterEach
+    public void release() {
+        toServer.forEach(ByteBuf::release);
+        toClient.forEach(ByteBuf::release);
+        client.release();
+        server.release();
+    }
+
+    private void pump(int millis) {
+        for (int i = 0; i < millis; i += STEP) {
+            current += STEP;
+            client.update(current);
+            server.update(current);
+            deliver(toServer, server);
+            deliver(toClient, client);
+        }
+    }
+
+    private static void deliver(Deque<ByteBuf> queue, Kcp kcp) {
+        ByteBuf data;
+        while ((data = queue.poll()) != null) {
+            try {
+                Assertions.assertEquals(0, kcp.input(data));
+            } finally {
+                data.release();
+            }
+        }
+    }
+
+    private static List<byte[]> recvAll(Kcp kcp) {
+        List<byte[]> messages = new ArrayList<>();
+        ByteBuf msg;
+        while ((msg = kcp.recv()) != null) {
+            byte[] bytes = new byte[msg.readableBytes()];
+            msg.readBytes(bytes);
+            msg.release();
+            messages.add(bytes);
+        }
+        return messages;
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static int send(Kcp kcp, byte[] bytes) {
+        ByteBuf buf = Unpooled.wrappedBuffer(bytes);
+        try {
+            return kcp.send(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void testSendRecv() {
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(0, send(client, ("hello" + i).getBytes()));
+        }
+        pump(2000);
+        List<byte[]> messages = recvAll(server);
+        Assertions.assertEquals(3, messages.size());
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("hello" + i, new String(messages.get(i)));
+        }
+        //确认后发送缓冲清空
+        Assertions.assertEquals(0, client.waitSnd());
+        Assertions.assertEquals(0, send(server, "world".getBytes()));
+        pump(200);
+        Assertions.assertEquals("world", new String(recvAll(client).get(0)));
+    }
+
+    @Test
+    public void testFragment() {
+        byte[] bytes = randomBytes(5000, 1);
+        Assertions.assertEquals(0, send(client, bytes));
+        Assertions.assertEquals(4, client.waitSnd());
+        pump(2000);
+        Assertions.assertEquals(5000, server.peekSize());
+        List<byte[]> messages = recvAll(server);
+        Assertions.assertEquals(1, messages.size());
+        Assertions.assertArrayEquals(bytes, messages.get(0));
+    }
+
+    @Test
+    public void testTooManyFragment() {
+        //消息模式分片数不能超过255
+        Assertions.assertEquals(-2, send(client, new byte[(Kcp.MTU_DEF - Kcp.OVERHEAD) * 256]));
+        Assertions.assertEquals(0, client.waitSnd());
+    }
+
+    @Test
+    public void testLossRetransmit() {
+        dropToServer = index -> index % 3 == 1;
+        dropToClient = index -> index % 4 == 2;
+        List<byte[]> sent = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            byte[] bytes = randomBytes(1000 + i * 50, i);
+            sent.add(bytes);
+            Assertions.assertEquals(0, send(client, bytes));
+        }
+        pump(60_000);
+        Assertions.assertTrue(droppedCount > 0);
+        List<byte[]> messages = recvAll(server);
+        Assertions.assertEquals(sent.size(), messages.size());
+        for (int i = 0; i < sent.size(); i++) {
+            Assertions.assertArrayEquals(sent.get(i), messages.get(i));
+        }
+        Assertions.assertEquals(0, client.waitSnd());
+        Assertions.assertTrue(client.getState() >= 0);
+    }
+
+    @Test
+    public void testStream() {
+        client.setStream(true);
+        server.setStream(true);
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        for (int i = 0; i < 10; i++) {
+            byte[] bytes = randomBytes(300 + i * 100, i);
+            sent.write(bytes, 0, bytes.length);
+            Assertions.assertEquals(0, send(client, bytes));
+        }
+        //流模式合并到mss，不受分片数限制
+        byte[] large = randomBytes((Kcp.MTU_DEF - Kcp.OVERHEAD) * 300, 100);
+        sent.write(large, 0, large.length);
+        Assertions.assertEquals(0, send(client, large));
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        for (int i = 0; i < 200 && received.size() < sent.size(); i++) {
+            //及时取出，接收窗口才会恢复
+            pump(100);
+            for (byte[] bytes : recvAll(server)) {
+                received.write(bytes, 0, bytes.length);
+            }
+        }
+        Assertions.assertArrayEquals(sent.toByteArray(), received.toByteArray());
+    }
+
+    @Test
+    public void testDeadLink() {
+        client.setDeadLink(5);
+        dropToServer = index -> true;
+        Assertions.assertEquals(0, send(client, "lost".getBytes()));
+        pump(1000);
+        Assertions.assertEquals(0, client.getState());
+        pump(60_000);
+        Assertions.assertTrue(client.getState() < 0);
+        Assertions.assertTrue(recvAll(server).isEmpty());
+    }
+}
@@ -0,0 +1,257 @@
+package com.homo.core.gate.kcp.handler;
+
+import com.homo.core.configurable.gate.GateCommonProperties;
+import com.homo.core.configurable.gate.GateKcpProperties;
+import com.homo.core.configurable.gate.GateTcpProperties;
+import com.homo.core.facade.gate.GateMessagePackage;
+import com.homo.core.facade.gate.GateMessageType;
+import com.homo.core.gate.kcp.Kcp;
+import com.homo.core.gate.kcp.KcpChannel;
+import com.homo.core.gate.kcp.KcpSessionRegistry;
+import com.homo.core.gate.tcp.ServerChanelInitializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.util.function.Tuples;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class KcpServerHandlerTest {
+    private static final int VERSION = 1;
+    private static final int CONV = 1001;
+    private static final InetSocketAddress SERVER = new InetSocketAddress("127.0.0.1", 30000);
+    private static final InetSocketAddress CLIENT = new InetSocketAddress("127.0.0.1", 40001);
+    private static final InetSocketAddress OTHER = new InetSocketAddress("127.0.0.2", 40002);
+    private final List<GateMessagePackage> received = new ArrayList<>();
+    private final List<KcpChannel> sessions = new ArrayList<>();
+    private final List<EmbeddedChannel> channels = new ArrayList<>();
+    private final List<ByteBuf> clientOut = new ArrayList<>();
+
+    @ChannelHandler.Sharable
+    private class CaptureHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            sessions.add((KcpChannel) ctx.channel());
+            ctx.fireChannelActive();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            received.add((GateMessagePackage) msg);
+        }
+    }
+
+    private EmbeddedChannel channel(KcpSessionRegistry registry) {
+        GateCommonProperties commonProperties = new GateCommonProperties();
+        commonProperties.version = VERSION;
+        commonProperties.compressEnable = false;
+        GateTcpProperties tcpProperties = new GateTcpProperties();
+        tcpProperties.readerIdleTime = 0;
+        tcpProperties.writerIdleTime = 0;
+        tcpProperties.allIdleTime = 0;
+        tcpProperties.limitMsgPerSecond = 0;
+        tcpProperties.maxHeartbeatCount = 100;
+        GateKcpProperties kcpProperties = new GateKcpProperties();
+        kcpProperties.nodelay = 1;
+        kcpProperties.interval = 10;
+        kcpProperties.resend = 2;
+        kcpProperties.nocwnd = true;
+        kcpProperties.sndWnd = 128;
+        kcpProperties.rcvWnd = 128;
+        kcpProperties.mtu = Kcp.MTU_DEF;
+        kcpProperties.stream = false;
+        kcpProperties.deadLink = 20;
+        ServerChanelInitializer gateInitializer = new ServerChanelInitializer(
+                Tuples.of(Collections.emptyList(), Collections.emptyList(), Collections.singletonList(new CaptureHandler())),
+                tcpProperties, commonProperties);
+        EmbeddedChannel channel = new EmbeddedChannel(new KcpServerHandler(kcpProperties, gateInitializer, registry));
+        channels.add(channel);
+        return channel;
+    }
+
+    @AfterEach
+    public void close() {
+        channels.forEach(EmbeddedChannel::finishAndReleaseAll);
+    }
+
+    private static DatagramPacket handshake(int conv, int cmd, long cookie, long sessionKey, InetSocketAddress sender) {
+        return new DatagramPacket(KcpSessionRegistry.encode(ByteBufAllocator.DEFAULT, conv, cmd, cookie, sessionKey), SERVER, sender);
+    }
+
+    /**
+     * 读取服务器回复的握手包（跳过kcp段），返回[cookie, sessionKey]，没有回复时返回null
+     */
+    private static long[] readReply(EmbeddedChannel channel, int cmd, InetSocketAddress recipient) {
+        DatagramPacket packet;
+        while ((packet = channel.readOutbound()) != null && !KcpSessionRegistry.isHandshake(packet.content().getUnsignedByte(4))) {
+            packet.release();
+        }
+        if (packet == null) {
+            return null;
+        }
+        try {
+            ByteBuf data = packet.content();
+            Assertions.assertEquals(recipient, packet.recipient());
+            Assertions.assertEquals(KcpSessionRegistry.HANDSHAKE_LENGTH, data.readableBytes());
+            Assertions.assertEquals(cmd, data.getUnsignedByte(4));
+            return new long[]{data.getLongLE(5), data.getLongLE(13)};
+        } finally {
+            packet.release();
+        }
+    }
+
+    /**
+     * 完成握手，返回会话密钥，失败返回0
+     */
+    private static long connect(EmbeddedChannel channel, int conv, long sessionKey, InetSocketAddress sender) {
+        channel.writeInbound(handshake(conv, KcpSessionRegistry.CMD_HELLO, 0, 0, sender));
+        long cookie = readReply(channel, KcpSessionRegistry.CMD_COOKIE, sender)[0];
+        channel.writeInbound(handshake(conv, KcpSessionRegistry.CMD_CONNECT, cookie, sessionKey, sender));
+        long[] accept = readReply(channel, KcpSessionRegistry.CMD_ACCEPT, sender);
+        return accept == null ? 0 : accept[1];
+    }
+
+    private Kcp client(int conv) {
+        Kcp client = new Kcp(conv, (data, kcp) -> clientOut.add(data), ByteBufAllocator.DEFAULT);
+        //客户端不读取ack，关闭拥塞控制保证每条消息都立即发出
+        client.nodelay(1, 10, 2, true);
+        client.update(0);
+        return client;
+    }
+
+    /**
+     * 客户端kcp发送一条网关消息，输出的udp包从sender写入channel
+     */
+    private void sendMessage(EmbeddedChannel channel, Kcp client, short sendSeq, InetSocketAddress sender) {
+        byte[] body = ("move" + sendSeq).getBytes();
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeInt(body.length);
+        frame.writeByte(VERSION);
+        frame.writeByte(GateMessageType.PROTO.ordinal());
+        frame.writeLong(System.currentTimeMillis());
+        frame.writeShort(7);
+        frame.writeShort(sendSeq);
+        frame.writeShort(0);
+        frame.writeBytes(body);
+        try {
+            Assertions.assertEquals(0, client.send(frame));
+            client.flush();
+        } finally {
+            frame.release();
+        }
+        for (ByteBuf data : clientOut) {
+            channel.writeInbound(new DatagramPacket(data, SERVER, sender));
+        }
+        clientOut.clear();
+    }
+
+    @Test
+    public void testHandshake() {
+        KcpSessionRegistry registry = new KcpSessionRegistry(10);
+        EmbeddedChannel channel = channel(registry);
+        Kcp client = client(CONV);
+        //未握手的数据直接丢弃，不创建会话
+        sendMessage(channel, client, (short) 1, CLIENT);
+        Assertions.assertEquals(0, registry.getSessionCount());
+        Assertions.assertTrue(sessions.isEmpty());
+        //错误的cookie不创建会话
+        channel.writeInbound(handshake(CONV, KcpSessionRegistry.CMD_CONNECT, 12345L, 0, CLIENT));
+        Assertions.assertNull(readReply(channel, KcpSessionRegistry.CMD_ACCEPT, CLIENT));
+        Assertions.assertEquals(0, registry.getSessionCount());
+        //其他地址拿到的cookie不能用
+        channel.writeInbound(handshake(CONV, KcpSessionRegistry.CMD_HELLO, 0, 0, OTHER));
+        long otherCookie = readReply(channel, KcpSessionRegistry.CMD_COOKIE, OTHER)[0];
+        channel.writeInbound(handshake(CONV, KcpSessionRegistry.CMD_CONNECT, otherCookie, 0, CLIENT));
+        Assertions.assertNull(readReply(channel, KcpSessionRegistry.CMD_ACCEPT, CLIENT));
+
+        long sessionKey = connect(channel, CONV, 0, CLIENT);
+        Assertions.assertNotEquals(0, sessionKey);
+        Assertions.assertEquals(1, registry.getSessionCount());
+        Assertions.assertEquals(1, sessions.size());
+        Assertions.assertEquals(CLIENT, sessions.get(0).remoteAddress());
+        //ACCEPT丢失时原地址重发CONNECT得到同一个密钥
+        Assertions.assertEquals(sessionKey, connect(channel, CONV, 0, CLIENT));
+        Assertions.assertEquals(1, registry.getSessionCount());
+
+        client.release();
+        client = client(CONV);
+        sendMessage(channel, client, (short) 2, CLIENT);
+        Assertions.assertEquals(1, received.size());
+        Assertions.assertEquals(2, received.get(0).getHeader().getSendSeq());
+        client.release();
+    }
+
+    @Test
+    public void testAddressChange() {
+        KcpSessionRegistry registry = new KcpSessionRegistry(10);
+        EmbeddedChannel channel = channel(registry);
+        long sessionKey = connect(channel, CONV, 0, CLIENT);
+        KcpChannel session = sessions.get(0);
+        Kcp client = client(CONV);
+        sendMessage(channel, client, (short) 1, CLIENT);
+        Assertions.assertEquals(1, received.size());
+        //其他地址带着已知的conv发数据不会改变会话地址
+        Kcp attacker = client(CONV);
+        sendMessage(channel, attacker, (short) 2, OTHER);
+        attacker.release();
+        Assertions.assertEquals(1, received.size());
+        Assertions.assertEquals(CLIENT, session.remoteAddress());
+        //不知道密钥时不能抢占会话
+        Assertions.assertEquals(0, connect(channel, CONV, 0, OTHER));
+        Assertions.assertEquals(0, connect(channel, CONV, sessionKey + 1, OTHER));
+        Assertions.assertEquals(CLIENT, session.remoteAddress());
+        //带密钥重新握手后切换到新地址，之后只接受新地址的数据
+        Assertions.assertEquals(sessionKey, connect(channel, CONV, sessionKey, OTHER));
+        Assertions.assertEquals(OTHER, session.remoteAddress());
+        Assertions.assertEquals(1, sessions.size());
+        sendMessage(channel, client, (short) 2, OTHER);
+        Assertions.assertEquals(2, received.size());
+        sendMessage(channel, client, (short) 3, CLIENT);
+        Assertions.assertEquals(2, received.size());
+        client.release();
+    }
+
+    @Test
+    public void testSharedRegistry() {
+        //SO_REUSEPORT下地址变化后被分流到另一个udp channel，找到原会话而不是新建
+        KcpSessionRegistry registry = new KcpSessionRegistry(10);
+        EmbeddedChannel first = channel(registry);
+        EmbeddedChannel second = channel(registry);
+        long sessionKey = connect(first, CONV, 0, CLIENT);
+        Assertions.assertEquals(sessionKey, connect(second, CONV, sessionKey, OTHER));
+        Assertions.assertEquals(1, registry.getSessionCount());
+        Assertions.assertEquals(1, sessions.size());
+        Kcp client = client(CONV);
+        sendMessage(second, client, (short) 1, OTHER);
+        first.runPendingTasks();
+        Assertions.assertEquals(1, received.size());
+        Assertions.assertSame(first, sessions.get(0).parent());
+        client.release();
+    }
+
+    @Test
+    public void testMaxSession() {
+        KcpSessionRegistry registry = new KcpSessionRegistry(2);
+        EmbeddedChannel channel = channel(registry);
+        Assertions.assertNotEquals(0, connect(channel, CONV, 0, CLIENT));
+        Assertions.assertNotEquals(0, connect(channel, CONV + 1, 0, CLIENT));
+        Assertions.assertEquals(0, connect(channel, CONV + 2, 0, CLIENT));
+        Assertions.assertEquals(2, registry.getSessionCount());
+        //会话关闭后释放名额
+        sessions.get(0).close();
+        Assertions.assertEquals(1, registry.getSessionCount());
+        Assertions.assertNull(registry.get(CONV));
+        Assertions.assertNotEquals(0, connect(channel, CONV + 2, 0, CLIENT));
+    }
+}
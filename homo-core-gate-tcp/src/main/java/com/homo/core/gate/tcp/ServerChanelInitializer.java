@@ -6,21 +6,22 @@ import com.homo.core.gate.tcp.handler.AbstractGateLogicHandler;
 import com.homo.core.gate.tcp.handler.GateDecoderHandler;
 import com.homo.core.gate.tcp.handler.GateEncoderHandler;
 import com.homo.core.gate.tcp.handler.HeartbeatHandler;
+import com.homo.core.gate.tcp.limit.GateAdmissionController;
 import io.netty.channel.*;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.timeout.IdleStateHandler;
-import org.jetbrains.annotations.NotNull;
 import reactor.util.function.Tuple3;
 
 import java.util.List;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 @ChannelHandler.Sharable
 public class ServerChanelInitializer extends ChannelInitializer<SocketChannel> {
 
-    private final GateTcpProperties gateTcpProperties;
-    private final GateCommonProperties gateCommonProperties;
+    protected final GateTcpProperties gateTcpProperties;
+    protected final GateCommonProperties gateCommonProperties;
+    private final GateAdmissionController admissionController;
     private Tuple3<List<ChannelHandler>, List<AbstractGateLogicHandler>, List<ChannelHandler>> customHandlers;
 
     public ServerChanelInitializer(Tuple3<List<ChannelHandler>, List<AbstractGateLogicHandler>, List<ChannelHandler>> customHandlers
@@ -28,45 +29,32 @@ public class ServerChanelInitializer extends ChannelInitializer<SocketChannel> {
         this.customHandlers = customHandlers;
         this.gateTcpProperties = gateTcpProperties;
         this.gateCommonProperties = gateCommonProperties;
+        this.admissionController = new GateAdmissionController(gateTcpProperties);
     }
 
-    EventLoopGroup heartBeatGroup = new DefaultEventLoopGroup(1, new ThreadFactory() {
-        @Override
-        public Thread newThread(@NotNull Runnable runnable) {
-            return new Thread(runnable, "heartBeatGroup");
-        }
-    });
-
     @Override
     protected void initChannel(SocketChannel ch) throws Exception {
         ChannelPipeline pipeline = ch.pipeline();
+        addFlushConsolidation(pipeline);
+        addGateHandlers(pipeline);
+    }
+
+    protected void addFlushConsolidation(ChannelPipeline pipeline) {
+        if (gateTcpProperties.flushConsolidationMax != null && gateTcpProperties.flushConsolidationMax > 0) {
+            //合并flush，读事件处理期间及事件循环外提交的flush延后到本轮结束或写满flushConsolidationMax次时执行，减少write系统调用
+            pipeline.addLast(new FlushConsolidationHandler(gateTcpProperties.flushConsolidationMax, true));
+        }
+    }
+
+    /**
+     * 网关消息处理链：空闲检测、编解码、心跳、自定义处理器，输入输出都是网关消息的字节流
+     */
+    public void addGateHandlers(ChannelPipeline pipeline) {
         pipeline.addLast(new IdleStateHandler(gateTcpProperties.readerIdleTime, gateTcpProperties.writerIdleTime, gateTcpProperties.allIdleTime, TimeUnit.SECONDS));
         pipeline.addLast(new GateEncoderHandler(gateCommonProperties));
-        pipeline.addLast(new GateDecoderHandler(gateCommonProperties));
-        /**
-         * 当 handler 中绑定的 Group 不同时，需要切换 Group 来执行不同的任务
-         * static void invokeChannelRead(final AbstractChannelHandlerContext next, Object msg) {
-         *     final Object m = next.pipeline.touch(ObjectUtil.checkNotNull(msg, "msg"), next);
-         *     // 获得下一个EventLoop, excutor 即为 EventLoopGroup
-         *     EventExecutor executor = next.executor();
-         *
-         *     // 如果下一个EventLoop 在当前的 EventLoopGroup中
-         *     if (executor.inEventLoop()) {
-         *         // 使用当前 EventLoopGroup 中的 EventLoop 来处理任务
-         *         next.invokeChannelRead(m);
-         *     } else {
-         *         // 否则让另一个 EventLoopGroup 中的 EventLoop 来创建任务并执行
-         *         executor.execute(new Runnable() {
-         *             public void run() {
-         *                 next.invokeChannelRead(m);
-         *             }
-         *         });
-         *     }
-         * }
-         * 如果两个 handler 绑定的是同一个 EventLoopGroup，那么就直接调用
-         * 否则，把要调用的代码封装为一个任务对象，由下一个 handler 的 EventLoopGroup 来调用
-         */
-        pipeline.addLast(heartBeatGroup, new HeartbeatHandler());
+        pipeline.addLast(new GateDecoderHandler(gateCommonProperties, gateTcpProperties, admissionController));
+        //空闲检测与心跳都在channel自己的事件循环上处理，不切换线程
+        pipeline.addLast(HeartbeatHandler.INSTANCE);
         customHandlers.getT1().forEach(pipeline::addLast);
         customHandlers.getT2().forEach(pipeline::addLast);
         customHandlers.getT3().forEach(pipeline::addLast);
@@ -16,6 +16,7 @@ import io.netty.channel.epoll.Epoll;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.Future;
@@ -31,20 +32,21 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 public class TcpGateDriver implements GateDriver, DriverModule {
 
     @Autowired(required = false)
-    private GateTcpProperties gateTcpProperties;
+    protected GateTcpProperties gateTcpProperties;
     @Autowired(required = false)
-    private GateCommonProperties gateCommonProperties;
-    private GateServer gateServer;
+    protected GateCommonProperties gateCommonProperties;
+    protected GateServer gateServer;
     /**
      * 监听的serverChannel
      */
-    private Channel serverChannel;
+    protected Channel serverChannel;
     /**
      * 保持每个客户端连接
      */
@@ -56,11 +58,23 @@ public class TcpGateDriver implements GateDriver, DriverModule {
     public static AttributeKey<Short> serverSendSeqKey = AttributeKey.valueOf("serverSendSeq");
     public static AttributeKey<Short> recvConfirmSeqKey = AttributeKey.valueOf("recvConfirmSeq");
     public static AttributeKey<Short> clientSendReqKey = AttributeKey.valueOf("clientSendReq");
+    /**
+     * 客户端是否支持解压
+     */
+    public static AttributeKey<Boolean> compressKey = AttributeKey.valueOf("compress");
+    /**
+     * 连续收到的心跳数，收到业务消息时清零
+     */
+    public static AttributeKey<Integer> heartbeatCountKey = AttributeKey.valueOf("heartbeatCount");
+    /**
+     * 是否已提交flush任务
+     */
+    public static AttributeKey<AtomicBoolean> flushPendingKey = AttributeKey.valueOf("flushPending");
 
     /**
      * 服务器运行状态
      */
-    private volatile boolean isRunning = false;
+    protected volatile boolean isRunning = false;
 
     /**
      * 处理Accept连接事件的线程，设置成1即可，netty处理连接时间默认为单线程
@@ -69,9 +83,9 @@ public class TcpGateDriver implements GateDriver, DriverModule {
 
     private EventLoopGroup bossGroup;
 
-    private EventLoopGroup workGroup;
+    protected EventLoopGroup workGroup;
 
-    private Tuple3<List<ChannelHandler>, List<AbstractGateLogicHandler>, List<ChannelHandler>> customHandlers = Tuples.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    protected Tuple3<List<ChannelHandler>, List<AbstractGateLogicHandler>, List<ChannelHandler>> customHandlers = Tuples.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
 
 
     public void moduleInit() {
@@ -93,7 +107,7 @@ public class TcpGateDriver implements GateDriver, DriverModule {
             ChannelFuture channelFuture = new ServerBootstrap()//创建ServerBootstrap实例
                     .group(bossGroup, workGroup)//初始化ServerBootstrap线程组
                     .channel(Epoll.isAvailable() ? EpollServerSocketChannel.class : NioServerSocketChannel.class)//设置将要被实例化的ServerChannel类
-                    .childHandler(new ServerChanelInitializer(customHandlers, gateTcpProperties, gateCommonProperties))//在ServerChannelInitializer中初始化ChannelPipeline责任链，并添加到serverBootstrap中
+                    .childHandler(newChannelInitializer())//在ServerChannelInitializer中初始化ChannelPipeline责任链，并添加到serverBootstrap中
                     .option(ChannelOption.SO_BACKLOG, 1024)//标识当服务处理线程全满时，用于临时存放已三次握手的请求的队列的最大长度
                     .childOption(ChannelOption.SO_KEEPALIVE, true)//是否启用心跳保活机制
                     .bind(gateServer.getPort()).sync();//绑定端口后，开启监听
@@ -110,6 +124,13 @@ public class TcpGateDriver implements GateDriver, DriverModule {
     }
 
 
+    /**
+     * 连接的处理链初始化，其他协议的驱动在网关处理链前加上协议处理
+     */
+    protected ChannelInitializer<SocketChannel> newChannelInitializer() {
+        return new ServerChanelInitializer(customHandlers, gateTcpProperties, gateCommonProperties);
+    }
+
     @Override
     public void closeGate() throws Exception {
         if (!isRunning) {
@@ -142,7 +163,7 @@ public class TcpGateDriver implements GateDriver, DriverModule {
         return Homo.warp(homoSink -> {
             Channel channel = clientMap.get(gateClient);
             if (channel != null) {
-                ChannelFuture future = channel.writeAndFlush(msg);
+                ChannelFuture future = writeAndDeferFlush(channel, msg);
                 future.addListener(future1 -> {
                     homoSink.success(future1.isSuccess());
                 });
@@ -157,7 +178,7 @@ public class TcpGateDriver implements GateDriver, DriverModule {
         return Homo.warp(homoSink -> {
             Channel channel = clientMap.get(gateClient);
             if (channel != null && channel.isActive()) {
-                ChannelFuture future = channel.writeAndFlush(msg);
+                writeAndDeferFlush(channel, msg);
                 homoSink.success(true);
             } else {
                 log.info("sendToClient channel is null gateClient {}",gateClient.name());
@@ -169,11 +190,34 @@ public class TcpGateDriver implements GateDriver, DriverModule {
     @Override
     public <T> Homo<Boolean> broadcast(T msg) {
         for (Channel channel : clientMap.values()) {
-            channel.writeAndFlush(msg);
+            writeAndDeferFlush(channel, msg);
         }
         return Homo.result(true);
     }
 
+    /**
+     * 只写入不立即flush，同一个连接在flush任务执行前的多次写入合并为一次flush（一次write系统调用）
+     */
+    private ChannelFuture writeAndDeferFlush(Channel channel, Object msg) {
+        ChannelFuture future = channel.write(msg);
+        AtomicBoolean flushPending = channel.attr(flushPendingKey).get();
+        if (flushPending == null) {
+            flushPending = new AtomicBoolean();
+            AtomicBoolean exist = channel.attr(flushPendingKey).setIfAbsent(flushPending);
+            if (exist != null) {
+                flushPending = exist;
+            }
+        }
+        if (flushPending.compareAndSet(false, true)) {
+            AtomicBoolean pending = flushPending;
+            channel.eventLoop().execute(() -> {
+                pending.set(false);
+                channel.flush();
+            });
+        }
+        return future;
+    }
+
     @Override
     public void closeGateClient(GateClient gateClient) {
         Channel channel = clientMap.get(gateClient);
@@ -8,6 +8,7 @@ import com.homo.core.gate.tcp.handler.TailHandler;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 
@@ -21,6 +22,7 @@ public class TcpGateAutoConfiguration {
     private GateCommonProperties gateCommonProperties;
 
     @Bean("gateDriver")
+    @ConditionalOnMissingBean(name = "gateDriver")
     public GateDriver gateDriver(){
         log.info("gateDriver bean register");
         TcpGateDriver tcpGateDriver = new TcpGateDriver();
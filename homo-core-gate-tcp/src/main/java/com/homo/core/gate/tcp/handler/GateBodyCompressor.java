@@ -0,0 +1,60 @@
+package com.homo.core.gate.tcp.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorOutputStream;
+import org.apache.commons.compress.utils.IOUtils;
+
+import java.io.IOException;
+
+/**
+ * 网关消息体压缩，格式：原始长度(4B) + lz4 block压缩数据
+ * 直接读写netty的ByteBuf，不经过中间数组
+ */
+public class GateBodyCompressor {
+    static final int LENGTH_SIZE = 4;
+
+    /**
+     * 把body压缩写入out
+     *
+     * @return 写入的字节数，压缩后不小于原数据时不写入并返回-1
+     */
+    public static int compress(byte[] body, ByteBuf out) throws IOException {
+        int start = out.writerIndex();
+        out.writeInt(body.length);
+        try (BlockLZ4CompressorOutputStream lz4Out = new BlockLZ4CompressorOutputStream(new ByteBufOutputStream(out))) {
+            lz4Out.write(body);
+        }
+        int length = out.writerIndex() - start;
+        if (length >= body.length) {
+            out.writerIndex(start);
+            return -1;
+        }
+        return length;
+    }
+
+    /**
+     * 从in中读取length字节的压缩数据并解压
+     *
+     * @param maxLength 允许的最大原始长度
+     */
+    public static byte[] decompress(ByteBuf in, int length, int maxLength) throws IOException {
+        if (length < LENGTH_SIZE) {
+            throw new IOException("compressed body too short " + length);
+        }
+        int originalLength = in.readInt();
+        if (originalLength < 0 || originalLength > maxLength) {
+            in.skipBytes(length - LENGTH_SIZE);
+            throw new IOException("compressed body original length illegal " + originalLength);
+        }
+        byte[] body = new byte[originalLength];
+        try (BlockLZ4CompressorInputStream lz4In = new BlockLZ4CompressorInputStream(new ByteBufInputStream(in.readSlice(length - LENGTH_SIZE)))) {
+            if (IOUtils.readFully(lz4In, body) != originalLength || lz4In.read() != -1) {
+                throw new IOException("compressed body length mismatch " + originalLength);
+            }
+        }
+        return body;
+    }
+}
@@ -1,28 +1,55 @@
 package com.homo.core.gate.tcp.handler;
 
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
 import com.homo.core.configurable.gate.GateCommonProperties;
+import com.homo.core.configurable.gate.GateTcpProperties;
 import com.homo.core.facade.gate.GateMessage;
 import com.homo.core.facade.gate.GateMessagePackage;
 import com.homo.core.facade.gate.GateMessageType;
 import com.homo.core.gate.tcp.TcpGateDriver;
+import com.homo.core.gate.tcp.limit.GateAdmissionController;
+import com.homo.core.gate.tcp.limit.SessionRateLimiter;
+import com.homo.core.utils.exception.HomoError;
+import io.homo.proto.client.Msg;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 public class GateDecoderHandler extends ByteToMessageDecoder {
 
     private final GateCommonProperties gateCommonProperties;
+    private final GateTcpProperties gateTcpProperties;
+    private final GateAdmissionController admissionController;
+    /**
+     * 本连接的限流，未配置时为null
+     */
+    private final SessionRateLimiter rateLimiter;
+    /**
+     * 过载延后处理中，暂停读取
+     */
+    private boolean admissionPaused;
 
-    public GateDecoderHandler(GateCommonProperties gateCommonProperties) {
+    public GateDecoderHandler(GateCommonProperties gateCommonProperties, GateTcpProperties gateTcpProperties, GateAdmissionController admissionController) {
         this.gateCommonProperties = gateCommonProperties;
+        this.gateTcpProperties = gateTcpProperties;
+        this.admissionController = admissionController;
+        this.rateLimiter = SessionRateLimiter.create(gateTcpProperties);
     }
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> nextIn) throws Exception {
+        if (admissionPaused) {
+            //过载延后中，数据留在累积缓冲区，恢复后再解码
+            return;
+        }
         String address = ctx.channel().remoteAddress().toString();
         //标记一下当前的readIndex的位置
         in.markReaderIndex();
@@ -53,12 +80,39 @@ public class GateDecoderHandler extends ByteToMessageDecoder {
             log.warn("decode client version {} != server version {} address {}", version, gateCommonProperties.version, address);
             ctx.close();
         }
-        int packType = in.readByte() & 0xFF;
+        int packTypeByte = in.readByte() & 0xFF;
+        boolean compressed = (packTypeByte & GateMessage.COMPRESS_FLAG) != 0;
+        int packType = packTypeByte & GateMessage.TYPE_MASK;
         long opTime = in.readLong();
         short sessionId = in.readShort();
         short sendSeq = in.readShort();
         short recvReq = in.readShort();
-        byte[] logicBytes = new byte[bodySize];
+        //限流与过载检查在分配消息内存之前，被拒绝的逻辑消息回复错误码，避免客户端等到超时
+        if (rateLimiter != null && !rateLimiter.tryAcquire(GateMessage.HEAD_LENGTH + bodySize)) {
+            if (rateLimiter.isDropOverflow()) {
+                in.skipBytes(bodySize);
+                log.warn("decode rate limit drop overflow, close the connect! address {} dropCount {}", address, rateLimiter.getDropCount());
+                ctx.close();
+            } else {
+                log.debug("decode rate limit drop address {} packType {} bodySize {}", address, packType, bodySize);
+                if (packType != GateMessageType.HEART_BEAT.ordinal()) {
+                    reject(ctx, HomoError.gateRateLimit, peekMsgId(in, packType, compressed, bodySize), sessionId, sendSeq, recvReq);
+                }
+                in.skipBytes(bodySize);
+            }
+            return;
+        }
+        if (packType != GateMessageType.HEART_BEAT.ordinal() && !admissionController.admit()) {
+            if (admissionController.getDelayMillis() > 0) {
+                in.resetReaderIndex();
+                pauseForAdmission(ctx);
+            } else {
+                log.warn("decode overload reject address {} packType {} bodySize {}", address, packType, bodySize);
+                reject(ctx, HomoError.gateOverload, peekMsgId(in, packType, compressed, bodySize), sessionId, sendSeq, recvReq);
+                in.skipBytes(bodySize);
+            }
+            return;
+        }
         /**
          * 将sessionId和packType信息保存起来
          */
@@ -71,9 +125,110 @@ public class GateDecoderHandler extends ByteToMessageDecoder {
         }
         ctx.channel().attr(TcpGateDriver.sessionIdKey).set(sessionId);
         ctx.channel().attr(TcpGateDriver.packType).set(packType);
-        in.readBytes(logicBytes);
+        if (compressed && Boolean.TRUE.equals(gateCommonProperties.compressEnable)) {
+            //客户端带压缩标记表示支持解压，协商开启下发压缩
+            ctx.channel().attr(TcpGateDriver.compressKey).set(true);
+        }
+        if (packType == GateMessageType.HEART_BEAT.ordinal()) {
+            //心跳在解码时直接应答，不进入逻辑处理链
+            in.skipBytes(bodySize);
+            onHeartbeat(ctx);
+            return;
+        }
+        ctx.channel().attr(TcpGateDriver.heartbeatCountKey).set(0);
+        byte[] logicBytes;
+        if (compressed && bodySize > 0) {
+            try {
+                logicBytes = GateBodyCompressor.decompress(in, bodySize, gateCommonProperties.compressMaxLength);
+            } catch (IOException e) {
+                log.error("decode decompress error close channel address {} bodySize {}", address, bodySize, e);
+                ctx.close();
+                return;
+            }
+        } else {
+            logicBytes = new byte[bodySize];
+            in.readBytes(logicBytes);
+        }
         GateMessagePackage messagePackage = new GateMessagePackage(logicBytes, version, packType, opTime, sessionId, sendSeq, recvReq);
         log.info("decode messagePackage address {} header {}", ctx.channel().remoteAddress(),messagePackage.getHeader());
         nextIn.add(messagePackage);
     }
+
+    /**
+     * 不解析整个消息，只读取未压缩proto消息的msgId，其他消息返回空串
+     */
+    private static String peekMsgId(ByteBuf in, int packType, boolean compressed, int bodySize) {
+        if (packType != GateMessageType.PROTO.ordinal() || compressed || bodySize <= 0) {
+            return "";
+        }
+        try {
+            CodedInputStream input = CodedInputStream.newInstance(in.nioBuffer(in.readerIndex(), bodySize));
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                if (WireFormat.getTagFieldNumber(tag) == Msg.MSGID_FIELD_NUMBER && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                    return input.readStringRequireUtf8();
+                }
+                input.skipField(tag);
+            }
+        } catch (IOException e) {
+            log.debug("peekMsgId error bodySize {}", bodySize, e);
+        }
+        return "";
+    }
+
+    /**
+     * 回复被限流或过载拒绝的消息，序号与请求对应，客户端据此结束等待
+     */
+    private static void reject(ChannelHandlerContext ctx, HomoError error, String msgId, short sessionId, short sendSeq, short recvSeq) {
+        Msg msg = Msg.newBuilder()
+                .setMsgId(msgId)
+                .setCode(error.getCode())
+                .setCodeDesc(error.message())
+                .build();
+        GateMessagePackage response = new GateMessagePackage(msg.toByteArray());
+        response.setSessionId(sessionId);
+        response.setSendSeq(sendSeq);
+        response.setRecvSeq(recvSeq);
+        response.setType(GateMessageType.PROTO.ordinal());
+        ctx.writeAndFlush(response);
+    }
+
+    /**
+     * 过载时暂停读取该连接，延后再解码累积的数据，客户端的发送由tcp流控反压
+     */
+    private void pauseForAdmission(ChannelHandlerContext ctx) {
+        admissionPaused = true;
+        ctx.channel().config().setAutoRead(false);
+        ctx.executor().schedule(() -> {
+            admissionPaused = false;
+            ctx.channel().config().setAutoRead(true);
+            if (ctx.channel().isActive()) {
+                try {
+                    //没有新数据时也要处理累积的数据
+                    channelRead(ctx, Unpooled.EMPTY_BUFFER);
+                } catch (Exception e) {
+                    ctx.fireExceptionCaught(e);
+                }
+            }
+        }, admissionController.getDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 应答心跳，连续心跳数超过上限说明客户端一直没有操作，主动断开连接
+     * 计数保存在channel属性中，在channel自己的事件循环上读写
+     */
+    private void onHeartbeat(ChannelHandlerContext ctx) {
+        GateMessagePackage response = new GateMessagePackage(null);
+        //协商了压缩的连接心跳应答带压缩标记，告知客户端服务器会压缩下发
+        boolean compress = Boolean.TRUE.equals(ctx.channel().attr(TcpGateDriver.compressKey).get());
+        response.setType(compress ? GateMessageType.HEART_BEAT.ordinal() | GateMessage.COMPRESS_FLAG : GateMessageType.HEART_BEAT.ordinal());
+        ctx.writeAndFlush(response);
+        Integer heartbeatCount = ctx.channel().attr(TcpGateDriver.heartbeatCountKey).get();
+        int newHeartbeatCount = heartbeatCount == null ? 1 : heartbeatCount + 1;
+        ctx.channel().attr(TcpGateDriver.heartbeatCountKey).set(newHeartbeatCount);
+        if (newHeartbeatCount > gateTcpProperties.maxHeartbeatCount) {
+            log.info("onHeartbeat heartbeatCount > maxHeartbeatCount, close the connect! address {}", ctx.channel().remoteAddress());
+            ctx.close();
+        }
+    }
 }
@@ -6,10 +6,8 @@ import com.homo.core.facade.gate.GateMessageHeader;
 import com.homo.core.gate.tcp.TcpGateDriver;
 import com.homo.core.utils.exception.HomoError;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
-import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -30,7 +28,9 @@ public class GateEncoderHandler extends MessageToByteEncoder<GateMessage> {
         byte[] logicBytes = gateMessage.getBody();
         int bodyLength = logicBytes == null ? 0 : logicBytes.length;
         int totalLength = GateMessage.HEAD_LENGTH + bodyLength;
-        ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT.directBuffer(totalLength);//默认使用直接内存池
+        //nextOut由编码器从channel的内存池分配，直接写入，不再经过中间buf拷贝
+        ByteBuf byteBuf = nextOut.ensureWritable(totalLength);
+        int headIndex = byteBuf.writerIndex();
         try {
             GateMessageHeader header = gateMessage.getHeader();
             Long now = System.currentTimeMillis();
@@ -59,15 +59,26 @@ public class GateEncoderHandler extends MessageToByteEncoder<GateMessage> {
                 byteBuf.writeShort(header.getRecvSeq());
             }
             if (logicBytes != null){
+                if (needCompress(ctx, bodyLength)) {
+                    int compressedLength = GateBodyCompressor.compress(logicBytes, byteBuf);
+                    if (compressedLength > 0) {
+                        //回填压缩后的长度和压缩标记
+                        byteBuf.setInt(headIndex, compressedLength);
+                        byteBuf.setByte(headIndex + 5, byteBuf.getByte(headIndex + 5) | GateMessage.COMPRESS_FLAG);
+                        return;
+                    }
+                }
                 byteBuf.writeBytes(logicBytes);
             }
-            nextOut.writeBytes(byteBuf);
         } catch (Exception e) {
             log.error("TcpEncoderHandler encode error ", e);
             throw HomoError.throwError(HomoError.gateError, "TcpEncoderHandler encode error");
-        } finally {
-            //自己分配的ByteBuf要自己释放
-            ReferenceCountUtil.release(byteBuf);
         }
     }
+
+    private boolean needCompress(ChannelHandlerContext ctx, int bodyLength) {
+        return Boolean.TRUE.equals(gateCommonProperties.compressEnable)
+                && bodyLength >= gateCommonProperties.compressThreshold
+                && Boolean.TRUE.equals(ctx.channel().attr(TcpGateDriver.compressKey).get());
+    }
 }
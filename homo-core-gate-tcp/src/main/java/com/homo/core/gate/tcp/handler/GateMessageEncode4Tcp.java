@@ -8,8 +8,8 @@ import io.netty.handler.codec.MessageToByteEncoder;
 public class GateMessageEncode4Tcp extends MessageToByteEncoder<GateMessagePackage> {
     @Override
     protected void encode(ChannelHandlerContext ctx, GateMessagePackage msg, ByteBuf out) throws Exception {
-        ByteBuf buf = msg.makeBuf();
-        out.writeBytes(buf);
-        buf.release();
+        //直接写入out，不再经过中间buf拷贝
+        out.ensureWritable(msg.getPackageLength());
+        msg.writeFullPack(out);
     }
 }
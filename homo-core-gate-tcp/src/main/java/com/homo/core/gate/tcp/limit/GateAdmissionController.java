@@ -0,0 +1,50 @@
+package com.homo.core.gate.tcp.limit;
+
+import com.homo.core.configurable.gate.GateTcpProperties;
+import com.homo.core.utils.concurrent.queue.CallQueueMgr;
+
+/**
+ * 网关过载保护
+ * 所有CallQueue等待任务总数超过阈值时拒绝（或延后）新消息，使排队延迟有上限
+ * 等待任务数按固定间隔采样，不在每条消息上遍历所有队列
+ */
+public class GateAdmissionController {
+    private static final long SAMPLE_INTERVAL_NANOS = 10_000_000L;
+    private final int waitCountMax;
+    private final int delayMillis;
+    private volatile long lastSampleNanos;
+    private volatile boolean overload;
+
+    public GateAdmissionController(GateTcpProperties gateTcpProperties) {
+        this.waitCountMax = gateTcpProperties.admissionWaitCountMax == null ? 0 : gateTcpProperties.admissionWaitCountMax;
+        this.delayMillis = gateTcpProperties.admissionDelayMillis == null ? 0 : gateTcpProperties.admissionDelayMillis;
+        this.lastSampleNanos = System.nanoTime() - SAMPLE_INTERVAL_NANOS;
+    }
+
+    public boolean isEnable() {
+        return waitCountMax > 0;
+    }
+
+    /**
+     * 过载时延后处理的毫秒数，小于等于0表示直接丢弃
+     */
+    public int getDelayMillis() {
+        return delayMillis;
+    }
+
+    /**
+     * 当前是否可以接收新消息
+     */
+    public boolean admit() {
+        if (!isEnable()) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (now - lastSampleNanos >= SAMPLE_INTERVAL_NANOS) {
+            //多个事件循环线程同时采样也没关系，结果一致
+            lastSampleNanos = now;
+            overload = CallQueueMgr.getInstance().getAllWaitCount() > waitCountMax;
+        }
+        return !overload;
+    }
+}
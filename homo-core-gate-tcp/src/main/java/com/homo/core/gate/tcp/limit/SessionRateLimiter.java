@@ -0,0 +1,67 @@
+package com.homo.core.gate.tcp.limit;
+
+import com.homo.core.configurable.gate.GateTcpProperties;
+
+/**
+ * 单连接限流，按消息数和字节数两个令牌桶同时限制
+ * 每个连接的解码器持有一个实例，只在该连接的事件循环上使用
+ */
+public class SessionRateLimiter {
+    private final TokenBucket msgBucket;
+    private final TokenBucket bytesBucket;
+    private final int dropMax;
+    private int dropCount;
+
+    private SessionRateLimiter(GateTcpProperties gateTcpProperties) {
+        this.msgBucket = positive(gateTcpProperties.limitMsgPerSecond) ? new TokenBucket(gateTcpProperties.limitMsgPerSecond) : null;
+        this.bytesBucket = positive(gateTcpProperties.limitBytesPerSecond) ? new TokenBucket(gateTcpProperties.limitBytesPerSecond) : null;
+        this.dropMax = positive(gateTcpProperties.limitDropMax) ? gateTcpProperties.limitDropMax : 0;
+    }
+
+    /**
+     * 没有配置限流时返回null
+     */
+    public static SessionRateLimiter create(GateTcpProperties gateTcpProperties) {
+        if (!positive(gateTcpProperties.limitMsgPerSecond) && !positive(gateTcpProperties.limitBytesPerSecond)) {
+            return null;
+        }
+        return new SessionRateLimiter(gateTcpProperties);
+    }
+
+    /**
+     * 是否允许接收一条消息
+     *
+     * @param frameLength 整个消息的字节数
+     */
+    public boolean tryAcquire(int frameLength) {
+        long now = System.nanoTime();
+        if (msgBucket != null && !msgBucket.tryAcquire(1, now)) {
+            dropCount++;
+            return false;
+        }
+        if (bytesBucket != null && !bytesBucket.tryAcquire(frameLength, now)) {
+            if (msgBucket != null) {
+                msgBucket.giveBack(1);
+            }
+            dropCount++;
+            return false;
+        }
+        dropCount = 0;
+        return true;
+    }
+
+    /**
+     * 连续丢弃的消息数是否超过上限
+     */
+    public boolean isDropOverflow() {
+        return dropMax > 0 && dropCount > dropMax;
+    }
+
+    public int getDropCount() {
+        return dropCount;
+    }
+
+    private static boolean positive(Integer value) {
+        return value != null && value > 0;
+    }
+}
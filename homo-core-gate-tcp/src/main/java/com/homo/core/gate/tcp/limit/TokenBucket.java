@@ -0,0 +1,48 @@
+package com.homo.core.gate.tcp.limit;
+
+/**
+ * 令牌桶，容量为每秒速率（允许1秒的突发）
+ * 超过容量的请求在桶满时放行，欠下的令牌从之后的补充中扣除，避免大于每秒限额的消息永远无法通过
+ * 只在所属channel的事件循环上使用，不做同步
+ */
+public class TokenBucket {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private final long ratePerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(long ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+        this.tokens = ratePerSecond;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 尝试取出permits个令牌，不足时不扣减
+     * permits超过容量时只要求桶是满的，扣减后令牌数为负
+     */
+    public boolean tryAcquire(long permits, long nowNanos) {
+        refill(nowNanos);
+        if (tokens < Math.min(permits, ratePerSecond)) {
+            return false;
+        }
+        tokens -= permits;
+        return true;
+    }
+
+    /**
+     * 归还令牌（另一个桶取令牌失败时撤销本次扣减）
+     */
+    public void giveBack(long permits) {
+        tokens = Math.min(ratePerSecond, tokens + permits);
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed <= 0) {
+            return;
+        }
+        tokens = Math.min(ratePerSecond, tokens + (double) elapsed * ratePerSecond / NANOS_PER_SECOND);
+        lastRefillNanos = nowNanos;
+    }
+}
@@ -0,0 +1,78 @@
+package com.homo.core.gate.tcp.handler;
+
+import com.homo.core.configurable.gate.GateCommonProperties;
+import com.homo.core.configurable.gate.GateTcpProperties;
+import com.homo.core.facade.gate.GateMessagePackage;
+import com.homo.core.facade.gate.GateMessageType;
+import com.homo.core.gate.tcp.limit.GateAdmissionController;
+import com.homo.core.utils.exception.HomoError;
+import io.homo.proto.client.Msg;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class GateDecoderHandlerTest {
+    private static final int VERSION = 1;
+
+    private static EmbeddedChannel channel(int limitMsgPerSecond) {
+        GateCommonProperties commonProperties = new GateCommonProperties();
+        commonProperties.version = VERSION;
+        commonProperties.compressEnable = false;
+        GateTcpProperties tcpProperties = new GateTcpProperties();
+        tcpProperties.limitMsgPerSecond = limitMsgPerSecond;
+        tcpProperties.limitDropMax = 100;
+        tcpProperties.maxHeartbeatCount = 100;
+        return new EmbeddedChannel(new GateDecoderHandler(commonProperties, tcpProperties, new GateAdmissionController(tcpProperties)));
+    }
+
+    private static ByteBuf frame(String msgId, short sendSeq) {
+        byte[] body = Msg.newBuilder().setMsgId(msgId).build().toByteArray();
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(body.length);
+        buf.writeByte(VERSION);
+        buf.writeByte(GateMessageType.PROTO.ordinal());
+        buf.writeLong(System.currentTimeMillis());
+        buf.writeShort(7);
+        buf.writeShort(sendSeq);
+        buf.writeShort(0);
+        buf.writeBytes(body);
+        return buf;
+    }
+
+    @Test
+    public void testRateLimitReply() throws Exception {
+        EmbeddedChannel channel = channel(1);
+        channel.writeInbound(frame("login", (short) 1));
+        channel.writeInbound(frame("move", (short) 2));
+        GateMessagePackage passed = channel.readInbound();
+        Assertions.assertEquals(1, passed.getHeader().getSendSeq());
+        Assertions.assertNull(channel.readInbound());
+        //被限流的消息回复错误码，序号与请求对应
+        GateMessagePackage reply = channel.readOutbound();
+        Assertions.assertNotNull(reply);
+        Assertions.assertEquals(GateMessageType.PROTO.ordinal(), reply.getHeader().getType());
+        Assertions.assertEquals(7, reply.getHeader().getSessionId());
+        Assertions.assertEquals(2, reply.getHeader().getSendSeq());
+        Msg msg = Msg.parseFrom(reply.getBody());
+        Assertions.assertEquals("move", msg.getMsgId());
+        Assertions.assertEquals(HomoError.gateRateLimit.getCode(), msg.getCode());
+        Assertions.assertTrue(channel.isActive());
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testNoLimit() {
+        EmbeddedChannel channel = channel(0);
+        for (short i = 1; i <= 5; i++) {
+            channel.writeInbound(frame("move", i));
+        }
+        for (int i = 1; i <= 5; i++) {
+            GateMessagePackage passed = channel.readInbound();
+            Assertions.assertEquals(i, passed.getHeader().getSendSeq());
+        }
+        Assertions.assertNull(channel.readOutbound());
+        channel.finishAndReleaseAll();
+    }
+}
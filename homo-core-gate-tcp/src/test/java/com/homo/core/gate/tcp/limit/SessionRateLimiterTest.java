@@ -0,0 +1,56 @@
+package com.homo.core.gate.tcp.limit;
+
+import com.homo.core.configurable.gate.GateTcpProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SessionRateLimiterTest {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    @Test
+    public void testTokenBucket() {
+        TokenBucket bucket = new TokenBucket(10);
+        long now = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertTrue(bucket.tryAcquire(1, now));
+        }
+        Assertions.assertFalse(bucket.tryAcquire(1, now));
+        //补充0.5秒
+        Assertions.assertTrue(bucket.tryAcquire(5, now + NANOS_PER_SECOND / 2));
+        Assertions.assertFalse(bucket.tryAcquire(1, now + NANOS_PER_SECOND / 2));
+    }
+
+    @Test
+    public void testOversizedPermits() {
+        TokenBucket bucket = new TokenBucket(1000);
+        long now = System.nanoTime();
+        //超过容量的请求在桶满时放行
+        Assertions.assertTrue(bucket.tryAcquire(3000, now));
+        //欠下的令牌补齐前不放行
+        Assertions.assertFalse(bucket.tryAcquire(1, now + NANOS_PER_SECOND));
+        Assertions.assertFalse(bucket.tryAcquire(1, now + 2 * NANOS_PER_SECOND));
+        Assertions.assertTrue(bucket.tryAcquire(1, now + 2 * NANOS_PER_SECOND + NANOS_PER_SECOND / 100));
+        //桶未满时不放行超大请求
+        Assertions.assertFalse(bucket.tryAcquire(3000, now + 2 * NANOS_PER_SECOND + NANOS_PER_SECOND / 2));
+        Assertions.assertTrue(bucket.tryAcquire(3000, now + 4 * NANOS_PER_SECOND));
+    }
+
+    @Test
+    public void testLimiter() {
+        GateTcpProperties properties = new GateTcpProperties();
+        Assertions.assertNull(SessionRateLimiter.create(properties));
+        properties.limitMsgPerSecond = 2;
+        properties.limitBytesPerSecond = 100;
+        properties.limitDropMax = 2;
+        SessionRateLimiter limiter = SessionRateLimiter.create(properties);
+        Assertions.assertNotNull(limiter);
+        //大于每秒字节数的消息可以通过
+        Assertions.assertTrue(limiter.tryAcquire(500));
+        Assertions.assertFalse(limiter.tryAcquire(10));
+        Assertions.assertFalse(limiter.tryAcquire(10));
+        Assertions.assertFalse(limiter.isDropOverflow());
+        Assertions.assertFalse(limiter.tryAcquire(10));
+        Assertions.assertTrue(limiter.isDropOverflow());
+        Assertions.assertEquals(3, limiter.getDropCount());
+    }
+}
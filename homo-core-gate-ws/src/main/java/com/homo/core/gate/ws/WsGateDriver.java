@@ -0,0 +1,25 @@
+package com.homo.core.gate.ws;
+
+import com.homo.core.configurable.gate.GateWsProperties;
+import com.homo.core.gate.tcp.TcpGateDriver;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.SocketChannel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * websocket网关驱动
+ * 连接管理、发送、广播与tcp网关一致，消息以二进制帧承载网关消息头和消息体
+ */
+@Slf4j
+public class WsGateDriver extends TcpGateDriver {
+    @Autowired(required = false)
+    private GateWsProperties gateWsProperties;
+
+    @Override
+    protected ChannelInitializer<SocketChannel> newChannelInitializer() {
+        log.info("WsGateDriver newChannelInitializer path {} maxFrameSize {} permessageDeflate {}",
+                gateWsProperties.path, gateWsProperties.maxFrameSize, gateWsProperties.permessageDeflate);
+        return new WsServerChannelInitializer(customHandlers, gateTcpProperties, gateCommonProperties, gateWsProperties);
+    }
+}
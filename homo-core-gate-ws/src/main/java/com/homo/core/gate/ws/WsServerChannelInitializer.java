@@ -0,0 +1,52 @@
+package com.homo.core.gate.ws;
+
+import com.homo.core.configurable.gate.GateCommonProperties;
+import com.homo.core.configurable.gate.GateTcpProperties;
+import com.homo.core.configurable.gate.GateWsProperties;
+import com.homo.core.gate.tcp.ServerChanelInitializer;
+import com.homo.core.gate.tcp.handler.AbstractGateLogicHandler;
+import com.homo.core.gate.ws.handler.WsHandshakeHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolConfig;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import reactor.util.function.Tuple3;
+
+import java.util.List;
+
+/**
+ * websocket连接处理链：http升级 -> websocket帧编解码 -> 与tcp相同的网关处理链
+ * 都在同一个channel的事件循环上处理
+ */
+@ChannelHandler.Sharable
+public class WsServerChannelInitializer extends ServerChanelInitializer {
+    private final GateWsProperties gateWsProperties;
+
+    public WsServerChannelInitializer(Tuple3<List<ChannelHandler>, List<AbstractGateLogicHandler>, List<ChannelHandler>> customHandlers
+            , GateTcpProperties gateTcpProperties, GateCommonProperties gateCommonProperties, GateWsProperties gateWsProperties) {
+        super(customHandlers, gateTcpProperties, gateCommonProperties);
+        this.gateWsProperties = gateWsProperties;
+    }
+
+    @Override
+    protected void initChannel(SocketChannel ch) throws Exception {
+        ChannelPipeline pipeline = ch.pipeline();
+        addFlushConsolidation(pipeline);
+        pipeline.addLast(new HttpServerCodec());
+        pipeline.addLast(new HttpObjectAggregator(gateWsProperties.maxHandshakeSize));
+        boolean permessageDeflate = Boolean.TRUE.equals(gateWsProperties.permessageDeflate);
+        if (permessageDeflate) {
+            pipeline.addLast(new WebSocketServerCompressionHandler());
+        }
+        pipeline.addLast(new WebSocketServerProtocolHandler(WebSocketServerProtocolConfig.newBuilder()
+                .websocketPath(gateWsProperties.path)
+                .allowExtensions(permessageDeflate)
+                .maxFramePayloadLength(gateWsProperties.maxFrameSize)
+                .build()));
+        pipeline.addLast(new WsHandshakeHandler(this));
+    }
+}
@@ -0,0 +1,30 @@
+package com.homo.core.gate.ws.config;
+
+import com.homo.core.configurable.gate.GateCommonProperties;
+import com.homo.core.configurable.gate.GateTcpProperties;
+import com.homo.core.configurable.gate.GateWsProperties;
+import com.homo.core.facade.gate.GateDriver;
+import com.homo.core.gate.tcp.config.TcpGateAutoConfiguration;
+import com.homo.core.gate.tcp.handler.TailHandler;
+import com.homo.core.gate.ws.WsGateDriver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 引入该模块时网关驱动替换为websocket驱动
+ */
+@AutoConfiguration(before = TcpGateAutoConfiguration.class)
+@Slf4j
+@Import({GateTcpProperties.class, GateCommonProperties.class, GateWsProperties.class})
+public class WsGateAutoConfiguration {
+
+    @Bean("gateDriver")
+    public GateDriver gateDriver(){
+        log.info("gateDriver bean register ws");
+        WsGateDriver wsGateDriver = new WsGateDriver();
+        wsGateDriver.registerAfterHandler(new TailHandler(wsGateDriver));
+        return wsGateDriver;
+    }
+}
@@ -0,0 +1,35 @@
+package com.homo.core.gate.ws.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * websocket二进制帧与网关消息字节流互转
+ * 帧内容直接交给网关解码器（网关消息可以跨帧），下发的字节流直接包装成二进制帧，都不拷贝数据
+ * ping/pong/close帧由WebSocketServerProtocolHandler处理，不会到这里
+ */
+@Slf4j
+public class WsFrameCodec extends MessageToMessageCodec<WebSocketFrame, ByteBuf> {
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        out.add(new BinaryWebSocketFrame(msg.retain()));
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, WebSocketFrame frame, List<Object> out) throws Exception {
+        if (frame instanceof BinaryWebSocketFrame || frame instanceof ContinuationWebSocketFrame) {
+            out.add(frame.content().retain());
+        } else {
+            log.warn("WsFrameCodec unsupported frame {} close the connect! address {}", frame.getClass().getSimpleName(), ctx.channel().remoteAddress());
+            ctx.close();
+        }
+    }
+}
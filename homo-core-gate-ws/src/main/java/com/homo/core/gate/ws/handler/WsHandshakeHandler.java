@@ -0,0 +1,63 @@
+package com.homo.core.gate.ws.handler;
+
+import com.homo.core.gate.tcp.ServerChanelInitializer;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * websocket握手完成后接入网关处理链
+ * 握手前网关处理链不存在，客户端连接（TailHandler.channelActive）在握手完成时才创建
+ */
+@Slf4j
+public class WsHandshakeHandler extends ChannelInboundHandlerAdapter {
+    private final ServerChanelInitializer gateInitializer;
+
+    public WsHandshakeHandler(ServerChanelInitializer gateInitializer) {
+        this.gateInitializer = gateInitializer;
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+            WebSocketServerProtocolHandler.HandshakeComplete handshakeComplete = (WebSocketServerProtocolHandler.HandshakeComplete) evt;
+            log.info("WsHandshakeHandler handshake complete address {} uri {}", ctx.channel().remoteAddress(), handshakeComplete.requestUri());
+            ChannelPipeline pipeline = ctx.pipeline();
+            pipeline.addLast(new WsFrameCodec());
+            gateInitializer.addGateHandlers(pipeline);
+            //网关处理链刚加入，补发连接建立事件
+            ctx.fireChannelActive();
+            pipeline.remove(this);
+        } else {
+            ctx.fireUserEventTriggered(evt);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof FullHttpRequest) {
+            //不是websocket升级请求
+            log.warn("WsHandshakeHandler not websocket request uri {} address {}", ((FullHttpRequest) msg).uri(), ctx.channel().remoteAddress());
+            ReferenceCountUtil.release(msg);
+            ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_FOUND, Unpooled.EMPTY_BUFFER))
+                    .addListener(ChannelFutureListener.CLOSE);
+            return;
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        //握手前断开，网关处理链没有接入，不需要向后传递
+        log.info("WsHandshakeHandler channelInactive before handshake address {}", ctx.channel().remoteAddress());
+    }
+}
@@ -0,0 +1,59 @@
+package com.homo.core.gate.ws.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.ContinuationWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class WsFrameCodecTest {
+
+    @Test
+    public void testEncode() {
+        EmbeddedChannel channel = new EmbeddedChannel(new WsFrameCodec());
+        ByteBuf msg = Unpooled.wrappedBuffer("hello".getBytes());
+        channel.writeOutbound(msg);
+        BinaryWebSocketFrame frame = channel.readOutbound();
+        //直接包装成二进制帧，不拷贝
+        Assertions.assertSame(msg, frame.content());
+        Assertions.assertTrue(frame.isFinalFragment());
+        Assertions.assertEquals("hello", frame.content().toString(CharsetUtil.UTF_8));
+        frame.release();
+        Assertions.assertEquals(0, msg.refCnt());
+        Assertions.assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDecodeFragment() {
+        EmbeddedChannel channel = new EmbeddedChannel(new WsFrameCodec());
+        //网关消息跨帧时按顺序交给网关解码器
+        BinaryWebSocketFrame first = new BinaryWebSocketFrame(false, 0, Unpooled.wrappedBuffer(new byte[]{1, 2}));
+        ContinuationWebSocketFrame last = new ContinuationWebSocketFrame(true, 0, Unpooled.wrappedBuffer(new byte[]{3}));
+        channel.writeInbound(first, last);
+        ByteBuf part1 = channel.readInbound();
+        ByteBuf part2 = channel.readInbound();
+        Assertions.assertEquals(Unpooled.wrappedBuffer(new byte[]{1, 2}), part1);
+        Assertions.assertEquals(Unpooled.wrappedBuffer(new byte[]{3}), part2);
+        part1.release();
+        part2.release();
+        Assertions.assertEquals(0, first.refCnt());
+        Assertions.assertEquals(0, last.refCnt());
+        Assertions.assertTrue(channel.isOpen());
+        Assertions.assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRejectTextFrame() {
+        EmbeddedChannel channel = new EmbeddedChannel(new WsFrameCodec());
+        TextWebSocketFrame frame = new TextWebSocketFrame("hello");
+        channel.writeInbound(frame);
+        //不支持的帧关闭连接，不向后传递
+        Assertions.assertNull(channel.readInbound());
+        Assertions.assertEquals(0, frame.refCnt());
+        Assertions.assertFalse(channel.isOpen());
+    }
+}
@@ -0,0 +1,147 @@
+package com.homo.core.gate.ws.handler;
+
+import com.homo.core.configurable.gate.GateCommonProperties;
+import com.homo.core.configurable.gate.GateTcpProperties;
+import com.homo.core.facade.gate.GateMessagePackage;
+import com.homo.core.facade.gate.GateMessageType;
+import com.homo.core.gate.tcp.ServerChanelInitializer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.util.function.Tuples;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class WsHandshakeHandlerTest {
+    private static final int VERSION = 1;
+    private static final String PATH = "/ws";
+    private final List<GateMessagePackage> received = new ArrayList<>();
+    private int activeCount;
+    private int inactiveCount;
+    private EmbeddedChannel channel;
+
+    @ChannelHandler.Sharable
+    private class CaptureHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            activeCount++;
+            ctx.fireChannelActive();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            inactiveCount++;
+            ctx.fireChannelInactive();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            received.add((GateMessagePackage) msg);
+        }
+    }
+
+    private EmbeddedChannel channel() {
+        GateCommonProperties commonProperties = new GateCommonProperties();
+        commonProperties.version = VERSION;
+        commonProperties.compressEnable = false;
+        GateTcpProperties tcpProperties = new GateTcpProperties();
+        tcpProperties.readerIdleTime = 0;
+        tcpProperties.writerIdleTime = 0;
+        tcpProperties.allIdleTime = 0;
+        tcpProperties.limitMsgPerSecond = 0;
+        tcpProperties.maxHeartbeatCount = 100;
+        ServerChanelInitializer gateInitializer = new ServerChanelInitializer(
+                Tuples.of(Collections.emptyList(), Collections.emptyList(), Collections.singletonList(new CaptureHandler())),
+                tcpProperties, commonProperties);
+        channel = new EmbeddedChannel(new HttpServerCodec(), new HttpObjectAggregator(65536),
+                new WebSocketServerProtocolHandler(PATH), new WsHandshakeHandler(gateInitializer));
+        return channel;
+    }
+
+    @AfterEach
+    public void close() {
+        channel.finishAndReleaseAll();
+    }
+
+    private static ByteBuf frame(short sendSeq) {
+        byte[] body = ("move" + sendSeq).getBytes();
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(body.length);
+        buf.writeByte(VERSION);
+        buf.writeByte(GateMessageType.PROTO.ordinal());
+        buf.writeLong(System.currentTimeMillis());
+        buf.writeShort(7);
+        buf.writeShort(sendSeq);
+        buf.writeShort(0);
+        buf.writeBytes(body);
+        return buf;
+    }
+
+    private static ByteBuf request(String uri, boolean upgrade) {
+        StringBuilder request = new StringBuilder("GET ").append(uri).append(" HTTP/1.1\r\nHost: localhost\r\n");
+        if (upgrade) {
+            request.append("Upgrade: websocket\r\nConnection: Upgrade\r\n")
+                    .append("Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n");
+        }
+        return Unpooled.copiedBuffer(request.append("\r\n"), CharsetUtil.US_ASCII);
+    }
+
+    /**
+     * 读取服务器回复的http状态行，跳过关闭时写出的close帧
+     */
+    private static String readStatusLine(EmbeddedChannel channel) {
+        ByteBuf response = Unpooled.buffer();
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            if (msg instanceof ByteBuf) {
+                response.writeBytes((ByteBuf) msg);
+            }
+            ReferenceCountUtil.release(msg);
+        }
+        String text = response.toString(CharsetUtil.US_ASCII);
+        response.release();
+        return text.substring(0, text.indexOf("\r\n"));
+    }
+
+    @Test
+    public void testRejectNotWebsocket() {
+        EmbeddedChannel channel = channel();
+        channel.writeInbound(request("/other", false));
+        //不是升级请求的http请求回复404后关闭，不接入网关处理链
+        Assertions.assertEquals("HTTP/1.1 404 Not Found", readStatusLine(channel));
+        Assertions.assertFalse(channel.isOpen());
+        Assertions.assertEquals(0, activeCount);
+        Assertions.assertEquals(0, inactiveCount);
+    }
+
+    @Test
+    public void testHandshakeComplete() {
+        EmbeddedChannel channel = channel();
+        Assertions.assertEquals(0, activeCount);
+        channel.writeInbound(request(PATH, true));
+        Assertions.assertEquals("HTTP/1.1 101 Switching Protocols", readStatusLine(channel));
+        //握手完成后接入网关处理链并补发连接建立事件，握手处理器移除
+        Assertions.assertEquals(1, activeCount);
+        Assertions.assertNull(channel.pipeline().get(WsHandshakeHandler.class));
+        Assertions.assertNotNull(channel.pipeline().get(WsFrameCodec.class));
+        channel.writeInbound(new BinaryWebSocketFrame(frame((short) 1)));
+        Assertions.assertEquals(1, received.size());
+        Assertions.assertEquals(1, received.get(0).getHeader().getSendSeq());
+        channel.close();
+        Assertions.assertEquals(1, inactiveCount);
+    }
+}
@@ -0,0 +1,68 @@
+package com.homo.core.mq.base;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 消息打包信封。生产者把同一topic、同一key在一个linger窗口内的多条已编码消息打成一条队列消息，
+ * 消费者识别信封后拆包，每条消息再按topic的编解码器解码，对业务透明
+ * 格式：magic(4) + version(1) + count(4) + [length(4) + bytes] * count
+ */
+public class MQMessageEnvelope {
+    static final byte[] MAGIC = {(byte) 0xF7, 'H', 'M', 'E'};
+    static final byte VERSION = 1;
+    static final int HEADER_LENGTH = MAGIC.length + 1 + 4;
+
+    public static byte[] pack(List<byte[]> messages) {
+        int length = HEADER_LENGTH;
+        for (byte[] message : messages) {
+            length += 4 + message.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(MAGIC).put(VERSION).putInt(messages.size());
+        for (byte[] message : messages) {
+            buffer.putInt(message.length).put(message);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 拆包
+     *
+     * @return 不是信封（或格式不完整）时返回null，按普通消息处理
+     */
+    public static List<byte[]> unpack(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER_LENGTH) {
+            return null;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return null;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, MAGIC.length, bytes.length - MAGIC.length);
+        if (buffer.get() != VERSION) {
+            return null;
+        }
+        int count = buffer.getInt();
+        if (count <= 0 || count > buffer.remaining() / 4) {
+            return null;
+        }
+        List<byte[]> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < 4) {
+                return null;
+            }
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                return null;
+            }
+            byte[] message = new byte[length];
+            buffer.get(message);
+            messages.add(message);
+        }
+        //长度必须恰好用完，避免把恰好以magic开头的普通消息误判为信封
+        return buffer.hasRemaining() ? null : messages;
+    }
+}
@@ -5,16 +5,14 @@ import com.homo.core.facade.mq.MQType;
 import com.homo.core.facade.mq.consumer.*;
 import com.homo.core.mq.base.CodecRegister;
 import com.homo.core.mq.base.MQDriverFactoryProvider;
+import com.homo.core.mq.base.MQMessageEnvelope;
 import com.homo.core.mq.consumer.route.RouterMgr;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  * 消息队列消费者实现
@@ -71,9 +69,14 @@ public class MQConsumerImpl implements MQConsumer {
         }
         String realTopic = getRealTopic(originTopic);
         routerMgr.register(realTopic, sink);
-        if (!driver.haveSubscribe(realTopic)) {
-            driver.subscribe(realTopic, receiverSink);
+    }
+
+    @Override
+    public <T extends Serializable> void addBatchReceiver(@NotNull String originTopic, @NotNull Class<T> messageClazz, @NotNull BatchReceiverSink<T> sink) throws Exception {
+        if (status != Status.INIT) {
+            throw new RuntimeException("必须要在Consumer未start之前调用receive");
         }
+        routerMgr.register(getRealTopic(originTopic), messageClazz, sink);
     }
 
     @Override
@@ -101,6 +104,12 @@ public class MQConsumerImpl implements MQConsumer {
             Serializable message = null;
             try {
                 MQCodeC<Serializable, byte[]> codec = codecRegister.getCodec(topic);
+                List<byte[]> packed = MQMessageEnvelope.unpack(bytes);
+                if (packed != null) {
+                    //生产者合并发送的消息，拆包后整包路由，所有消息确认后才确认这条队列消息
+                    batchReceiverSink.onSinkBatch(topic, packed, callback);
+                    return;
+                }
                 message = codec.decode(bytes);
                 log.debug("MQConsumer receiverSink topic {} message {}", topic, message);
                 routerMgr.topicRouter(topic, message, callback);
@@ -111,6 +120,71 @@ public class MQConsumerImpl implements MQConsumer {
         }
     };
 
+    /**
+     * 批量下沉：一次拉取的消息统一解码后按订阅函数分组投递，整批只确认一次
+     */
+    private BatchReceiverSink<byte[]> batchReceiverSink = new BatchReceiverSink<byte[]>() {
+        @Override
+        public void onSinkBatch(String topic, List<byte[]> bytesList, ConsumerCallback callback) {
+            List<Serializable> messages = new ArrayList<>(bytesList.size());
+            MQCodeC<Serializable, byte[]> codec = null;
+            for (byte[] bytes : unpack(bytesList)) {
+                try {
+                    if (codec == null) {
+                        codec = codecRegister.getCodec(topic);
+                    }
+                    messages.add(codec.decode(bytes));
+                } catch (Throwable throwable) {
+                    listeners.forEach(item -> item.onError(topic, bytes, throwable));
+                }
+            }
+            log.debug("MQConsumer batchReceiverSink topic {} size {} decoded {}", topic, bytesList.size(), messages.size());
+            try {
+                routerMgr.batchRouter(topic, messages, callback);
+            } catch (Throwable throwable) {
+                callback.confirm();
+                log.error("MQConsumer batchReceiverSink route error topic {} size {}", topic, messages.size(), throwable);
+            }
+        }
+    };
+
+    /**
+     * 展开生产者合并发送的消息
+     */
+    private static List<byte[]> unpack(List<byte[]> bytesList) {
+        List<byte[]> result = null;
+        for (int i = 0; i < bytesList.size(); i++) {
+            List<byte[]> packed = MQMessageEnvelope.unpack(bytesList.get(i));
+            if (packed != null && result == null) {
+                result = new ArrayList<>(bytesList.subList(0, i));
+            }
+            if (result != null) {
+                if (packed != null) {
+                    result.addAll(packed);
+                } else {
+                    result.add(bytesList.get(i));
+                }
+            }
+        }
+        return result == null ? bytesList : result;
+    }
+
+    /**
+     * 启动时为所有注册了订阅函数的topic订阅驱动，存在批量订阅函数的topic以批量模式订阅
+     */
+    private void subscribeTopics() {
+        for (String realTopic : routerMgr.getTopics()) {
+            if (driver.haveSubscribe(realTopic)) {
+                continue;
+            }
+            if (routerMgr.isBatchTopic(realTopic)) {
+                driver.subscribeBatch(realTopic, batchReceiverSink);
+            } else {
+                driver.subscribe(realTopic, receiverSink);
+            }
+        }
+    }
+
     public <T extends java.io.Serializable> void registerCodec(@NotNull String originTopic, @NotNull MQCodeC<T, byte[]> codec) {
         String realTopic = this.getRealTopic(originTopic);
         codecRegister.setCodec(realTopic, codec);
@@ -138,6 +212,7 @@ public class MQConsumerImpl implements MQConsumer {
     public void start() {
         if (status == Status.INIT) {
             status = Status.STARTING;
+            subscribeTopics();
             driver.start();
             status = Status.RUNNING;
         } else {
@@ -1,5 +1,6 @@
 package com.homo.core.mq.consumer.route;
 
+import com.homo.core.facade.mq.consumer.BatchReceiverSink;
 import com.homo.core.facade.mq.consumer.ConsumerCallback;
 import com.homo.core.facade.mq.consumer.ReceiverSink;
 import com.homo.core.facade.mq.consumer.SinkHandler;
@@ -10,9 +11,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.invoke.SerializedLambda;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -21,12 +28,17 @@ import java.util.stream.Collectors;
 /**
  * 路由信息类。每一个实例对应一个处理函数
  */
-@ToString
+@ToString(exclude = "invoker")
 @Slf4j
 public class RouteTarget {
     private ReceiverSink receiverSink;
+    private BatchReceiverSink batchReceiverSink;
     private SinkHandler handler;
     private Method func;
+    /**
+     * 处理函数绑定到handler后的调用句柄，注册时生成，避免每条消息反射调用
+     */
+    private MethodHandle invoker;
     @Getter
     private Class<?> messageClazz;
     private final TargetType targetType;
@@ -44,24 +56,71 @@ public class RouteTarget {
         this.targetType = TargetType.SINK;
     }
 
-    public RouteTarget(SinkHandler handler, Method func) {
+    public RouteTarget(BatchReceiverSink batchReceiverSink, Class<?> messageClazz) {
+        this.batchReceiverSink = batchReceiverSink;
+        this.messageClazz = messageClazz;
+        this.targetType = TargetType.BATCH_SINK;
+    }
+
+    public RouteTarget(SinkHandler handler, Method func) throws IllegalAccessException {
         this.handler = handler;
         this.func = func;
-        this.messageClazz = func.getParameterTypes()[1];
-        this.targetType = TargetType.HANDLER;
+        Class<?> messageParamType;
+        if (List.class.isAssignableFrom(func.getParameterTypes()[1])) {
+            //批量消费函数，消息类型取List的泛型参数
+            this.messageClazz = getListElementClazz(func.getGenericParameterTypes()[1]);
+            this.targetType = TargetType.BATCH_HANDLER;
+            messageParamType = List.class;
+        } else {
+            this.messageClazz = func.getParameterTypes()[1];
+            this.targetType = TargetType.HANDLER;
+            messageParamType = Serializable.class;
+        }
+        func.setAccessible(true);
+        this.invoker = MethodHandles.lookup().unreflect(func).bindTo(handler)
+                .asType(MethodType.methodType(void.class, String.class, messageParamType, ConsumerCallback.class));
+    }
+
+    public boolean isBatch() {
+        return targetType.equals(TargetType.BATCH_SINK) || targetType.equals(TargetType.BATCH_HANDLER);
     }
 
-    public void invoke(String realTopic, Serializable message, ConsumerCallback callback) throws Exception{
+    public void invoke(String realTopic, Serializable message, ConsumerCallback callback) throws Throwable {
         if (targetType.equals(TargetType.SINK)) {
             receiverSink.onSink(realTopic, message, callback);
+        } else if (targetType.equals(TargetType.HANDLER)) {
+            invoker.invokeExact(realTopic, message, callback);
         } else {
-            func.invoke(handler, realTopic, message, callback);
+            invokeBatch(realTopic, Collections.singletonList(message), callback);
+        }
+    }
+
+    public void invokeBatch(String realTopic, List<Serializable> messages, ConsumerCallback callback) throws Throwable {
+        if (targetType.equals(TargetType.BATCH_SINK)) {
+            batchReceiverSink.onSinkBatch(realTopic, messages, callback);
+        } else {
+            invoker.invokeExact(realTopic, (List) messages, callback);
+        }
+    }
+
+    private static Class<?> getListElementClazz(Type listType) {
+        if (listType instanceof ParameterizedType) {
+            Type elementType = ((ParameterizedType) listType).getActualTypeArguments()[0];
+            if (elementType instanceof Class) {
+                return (Class<?>) elementType;
+            }
+            if (elementType instanceof ParameterizedType) {
+                return (Class<?>) ((ParameterizedType) elementType).getRawType();
+            }
         }
+        return Serializable.class;
     }
 
     public enum TargetType {
         SINK,
-        HANDLER
+        HANDLER,
+        BATCH_SINK,
+        BATCH_HANDLER
     }
 
     public static @Nullable <T extends Serializable> SerializedLambda getSerializedLambda(ReceiverSink<T> functionInterface) {
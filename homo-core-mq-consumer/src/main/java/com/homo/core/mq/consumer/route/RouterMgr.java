@@ -1,5 +1,6 @@
 package com.homo.core.mq.consumer.route;
 
+import com.homo.core.facade.mq.consumer.BatchReceiverSink;
 import com.homo.core.facade.mq.consumer.ConsumerCallback;
 import com.homo.core.facade.mq.consumer.ReceiverSink;
 import com.homo.core.facade.mq.consumer.SinkHandler;
@@ -9,10 +10,10 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * 一个消息分发路由管理器。
@@ -27,22 +28,48 @@ public class RouterMgr {
      */
     final Map<String, String> originToRealTopicCacheMap = new ConcurrentHashMap<>();
     /**
-     * 保存所有订阅该topic的方法引用，key为真是的Topic
+     * 保存所有订阅该topic的路由表，key为真是的Topic
+     * 路由表注册后不再修改，注册变化时整表替换，按消息class缓存的匹配结果随之失效
      */
-    final Map<String, List<RouteTarget>> topicRouter = new ConcurrentHashMap<>();
-//    /**
-//     *缓存消息的class匹配的订阅函数，避免每条消息到达时都要路由
-//     */
-//    final Map<String,Map<Class<?>,List<RouteInfo>>> topicMessageClazzRouter = new ConcurrentHashMap<>();
+    final Map<String, TopicRoute> topicRouter = new ConcurrentHashMap<>();
 
     public synchronized <T extends Serializable> void register(@NotNull String realTopic, @NotNull ReceiverSink<T> sink) throws Exception {
-        List<RouteTarget> routeTargets = topicRouter.computeIfAbsent(realTopic, k -> new ArrayList<>());
-        routeTargets.add(new RouteTarget(sink));
+        addTarget(realTopic, new RouteTarget(sink));
     }
 
-    public synchronized void register(@NotNull String realTopic, @NotNull SinkHandler handler, @NotNull Method func) {
-        List<RouteTarget> routeTargets = topicRouter.computeIfAbsent(realTopic, k -> new ArrayList<>());
-        routeTargets.add(new RouteTarget(handler, func));
+    public synchronized <T extends Serializable> void register(@NotNull String realTopic, @NotNull Class<T> messageClazz, @NotNull BatchReceiverSink<T> sink) {
+        addTarget(realTopic, new RouteTarget(sink, messageClazz));
+    }
+
+    public synchronized void register(@NotNull String realTopic, @NotNull SinkHandler handler, @NotNull Method func) throws Exception {
+        addTarget(realTopic, new RouteTarget(handler, func));
+    }
+
+    private void addTarget(String realTopic, RouteTarget routeTarget) {
+        TopicRoute oldRoute = topicRouter.get(realTopic);
+        List<RouteTarget> routeTargets = oldRoute == null ? new ArrayList<>() : new ArrayList<>(oldRoute.targets);
+        routeTargets.add(routeTarget);
+        topicRouter.put(realTopic, new TopicRoute(routeTargets));
+    }
+
+    public Set<String> getTopics() {
+        return topicRouter.keySet();
+    }
+
+    /**
+     * topic下存在批量消费函数时，该topic以批量模式消费
+     */
+    public boolean isBatchTopic(@NotNull String realTopic) {
+        TopicRoute topicRoute = topicRouter.get(realTopic);
+        return topicRoute != null && topicRoute.batch;
+    }
+
+    /**
+     * 返回topic下匹配消息类型的订阅函数
+     */
+    private List<RouteTarget> route(String realTopic, Class<?> messageClazz) {
+        TopicRoute topicRoute = topicRouter.get(realTopic);
+        return topicRoute == null ? Collections.emptyList() : topicRoute.route(messageClazz);
     }
 
     /**
@@ -54,12 +81,11 @@ public class RouterMgr {
      * @return
      */
     public  <T extends java.io.Serializable> @NotNull void topicRouter(@NotNull String realTopic, @NotNull T message, ConsumerCallback callback) {
-        List<RouteTarget> topicRouteList = topicRouter.get(realTopic);
-        for (RouteTarget routeTarget : matchMessage(topicRouteList, message.getClass())) {
+        for (RouteTarget routeTarget : route(realTopic, message.getClass())) {
             CallQueueMgr.getInstance().task(()->{
                 try {
                     routeTarget.invoke(realTopic, message, callback);
-                } catch (Exception e) {
+                } catch (Throwable e) {
                     if (callback != null) {
                         callback.confirm();
                     }
@@ -71,22 +97,116 @@ public class RouterMgr {
     }
 
     /**
-     * 返回匹配消息类型的路由信息
+     * 批量路由。消息按订阅函数分组，每个订阅函数一次拉取只投递一个任务：
+     * 批量函数整组调用一次，单条函数在同一个任务中逐条调用
+     * 每条消息被任一订阅函数确认即视为确认，全部消息确认后callback只确认一次
+     * 没有订阅函数匹配的消息直接确认，避免整批无法确认
      *
-     * @param topicRouteList
-     * @param messageClazz
-     * @return
+     * @param realTopic
+     * @param messages
+     * @param callback
      */
-    private List<RouteTarget> matchMessage(List<RouteTarget> topicRouteList, Class<? extends Serializable> messageClazz) {
-        List<RouteTarget> matchRouteList = new ArrayList<>();
-        if (topicRouteList != null) {
-            for (RouteTarget routeTarget : topicRouteList) {
-                if (routeTarget.getMessageClazz().isAssignableFrom(messageClazz)) {
-                    matchRouteList.add(routeTarget);
+    public void batchRouter(@NotNull String realTopic, @NotNull List<Serializable> messages, ConsumerCallback callback) {
+        BatchConfirm batchConfirm = new BatchConfirm(messages.size(), callback);
+        Map<RouteTarget, List<Integer>> targetIndexes = new LinkedHashMap<>();
+        List<Integer> unrouted = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            List<RouteTarget> routeTargets = route(realTopic, messages.get(i).getClass());
+            if (routeTargets.isEmpty()) {
+                unrouted.add(i);
+                continue;
+            }
+            for (RouteTarget routeTarget : routeTargets) {
+                targetIndexes.computeIfAbsent(routeTarget, k -> new ArrayList<>()).add(i);
+            }
+        }
+        for (Map.Entry<RouteTarget, List<Integer>> entry : targetIndexes.entrySet()) {
+            RouteTarget routeTarget = entry.getKey();
+            List<Integer> indexes = entry.getValue();
+            List<Serializable> group = new ArrayList<>(indexes.size());
+            for (Integer index : indexes) {
+                group.add(messages.get(index));
+            }
+            CallQueueMgr.getInstance().task(() -> invokeGroup(realTopic, routeTarget, group, indexes, batchConfirm));
+        }
+        unrouted.forEach(batchConfirm::confirm);
+    }
+
+    private void invokeGroup(String realTopic, RouteTarget routeTarget, List<Serializable> group, List<Integer> indexes, BatchConfirm batchConfirm) {
+        if (routeTarget.isBatch()) {
+            try {
+                routeTarget.invokeBatch(realTopic, group, () -> indexes.forEach(batchConfirm::confirm));
+            } catch (Throwable e) {
+                indexes.forEach(batchConfirm::confirm);
+                log.error("batchRouter message route invoke has error realTopic {} routeTarget {} size {} {}",
+                        realTopic, routeTarget, group.size(), e);
+            }
+            return;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            int index = indexes.get(i);
+            try {
+                routeTarget.invoke(realTopic, group.get(i), () -> batchConfirm.confirm(index));
+            } catch (Throwable e) {
+                batchConfirm.confirm(index);
+                log.error("batchRouter message route invoke has error realTopic {} routeTarget {} {}",
+                        realTopic, routeTarget, e);
+            }
+        }
+    }
+
+    /**
+     * 一批消息的确认状态，每条消息只计一次，全部确认后回调底层确认
+     */
+    static class BatchConfirm {
+        private final AtomicIntegerArray confirmed;
+        private final AtomicInteger remain;
+        private final ConsumerCallback callback;
+
+        BatchConfirm(int size, ConsumerCallback callback) {
+            this.confirmed = new AtomicIntegerArray(size);
+            this.remain = new AtomicInteger(size);
+            this.callback = callback;
+            if (size == 0 && callback != null) {
+                callback.confirm();
+            }
+        }
+
+        void confirm(int index) {
+            if (confirmed.compareAndSet(index, 0, 1) && remain.decrementAndGet() == 0 && callback != null) {
+                callback.confirm();
+            }
+        }
+    }
+
+    /**
+     * 一个topic的路由表，按消息的具体class缓存匹配的订阅函数
+     * 每条消息的路由只是一次ClassValue查找
+     */
+    static class TopicRoute {
+        final List<RouteTarget> targets;
+        final boolean batch;
+        final ClassValue<List<RouteTarget>> classRoutes = new ClassValue<List<RouteTarget>>() {
+            @Override
+            protected List<RouteTarget> computeValue(Class<?> messageClazz) {
+                List<RouteTarget> matchRouteList = new ArrayList<>();
+                for (RouteTarget routeTarget : targets) {
+                    if (routeTarget.getMessageClazz().isAssignableFrom(messageClazz)) {
+                        matchRouteList.add(routeTarget);
+                    }
                 }
+                return matchRouteList.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(matchRouteList);
             }
+        };
+
+        TopicRoute(List<RouteTarget> targets) {
+            this.targets = Collections.unmodifiableList(targets);
+            this.batch = targets.stream().anyMatch(RouteTarget::isBatch);
+        }
+
+        List<RouteTarget> route(Class<?> messageClazz) {
+            return classRoutes.get(messageClazz);
         }
-        return matchRouteList;
     }
 
 }
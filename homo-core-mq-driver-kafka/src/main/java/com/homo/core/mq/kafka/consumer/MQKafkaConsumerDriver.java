@@ -2,6 +2,7 @@ package com.homo.core.mq.kafka.consumer;
 
 import com.homo.core.configurable.mq.MQKafkaProperties;
 import com.homo.core.facade.mq.MQType;
+import com.homo.core.facade.mq.consumer.BatchReceiverSink;
 import com.homo.core.facade.mq.consumer.MQConsumerDriver;
 import com.homo.core.facade.mq.consumer.ReceiverSink;
 import com.homo.core.mq.kafka.consumer.woker.ConsumerWorker;
@@ -13,6 +14,7 @@ import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.utils.Bytes;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -51,11 +53,19 @@ public class MQKafkaConsumerDriver implements MQConsumerDriver {
         if (mqKafkaProperties.getAutoCommit()){
             worker = new KafkaConsumerSyncWorker(workerName,consumer,topic,sink,mqKafkaProperties.getPollWailMs());
         }else {
-            worker = new KafkaConsumerConfirmWorker(workerName,consumer,topic,sink,mqKafkaProperties.getPollWailMs(),mqKafkaProperties.getMaxPollRecords());
+            worker = new KafkaConsumerConfirmWorker(workerName,consumer,topic,sink,mqKafkaProperties.getPollWailMs(),mqKafkaProperties.getMaxPollRecords(),
+                    mqKafkaProperties.getMaxInFlightPerPartition(),mqKafkaProperties.getPartitionWorkerNum(),mqKafkaProperties.getCommitIntervalMs());
         }
         consumerWorkers.put(topic, worker);
     }
 
+    @Override
+    public void subscribeBatch(String topic, BatchReceiverSink<byte[]> sink) {
+        //单条回调只在异常时使用，批量模式下每次poll的消息整批回调
+        subscribe(topic, (_topic, bytes, callback) -> sink.onSinkBatch(_topic, Collections.singletonList(bytes), callback));
+        consumerWorkers.get(topic).setBatchSink(sink);
+    }
+
     @Override
     public boolean haveSubscribe(String topic) {
         return consumerWorkers.containsKey(topic);
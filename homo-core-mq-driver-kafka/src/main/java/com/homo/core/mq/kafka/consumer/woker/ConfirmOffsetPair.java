@@ -3,56 +3,105 @@ package com.homo.core.mq.kafka.consumer.woker;
 
 import lombok.ToString;
 
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
-@ToString
+/**
+ * 单个分区的offset确认状态
+ * 记录已下沉未确认的offset，可提交的位置是最小的未确认offset（全部确认时为最后消费offset+1），
+ * 确认可以乱序，水位只按连续确认的offset推进
+ */
+@ToString(exclude = "pending")
 public class ConfirmOffsetPair {
-    private int partition;
+    private final int partition;
+    /**
+     * 已下沉未确认的offset
+     */
+    private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<>();
+    /**
+     * 未确认的消息数
+     */
+    final AtomicInteger inFlight = new AtomicInteger(0);
     /**
      * 消费到的offset
      */
-    final AtomicLong consumeOffset = new AtomicLong(0);
+    final AtomicLong consumeOffset = new AtomicLong(-1);
     /**
-     * 被确认的消息offset累计
+     * 已提交的offset（下一条要消费的位置）
      */
-    final AtomicLong confirmOffset = new AtomicLong(0);
-
+    final AtomicLong commitOffset = new AtomicLong(-1);
     /**
-     * 已提交的消息offset
+     * 该分区是否因未确认消息过多被暂停
      */
-    final AtomicLong commitOffset = new AtomicLong(0);
+    private volatile boolean paused;
 
-    public ConfirmOffsetPair(int partition,long first, long last) {
+    public ConfirmOffsetPair(int partition, long first) {
         this.partition = partition;
-        consumeOffset.set(last);
-        confirmOffset.set(first - 1); //因为确认一条此值就加1，confirmOffset应该是first的前一个offset位置
-        commitOffset.set(confirmOffset.get()); //初始提交的位置设置与confirmSet一致
+        //初始提交位置为第一条消息的位置，即消费者当前已提交（或重置到）的位置
+        this.commitOffset.set(first);
     }
 
-    public static ConfirmOffsetPair of(int partition,long first,long last){
-        return new ConfirmOffsetPair(partition,first,last);
+    public static ConfirmOffsetPair of(int partition, long first) {
+        return new ConfirmOffsetPair(partition, first);
+    }
+
+    /**
+     * 记录一条已下沉的消息，只在拉取线程调用
+     */
+    public void addConsumed(long offset) {
+        pending.add(offset);
+        inFlight.incrementAndGet();
+        consumeOffset.set(offset);
     }
 
-    public long addConsumerCount(int count){
-        return consumeOffset.addAndGet(count);
+    /**
+     * 确认一条消息
+     *
+     * @return false表示该offset已确认过
+     */
+    public boolean confirm(long offset) {
+        if (pending.remove(offset)) {
+            inFlight.decrementAndGet();
+            return true;
+        }
+        return false;
     }
-    public long getConsumerCount(){
-        return consumeOffset.get();
+
+    public int getInFlight() {
+        return inFlight.get();
     }
 
-    public long incrementConfirmCount(){
-        return confirmOffset.incrementAndGet();
+    /**
+     * 可提交的offset（下一条要消费的位置）
+     */
+    public long getWatermark() {
+        //新消息只在拉取线程加入，这里也只在拉取线程调用，不会与addConsumed交错
+        long consumed = consumeOffset.get();
+        Long first = pending.ceiling(Long.MIN_VALUE);
+        if (first != null) {
+            return first;
+        }
+        return consumed < 0 ? commitOffset.get() : Math.max(consumed + 1, commitOffset.get());
     }
 
-    public long getConfirmCount(){
-        return confirmOffset.get();
+    public int getPartition() {
+        return partition;
     }
 
-    public void setCommitOffset(long newCommitOffset){
+    public void setCommitOffset(long newCommitOffset) {
         commitOffset.set(newCommitOffset);
     }
 
-    public long getCommitOffset(){
+    public long getCommitOffset() {
         return commitOffset.get();
     }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
 }
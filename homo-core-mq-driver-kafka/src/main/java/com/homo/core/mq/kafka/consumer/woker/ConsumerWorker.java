@@ -1,5 +1,6 @@
 package com.homo.core.mq.kafka.consumer.woker;
 
+import com.homo.core.facade.mq.consumer.BatchReceiverSink;
 import com.homo.core.facade.mq.consumer.ReceiverSink;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
@@ -11,6 +12,10 @@ public abstract class ConsumerWorker {
     protected String topic;
     protected KafkaConsumer<String, Bytes> consumer;
     protected ReceiverSink<byte[]> sink;
+    /**
+     * 批量下沉，不为空时每次poll的消息整批回调
+     */
+    protected BatchReceiverSink<byte[]> batchSink;
     protected Status status;
     private Thread workThread = null;
 
@@ -22,6 +27,10 @@ public abstract class ConsumerWorker {
         this.status = Status.INIT;
     }
 
+    public void setBatchSink(BatchReceiverSink<byte[]> batchSink) {
+        this.batchSink = batchSink;
+    }
+
     public abstract void process();
 
     //启动消费
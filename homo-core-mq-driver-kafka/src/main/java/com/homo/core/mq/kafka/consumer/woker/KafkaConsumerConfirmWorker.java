@@ -2,6 +2,7 @@ package com.homo.core.mq.kafka.consumer.woker;
 
 import com.homo.core.facade.mq.consumer.ConsumerCallback;
 import com.homo.core.facade.mq.consumer.ReceiverSink;
+import com.homo.core.utils.origin.thread.ThreadFactoryBuilder;
 import org.apache.kafka.clients.consumer.*;
 import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
@@ -20,31 +21,54 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 手动确认模式的消费者worker
+ * 1. 按分区记录未确认的消息，某个分区未确认数超过预算时pause该分区，回落到一半以下时resume，热点分区不会拖住其他分区
+ * 2. 按分区提交连续确认的offset水位，只在水位推进时提交；分区被回收时先提交其水位，减少rebalance后的重复消费
+ * 3. 可选按分区编号取模分组的下沉线程，拉取线程只负责poll、pause/resume和提交
+ */
 public class KafkaConsumerConfirmWorker extends ConsumerWorker {
     static final Logger log = LoggerFactory.getLogger(KafkaConsumerConfirmWorker.class);
     static final Marker marker = MarkerFactory.getMarker("ConsumeWorker");
-    /**
-     * 每10秒上报一次数据。
-     */
-    public static final int COMMIT_OFFSET_INTERVAL = 10;
     /**
      * 每60秒打印一次信息。
      */
     public static final int PRINT_INFO_INTERVAL = 60;
+    /**
+     * 有分区被暂停时的poll等待时间，确认回落后尽快恢复拉取
+     */
+    public static final long PAUSED_POLL_WAIT_MS = 10;
+    final AtomicLong consumeCount = new AtomicLong(0);
     final AtomicLong confirmCount = new AtomicLong(0);
     final AtomicInteger partitionRevokedCount = new AtomicInteger(0);
     final AtomicInteger partitionAssignedCount = new AtomicInteger(0);
     /**
      * 消费者poll的时间参数
      */
-    private final long pollWaitMs;
     private final Duration pollWaitDuration;
-    private final int maxPollRecords;
+    private final Duration pausedPollWaitDuration;
+    /**
+     * 单个分区允许未确认的最大消息数，以及恢复拉取的阈值
+     */
+    private final int maxInFlightPerPartition;
+    private final int resumeInFlight;
+    /**
+     * 提交offset的最小间隔
+     */
+    private final long commitIntervalMs;
+    private final int partitionWorkerNum;
+    /**
+     * 分区下沉线程，为空时在拉取线程中下沉
+     */
+    private ExecutorService[] partitionWorkers;
 
     /**
      * 最近一次打印提交消息的时间
@@ -55,35 +79,51 @@ public class KafkaConsumerConfirmWorker extends ConsumerWorker {
      */
     private Instant lastOffsetCommitTime;
     /**
-     * 此topic所有partition的offset缓存map。保存这一批消息的开头与结束offset
+     * 此topic所有已分配partition的确认状态
      */
-    private final Map<TopicPartition, ConfirmOffsetPair> offsets = new ConcurrentHashMap<>(64);
+    final Map<TopicPartition, ConfirmOffsetPair> offsets = new ConcurrentHashMap<>(64);
     /**
      * Kafka消费者匀衡监听者
      */
-    private ConsumerRebalanceListener rebalanceListener;
+    ConsumerRebalanceListener rebalanceListener;
 
-    public KafkaConsumerConfirmWorker(String name,KafkaConsumer<String, Bytes> consumer, String topic, ReceiverSink<byte[]> sink, long pollWaitMs, int maxPollRecords) {
-        super(name,consumer, topic, sink);
-        this.pollWaitMs = pollWaitMs;
+    public KafkaConsumerConfirmWorker(String name, KafkaConsumer<String, Bytes> consumer, String topic, ReceiverSink<byte[]> sink,
+                                      long pollWaitMs, int maxPollRecords, int maxInFlightPerPartition, int partitionWorkerNum, long commitIntervalMs) {
+        super(name, consumer, topic, sink);
         this.pollWaitDuration = Duration.ofMillis(pollWaitMs);
-        this.maxPollRecords = maxPollRecords;
+        this.pausedPollWaitDuration = Duration.ofMillis(Math.min(pollWaitMs, PAUSED_POLL_WAIT_MS));
+        this.maxInFlightPerPartition = maxInFlightPerPartition > 0 ? maxInFlightPerPartition : maxPollRecords;
+        this.resumeInFlight = this.maxInFlightPerPartition / 2;
+        this.partitionWorkerNum = partitionWorkerNum;
+        this.commitIntervalMs = commitIntervalMs;
     }
 
     public void init() {
         this.lastPrintTime = Instant.now();
         this.lastOffsetCommitTime = Instant.now();
+        if (partitionWorkerNum > 0) {
+            ThreadFactory threadFactory = ThreadFactoryBuilder.create().setNamePrefix(name + "-partition-").build();
+            partitionWorkers = new ExecutorService[partitionWorkerNum];
+            for (int i = 0; i < partitionWorkerNum; i++) {
+                partitionWorkers[i] = Executors.newSingleThreadExecutor(threadFactory);
+            }
+        }
         this.rebalanceListener = new ConsumerRebalanceListener() {
             @Override
             public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
                 partitionRevokedCount.incrementAndGet();
                 if (partitions != null) {
-                    log.warn(marker, "{} partitions revoked topic {} partitions {} ",name, topic, partitions);
+                    log.warn(marker, "{} partitions revoked topic {} partitions {} ", name, topic, partitions);
                 }
                 try {
-                    //当发生rebalance时，提交全部offset，不管offset是否有确认成功
+                    //分区被回收前提交已确认的水位，新的消费者从水位开始消费
+                    commitOffsets(partitions);
                 } catch (Exception e) {
-                    log.error(marker, "{} commitOffsets after partition revoked exception ",name, e);
+                    log.error(marker, "{} commitOffsets after partition revoked exception ", name, e);
+                } finally {
+                    if (partitions != null) {
+                        partitions.forEach(offsets::remove);
+                    }
                 }
             }
 
@@ -91,7 +131,7 @@ public class KafkaConsumerConfirmWorker extends ConsumerWorker {
             public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
                 partitionAssignedCount.incrementAndGet();
                 if (partitions != null) {
-                    log.warn(marker, "{} partitions assigned topic {} partitions {} ",name, topic, partitions);
+                    log.warn(marker, "{} partitions assigned topic {} partitions {} ", name, topic, partitions);
                 }
             }
         };
@@ -100,61 +140,17 @@ public class KafkaConsumerConfirmWorker extends ConsumerWorker {
 
     @Override
     public void process() {
-        long consumeCount = 0;
-        final AtomicLong confirmCount = new AtomicLong(0);
         try {
             init();
             while (status != Status.TERMINATED) {
                 try {
-                    ConsumerRecords<String, Bytes> records = receive();
-                    if (records.isEmpty()) {
-                        maybeCommitOffsets();
-                        continue;
-                    }
-                    log.debug(marker,"{} receive size receive topic {} size {} partitions {}", name,topic, records.count(), records.partitions());
-                    consumeCount = consumeCount + records.count();
-                    for (TopicPartition partition : records.partitions()) {
-                        List<ConsumerRecord<String, Bytes>> partitionRecords = records.records(partition);
-                        if (!partitionRecords.isEmpty()) {
-                            for (ConsumerRecord<String, Bytes> record : partitionRecords) {
-                                Bytes value = record.value();
-                                byte[] bytes = value.get();
-                                sink.onSink(topic,bytes, new ConsumerCallback() {
-                                    final AtomicBoolean confirmed = new AtomicBoolean(false);
-                                    //这么实现在所有sink中只需确认一次
-                                    @Override
-                                    public void confirm() {
-                                        if (confirmed.get()) {
-                                            String msg = String.format("the same record cannot be confirmed more than once, please check the code: topic=%s,partition=%s,offset=%s", record.topic(), record.partition(), record.offset());
-                                            log.warn(marker, msg);
-                                            return;
-//                                            throw new RuntimeException(msg);
-                                        }
-                                        confirmed.set(true);
-                                        confirmCount.incrementAndGet();
-                                        ConfirmOffsetPair confirmOffsetPair = offsets.get(partition);
-                                        if (confirmOffsetPair != null) {
-                                            confirmOffsetPair.incrementConfirmCount();
-                                        }
-                                    }
-                                });
-                            }
-                        }
-                    }
-
-                    //如果接收的消息总数-被确认的消息位数>maxPollRecords，则不要再继续消费
-                    long remainCount;
-                    int retry = 0;
-                    while ((remainCount = consumeCount - confirmCount.get()) > maxPollRecords) {
-                        // 如果超过maxPollRecords的消息没有被确认，用10毫秒等待，
-                        TimeUnit.MILLISECONDS.sleep(pollWaitMs);
-                        retry++;
-                        if (retry % 2000 == 0) {
-                            log.error(marker, "{} total number of currently received records: {}, total number of confirmed messages: {}. More than {} messages have not been confirmed within 2 seconds ",
-                                    name,consumeCount, confirmCount, remainCount);
-                        }
+                    ConsumerRecords<String, Bytes> records = consumer.poll(consumer.paused().isEmpty() ? pollWaitDuration : pausedPollWaitDuration);
+                    if (!records.isEmpty()) {
+                        log.debug(marker, "{} receive size receive topic {} size {} partitions {}", name, topic, records.count(), records.partitions());
+                        dispatch(records);
                     }
-                    //尝试提交offset。每10秒提交一次offset。不应该放到回调中去确认，因为回调是在业务线程中
+                    adjustPause();
+                    //尝试提交offset。不应该放到回调中去确认，因为回调是在业务线程中
                     maybeCommitOffsets();
                 } catch (RebalanceInProgressException e) {
                     /* auther:  liulang
@@ -171,91 +167,183 @@ public class KafkaConsumerConfirmWorker extends ConsumerWorker {
                      *                "consumer is undergoing a rebalance for auto partition assignment. You can try completing the rebalance " +
                      *                "by calling poll() and then retry the operation."));
                      */
-                    log.error(marker, "{} process receive error rebalance in progress topic {} e", name,topic, e);
+                    log.error(marker, "{} process receive error rebalance in progress topic {} e", name, topic, e);
                     //暂停1秒，等等Kafka重新平衡完成
                     TimeUnit.SECONDS.sleep(1);
                 }
             }
         } catch (WakeupException e) {
-            log.warn(marker, "kafka consumer {} throw wakeup exception, ready to close topic {}",name, topic);
+            log.warn(marker, "kafka consumer {} throw wakeup exception, ready to close topic {}", name, topic);
         } catch (Throwable throwable) {
-            log.warn(marker, "kafka consumer {} throw  topic {}", name,topic, throwable);
+            log.warn(marker, "kafka consumer {} throw  topic {}", name, topic, throwable);
         } finally {
             try {
-                //提交剩余全部offset，就算没有确认过的消息offset也要提交
-                commitOffsets(false);
+                //提交已确认的水位，未确认的消息由下一个消费者重新消费
+                commitOffsets(offsets.keySet());
+                if (partitionWorkers != null) {
+                    for (ExecutorService partitionWorker : partitionWorkers) {
+                        partitionWorker.shutdownNow();
+                    }
+                }
                 //关闭消费者以及业务处理
                 consumer.close();
             } catch (Throwable throwable) {
-                log.warn(marker, "kafka consumer {} close throwable topic {}", name,topic, throwable);
+                log.warn(marker, "kafka consumer {} close throwable topic {}", name, topic, throwable);
+            }
+        }
+    }
+
+    /**
+     * 记录各分区下沉的offset，并按分区投递到下沉线程
+     */
+    void dispatch(ConsumerRecords<String, Bytes> records) {
+        consumeCount.addAndGet(records.count());
+        for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<String, Bytes>> partitionRecords = records.records(partition);
+            if (partitionRecords.isEmpty()) {
+                continue;
+            }
+            ConfirmOffsetPair confirmOffsetPair = offsets.computeIfAbsent(partition, tp -> ConfirmOffsetPair.of(tp.partition(), partitionRecords.get(0).offset()));
+            for (ConsumerRecord<String, Bytes> record : partitionRecords) {
+                confirmOffsetPair.addConsumed(record.offset());
+            }
+            if (batchSink != null) {
+                submit(partition, () -> sinkBatch(confirmOffsetPair, partitionRecords));
+            } else {
+                submit(partition, () -> sinkRecords(confirmOffsetPair, partitionRecords));
             }
         }
     }
 
-    public ConsumerRecords<String, Bytes> receive() {
-        ConsumerRecords<String, Bytes> records = consumer.poll(pollWaitDuration);
-        if (!records.isEmpty()) {
-            synchronized (offsets) {
-                //如果有消费到消息，更新offsets数据为各分区第一条和最后一条消息的offset
-                for (TopicPartition topicPartition : records.partitions()) {
-                    List<ConsumerRecord<String, Bytes>> partitionRecords = records.records(topicPartition);
-                    if (!partitionRecords.isEmpty()) {
-                        ConfirmOffsetPair confirmOffsetPair = offsets.get(topicPartition);
-                        if (confirmOffsetPair != null) {
-                            confirmOffsetPair.addConsumerCount(partitionRecords.size());
-                        } else {
-                            long beginOffset = partitionRecords.get(0).offset();
-                            long lastOffset = partitionRecords.get(partitionRecords.size() - 1).offset();
-                            int partition = topicPartition.partition();
-                            offsets.put(topicPartition, ConfirmOffsetPair.of(partition,beginOffset, lastOffset));
-                        }
+    private void submit(TopicPartition partition, Runnable task) {
+        if (partitionWorkers == null) {
+            task.run();
+            return;
+        }
+        partitionWorkers[partition.partition() % partitionWorkers.length].execute(() -> {
+            try {
+                task.run();
+            } catch (Throwable throwable) {
+                log.error(marker, "{} partition worker sink error topic {} partition {}", name, topic, partition, throwable);
+            }
+        });
+    }
+
+    /**
+     * 逐条回调，每条消息单独确认
+     */
+    private void sinkRecords(ConfirmOffsetPair confirmOffsetPair, List<ConsumerRecord<String, Bytes>> partitionRecords) {
+        for (ConsumerRecord<String, Bytes> record : partitionRecords) {
+            sink.onSink(topic, record.value().get(), new ConsumerCallback() {
+                //这么实现在所有sink中只需确认一次
+                @Override
+                public void confirm() {
+                    if (!confirmOffsetPair.confirm(record.offset())) {
+                        log.warn(marker, "the same record cannot be confirmed more than once, please check the code: topic={},partition={},offset={}", record.topic(), record.partition(), record.offset());
+                        return;
                     }
+                    confirmCount.incrementAndGet();
+                }
+            });
+        }
+    }
+
+    /**
+     * 整批回调，一个分区一次poll的消息只确认一次
+     */
+    private void sinkBatch(ConfirmOffsetPair confirmOffsetPair, List<ConsumerRecord<String, Bytes>> partitionRecords) {
+        List<byte[]> batch = new ArrayList<>(partitionRecords.size());
+        for (ConsumerRecord<String, Bytes> record : partitionRecords) {
+            batch.add(record.value().get());
+        }
+        batchSink.onSinkBatch(topic, batch, new ConsumerCallback() {
+            final AtomicBoolean confirmed = new AtomicBoolean(false);
+
+            @Override
+            public void confirm() {
+                if (!confirmed.compareAndSet(false, true)) {
+                    log.warn(marker, "{} the same batch cannot be confirmed more than once, please check the code: topic={},partition={},size={}", name, topic, confirmOffsetPair.getPartition(), batch.size());
+                    return;
                 }
+                for (ConsumerRecord<String, Bytes> record : partitionRecords) {
+                    confirmOffsetPair.confirm(record.offset());
+                }
+                confirmCount.addAndGet(partitionRecords.size());
             }
+        });
+    }
+
+    /**
+     * 未确认数超过预算的分区暂停拉取，回落到一半以下的分区恢复拉取
+     */
+    void adjustPause() {
+        List<TopicPartition> toPause = new ArrayList<>();
+        List<TopicPartition> toResume = new ArrayList<>();
+        for (Map.Entry<TopicPartition, ConfirmOffsetPair> entry : offsets.entrySet()) {
+            ConfirmOffsetPair confirmOffsetPair = entry.getValue();
+            int inFlight = confirmOffsetPair.getInFlight();
+            if (!confirmOffsetPair.isPaused() && inFlight >= maxInFlightPerPartition) {
+                confirmOffsetPair.setPaused(true);
+                toPause.add(entry.getKey());
+            } else if (confirmOffsetPair.isPaused() && inFlight <= resumeInFlight) {
+                confirmOffsetPair.setPaused(false);
+                toResume.add(entry.getKey());
+            }
+        }
+        if (!toPause.isEmpty()) {
+            consumer.pause(toPause);
+            log.info(marker, "{} pause topic {} partitions {} maxInFlight {} consumeCount {} confirmCount {}",
+                    name, topic, toPause, maxInFlightPerPartition, consumeCount, confirmCount);
+        }
+        if (!toResume.isEmpty()) {
+            consumer.resume(toResume);
+            log.info(marker, "{} resume topic {} partitions {}", name, topic, toResume);
         }
-        return records;
     }
 
     public void maybeCommitOffsets() throws Exception {
-        if (Duration.between(lastOffsetCommitTime, Instant.now()).getSeconds() > COMMIT_OFFSET_INTERVAL) {
-            commitOffsets(true);
+        if (Duration.between(lastOffsetCommitTime, Instant.now()).toMillis() >= commitIntervalMs) {
+            commitOffsets(offsets.keySet());
             lastOffsetCommitTime = Instant.now();
         }
     }
 
-    private synchronized void commitOffsets(boolean onlyConfirm) throws Exception {
+    private synchronized void commitOffsets(Collection<TopicPartition> partitions) throws Exception {
+        if (partitions == null || partitions.isEmpty()) {
+            return;
+        }
         int retry = 0;
         boolean needRetry = true;
         while (needRetry) {
             try {
-                doCommitOffset(onlyConfirm);
+                doCommitOffset(partitions);
                 needRetry = false;
                 lastOffsetCommitTime = Instant.now();
             } catch (WakeupException e) {
                 // we only call wakeup() once to close the consumer,
                 // so if we catch it in commit we can safely retry
                 // and re-throw to break the loop
-                commitOffsets(onlyConfirm);
+                commitOffsets(partitions);
                 throw e;
             } catch (TimeoutException e) {
                 try {
                     Map<String, List<PartitionInfo>> visibleTopics = consumer.listTopics();
                     retainOffsets(visibleTopics);
-                    log.warn(marker, "{} committing offsets timed out, retainOffsets: ",name, e);
+                    log.warn(marker, "{} committing offsets timed out, retainOffsets: ", name, e);
                 } catch (Exception ex) {
-                    log.warn(marker, "{} Failed to list all authorized topics after committing offsets timed out: ",name, ex);
+                    log.warn(marker, "{} Failed to list all authorized topics after committing offsets timed out: ", name, ex);
                 }
                 retry++;
                 log.warn(marker, "{} Failed to commit offsets because the offset commit request processing can not be completed in time. " +
                         "If you see this regularly, it could indicate that you need to increase the consumer's ConsumerConfig.DEFAULT_API_TIMEOUT_MS_CONFIG " +
-                        "Last successful offset commit timestamp={}, retry count={}",name, LocalDateTime.ofInstant(lastOffsetCommitTime, ZoneId.systemDefault()), retry);
+                        "Last successful offset commit timestamp={}, retry count={}", name, LocalDateTime.ofInstant(lastOffsetCommitTime, ZoneId.systemDefault()), retry);
                 TimeUnit.MILLISECONDS.sleep(100);
             } catch (CommitFailedException e) {
                 needRetry = false;
                 log.error(marker, "{} Failed to commit offsets because the consumer group has rebalanced and assigned partitions to " +
                         "another instance. If you see this regularly, it could indicate that you need to either increase " +
                         "the consumer's SESSION_TIMEOUT_MS_CONFIG or reduce the number of records " +
-                        "handled on each iteration with MAX_POLL_RECORDS_CONFIG",name);
+                        "handled on each iteration with MAX_POLL_RECORDS_CONFIG", name);
             }
         }
     }
@@ -273,44 +361,36 @@ public class KafkaConsumerConfirmWorker extends ConsumerWorker {
     }
 
     /**
-     * 提交分区的offset
-     * Params:
-     * onlyConfirm – true只提交确认过的offset。 false提交消费过的所有offset
+     * 提交分区已确认的水位，水位没有推进的分区不提交
      *
-     * @param onlyConfirm
+     * @param partitions
      */
-    private void doCommitOffset(boolean onlyConfirm) {
-        if (offsets.isEmpty()) {
-            return;
-        }
-        synchronized (offsets) {
-            Map<TopicPartition, OffsetAndMetadata> commitMaps = new HashMap<>();
-            for (Map.Entry<TopicPartition, ConfirmOffsetPair> entry : offsets.entrySet()) {
-                TopicPartition topicPartition = entry.getKey();
-                ConfirmOffsetPair confirmOffsetPair = entry.getValue();
-                //根据onlyConfirm的值，判断提交的offset是消费过的offset还是确认过的offset
-                long toCommitOffset = onlyConfirm ? confirmOffsetPair.getConfirmCount() : confirmOffsetPair.getConsumerCount();
-                long currentCommitOffset = confirmOffsetPair.getCommitOffset();
-                if (currentCommitOffset < toCommitOffset) {//需要提交offset
-                    commitMaps.put(topicPartition, new OffsetAndMetadata(toCommitOffset + 1));
-                }
+    private void doCommitOffset(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> commitMaps = new HashMap<>();
+        for (TopicPartition topicPartition : partitions) {
+            ConfirmOffsetPair confirmOffsetPair = offsets.get(topicPartition);
+            if (confirmOffsetPair == null) {
+                continue;
             }
-            if (Duration.between(lastPrintTime, Instant.now()).getSeconds() >= PRINT_INFO_INTERVAL) {
-                if (log.isInfoEnabled()) {
-                    log.info(marker, "{} doCommitOffset {} commit onlyConfirm {} offset {} commitMaps {}",name, topic, onlyConfirm, offsets, commitMaps);
-                }
-                lastPrintTime = Instant.now();
+            long watermark = confirmOffsetPair.getWatermark();
+            if (confirmOffsetPair.getCommitOffset() < watermark) {//需要提交offset
+                commitMaps.put(topicPartition, new OffsetAndMetadata(watermark));
             }
-            if (!commitMaps.isEmpty()) {
-                consumer.commitSync(commitMaps);
-                //提交成功，更新commitOffset
-                for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : commitMaps.entrySet()) {
-                    offsets.get(entry.getKey()).setCommitOffset(entry.getValue().offset());
-                }
+        }
+        if (Duration.between(lastPrintTime, Instant.now()).getSeconds() >= PRINT_INFO_INTERVAL) {
+            if (log.isInfoEnabled()) {
+                log.info(marker, "{} doCommitOffset {} offset {} commitMaps {} consumeCount {} confirmCount {}", name, topic, offsets, commitMaps, consumeCount, confirmCount);
             }
-            //如果是提交全部消费过的offset，原有的offset要清空
-            if (!onlyConfirm) {
-                offsets.clear();
+            lastPrintTime = Instant.now();
+        }
+        if (!commitMaps.isEmpty()) {
+            consumer.commitSync(commitMaps);
+            //提交成功，更新commitOffset
+            for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : commitMaps.entrySet()) {
+                ConfirmOffsetPair confirmOffsetPair = offsets.get(entry.getKey());
+                if (confirmOffsetPair != null) {
+                    confirmOffsetPair.setCommitOffset(entry.getValue().offset());
+                }
             }
         }
     }
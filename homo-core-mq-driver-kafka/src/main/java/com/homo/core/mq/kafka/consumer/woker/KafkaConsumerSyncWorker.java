@@ -88,6 +88,15 @@ public class KafkaConsumerSyncWorker extends ConsumerWorker {
                     mayCommitOffsets();
                     continue;
                 }
+                if (batchSink != null) {
+                    List<byte[]> batch = new ArrayList<>(records.count());
+                    for (ConsumerRecord<String, Bytes> record : records) {
+                        batch.add(record.value().get());
+                    }
+                    batchSink.onSinkBatch(topic, batch, () -> log.debug(marker, "{} process batchSink confirm is unnecessary,The offset is automatically submitted", name));
+                    mayCommitOffsets();
+                    continue;
+                }
                 // sink自己处理异常。不要抛出异常
                 for (ConsumerRecord<String, Bytes> record : records) {
                     sink.onSink(topic, record.value().get(), new ConsumerCallback() {
@@ -49,6 +49,7 @@ public class MQKafkaProducerDriverFactory implements MQProducerDriverFactory {
         properties.put(ProducerConfig.BUFFER_MEMORY_CONFIG, mqKafkaProperties.getBufferMemory());
         properties.put(ProducerConfig.BATCH_SIZE_CONFIG, mqKafkaProperties.getBatchSize());
         properties.put(ProducerConfig.LINGER_MS_CONFIG, mqKafkaProperties.getLingerMs());
+        properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, mqKafkaProperties.getCompressionType());
         properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
         properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
         return properties;
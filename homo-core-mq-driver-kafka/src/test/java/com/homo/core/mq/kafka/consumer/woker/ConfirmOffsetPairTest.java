@@ -0,0 +1,81 @@
+package com.homo.core.mq.kafka.consumer.woker;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ConfirmOffsetPairTest {
+
+    @Test
+    public void testInitWatermark() {
+        ConfirmOffsetPair pair = ConfirmOffsetPair.of(0, 100);
+        //还没有消费时水位是初始提交位置
+        Assertions.assertEquals(100, pair.getWatermark());
+        Assertions.assertEquals(100, pair.getCommitOffset());
+        Assertions.assertEquals(0, pair.getInFlight());
+    }
+
+    @Test
+    public void testOutOfOrderConfirm() {
+        ConfirmOffsetPair pair = ConfirmOffsetPair.of(0, 5);
+        for (long offset = 5; offset < 10; offset++) {
+            pair.addConsumed(offset);
+        }
+        Assertions.assertEquals(5, pair.getInFlight());
+        Assertions.assertEquals(5, pair.getWatermark());
+        //乱序确认不推进水位
+        Assertions.assertTrue(pair.confirm(7));
+        Assertions.assertTrue(pair.confirm(9));
+        Assertions.assertEquals(5, pair.getWatermark());
+        Assertions.assertEquals(3, pair.getInFlight());
+        //最小的未确认offset确认后，水位推进到下一个未确认的offset
+        Assertions.assertTrue(pair.confirm(5));
+        Assertions.assertEquals(6, pair.getWatermark());
+        Assertions.assertTrue(pair.confirm(6));
+        Assertions.assertEquals(8, pair.getWatermark());
+        Assertions.assertTrue(pair.confirm(8));
+        //全部确认后水位是最后消费的offset+1
+        Assertions.assertEquals(10, pair.getWatermark());
+        Assertions.assertEquals(0, pair.getInFlight());
+    }
+
+    @Test
+    public void testDuplicateConfirm() {
+        ConfirmOffsetPair pair = ConfirmOffsetPair.of(1, 0);
+        pair.addConsumed(0);
+        pair.addConsumed(1);
+        Assertions.assertTrue(pair.confirm(0));
+        Assertions.assertFalse(pair.confirm(0));
+        //没有消费过的offset不能确认
+        Assertions.assertFalse(pair.confirm(5));
+        Assertions.assertEquals(1, pair.getInFlight());
+        Assertions.assertEquals(1, pair.getWatermark());
+    }
+
+    @Test
+    public void testGap() {
+        //offset不连续（压缩topic或事务标记）时以未确认的offset为准
+        ConfirmOffsetPair pair = ConfirmOffsetPair.of(0, 10);
+        pair.addConsumed(10);
+        pair.addConsumed(13);
+        pair.addConsumed(20);
+        pair.confirm(10);
+        Assertions.assertEquals(13, pair.getWatermark());
+        pair.confirm(20);
+        Assertions.assertEquals(13, pair.getWatermark());
+        pair.confirm(13);
+        Assertions.assertEquals(21, pair.getWatermark());
+    }
+
+    @Test
+    public void testCommitOffset() {
+        ConfirmOffsetPair pair = ConfirmOffsetPair.of(0, 0);
+        pair.addConsumed(0);
+        pair.confirm(0);
+        Assertions.assertEquals(1, pair.getWatermark());
+        pair.setCommitOffset(1);
+        Assertions.assertEquals(1, pair.getCommitOffset());
+        //水位不会回退到已提交位置之前
+        pair.setCommitOffset(5);
+        Assertions.assertEquals(5, pair.getWatermark());
+    }
+}
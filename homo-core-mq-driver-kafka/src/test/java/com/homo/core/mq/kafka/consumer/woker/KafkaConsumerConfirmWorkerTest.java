@@ -0,0 +1,136 @@
+package com.homo.core.mq.kafka.consumer.woker;
+
+import com.homo.core.facade.mq.consumer.ConsumerCallback;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Bytes;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class KafkaConsumerConfirmWorkerTest {
+    private static final String TOPIC = "test-topic";
+    private static final int MAX_IN_FLIGHT = 4;
+    private final TopicPartition p0 = new TopicPartition(TOPIC, 0);
+    private final TopicPartition p1 = new TopicPartition(TOPIC, 1);
+    private final Map<Long, ConsumerCallback> callbacks = new HashMap<>();
+    private KafkaConsumer<String, Bytes> consumer;
+    private KafkaConsumerConfirmWorker worker;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        consumer = Mockito.mock(KafkaConsumer.class);
+        //在拉取线程下沉，提交间隔为0每次都尝试提交
+        worker = new KafkaConsumerConfirmWorker("test", consumer, TOPIC,
+                (topic, message, callback) -> callbacks.put((long) message[0] + (long) message[1] * 1000, callback),
+                100, 10, MAX_IN_FLIGHT, 0, 0);
+        worker.init();
+    }
+
+    /**
+     * 消息内容是[offset, partition]，用于找到对应的确认回调
+     */
+    private static ConsumerRecords<String, Bytes> records(TopicPartition partition, long... offsets) {
+        List<ConsumerRecord<String, Bytes>> list = new ArrayList<>();
+        for (long offset : offsets) {
+            byte[] value = new byte[]{(byte) offset, (byte) partition.partition()};
+            list.add(new ConsumerRecord<>(partition.topic(), partition.partition(), offset, null, Bytes.wrap(value)));
+        }
+        return new ConsumerRecords<>(Collections.singletonMap(partition, list));
+    }
+
+    private void confirm(TopicPartition partition, long offset) {
+        callbacks.get(offset + partition.partition() * 1000L).confirm();
+    }
+
+    @Test
+    public void testPauseResume() {
+        worker.dispatch(records(p0, 0, 1, 2, 3));
+        worker.dispatch(records(p1, 0));
+        worker.adjustPause();
+        //只暂停超过预算的分区
+        Mockito.verify(consumer).pause(Collections.singletonList(p0));
+        Assertions.assertTrue(worker.offsets.get(p0).isPaused());
+        Assertions.assertFalse(worker.offsets.get(p1).isPaused());
+        //已暂停的分区不重复暂停
+        worker.adjustPause();
+        Mockito.verify(consumer, Mockito.times(1)).pause(Mockito.anyCollection());
+        //回落到一半以下才恢复
+        confirm(p0, 2);
+        worker.adjustPause();
+        Mockito.verify(consumer, Mockito.never()).resume(Mockito.anyCollection());
+        confirm(p0, 0);
+        worker.adjustPause();
+        Mockito.verify(consumer).resume(Collections.singletonList(p0));
+        Assertions.assertFalse(worker.offsets.get(p0).isPaused());
+    }
+
+    @Test
+    public void testCommitWatermark() throws Exception {
+        worker.dispatch(records(p0, 10, 11, 12, 13, 14));
+        //乱序确认，水位没有推进时不提交
+        confirm(p0, 12);
+        confirm(p0, 11);
+        worker.maybeCommitOffsets();
+        Mockito.verify(consumer, Mockito.never()).commitSync(Mockito.anyMap());
+        confirm(p0, 10);
+        worker.maybeCommitOffsets();
+        Mockito.verify(consumer).commitSync(Collections.singletonMap(p0, new OffsetAndMetadata(13)));
+        Assertions.assertEquals(13, worker.offsets.get(p0).getCommitOffset());
+        //水位不变不重复提交
+        worker.maybeCommitOffsets();
+        Mockito.verify(consumer, Mockito.times(1)).commitSync(Mockito.anyMap());
+        confirm(p0, 14);
+        confirm(p0, 13);
+        worker.maybeCommitOffsets();
+        Mockito.verify(consumer).commitSync(Collections.singletonMap(p0, new OffsetAndMetadata(15)));
+    }
+
+    @Test
+    public void testRevokeCommit() {
+        worker.dispatch(records(p0, 0, 1, 2));
+        worker.dispatch(records(p1, 5));
+        confirm(p0, 0);
+        confirm(p0, 1);
+        confirm(p1, 5);
+        //只提交被回收分区的水位，并移除其确认状态
+        worker.rebalanceListener.onPartitionsRevoked(Collections.singletonList(p0));
+        Mockito.verify(consumer).commitSync(Collections.singletonMap(p0, new OffsetAndMetadata(2)));
+        Assertions.assertNull(worker.offsets.get(p0));
+        Assertions.assertNotNull(worker.offsets.get(p1));
+        //被回收分区上迟到的确认不影响其他分区
+        confirm(p0, 2);
+        Assertions.assertEquals(6, worker.offsets.get(p1).getWatermark());
+    }
+
+    @Test
+    public void testBatchConfirm() throws Exception {
+        List<ConsumerCallback> batchCallbacks = new ArrayList<>();
+        worker.setBatchSink((topic, messages, callback) -> batchCallbacks.add(callback));
+        worker.dispatch(records(p0, 0, 1, 2));
+        worker.dispatch(records(p0, 3, 4));
+        Assertions.assertEquals(2, batchCallbacks.size());
+        Assertions.assertEquals(5, worker.offsets.get(p0).getInFlight());
+        //后一批先确认，水位不推进
+        batchCallbacks.get(1).confirm();
+        worker.maybeCommitOffsets();
+        Mockito.verify(consumer, Mockito.never()).commitSync(Mockito.anyMap());
+        batchCallbacks.get(0).confirm();
+        //重复确认被忽略
+        batchCallbacks.get(0).confirm();
+        Assertions.assertEquals(0, worker.offsets.get(p0).getInFlight());
+        worker.maybeCommitOffsets();
+        Mockito.verify(consumer).commitSync(Collections.singletonMap(p0, new OffsetAndMetadata(5)));
+    }
+}
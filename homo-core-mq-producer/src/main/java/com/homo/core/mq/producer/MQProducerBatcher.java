@@ -0,0 +1,157 @@
+package com.homo.core.mq.producer;
+
+import com.homo.core.configurable.mq.MQProducerProperties;
+import com.homo.core.facade.mq.producer.MQProducerDriver;
+import com.homo.core.facade.mq.producer.ProducerCallback;
+import com.homo.core.mq.base.MQMessageEnvelope;
+import com.homo.core.utils.origin.thread.ThreadFactoryBuilder;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 生产者合并发送
+ * 同一topic、同一key的消息在linger窗口内合并，窗口到期或达到条数、字节上限时打包成一条队列消息发送
+ * 只有一条消息时不打包，原样发送
+ * 同一key的包在按key分段的锁内交给driver（linger到期、写满、大消息都一样），保证同一key的消息按send顺序进入driver；
+ * 锁可重入，driver同步回调中再次send不会死锁
+ */
+@Slf4j
+public class MQProducerBatcher implements AutoCloseable {
+    private static final int LOCK_STRIPES = 64;
+    private final MQProducerDriver driver;
+    private final long lingerMs;
+    private final int maxCount;
+    private final int maxBytes;
+    private final ScheduledExecutorService scheduler;
+    private final Map<BatchKey, Batch> batches = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public MQProducerBatcher(MQProducerDriver driver, MQProducerProperties producerProperties) {
+        this.driver = driver;
+        this.lingerMs = producerProperties.getLingerMs();
+        this.maxCount = producerProperties.getBatchMaxCount();
+        this.maxBytes = producerProperties.getBatchMaxBytes();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                ThreadFactoryBuilder.create().setNamePrefix("mq-producer-linger-").setDaemon(true).build());
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public void send(String realTopic, String key, byte[] bytes, ProducerCallback callback) {
+        BatchKey batchKey = new BatchKey(realTopic, key);
+        synchronized (lockOf(batchKey)) {
+            if (bytes.length >= maxBytes) {
+                //大消息不合并，先发出同key等待中的消息
+                flush(batchKey);
+                driver.sendMessage(realTopic, key, bytes, callback);
+                return;
+            }
+            Batch batch = batches.get(batchKey);
+            if (batch != null && batch.bytes + bytes.length > maxBytes) {
+                //放不下，先发出当前的包
+                flush(batchKey, batch);
+                //发送失败的回调可能同步执行并重入，重新取
+                batch = batches.get(batchKey);
+            }
+            if (batch == null) {
+                Batch created = new Batch(batchKey);
+                created.future = scheduler.schedule(() -> flush(batchKey, created), lingerMs, TimeUnit.MILLISECONDS);
+                batches.put(batchKey, created);
+                batch = created;
+            }
+            batch.add(bytes, callback);
+            if (batch.messages.size() >= maxCount) {
+                flush(batchKey, batch);
+            }
+        }
+    }
+
+    private Object lockOf(BatchKey batchKey) {
+        return locks[(batchKey.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+
+    private void flush(BatchKey batchKey) {
+        synchronized (lockOf(batchKey)) {
+            Batch batch = batches.get(batchKey);
+            if (batch != null) {
+                flush(batchKey, batch);
+            }
+        }
+    }
+
+    /**
+     * 在key的锁内移除并交给driver，同一key的包按创建顺序进入driver
+     */
+    private void flush(BatchKey batchKey, Batch batch) {
+        synchronized (lockOf(batchKey)) {
+            if (batches.remove(batchKey, batch)) {
+                batch.future.cancel(false);
+                doSend(batch);
+            }
+        }
+    }
+
+    private void doSend(Batch batch) {
+        String topic = batch.key.topic;
+        String key = batch.key.key;
+        if (batch.messages.size() == 1) {
+            driver.sendMessage(topic, key, batch.messages.get(0), batch.callbacks.get(0));
+            return;
+        }
+        log.debug("MQProducerBatcher send topic {} key {} count {} bytes {}", topic, key, batch.messages.size(), batch.bytes);
+        List<ProducerCallback> callbacks = batch.callbacks;
+        driver.sendMessage(topic, key, MQMessageEnvelope.pack(batch.messages), (ok, throwable) -> {
+            for (ProducerCallback callback : callbacks) {
+                if (callback != null) {
+                    callback.onCompletion(ok, throwable);
+                }
+            }
+        });
+    }
+
+    /**
+     * 发出所有等待中的消息
+     */
+    @Override
+    public void close() {
+        for (BatchKey batchKey : new ArrayList<>(batches.keySet())) {
+            flush(batchKey);
+        }
+        scheduler.shutdown();
+    }
+
+    @EqualsAndHashCode
+    static class BatchKey {
+        final String topic;
+        final String key;
+
+        BatchKey(String topic, String key) {
+            this.topic = topic;
+            this.key = key;
+        }
+    }
+
+    static class Batch {
+        final BatchKey key;
+        final List<byte[]> messages = new ArrayList<>();
+        final List<ProducerCallback> callbacks = new ArrayList<>();
+        int bytes;
+        ScheduledFuture<?> future;
+
+        Batch(BatchKey key) {
+            this.key = key;
+        }
+
+        void add(byte[] message, ProducerCallback callback) {
+            messages.add(message);
+            callbacks.add(callback);
+            bytes += message.length;
+        }
+    }
+}
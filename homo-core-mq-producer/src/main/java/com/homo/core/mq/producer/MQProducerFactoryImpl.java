@@ -1,5 +1,6 @@
 package com.homo.core.mq.producer;
 
+import com.homo.core.configurable.mq.MQProducerProperties;
 import com.homo.core.facade.mq.producer.MQProducer;
 import com.homo.core.facade.mq.producer.MQProducerConfig;
 import com.homo.core.facade.mq.producer.MQProducerFactory;
@@ -7,10 +8,15 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class MQProducerFactoryImpl implements MQProducerFactory {
+    private final MQProducerProperties producerProperties;
+
+    public MQProducerFactoryImpl(MQProducerProperties producerProperties) {
+        this.producerProperties = producerProperties;
+    }
 
     @Override
     public MQProducer create(MQProducerConfig config) {
-        MQProducer mqProducer = new MQProducerImpl(config);
+        MQProducer mqProducer = new MQProducerImpl(config, producerProperties);
         return mqProducer;
     }
 
@@ -1,5 +1,6 @@
 package com.homo.core.mq.producer;
 
+import com.homo.core.configurable.mq.MQProducerProperties;
 import com.homo.core.facade.mq.MQCodeC;
 import com.homo.core.facade.mq.MQType;
 import com.homo.core.facade.mq.producer.*;
@@ -18,8 +19,16 @@ public class MQProducerImpl implements MQProducer {
     MQProducerDriver driver;
     Map<String, String> realTopics;
     ByteSrcCodecRegister codecRegister;
+    /**
+     * 合并发送，未开启时为空
+     */
+    MQProducerBatcher batcher;
 
     public MQProducerImpl(@NotNull MQProducerConfig config) {
+        this(config, null);
+    }
+
+    public MQProducerImpl(@NotNull MQProducerConfig config, MQProducerProperties producerProperties) {
         MQType mqType = config.getType();
         MQProducerDriverFactory driverFactory = MQDriverFactoryProvider.getProducerDriverFactory(mqType);
         if (driverFactory == null) {
@@ -31,6 +40,9 @@ public class MQProducerImpl implements MQProducer {
         this.driver = driverFactory.create();
         this.codecRegister = new ByteSrcCodecRegister();
         this.realTopics = new ConcurrentHashMap<>();
+        if (producerProperties != null && producerProperties.getLingerMs() > 0) {
+            this.batcher = new MQProducerBatcher(driver, producerProperties);
+        }
     }
 
     @Override
@@ -64,7 +76,11 @@ public class MQProducerImpl implements MQProducer {
     public <T extends Serializable> void send(@NotNull String originTopic, String key, @NotNull T message, ProducerCallback callback) throws Exception {
         String realTopic = getRealTopic(originTopic);
         log.debug("MQProducer send realTopic {} key {} message {}",realTopic,key,message);
-        driver.sendMessage(realTopic, key, encodeMessage(realTopic, message), callback);
+        if (batcher != null) {
+            batcher.send(realTopic, key, encodeMessage(realTopic, message), callback);
+        } else {
+            driver.sendMessage(realTopic, key, encodeMessage(realTopic, message), callback);
+        }
     }
 
     public <T extends java.io.Serializable> void registerCodec(@NotNull String originTopic, @NotNull MQCodeC<T, byte[]> codec) {
@@ -79,6 +95,9 @@ public class MQProducerImpl implements MQProducer {
 
     @Override
     public void close() throws Exception {
+        if (batcher != null) {
+            batcher.close();
+        }
         driver.close();
     }
 
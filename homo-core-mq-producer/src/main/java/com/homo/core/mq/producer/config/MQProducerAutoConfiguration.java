@@ -1,22 +1,29 @@
 package com.homo.core.mq.producer.config;
 
+import com.homo.core.configurable.mq.MQProducerProperties;
 import com.homo.core.facade.mq.producer.MQProducerFactory;
 import com.homo.core.mq.producer.MQProducerFactoryImpl;
 import com.homo.core.utils.config.UtilsAutoConfiguration;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 
 @AutoConfiguration(after = {UtilsAutoConfiguration.class})
 @Slf4j
+@Import(MQProducerProperties.class)
 //@AutoConfigureOrder(3)
 //@AutoConfigureAfter(value = {UtilsAutoConfiguration.class})
 public class MQProducerAutoConfiguration {
 
+    @Autowired
+    MQProducerProperties producerProperties;
+
     @Bean("mqProducerFactory")
     public MQProducerFactory mqProducerFactory(){
         log.info("register bean mqProducerFactory");
-        MQProducerFactory mqProducerFactory = new MQProducerFactoryImpl();
+        MQProducerFactory mqProducerFactory = new MQProducerFactoryImpl(producerProperties);
         return mqProducerFactory;
     }
 
@@ -0,0 +1,129 @@
+package com.homo.core.mq.producer;
+
+import com.homo.core.configurable.mq.MQProducerProperties;
+import com.homo.core.facade.mq.MQType;
+import com.homo.core.facade.mq.producer.MQProducerDriver;
+import com.homo.core.facade.mq.producer.ProducerCallback;
+import com.homo.core.mq.base.MQMessageEnvelope;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MQProducerBatcherTest {
+    private static final int MAX_BYTES = 64;
+
+    /**
+     * 按key记录进入driver的消息序号，拆开合并包
+     */
+    private static class RecordDriver implements MQProducerDriver {
+        final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        volatile boolean fail;
+
+        @Override
+        public void sendMessage(@NotNull String topic, String key, byte @NotNull [] message, ProducerCallback callback) {
+            List<byte[]> messages = MQMessageEnvelope.unpack(message);
+            if (messages == null) {
+                messages = Collections.singletonList(message);
+            }
+            List<Integer> list = received.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>()));
+            for (byte[] bytes : messages) {
+                list.add(ByteBuffer.wrap(bytes).getInt());
+            }
+            if (ThreadLocalRandom.current().nextInt(20) == 0) {
+                //放大发送线程与linger线程交错的窗口
+                Thread.yield();
+            }
+            if (callback != null) {
+                callback.onCompletion(!fail, fail ? new IllegalStateException("send fail") : null);
+            }
+        }
+
+        @Override
+        public @NotNull MQType getType() {
+            return MQType.KAFKA;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static MQProducerProperties properties(int lingerMs, int maxCount) {
+        MQProducerProperties properties = new MQProducerProperties();
+        properties.setLingerMs(lingerMs);
+        properties.setBatchMaxCount(maxCount);
+        properties.setBatchMaxBytes(MAX_BYTES);
+        return properties;
+    }
+
+    private static byte[] message(int seq, boolean large) {
+        return ByteBuffer.allocate(large ? MAX_BYTES : 4).putInt(seq).array();
+    }
+
+    @Test
+    public void testOrderPerKey() throws Exception {
+        RecordDriver driver = new RecordDriver();
+        MQProducerBatcher batcher = new MQProducerBatcher(driver, properties(1, 7));
+        int keyCount = 4;
+        int messageCount = 3000;
+        CountDownLatch latch = new CountDownLatch(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            String key = "key" + i;
+            new Thread(() -> {
+                try {
+                    for (int seq = 0; seq < messageCount; seq++) {
+                        //混合linger到期、写满、字节超限和大消息几种发送路径
+                        batcher.send("topic", key, message(seq, seq % 97 == 0), null);
+                        if (seq % 50 == 0) {
+                            TimeUnit.MILLISECONDS.sleep(2);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latch.countDown();
+                }
+            }).start();
+        }
+        Assertions.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        batcher.close();
+        for (int i = 0; i < keyCount; i++) {
+            List<Integer> list = driver.received.get("key" + i);
+            Assertions.assertEquals(messageCount, list.size());
+            for (int seq = 0; seq < messageCount; seq++) {
+                Assertions.assertEquals(seq, list.get(seq));
+            }
+        }
+    }
+
+    @Test
+    public void testResendInCallback() {
+        RecordDriver driver = new RecordDriver();
+        driver.fail = true;
+        MQProducerBatcher batcher = new MQProducerBatcher(driver, properties(1000, 2));
+        AtomicInteger failCount = new AtomicInteger();
+        ProducerCallback resend = (ok, throwable) -> {
+            //同步回调中重发同一个key
+            if (!ok && failCount.incrementAndGet() == 1) {
+                batcher.send("topic", "key", message(100, false), null);
+            }
+        };
+        batcher.send("topic", "key", message(1, false), resend);
+        batcher.send("topic", "key", message(2, false), null);
+        batcher.close();
+        Assertions.assertEquals(1, failCount.get());
+        Assertions.assertEquals(Arrays.asList(1, 2, 100), driver.received.get("key"));
+    }
+}
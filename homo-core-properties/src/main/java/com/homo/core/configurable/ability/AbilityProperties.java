@@ -14,6 +14,11 @@ public class AbilityProperties {
      */
     @Value("${homo.ability.storage.landing.interval.secondMillis:1000}")
     private long intervalSecondMillis;
+    /**
+     * 落地时同一逻辑类型每批保存的最大实体数
+     */
+    @Value("${homo.ability.storage.landing.batch.size:200}")
+    private int landingBatchSize;
     /**
      * 默认entity扫描路径
      */
@@ -29,4 +34,34 @@ public class AbilityProperties {
      */
     @Value("${homo.ability.storage.default.save.time.secondMillis:60000}")
     private long saveTimeSecondMills;
+    /**
+     * 实体内存预算（字节），大于0时生效，优先于entityMemoryBudgetRatio
+     */
+    @Value("${homo.ability.entity.memory.budget.bytes:0}")
+    private long entityMemoryBudgetBytes;
+    /**
+     * 实体内存预算占最大堆内存的比例，如0.5，为0且未配置字节数时不限制
+     */
+    @Value("${homo.ability.entity.memory.budget.ratio:0}")
+    private double entityMemoryBudgetRatio;
+    /**
+     * 实体序列化大小到堆内存占用的估算系数
+     */
+    @Value("${homo.ability.entity.memory.weight.factor:3}")
+    private int entityWeightFactor;
+    /**
+     * 下线时是否把内存中的实体移交给其他pod
+     */
+    @Value("${homo.ability.handoff.enable:false}")
+    private boolean handoffEnable;
+    /**
+     * 每批移交的实体数
+     */
+    @Value("${homo.ability.handoff.batch.size:100}")
+    private int handoffBatchSize;
+    /**
+     * 下线时等待移交完成的最长时间
+     */
+    @Value("${homo.ability.handoff.timeout.millis:30000}")
+    private long handoffTimeoutMillis;
 }
@@ -15,4 +15,19 @@ public class GateCommonProperties {
     @Value("${homo.gate.message.version:1}")
     public  Integer version;
 
+    /**
+     * 是否压缩下发的消息，客户端在任意消息（一般是首个心跳）的类型上带压缩标记表示支持解压
+     */
+    @Value("${homo.gate.message.compress.enable:false}")
+    public  Boolean compressEnable;
+    /**
+     * 超过该字节数的消息才压缩
+     */
+    @Value("${homo.gate.message.compress.threshold:512}")
+    public  Integer compressThreshold;
+    /**
+     * 允许解压的最大字节数，超过视为非法数据
+     */
+    @Value("${homo.gate.message.compress.max.length:4194304}")
+    public  Integer compressMaxLength;
 }
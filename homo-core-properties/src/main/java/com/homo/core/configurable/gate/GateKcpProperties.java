@@ -0,0 +1,62 @@
+package com.homo.core.configurable.gate;
+
+import lombok.Data;
+import lombok.ToString;
+import org.springframework.beans.factory.annotation.Configurable;
+import org.springframework.beans.factory.annotation.Value;
+
+@Configurable
+@Data
+@ToString
+public class GateKcpProperties {
+    /**
+     * 0不启用nodelay 1启用 2更激进的重传间隔
+     */
+    @Value("${homo.gate.kcp.nodelay:1}")
+    public  Integer nodelay;
+    /**
+     * kcp内部刷新间隔（毫秒）
+     */
+    @Value("${homo.gate.kcp.interval:10}")
+    public  Integer interval;
+    /**
+     * 快速重传的ack跨越次数，0关闭
+     */
+    @Value("${homo.gate.kcp.resend:2}")
+    public  Integer resend;
+    /**
+     * 是否关闭拥塞控制
+     */
+    @Value("${homo.gate.kcp.nocwnd:true}")
+    public  Boolean nocwnd;
+    /**
+     * 发送窗口（段数）
+     */
+    @Value("${homo.gate.kcp.snd.wnd:256}")
+    public  Integer sndWnd;
+    /**
+     * 接收窗口（段数）
+     */
+    @Value("${homo.gate.kcp.rcv.wnd:256}")
+    public  Integer rcvWnd;
+    /**
+     * udp包最大字节数
+     */
+    @Value("${homo.gate.kcp.mtu:1400}")
+    public  Integer mtu;
+    /**
+     * 流模式，网关消息自带长度，小消息可以合并到一个段
+     */
+    @Value("${homo.gate.kcp.stream:true}")
+    public  Boolean stream;
+    /**
+     * 一个段重传达到该次数视为连接断开
+     */
+    @Value("${homo.gate.kcp.dead.link:20}")
+    public  Integer deadLink;
+    /**
+     * 最大会话数，所有udp channel合计
+     */
+    @Value("${homo.gate.kcp.max.session:10000}")
+    public  Integer maxSession;
+}
@@ -34,4 +34,39 @@ public class GateTcpProperties {
      */
     @Value("${homo.gate.netty.channel.allIdleTime:180}")
     public  Integer allIdleTime;
+    /**
+     * 合并flush：连续写入达到该次数才真正flush一次，否则在本轮事件循环结束时flush，小于等于0不合并
+     */
+    @Value("${homo.gate.netty.flush.consolidation.max:256}")
+    public  Integer flushConsolidationMax;
+    /**
+     * 连续收到的心跳数上限，超过说明客户端一直没有操作，主动断开连接
+     */
+    @Value("${homo.gate.netty.heartbeat.max:66}")
+    public  Integer maxHeartbeatCount;
+    /**
+     * 单连接每秒最多接收的消息数，小于等于0不限制
+     */
+    @Value("${homo.gate.netty.limit.msg.per.second:0}")
+    public  Integer limitMsgPerSecond;
+    /**
+     * 单连接每秒最多接收的字节数，小于等于0不限制
+     */
+    @Value("${homo.gate.netty.limit.bytes.per.second:0}")
+    public  Integer limitBytesPerSecond;
+    /**
+     * 单连接连续被限流丢弃的消息数超过该值时断开连接，小于等于0不断开
+     */
+    @Value("${homo.gate.netty.limit.drop.max:100}")
+    public  Integer limitDropMax;
+    /**
+     * 所有CallQueue等待任务总数超过该值时网关不再接收新消息，小于等于0不启用
+     */
+    @Value("${homo.gate.admission.wait.count.max:0}")
+    public  Integer admissionWaitCountMax;
+    /**
+     * 过载时新消息延后多少毫秒再处理（暂停读取该连接），小于等于0直接丢弃
+     */
+    @Value("${homo.gate.admission.delay.millis:0}")
+    public  Integer admissionDelayMillis;
 }
@@ -0,0 +1,32 @@
+package com.homo.core.configurable.gate;
+
+import lombok.Data;
+import lombok.ToString;
+import org.springframework.beans.factory.annotation.Configurable;
+import org.springframework.beans.factory.annotation.Value;
+
+@Configurable
+@Data
+@ToString
+public class GateWsProperties {
+    /**
+     * websocket升级路径
+     */
+    @Value("${homo.gate.ws.path:/ws}")
+    public  String path;
+    /**
+     * 单个websocket帧的最大字节数
+     */
+    @Value("${homo.gate.ws.max.frame.size:65536}")
+    public  Integer maxFrameSize;
+    /**
+     * 握手请求的最大字节数
+     */
+    @Value("${homo.gate.ws.max.handshake.size:8192}")
+    public  Integer maxHandshakeSize;
+    /**
+     * 是否开启permessage-deflate，默认关闭，使用网关协议自带的压缩（homo.gate.message.compress.*）
+     */
+    @Value("${homo.gate.ws.permessage.deflate:false}")
+    public  Boolean permessageDeflate;
+}
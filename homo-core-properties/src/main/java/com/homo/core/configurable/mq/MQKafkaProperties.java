@@ -40,6 +40,10 @@ public class MQKafkaProperties {
     @Value("${homo.mq.kafka.linger.ms:100}")
     private Integer lingerMs;
 
+    // 生产者压缩算法：none、gzip、snappy、lz4、zstd，默认 lz4
+    @Value("${homo.mq.kafka.compression.type:lz4}")
+    private String compressionType;
+
     // Kafka 生产者队列容量，控制待发送消息的队列长度，默认 50000 条
     @Value("${homo.mq.kafka.producer.queue.capacity:50000}")
     private Integer producerQueueCapacity;
@@ -60,6 +64,18 @@ public class MQKafkaProperties {
     @Value("${homo.mq.kafka.consumer.max.poll.records.size:60}")
     private Integer maxPollRecords;
 
+    // 手动确认模式下每个分区允许未确认的最大消息数，超过后暂停该分区拉取，默认 0 表示取 maxPollRecords
+    @Value("${homo.mq.kafka.consumer.partition.max.inflight:0}")
+    private Integer maxInFlightPerPartition;
+
+    // 手动确认模式下分区下沉的工作线程数，分区按编号取模分组，默认 0 表示在拉取线程中下沉
+    @Value("${homo.mq.kafka.consumer.partition.worker.num:0}")
+    private Integer partitionWorkerNum;
+
+    // 手动确认模式下提交已确认offset的最小间隔（毫秒），只在确认水位有推进时提交，默认 1000 ms
+    @Value("${homo.mq.kafka.consumer.commit.interval.ms:1000}")
+    private Long commitIntervalMs;
+
     // Kafka 消费者是否启用自动提交偏移量，默认 false（需要手动提交）
     @Value("${homo.mq.kafka.consumer.auto.commit:false}")
     private Boolean autoCommit;
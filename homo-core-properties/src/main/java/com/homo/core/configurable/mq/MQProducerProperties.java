@@ -0,0 +1,22 @@
+package com.homo.core.configurable.mq;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Configurable;
+import org.springframework.beans.factory.annotation.Value;
+
+@Configurable
+@Data
+public class MQProducerProperties {
+
+    // 框架层合并发送的等待时间（毫秒），同一topic同一key在窗口内的消息打包成一条队列消息发送，默认 0 表示不合并
+    @Value("${homo.mq.producer.linger.ms:0}")
+    private Integer lingerMs;
+
+    // 一个合并包最多包含的消息条数，达到后立即发送，默认 200 条
+    @Value("${homo.mq.producer.batch.max.count:200}")
+    private Integer batchMaxCount;
+
+    // 一个合并包最大的字节数，达到后立即发送，超过该大小的单条消息不参与合并，默认 64 KB
+    @Value("${homo.mq.producer.batch.max.bytes:65536}")
+    private Integer batchMaxBytes;
+}
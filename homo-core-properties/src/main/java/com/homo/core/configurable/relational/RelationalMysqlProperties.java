@@ -66,6 +66,29 @@ public class RelationalMysqlProperties implements InitializingBean {
     @Value("${homo.relational.mysql.database.prefix:homo_storage}")
     private String prefix;
 
+    /**
+     * 是否使用服务端预编译语句（默认值 true）
+     * 开启后带参数的语句在 MySQL 端只解析一次，重复的查询结构直接复用执行计划。
+     */
+    @Value("${homo.relational.mysql.connect.server.prepare:true}")
+    private Boolean useServerPrepareStatement;
+
+    /** 每个连接缓存的服务端预编译语句数量（默认值 256） */
+    @Value("${homo.relational.mysql.connect.prepare.cache.size:256}")
+    private Integer prepareCacheSize;
+
+    /** SQL 渲染缓存与分表名缓存的最大条目数（默认值 2048） */
+    @Value("${homo.relational.mysql.render.cache.size:2048}")
+    private Integer renderCacheSize;
+
+    /** 批量插入单条语句的绑定参数上限（默认值 4096） */
+    @Value("${homo.relational.mysql.batch.max.binds:4096}")
+    private Integer batchMaxBindCount;
+
+    /** 批量插入单条语句的预估字节上限（默认值 1MB，需小于 max_allowed_packet） */
+    @Value("${homo.relational.mysql.batch.max.bytes:1048576}")
+    private Integer batchMaxStatementBytes;
+
     @Override
     public void afterPropertiesSet() throws Exception {
         init();
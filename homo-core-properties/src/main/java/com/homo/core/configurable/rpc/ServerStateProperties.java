@@ -17,6 +17,16 @@ public class ServerStateProperties {
      */
     @Value("${homo.service.state.local.cache.duration.second:600}")
     private int localUserServicePodCacheSecond;
+    /**
+     * 是否订阅连接变化通知，开启后本地连接缓存按通知失效，路由到本pod的过期请求会被拒绝
+     */
+    @Value("${homo.service.state.link.invalidate.enable:true}")
+    private boolean linkInvalidateEnable;
+    /**
+     * 本地保留的连接变化通知最大条数，通知是全区服广播的，需要限制大小
+     */
+    @Value("${homo.service.state.link.change.cache.max.size:100000}")
+    private long linkChangeCacheMaxSize;
     /**
      * 服务器缓存用户连接信息保持时间(比连接短1分钟)
      */
@@ -0,0 +1,45 @@
+package com.homo.core.configurable.storage;
+
+import lombok.Data;
+import lombok.ToString;
+import org.springframework.beans.factory.annotation.Configurable;
+import org.springframework.beans.factory.annotation.Value;
+
+@Data
+@ToString
+@Configurable
+public class StorageProperties {
+    /**
+     * 存储数据压缩方式 none(不压缩) lz4 deflate
+     */
+    @Value("${homo.storage.compress.type:none}")
+    private String compressType;
+    /**
+     * 超过该字节数的数据才压缩
+     */
+    @Value("${homo.storage.compress.threshold:1024}")
+    private int compressThreshold;
+    /**
+     * deflate压缩级别 1-9
+     */
+    @Value("${homo.storage.compress.level:1}")
+    private int compressLevel;
+    /**
+     * deflate预置字典目录，为空则不使用字典
+     * {logicType}.dict是该逻辑类型当前使用的字典，目录下所有.dict文件都会加载用于解压（按字典校验和匹配）
+     * 字典一般由该类型的典型数据样本拼接而成，更换字典时把旧文件改名保留（如{logicType}.v1.dict），旧数据仍可读取
+     */
+    @Value("${homo.storage.compress.dictionary.dir:}")
+    private String compressDictionaryDir;
+    /**
+     * 解压后允许的最大字节数，记录的原始长度超过该值的数据不解压
+     */
+    @Value("${homo.storage.compress.maxDecodedLength:67108864}")
+    private int compressMaxDecodedLength;
+    /**
+     * 允许的最大压缩比（原始长度/压缩后长度），超过的视为损坏数据不解压
+     * deflate理论上限约1032，lz4约255
+     */
+    @Value("${homo.storage.compress.maxRatio:1100}")
+    private int compressMaxRatio;
+}
@@ -8,6 +8,7 @@ import reactor.core.publisher.Mono;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface HomoAsyncRedisPool extends HomoRedisPool {
     RedisFuture<Object> evalAsync(String script, String[] keys, String... args);
@@ -47,4 +48,24 @@ public interface HomoAsyncRedisPool extends HomoRedisPool {
     StatefulRedisConnection<byte[], byte[]> getStatefulRedisConnection();
 
     StatefulRedisConnection<String, String> getStringStringConnection();
+
+    /**
+     * 订阅频道，断线重连后自动重新订阅
+     * 回调在redis的io线程中执行，不能做耗时操作
+     * @param channel 频道
+     * @param listener 消息回调
+     */
+    default void subscribe(String channel, Consumer<String> listener) {
+        subscribe(channel, listener, () -> {});
+    }
+
+    /**
+     * 订阅频道，断线重连后自动重新订阅
+     * 订阅连接断开、重连后重新订阅成功时各回调一次onReset，期间发布的消息已经丢失，依赖消息维护的状态需要重建
+     * 回调在redis的io线程中执行，不能做耗时操作
+     * @param channel 频道
+     * @param listener 消息回调
+     * @param onReset 消息可能丢失时的回调
+     */
+    void subscribe(String channel, Consumer<String> listener, Runnable onReset);
 }
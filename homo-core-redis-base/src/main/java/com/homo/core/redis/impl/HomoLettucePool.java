@@ -2,6 +2,8 @@ package com.homo.core.redis.impl;
 
 import com.homo.core.redis.facade.HomoAsyncRedisPool;
 import io.lettuce.core.KeyValue;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisConnectionStateListener;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisFuture;
 import io.lettuce.core.ScriptOutputType;
@@ -14,6 +16,9 @@ import io.lettuce.core.api.sync.RedisScriptingCommands;
 import io.lettuce.core.codec.ByteArrayCodec;
 import io.lettuce.core.codec.RedisCodec;
 import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import redis.clients.jedis.Tuple;
@@ -24,14 +29,26 @@ import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+@Slf4j
 public class HomoLettucePool implements HomoAsyncRedisPool {
     RedisClient redisClient;
 
     StatefulRedisConnection<String,String> connection;
     StatefulRedisConnection<byte[],byte[]> byteConnection;
     StatefulRedisConnection<String,byte[]> stringByteConnection;
+    StatefulRedisPubSubConnection<String,String> pubSubConnection;
+    final Map<String, List<Consumer<String>>> channelListeners = new ConcurrentHashMap<>();
+    final Map<String, List<Runnable>> channelResetListeners = new ConcurrentHashMap<>();
+    final Set<String> subscribedChannels = ConcurrentHashMap.newKeySet();
+    /**
+     * 订阅连接断开时已订阅的频道，重连后的订阅确认才是重新订阅
+     */
+    final Set<String> resubscribeChannels = ConcurrentHashMap.newKeySet();
 
     public HomoLettucePool(RedisClient redisClient){
         this.redisClient =redisClient;
@@ -60,6 +77,67 @@ public class HomoLettucePool implements HomoAsyncRedisPool {
         });
     }
 
+    @Override
+    public synchronized void subscribe(String channel, Consumer<String> listener, Runnable onReset) {
+        if (pubSubConnection == null) {
+            StatefulRedisPubSubConnection<String, String> subscribeConnection = redisClient.connectPubSub();
+            subscribeConnection.addListener(new RedisPubSubAdapter<String, String>() {
+                @Override
+                public void message(String channel, String message) {
+                    List<Consumer<String>> listeners = channelListeners.get(channel);
+                    if (listeners != null) {
+                        listeners.forEach(item -> item.accept(message));
+                    }
+                }
+
+                @Override
+                public void subscribed(String channel, long count) {
+                    //断线重连后的自动重新订阅，断开期间的消息已经丢失
+                    if (!subscribedChannels.add(channel) && resubscribeChannels.remove(channel)) {
+                        log.warn("HomoLettucePool resubscribed channel {}", channel);
+                        reset(channel);
+                    }
+                }
+            });
+            redisClient.addListener(new RedisConnectionStateListener() {
+                @Override
+                public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+                    if (connection == subscribeConnection) {
+                        log.warn("HomoLettucePool subscribe connection disconnected channels {}", subscribedChannels);
+                        resubscribeChannels.addAll(subscribedChannels);
+                        channelResetListeners.keySet().forEach(HomoLettucePool.this::reset);
+                    }
+                }
+
+                @Override
+                public void onRedisExceptionCaught(RedisChannelHandler<?, ?> connection, Throwable cause) {
+                }
+            });
+            pubSubConnection = subscribeConnection;
+        }
+        boolean first = !channelListeners.containsKey(channel);
+        channelListeners.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(listener);
+        channelResetListeners.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(onReset);
+        if (first) {
+            //同一频道只订阅一次，重复的订阅确认会被当成重新订阅
+            pubSubConnection.async().subscribe(channel);
+        }
+    }
+
+    private void reset(String channel) {
+        List<Runnable> listeners = channelResetListeners.get(channel);
+        if (listeners == null) {
+            return;
+        }
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("HomoLettucePool reset listener error channel {}", channel, e);
+            }
+        }
+    }
+
     @Override
     public StatefulRedisConnection<String, String> getStringStringConnection(){
         return connection;
@@ -41,6 +41,10 @@ public class LuaScriptHelper  {
 
     public static String statefulSetLinkIfAbsent;
 
+    public static String statefulSetLinksIfAbsent;
+
+    public static String statefulTransferLink;
+
     public static String statefulGetLink;
 
     public static String statefulRemoveLink;
@@ -68,6 +72,8 @@ public class LuaScriptHelper  {
             getDirtyKeyScript = StreamUtils.copyToString(new ClassPathResource("lua/getDirtyKey.lua").getInputStream(), StandardCharsets.UTF_8);
             statefulSetLink = StreamUtils.copyToString(new ClassPathResource("lua/statefulSetLink.lua").getInputStream(), StandardCharsets.UTF_8);
             statefulSetLinkIfAbsent = StreamUtils.copyToString(new ClassPathResource("lua/statefulSetLinkIfAbsent.lua").getInputStream(), StandardCharsets.UTF_8);
+            statefulSetLinksIfAbsent = StreamUtils.copyToString(new ClassPathResource("lua/statefulSetLinksIfAbsent.lua").getInputStream(), StandardCharsets.UTF_8);
+            statefulTransferLink = StreamUtils.copyToString(new ClassPathResource("lua/statefulTransferLink.lua").getInputStream(), StandardCharsets.UTF_8);
             statefulGetLink = StreamUtils.copyToString(new ClassPathResource("lua/statefulGetLink.lua").getInputStream(), StandardCharsets.UTF_8);
             statefulRemoveLink = StreamUtils.copyToString(new ClassPathResource("lua/statefulRemoveLink.lua").getInputStream(), StandardCharsets.UTF_8);
             getAllLinkService = StreamUtils.copyToString(new ClassPathResource("lua/getAllLinkService.lua").getInputStream(), StandardCharsets.UTF_8);
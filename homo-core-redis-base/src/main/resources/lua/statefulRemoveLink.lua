@@ -1,15 +1,38 @@
 --[[
    去除对应服务连接pod
    input:
-    KEYS: uidSvcKey连接状态key,uidKey连接状态key
-    ARGV:  服务名,ttl (-1即为立即删除)
-   output: 成功返回1
+    KEYS: uidSvcKey连接状态key,uidKey连接状态key,epochKey连接版本号key
+    ARGV:  服务名,ttl (-1即为立即删除),channel连接变化通知频道,ownerId,expectPod (非空时仅当连接的是该pod才删除)
+   output: 成功返回1，连接已指向其他pod返回0
 ]]
 local uidSvcKey = KEYS[1]
 local uidKey = KEYS[2]
+local epochKey = KEYS[3]
 
 local svcName = ARGV[1]
 local setTtl = tonumber(ARGV[2])
+local channel = ARGV[3]
+local ownerId = ARGV[4]
+local expectPod = ARGV[5]
+
+--发布连接变化通知，epoch为全局递增的连接版本号，订阅方据此丢弃过期的本地缓存
+local function publishLinkChange(pod)
+    if channel then
+        local epoch = redis.call("INCR",epochKey)
+        redis.call("PUBLISH",channel,epoch.."|"..svcName.."|"..pod.."|"..ownerId)
+    end
+end
+
+--连接已经转移到其他pod，不删除
+if expectPod and expectPod ~= "" then
+    local existPodNum = redis.call("GET",uidSvcKey)
+    if not existPodNum then
+        existPodNum = redis.call("HGET",uidKey,svcName)
+    end
+    if existPodNum and existPodNum ~= expectPod then
+        return {0}
+    end
+end
 
 --如果setTtl -1 则立刻删除
 if setTtl == -1 then
@@ -23,4 +46,5 @@ local keyNum = redis.call("HLEN",uidKey)
 if keyNum == 0 then
     redis.call("DEL",uidKey)
 end
+publishLinkChange(-1)
 return {1}
\ No newline at end of file
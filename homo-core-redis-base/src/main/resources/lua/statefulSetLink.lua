@@ -1,16 +1,27 @@
 --[[
    设置对应服务连接pod
    input:
-    KEYS: uidSvcKey连接状态key,uidKey连接状态key
-    ARGV:  svcName,podNum,ttl (-1即为永久有效)
+    KEYS: uidSvcKey连接状态key,uidKey连接状态key,epochKey连接版本号key
+    ARGV:  svcName,podNum,ttl (-1即为永久有效),channel连接变化通知频道,ownerId
    output: 成功返回1
 ]]
 local uidSvcKey = KEYS[1]
 local uidKey = KEYS[2]
+local epochKey = KEYS[3]
 
 local svcName = ARGV[1]
 local podIndex = ARGV[2]
 local ttl = tonumber(ARGV[3])
+local channel = ARGV[4]
+local ownerId = ARGV[5]
+
+--发布连接变化通知，epoch为全局递增的连接版本号，订阅方据此丢弃过期的本地缓存
+local function publishLinkChange(pod)
+    if channel then
+        local epoch = redis.call("INCR",epochKey)
+        redis.call("PUBLISH",channel,epoch.."|"..svcName.."|"..pod.."|"..ownerId)
+    end
+end
 
 redis.call("SET",uidSvcKey,podIndex) --设置用户与对应服务的连接pod
 
@@ -21,4 +32,5 @@ else                --否则设置连接超时时间,uidKey Map里移除这个se
     redis.call("EXPIRE",uidSvcKey,ttl)
     redis.call("HDEL",uidKey,svcName)
 end
+publishLinkChange(podIndex)
 return {1}
\ No newline at end of file
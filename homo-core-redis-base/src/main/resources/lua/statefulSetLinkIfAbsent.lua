@@ -1,17 +1,28 @@
 --[[
   设置对应服务连接pod(如果之前没有设置的话)
   input:
-  KEYS: uidSvcKey连接状态key,uidKey连接状态key
-  ARGV:  svcName,podNum,ttl (-1即为永久有效)
+  KEYS: uidSvcKey连接状态key,uidKey连接状态key,epochKey连接版本号key
+  ARGV:  svcName,podNum,ttl (-1即为永久有效),channel连接变化通知频道,ownerId
   output: 实际的podNumber
 ]]
 -- 返回服务的pod和状态值  服务状态格式: podId-podState
 local uidSvcKey = KEYS[1]
 local uidKey = KEYS[2]
+local epochKey = KEYS[3]
 
 local svcName = ARGV[1]
 local podIndex = ARGV[2]
 local setTtl = tonumber(ARGV[3])
+local channel = ARGV[4]
+local ownerId = ARGV[5]
+
+--发布连接变化通知，epoch为全局递增的连接版本号，订阅方据此丢弃过期的本地缓存
+local function publishLinkChange(pod)
+    if channel then
+        local epoch = redis.call("INCR",epochKey)
+        redis.call("PUBLISH",channel,epoch.."|"..svcName.."|"..pod.."|"..ownerId)
+    end
+end
 
 local existPodNum = redis.call("GET",uidSvcKey)
 if existPodNum then
@@ -29,5 +40,6 @@ else
     else
         redis.call("EXPIRE",uidSvcKey,setTtl)
     end
+    publishLinkChange(podIndex)
     return {podIndex}
 end
\ No newline at end of file
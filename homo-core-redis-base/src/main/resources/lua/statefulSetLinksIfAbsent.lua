@@ -0,0 +1,48 @@
+--[[
+  批量设置多个用户对应服务连接pod(如果之前没有设置的话)，调用方控制每批的用户数，避免单次执行时间过长
+  input:
+  KEYS: epochKey连接版本号key, 之后每个用户依次为 uidSvcKey连接状态key,uidKey连接状态key
+  ARGV:  svcName,ttl (-1即为永久有效),channel连接变化通知频道, 之后每个用户依次为 ownerId,podNum(没有连接时设置的pod)
+  output: 按用户顺序返回实际的podNumber
+]]
+local epochKey = KEYS[1]
+
+local svcName = ARGV[1]
+local setTtl = tonumber(ARGV[2])
+local channel = ARGV[3]
+
+--发布连接变化通知，epoch为全局递增的连接版本号，订阅方据此丢弃过期的本地缓存
+local function publishLinkChange(pod, ownerId)
+    if channel and channel ~= "" then
+        local epoch = redis.call("INCR",epochKey)
+        redis.call("PUBLISH",channel,epoch.."|"..svcName.."|"..pod.."|"..ownerId)
+    end
+end
+
+local result = {}
+local userNum = (#KEYS - 1) / 2
+for i = 1, userNum do
+    local uidSvcKey = KEYS[i * 2]
+    local uidKey = KEYS[i * 2 + 1]
+    local ownerId = ARGV[i * 2 + 2]
+    local podIndex = ARGV[i * 2 + 3]
+    local existPodNum = redis.call("GET",uidSvcKey)
+    if existPodNum then
+        local ttl = redis.call("TTL",uidSvcKey)
+        if ttl ~= -1 then   --如果存在连接信息且连接有过期时间时，更新过期时间
+            redis.call("EXPIRE",uidSvcKey,setTtl)
+        end
+        result[i] = existPodNum
+    else
+        --没有与该服务的连接 ，则建立指定连接
+        redis.call("SET",uidSvcKey,podIndex)
+        if setTtl == -1 then    --如果设置为持久化，则存入用户uidKey map中
+            redis.call("HSET",uidKey,svcName,podIndex)
+        else
+            redis.call("EXPIRE",uidSvcKey,setTtl)
+        end
+        publishLinkChange(podIndex, ownerId)
+        result[i] = podIndex
+    end
+end
+return result
@@ -0,0 +1,46 @@
+--[[
+   转移对应服务连接pod（仅当前连接的是fromPod或没有连接时才转移）
+   input:
+    KEYS: uidSvcKey连接状态key,uidKey连接状态key,epochKey连接版本号key
+    ARGV:  svcName,fromPod,toPod,ttl (-1即为永久有效，没有连接信息时使用),channel连接变化通知频道,ownerId
+   output: 转移后实际连接的pod
+]]
+local uidSvcKey = KEYS[1]
+local uidKey = KEYS[2]
+local epochKey = KEYS[3]
+
+local svcName = ARGV[1]
+local fromPod = ARGV[2]
+local toPod = ARGV[3]
+local setTtl = tonumber(ARGV[4])
+local channel = ARGV[5]
+local ownerId = ARGV[6]
+
+--发布连接变化通知，epoch为全局递增的连接版本号，订阅方据此丢弃过期的本地缓存
+local function publishLinkChange(pod)
+    if channel then
+        local epoch = redis.call("INCR",epochKey)
+        redis.call("PUBLISH",channel,epoch.."|"..svcName.."|"..pod.."|"..ownerId)
+    end
+end
+
+local existPodNum = redis.call("GET",uidSvcKey)
+if existPodNum and existPodNum ~= fromPod then  --已经连接到其他pod，不转移
+    return {existPodNum}
+end
+local ttl = -1
+if existPodNum then
+    ttl = redis.call("TTL",uidSvcKey)
+else
+    ttl = setTtl
+end
+redis.call("SET",uidSvcKey,toPod)
+if ttl == -1 then   --永久连接，同步更新uidKey Map
+    redis.call("HSET",uidKey,svcName,toPod)
+elseif ttl > 0 then --保持原有的过期时间
+    redis.call("EXPIRE",uidSvcKey,ttl)
+end
+if existPodNum ~= toPod then
+    publishLinkChange(toPod)
+end
+return {toPod}
@@ -0,0 +1,82 @@
+package com.homo.core.redis.impl;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.pubsub.RedisPubSubListener;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnectionImpl;
+import io.lettuce.core.pubsub.api.async.RedisPubSubAsyncCommands;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HomoLettucePoolTest {
+    private static final String CHANNEL = "link-change";
+    private StatefulRedisPubSubConnectionImpl<String, String> pubSubConnection;
+    private RedisPubSubAsyncCommands<String, String> commands;
+    private RedisClient redisClient;
+    private HomoLettucePool pool;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisClient = Mockito.mock(RedisClient.class);
+        pubSubConnection = Mockito.mock(StatefulRedisPubSubConnectionImpl.class);
+        commands = Mockito.mock(RedisPubSubAsyncCommands.class);
+        Mockito.when(redisClient.connectPubSub()).thenReturn(pubSubConnection);
+        Mockito.when(pubSubConnection.async()).thenReturn(commands);
+        pool = new HomoLettucePool(redisClient);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisPubSubListener<String, String> pubSubListener() {
+        ArgumentCaptor<RedisPubSubListener<String, String>> captor = ArgumentCaptor.forClass(RedisPubSubListener.class);
+        Mockito.verify(pubSubConnection).addListener(captor.capture());
+        return captor.getValue();
+    }
+
+    private RedisConnectionStateListener stateListener() {
+        ArgumentCaptor<RedisConnectionStateListener> captor = ArgumentCaptor.forClass(RedisConnectionStateListener.class);
+        Mockito.verify(redisClient).addListener(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    public void testSubscribeSameChannelTwice() {
+        AtomicInteger resetCount = new AtomicInteger();
+        List<String> messages = new ArrayList<>();
+        pool.subscribe(CHANNEL, messages::add, resetCount::incrementAndGet);
+        pool.subscribe(CHANNEL, messages::add, resetCount::incrementAndGet);
+        //同一频道只发一次订阅命令
+        Mockito.verify(commands, Mockito.times(1)).subscribe(CHANNEL);
+        RedisPubSubListener<String, String> listener = pubSubListener();
+        listener.subscribed(CHANNEL, 1);
+        //没有断线时重复的订阅确认不是重新订阅
+        listener.subscribed(CHANNEL, 1);
+        Assertions.assertEquals(0, resetCount.get());
+        listener.message(CHANNEL, "1|svc|0|u1");
+        Assertions.assertEquals(2, messages.size());
+    }
+
+    @Test
+    public void testResetAfterReconnect() {
+        AtomicInteger resetCount = new AtomicInteger();
+        pool.subscribe(CHANNEL, message -> {
+        }, resetCount::incrementAndGet);
+        RedisPubSubListener<String, String> listener = pubSubListener();
+        listener.subscribed(CHANNEL, 1);
+        Assertions.assertEquals(0, resetCount.get());
+        //断开和重连后的重新订阅各重置一次
+        stateListener().onRedisDisconnected(pubSubConnection);
+        Assertions.assertEquals(1, resetCount.get());
+        listener.subscribed(CHANNEL, 1);
+        Assertions.assertEquals(2, resetCount.get());
+        listener.subscribed(CHANNEL, 1);
+        Assertions.assertEquals(2, resetCount.get());
+    }
+}
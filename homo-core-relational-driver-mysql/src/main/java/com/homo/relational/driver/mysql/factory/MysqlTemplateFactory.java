@@ -3,6 +3,7 @@ package com.homo.relational.driver.mysql.factory;
 import com.homo.core.configurable.relational.RelationalMysqlProperties;
 import org.springframework.data.r2dbc.MysqlRelationalTemplate;
 import com.homo.relational.driver.mysql.mapping.HomoDataAccessStrategy;
+import com.homo.relational.driver.mysql.utils.SqlRenderCache;
 import io.r2dbc.spi.ConnectionFactories;
 import io.r2dbc.spi.ConnectionFactory;
 import io.r2dbc.spi.ConnectionFactoryOptions;
@@ -36,6 +37,8 @@ public class MysqlTemplateFactory {
                 .option(PASSWORD, properties.getPassword())
                 .option(CONNECT_TIMEOUT, Duration.ofSeconds(properties.getTimeoutSecond()))
                 .option(Option.valueOf("socketTimeout"), Duration.ofSeconds(4))// optional, default null, null means no timeout
+                .option(Option.valueOf("useServerPrepareStatement"), properties.getUseServerPrepareStatement())
+                .option(Option.valueOf("prepareCacheSize"), properties.getPrepareCacheSize())
                 .build();
         ConnectionFactory connectionFactory = ConnectionFactories.get(options);
         return createTemplate(connectionFactory);
@@ -43,11 +46,14 @@ public class MysqlTemplateFactory {
     }
 
     public MysqlRelationalTemplate createTemplate(ConnectionFactory connectionFactory) {
+        SqlRenderCache.initialize(properties.getRenderCacheSize());
         CustomConversions customConversions = applicationContext.getBean(CustomConversions.class);
         HomoDataAccessStrategy homoDataAccessStrategy = new HomoDataAccessStrategy(MySqlDialect.INSTANCE, customConversions);
         DatabaseClient databaseClient = DatabaseClient.create(connectionFactory);
         R2dbcEntityTemplate r2dbcEntityTemplate = new R2dbcEntityTemplate(databaseClient, homoDataAccessStrategy);
         MysqlRelationalTemplate mysqlTemplate = new MysqlRelationalTemplate(r2dbcEntityTemplate);
+        mysqlTemplate.setBatchMaxBindCount(properties.getBatchMaxBindCount());
+        mysqlTemplate.setBatchMaxStatementBytes(properties.getBatchMaxStatementBytes());
         return mysqlTemplate;
     }
 }
@@ -21,17 +21,21 @@ import org.springframework.data.relational.core.query.CriteriaDefinition;
 import org.springframework.data.relational.core.sql.*;
 import org.springframework.data.relational.core.sql.operation.GroupByPreparedOperation;
 import org.springframework.data.relational.core.sql.operation.InsertIgnorePreparedOperation;
+import org.springframework.data.relational.core.sql.operation.RenderedPreparedOperation;
 import org.springframework.data.relational.core.sql.operation.ReplaceInfoPrepareOperation;
 import org.springframework.data.relational.core.sql.operation.SelectPreparedOperation;
 import org.springframework.data.relational.core.sql.render.RenderContext;
 import org.springframework.lang.Nullable;
 import org.springframework.r2dbc.core.PreparedOperation;
+import org.springframework.r2dbc.core.binding.BindMarker;
 import org.springframework.r2dbc.core.binding.BindMarkers;
+import org.springframework.r2dbc.core.binding.BindTarget;
 import org.springframework.r2dbc.core.binding.Bindings;
 import org.springframework.util.Assert;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.regex.Pattern;
 
 @UtilityClass
@@ -101,6 +105,116 @@ public class MapperUtil {
     }
 
     public PreparedOperation<Select> createSelectPreparedOperation(StatementMapper.SelectSpec selectSpec, RenderContext renderContext) {
+        return createSelectPreparedOperation(null, selectSpec, renderContext);
+    }
+
+    /**
+     * 创建查询语句，domainType不为空时启用渲染缓存
+     * 命中缓存时条件值不需要转换的查询直接按条件顺序绑定，不再构建和映射条件语法树
+     */
+    public PreparedOperation<Select> createSelectPreparedOperation(@Nullable Class<?> domainType, StatementMapper.SelectSpec selectSpec, RenderContext renderContext) {
+        String renderKey = domainType == null ? null : SqlRenderCache.selectKey(domainType, selectSpec);
+        SqlRenderCache.RenderPlan renderPlan = SqlRenderCache.getRenderPlan(renderKey);
+        if (renderPlan != null) {
+            BindMarkers bindMarkers = dialect.getBindMarkersFactory().create();
+            Bindings bindings = Bindings.empty();
+            CriteriaDefinition criteria = selectSpec.getCriteria();
+            if (criteria != null && !criteria.isEmpty()) {
+                if (renderPlan.isDirectBind()) {
+                    bindings = valueBindings(bindMarkers, SqlRenderCache.criteriaValues(criteria));
+                } else {
+                    RelationalPersistentEntity<?> entity = getEntity(selectSpec.getTable());
+                    bindings = updateMapper.getMappedObject(bindMarkers, criteria, selectSpec.getTable(), entity).getBindings();
+                }
+            }
+            List<Object> pageValues = new ArrayList<>(2);
+            pageClause(bindMarkers, selectSpec, pageValues);
+            bindings = Bindings.merge(bindings, valueBindings(bindMarkers, pageValues));
+            return new RenderedPreparedOperation<>(renderPlan.getSql(),
+                    () -> buildSelectPreparedOperation(selectSpec, renderContext, null).getSource(), bindings);
+        }
+        return buildSelectPreparedOperation(selectSpec, renderContext, renderKey);
+    }
+
+    /**
+     * mysql分页子句，limit/offset通过绑定传入，不同页共用同一条语句
+     *
+     * @param values 输出，按占位符顺序的绑定值
+     */
+    private String pageClause(BindMarkers bindMarkers, StatementMapper.SelectSpec selectSpec, List<Object> values) {
+        long limit = selectSpec.getLimit();
+        long offset = selectSpec.getOffset();
+        if (limit > 0 && offset > 0) {
+            values.add(offset);
+            values.add(limit);
+            return " LIMIT " + bindMarkers.next().getPlaceholder() + ", " + bindMarkers.next().getPlaceholder();
+        }
+        if (limit > 0) {
+            values.add(limit);
+            return " LIMIT " + bindMarkers.next().getPlaceholder();
+        }
+        if (offset > 0) {
+            values.add(offset);
+            return " LIMIT " + bindMarkers.next().getPlaceholder() + ", 18446744073709551615";
+        }
+        return "";
+    }
+
+    /**
+     * 按顺序为每个值分配绑定占位符
+     * 需要与pageClause、渲染时UpdateMapper使用同一个BindMarkers，保证占位符顺序一致
+     */
+    private Bindings valueBindings(BindMarkers bindMarkers, List<Object> values) {
+        if (values.isEmpty()) {
+            return Bindings.empty();
+        }
+        List<Bindings.Binding> bindingList = new ArrayList<>(values.size());
+        for (Object value : values) {
+            bindingList.add(new DirectValueBinding(bindMarkers.next(), value));
+        }
+        return new Bindings(bindingList);
+    }
+
+    /**
+     * UpdateMapper计算出的绑定值是否与条件中的原始值完全一致，一致时后续相同结构的查询可以跳过条件映射
+     */
+    private boolean isDirectBind(CriteriaDefinition criteria, Bindings bindings) {
+        List<Object> values = SqlRenderCache.criteriaValues(criteria);
+        int index = 0;
+        for (Bindings.Binding binding : bindings) {
+            if (index >= values.size() || !binding.hasValue() || binding.isNull() || !Objects.equals(binding.getValue(), values.get(index))) {
+                return false;
+            }
+            index++;
+        }
+        return index == values.size();
+    }
+
+    private static class DirectValueBinding extends Bindings.Binding {
+        private final Object value;
+
+        DirectValueBinding(BindMarker marker, Object value) {
+            super(marker);
+            this.value = value;
+        }
+
+        @Override
+        public boolean hasValue() {
+            return true;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public void apply(BindTarget bindTarget) {
+            getBindMarker().bind(bindTarget, value);
+        }
+    }
+
+    private PreparedOperation<Select> buildSelectPreparedOperation(StatementMapper.SelectSpec selectSpec, RenderContext renderContext, @Nullable String renderKey) {
         RelationalPersistentEntity<?> entity = getEntity(selectSpec.getTable());
         Table table = selectSpec.getTable();
         List<Expression> selectList = getSelectList(selectSpec, entity);
@@ -111,10 +225,12 @@ public class MapperUtil {
         SelectBuilder.SelectFromAndJoin selectBuilder = selectAndFrom.from(table);
         BindMarkers bindMarkers = dialect.getBindMarkersFactory().create();
         Bindings bindings = Bindings.empty();
+        boolean directBind = true;
         CriteriaDefinition criteria = selectSpec.getCriteria();
         if (criteria != null && !criteria.isEmpty()) {
             BoundCondition mappedObject = updateMapper.getMappedObject(bindMarkers, criteria, table, entity);
             bindings = mappedObject.getBindings();
+            directBind = isDirectBind(criteria, bindings);
             Condition condition = mappedObject.getCondition();
             selectBuilder.where(condition);
         }
@@ -138,14 +254,11 @@ public class MapperUtil {
             }
             selectBuilder.orderBy(sort);
         }
-        if (selectSpec.getLimit() > 0) {
-            selectBuilder.limit(selectSpec.getLimit());
-        }
-        if (selectSpec.getOffset() > 0) {
-            selectBuilder.offset(selectSpec.getOffset());
-        }
+        List<Object> pageValues = new ArrayList<>(2);
+        String pageClause = pageClause(bindMarkers, selectSpec, pageValues);
+        bindings = Bindings.merge(bindings, valueBindings(bindMarkers, pageValues));
         Select select = selectBuilder.build();
-        return new SelectPreparedOperation<>(select, renderContext, bindings);
+        return new SelectPreparedOperation<>(select, renderContext, bindings, renderKey, pageClause, directBind);
     }
 
     private static boolean isPathToJavaLangClassProperty(PropertyPath path) {
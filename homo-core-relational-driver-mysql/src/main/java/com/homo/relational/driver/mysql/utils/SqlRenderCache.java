@@ -0,0 +1,158 @@
+package com.homo.relational.driver.mysql.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.r2dbc.core.StatementMapper;
+import org.springframework.data.relational.core.query.CriteriaDefinition;
+import org.springframework.data.relational.core.sql.Expression;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.data.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * SQL渲染缓存
+ * 1. 分表名缓存：(表, 分表参数) -> 分表名，避免每次调用都执行TableDivideStrategy，只用于cacheable的策略
+ * 2. 渲染缓存：(实体类型, 分表名, 条件结构, 投影, 排序, 是否分页) -> 带绑定占位符的SQL和绑定方式，相同结构的查询不再构建语法树和渲染
+ * 条件结构只包含列、比较符、组合方式与值的类型（集合取长度），不包含具体值，值始终通过绑定传入
+ * limit/offset同样通过绑定传入，翻页不会产生新的缓存项
+ */
+@UtilityClass
+@Slf4j
+public class SqlRenderCache {
+    public static final long DEFAULT_MAX_SIZE = 2048;
+    private Cache<List<Object>, SqlIdentifier> tableNameCache = newCache(DEFAULT_MAX_SIZE);
+    private Cache<String, RenderPlan> renderedSqlCache = newCache(DEFAULT_MAX_SIZE);
+
+    /**
+     * 渲染结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class RenderPlan {
+        private final String sql;
+        /**
+         * 条件中的值是否不需要转换，按条件顺序直接绑定
+         * 为true时命中缓存不再映射条件，否则仍由UpdateMapper计算绑定
+         */
+        private final boolean directBind;
+    }
+
+    public void initialize(long maxSize) {
+        tableNameCache = newCache(maxSize);
+        renderedSqlCache = newCache(maxSize);
+        log.info("SqlRenderCache initialize maxSize {}", maxSize);
+    }
+
+    private <K, V> Cache<K, V> newCache(long maxSize) {
+        return Caffeine.newBuilder().maximumSize(maxSize).build();
+    }
+
+    public SqlIdentifier getTableName(Object table, Object[] args, Supplier<SqlIdentifier> divider) {
+        List<Object> key = Arrays.asList(table, Arrays.asList(args));
+        return tableNameCache.get(key, k -> divider.get());
+    }
+
+    public RenderPlan getRenderPlan(String renderKey) {
+        return renderKey == null ? null : renderedSqlCache.getIfPresent(renderKey);
+    }
+
+    public void putRenderPlan(String renderKey, String sql, boolean directBind) {
+        if (renderKey != null) {
+            renderedSqlCache.put(renderKey, new RenderPlan(sql, directBind));
+        }
+    }
+
+    public String selectKey(Class<?> domainType, StatementMapper.SelectSpec selectSpec) {
+        StringBuilder builder = new StringBuilder(128)
+                .append(domainType == null ? "" : domainType.getName())
+                .append('|').append(selectSpec.getTable().getName().getReference())
+                .append('|').append(selectSpec.isDistinct());
+        builder.append('|');
+        for (Expression expression : selectSpec.getSelectList()) {
+            builder.append(expression).append(',');
+        }
+        builder.append('|');
+        appendShape(builder, selectSpec.getCriteria());
+        builder.append('|').append(selectSpec.getSort())
+                .append('|').append(selectSpec.getLimit() > 0)
+                .append('|').append(selectSpec.getOffset() > 0);
+        return builder.toString();
+    }
+
+    private void appendShape(StringBuilder builder, CriteriaDefinition criteria) {
+        if (criteria == null || criteria.isEmpty()) {
+            return;
+        }
+        if (criteria.getPrevious() != null) {
+            appendShape(builder, criteria.getPrevious());
+        }
+        builder.append(criteria.getCombinator()).append(' ');
+        if (criteria.isGroup()) {
+            builder.append('(');
+            for (CriteriaDefinition member : criteria.getGroup()) {
+                appendShape(builder, member);
+            }
+            builder.append(')');
+            return;
+        }
+        SqlIdentifier column = criteria.getColumn();
+        builder.append(column == null ? "" : column.getReference())
+                .append(' ').append(criteria.getComparator())
+                .append(criteria.isIgnoreCase() ? " ic " : " ");
+        Object value = criteria.getValue();
+        if (value == null) {
+            builder.append("null");
+        } else if (value instanceof Collection) {
+            builder.append('[').append(((Collection<?>) value).size()).append(']');
+        } else {
+            builder.append(value.getClass().getName());
+        }
+        builder.append(';');
+    }
+
+    /**
+     * 按UpdateMapper的绑定顺序取出条件中的值（不做转换）
+     */
+    public List<Object> criteriaValues(CriteriaDefinition criteria) {
+        List<Object> values = new ArrayList<>();
+        appendValues(values, criteria);
+        return values;
+    }
+
+    private void appendValues(List<Object> values, CriteriaDefinition criteria) {
+        if (criteria == null || criteria.isEmpty()) {
+            return;
+        }
+        if (criteria.getPrevious() != null) {
+            appendValues(values, criteria.getPrevious());
+        }
+        if (criteria.isGroup()) {
+            for (CriteriaDefinition member : criteria.getGroup()) {
+                appendValues(values, member);
+            }
+            return;
+        }
+        CriteriaDefinition.Comparator comparator = criteria.getComparator();
+        Object value = criteria.getValue();
+        if (comparator == CriteriaDefinition.Comparator.IS_NULL || comparator == CriteriaDefinition.Comparator.IS_NOT_NULL) {
+            return;
+        }
+        if (value instanceof Pair) {
+            values.add(((Pair<?, ?>) value).getFirst());
+            values.add(((Pair<?, ?>) value).getSecond());
+        } else if (value instanceof Collection) {
+            values.addAll((Collection<?>) value);
+        } else {
+            values.add(value);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.homo.relational.driver.mysql.utils;
 
+import com.homo.core.facade.relational.mapping.HomoTableDivideStrategy;
 import com.homo.core.facade.relational.schema.TableSchema;
 import com.homo.core.utils.origin.ArrayUtil;
 import com.homo.relational.base.SchemaInfoCoordinator;
@@ -9,6 +10,8 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.springframework.data.relational.core.sql.SqlIdentifier;
 import org.springframework.util.Assert;
 
+import java.util.function.Supplier;
+
 @UtilityClass
 @Slf4j
 public class TableNameUtil {
@@ -19,7 +22,9 @@ public class TableNameUtil {
             return SqlIdentifier.quoted(tableSchema.getIdentifier().getText());
         }
         Assert.notNull(tableSchema.getDivideStrategy(), "table must has nameStrategy in domain class!");
-        return SqlIdentifier.quoted(tableSchema.getDivideStrategy().genTableName(tableSchema.getIdentifier().getText(),args));
+        HomoTableDivideStrategy divideStrategy = tableSchema.getDivideStrategy();
+        Supplier<SqlIdentifier> divider = () -> SqlIdentifier.quoted(divideStrategy.genTableName(tableSchema.getIdentifier().getText(), args));
+        return divideStrategy.cacheable() ? SqlRenderCache.getTableName(domainType, args, divider) : divider.get();
     }
 
     public static SqlIdentifier getTableName(TableSchema table, Object[] args) {
@@ -28,6 +33,9 @@ public class TableNameUtil {
             return SqlIdentifier.quoted(table.getIdentifier().getText());
         }
         Assert.notNull(table.getDivideStrategy(), "table must has nameStragry in domain class!");
-        return SqlIdentifier.quoted(table.getDivideStrategy().genTableName(table.getTableName(), args));
+        HomoTableDivideStrategy divideStrategy = table.getDivideStrategy();
+        Supplier<SqlIdentifier> divider = () -> SqlIdentifier.quoted(divideStrategy.genTableName(table.getTableName(), args));
+        //只缓存确定性的分表策略，按时间分表等每次都重新计算
+        return divideStrategy.cacheable() ? SqlRenderCache.getTableName(table, args, divider) : divider.get();
     }
 }
@@ -4,13 +4,26 @@ import com.homo.relational.base.aggregate.HomoAggregation;
 import com.homo.core.facade.relational.operation.RelationalTemplate;
 import com.homo.core.facade.relational.operation.UpdateOperation;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.r2dbc.core.*;
 
+import java.util.function.Function;
+
 @Getter
 @Slf4j
 public class MysqlRelationalTemplate implements RelationalTemplate<HomoAggregation> {
     private final R2dbcEntityTemplate template;
+    /**
+     * 批量插入单条语句的绑定参数上限
+     */
+    @Setter
+    private int batchMaxBindCount = 4096;
+    /**
+     * 批量插入单条语句的预估字节上限
+     */
+    @Setter
+    private int batchMaxStatementBytes = 1024 * 1024;
 
     public MysqlRelationalTemplate(R2dbcEntityTemplate template) {
         this.template = template;
@@ -36,6 +49,26 @@ public class MysqlRelationalTemplate implements RelationalTemplate<HomoAggregati
         return new InsertIgnoreSpecAdaptor<>(template, domainType, args);
     }
 
+    @Override
+    public <T> BatchInsertSpec<T> insertAll(Class<T> domainType, Object... args) {
+        return insertAll(domainType, obj -> args);
+    }
+
+    @Override
+    public <T> BatchInsertSpec<T> insertAll(Class<T> domainType, Function<? super T, Object[]> divideArgs) {
+        return new BatchInsertSpecAdaptor<>(template, domainType, false, divideArgs, batchMaxBindCount, batchMaxStatementBytes);
+    }
+
+    @Override
+    public <T> BatchInsertSpec<T> upsertAll(Class<T> domainType, Object... args) {
+        return upsertAll(domainType, obj -> args);
+    }
+
+    @Override
+    public <T> BatchInsertSpec<T> upsertAll(Class<T> domainType, Function<? super T, Object[]> divideArgs) {
+        return new BatchInsertSpecAdaptor<>(template, domainType, true, divideArgs, batchMaxBindCount, batchMaxStatementBytes);
+    }
+
     @Override
     public <T> SelectSpec<T> find(Class<T> domainType, Object... args) {
         return new SelectSpecAdaptor<>(template, domainType,  args);
@@ -0,0 +1,212 @@
+package org.springframework.data.r2dbc.core;
+
+import com.homo.core.facade.relational.operation.InsertOperation;
+import com.homo.core.facade.relational.schema.TableSchema;
+import com.homo.core.utils.rector.Homo;
+import com.homo.relational.base.SchemaInfoCoordinator;
+import com.homo.relational.driver.mysql.utils.MapperUtil;
+import com.homo.relational.driver.mysql.utils.TableNameUtil;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.r2dbc.core.Parameter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 批量插入
+ * 对象先按(分表名, 写入列)分组，保证同一条语句内每行的列一致，
+ * 再按绑定参数数量与预估语句字节数切分成多条 INSERT ... VALUES (...),(...) 语句，
+ * 所有语句在同一个连接上顺序执行
+ * 写入列：插入时只写非空列，null列使用数据库默认值，与单条插入一致；
+ * upsert时写入所有列，null列显式写入NULL，已存在的行对应字段会被更新为NULL
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class BatchInsertSpecAdaptor<T> implements InsertOperation.BatchInsertSpec<T> {
+    private final R2dbcEntityTemplate template;
+    private final Class<T> domainType;
+    private final boolean upsert;
+    private final Function<? super T, Object[]> divideArgs;
+    private final int maxBindCount;
+    private final int maxStatementBytes;
+
+    @Override
+    public Homo<Long> values(List<T> objs) {
+        if (objs == null || objs.isEmpty()) {
+            return Homo.result(0L);
+        }
+        TableSchema tableSchema = SchemaInfoCoordinator.getTable(domainType);
+        if (tableSchema == null) {
+            return Homo.error(new IllegalArgumentException("table must be defined, add @HomoTable in domain class!"));
+        }
+        Map<List<SqlIdentifier>, List<OutboundRow>> groups = new LinkedHashMap<>();
+        for (T obj : objs) {
+            try {
+                InsertSpecAdaptor.fillGeneratedId(tableSchema, obj);
+            } catch (Exception e) {
+                return Homo.error(e);
+            }
+            SqlIdentifier tableName = TableNameUtil.getTableName(domainType, divideArgs.apply(obj));
+            OutboundRow outboundRow = template.getDataAccessStrategy().getOutboundRow(obj);
+            List<SqlIdentifier> groupKey = new ArrayList<>(outboundRow.size() + 1);
+            groupKey.add(tableName);
+            groupKey.addAll(columns(outboundRow, upsert));
+            groups.computeIfAbsent(groupKey, key -> new ArrayList<>()).add(outboundRow);
+        }
+        List<SqlIdentifier> identifierColumns = template.getDataAccessStrategy().getIdentifierColumns(domainType);
+        List<BatchStatement> statements = new ArrayList<>();
+        for (Map.Entry<List<SqlIdentifier>, List<OutboundRow>> entry : groups.entrySet()) {
+            List<SqlIdentifier> groupKey = entry.getKey();
+            if (groupKey.size() <= 1) {
+                return Homo.error(new IllegalArgumentException("batch insert need at least one column with value!"));
+            }
+            split(groupKey.get(0), groupKey.subList(1, groupKey.size()), identifierColumns, entry.getValue(), statements);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("batch insert start domainType {} upsert {} rows {} statements {}", domainType, upsert, objs.size(), statements.size());
+        }
+        return Homo.warp(
+                template.getDatabaseClient()
+                        .inConnectionMany(connection -> Flux.fromIterable(statements)
+                                .concatMap(statement -> execute(connection, statement)))
+                        .reduce(0L, Long::sum)
+                        .doOnNext(ret -> log.debug("batch insert end domainType {} rowsUpdated {}", domainType, ret))
+        );
+    }
+
+    /**
+     * 一行需要写入的列，upsert时包含值为null的列
+     */
+    static List<SqlIdentifier> columns(OutboundRow row, boolean upsert) {
+        List<SqlIdentifier> columns = new ArrayList<>(row.size());
+        for (Map.Entry<SqlIdentifier, Parameter> entry : row.entrySet()) {
+            if (upsert || entry.getValue().hasValue()) {
+                columns.add(entry.getKey());
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * 按绑定参数数量与预估字节数切分一组列相同的行
+     */
+    private void split(SqlIdentifier tableName, List<SqlIdentifier> columns, List<SqlIdentifier> identifierColumns, List<OutboundRow> rows, List<BatchStatement> statements) {
+        String head = renderHead(tableName, columns);
+        String tail = upsert ? renderUpsertTail(columns, identifierColumns) : "";
+        int rowsPerBind = Math.max(1, maxBindCount / columns.size());
+        int rowPlaceholderBytes = columns.size() * 3 + 3;
+        List<OutboundRow> chunk = new ArrayList<>();
+        long chunkBytes = head.length() + tail.length();
+        for (OutboundRow row : rows) {
+            long rowBytes = rowPlaceholderBytes + estimateBytes(row, columns);
+            if (!chunk.isEmpty() && (chunk.size() >= rowsPerBind || chunkBytes + rowBytes > maxStatementBytes)) {
+                statements.add(new BatchStatement(head, tail, columns, chunk));
+                chunk = new ArrayList<>();
+                chunkBytes = head.length() + tail.length();
+            }
+            chunk.add(row);
+            chunkBytes += rowBytes;
+        }
+        if (!chunk.isEmpty()) {
+            statements.add(new BatchStatement(head, tail, columns, chunk));
+        }
+    }
+
+    private String renderHead(SqlIdentifier tableName, List<SqlIdentifier> columns) {
+        return "INSERT INTO " + MapperUtil.toSql(tableName) + " (" +
+                columns.stream().map(MapperUtil::toSql).collect(Collectors.joining(", ")) +
+                ") VALUES ";
+    }
+
+    /**
+     * 主键列不需要更新，只有主键列时使用无副作用的赋值保证语法正确
+     */
+    private String renderUpsertTail(List<SqlIdentifier> columns, List<SqlIdentifier> identifierColumns) {
+        List<String> updateColumns = columns.stream()
+                .filter(column -> identifierColumns.stream().noneMatch(id -> id.getReference().equalsIgnoreCase(column.getReference())))
+                .map(MapperUtil::toSql)
+                .collect(Collectors.toList());
+        if (updateColumns.isEmpty()) {
+            String column = MapperUtil.toSql(columns.get(0));
+            return " ON DUPLICATE KEY UPDATE " + column + "=" + column;
+        }
+        return " ON DUPLICATE KEY UPDATE " + updateColumns.stream()
+                .map(column -> column + "=VALUES(" + column + ")")
+                .collect(Collectors.joining(","));
+    }
+
+    private long estimateBytes(OutboundRow row, List<SqlIdentifier> columns) {
+        long bytes = 0;
+        for (SqlIdentifier column : columns) {
+            Object value = row.get(column).getValue();
+            if (value instanceof CharSequence) {
+                bytes += ((CharSequence) value).length();
+            } else if (value instanceof byte[]) {
+                bytes += ((byte[]) value).length;
+            } else if (value instanceof ByteBuffer) {
+                bytes += ((ByteBuffer) value).remaining();
+            } else {
+                bytes += 16;
+            }
+        }
+        return bytes;
+    }
+
+    private Mono<Long> execute(Connection connection, BatchStatement batchStatement) {
+        Statement statement = connection.createStatement(batchStatement.toSql());
+        bind(statement, batchStatement.columns, batchStatement.rows);
+        return Flux.from(statement.execute())
+                .flatMap(Result::getRowsUpdated)
+                .reduce(0L, (total, count) -> total + count);
+    }
+
+    static void bind(Statement statement, List<SqlIdentifier> columns, List<OutboundRow> rows) {
+        int index = 0;
+        for (OutboundRow row : rows) {
+            for (SqlIdentifier column : columns) {
+                Parameter parameter = row.get(column);
+                if (parameter.hasValue()) {
+                    statement.bind(index++, parameter.getValue());
+                } else {
+                    //null值需要按列类型绑定
+                    statement.bindNull(index++, parameter.getType());
+                }
+            }
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class BatchStatement {
+        private final String head;
+        private final String tail;
+        private final List<SqlIdentifier> columns;
+        private final List<OutboundRow> rows;
+
+        String toSql() {
+            StringBuilder rowPlaceholder = new StringBuilder("(");
+            for (int i = 0; i < columns.size(); i++) {
+                rowPlaceholder.append(i == 0 ? "?" : ", ?");
+            }
+            rowPlaceholder.append(")");
+            StringBuilder builder = new StringBuilder(head.length() + tail.length() + rows.size() * (rowPlaceholder.length() + 1));
+            builder.append(head);
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0) {
+                    builder.append(",");
+                }
+                builder.append(rowPlaceholder);
+            }
+            return builder.append(tail).toString();
+        }
+    }
+}
@@ -37,17 +37,10 @@ public class InsertSpecAdaptor<T> implements InsertOperation.InsertSpec<T> {
     public Homo<T> value(T obj) {
         log.debug("insert using value start: {}", obj);
         TableSchema tableSchema = SchemaInfoCoordinator.getTable(domainType);
-        ColumnSchema primaryColumn = tableSchema.getPrimaryColumn();
-        if (primaryColumn.isAutoGenerate() && primaryColumn.getTypeName().equals("java.lang.String")) {
-            // 使用的是 String 类型的唯一id, 并且设置了自动生成
-            String id = UUID.randomUUID().toString();
-            try {
-                if (primaryColumn.getReadMethod().invoke(obj) == null) {
-                    primaryColumn.getWriteMethod().invoke(obj, id);
-                }
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                return Homo.error(e);
-            }
+        try {
+            fillGeneratedId(tableSchema, obj);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            return Homo.error(e);
         }
         OutboundRow outboundRow = template.getDataAccessStrategy().getOutboundRow(obj);
         StatementMapper statementMapper = template.getDataAccessStrategy().getStatementMapper();
@@ -92,6 +85,19 @@ public class InsertSpecAdaptor<T> implements InsertOperation.InsertSpec<T> {
         );
     }
 
+    /**
+     * 主键是自动生成的 String 类型且未赋值时，填充一个UUID
+     */
+    static void fillGeneratedId(TableSchema tableSchema, Object obj) throws IllegalAccessException, InvocationTargetException {
+        ColumnSchema primaryColumn = tableSchema.getPrimaryColumn();
+        if (primaryColumn.isAutoGenerate() && primaryColumn.getTypeName().equals("java.lang.String")) {
+            // 使用的是 String 类型的唯一id, 并且设置了自动生成
+            if (primaryColumn.getReadMethod().invoke(obj) == null) {
+                primaryColumn.getWriteMethod().invoke(obj, UUID.randomUUID().toString());
+            }
+        }
+    }
+
     @Override
     public Homo<List<T>> values(T... objs) {
         log.debug("insert using values start: {}", objs);
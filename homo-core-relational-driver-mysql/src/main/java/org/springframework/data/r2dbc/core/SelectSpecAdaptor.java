@@ -10,6 +10,7 @@ import io.r2dbc.spi.Row;
 import io.r2dbc.spi.RowMetadata;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.projection.ProjectionInformation;
 import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
@@ -20,6 +21,7 @@ import org.springframework.data.relational.core.sql.*;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.r2dbc.core.PreparedOperation;
 import org.springframework.r2dbc.core.RowsFetchSpec;
+import org.springframework.util.Assert;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -80,7 +82,7 @@ public class SelectSpecAdaptor<T> implements SelectOperation.SelectSpec<T> {
         if (criteria.isPresent()) {
             selectSpec = criteria.map(selectSpec::withCriteria).orElse(selectSpec);
         }
-        PreparedOperation<Select> operation = MapperUtil.createSelectPreparedOperation(selectSpec, Objects.requireNonNull(statementMapper.getRenderContext()));
+        PreparedOperation<Select> operation = MapperUtil.createSelectPreparedOperation(domainType, selectSpec, Objects.requireNonNull(statementMapper.getRenderContext()));
         return Homo.warp(
                 template.getDatabaseClient().sql(operation)
                         .map(new Function<Row, Long>() {
@@ -167,6 +169,45 @@ public class SelectSpecAdaptor<T> implements SelectOperation.SelectSpec<T> {
         );
     }
 
+    @Override
+    public Flux<T> findStream(int batchSize) {
+        Assert.isTrue(batchSize > 0, "findStream batchSize must be positive!");
+        @SuppressWarnings("unchecked")
+        RelationalPersistentEntity<T> entity = (RelationalPersistentEntity<T>) template.getConverter().getMappingContext().getRequiredPersistentEntity(domainType);
+        Assert.isTrue(entity.hasIdProperty(), "findStream need id property in domain class!");
+        String idProperty = entity.getRequiredIdProperty().getName();
+        Query baseQuery = getQuery();
+        if (log.isDebugEnabled()) {
+            log.debug("findStream operation start: {}, batchSize {}", baseQuery.getCriteria().orElse(Criteria.empty()), batchSize);
+        }
+        return findPageAfter(baseQuery, idProperty, null, batchSize)
+                .expand(page -> page.size() < batchSize ?
+                        Mono.empty() :
+                        findPageAfter(baseQuery, idProperty, entity.getIdentifierAccessor(page.get(page.size() - 1)).getRequiredIdentifier(), batchSize))
+                .concatMapIterable(Function.identity());
+    }
+
+    /**
+     * 查询主键大于lastId的一页数据，lastId为空时从头开始
+     */
+    private Mono<List<T>> findPageAfter(Query baseQuery, String idProperty, Object lastId, int batchSize) {
+        Criteria baseCriteria = (Criteria) baseQuery.getCriteria().orElse(Criteria.empty());
+        Criteria pageCriteria = baseCriteria;
+        if (lastId != null) {
+            Criteria seek = Criteria.where(idProperty).greaterThan(lastId);
+            pageCriteria = baseCriteria.isEmpty() ? seek : Criteria.from(baseCriteria, seek);
+        }
+        Query pageQuery = Query.query(pageCriteria)
+                .columns(baseQuery.getColumns().toArray(new SqlIdentifier[0]))
+                .sort(Sort.by(Sort.Order.asc(idProperty)))
+                .limit(batchSize);
+        PreparedOperation<Select> operation = getQueryOperationByQuery(pageQuery);
+        DatabaseClient.GenericExecuteSpec executeSpec = template.getDatabaseClient().sql(operation);
+        return getRowsFetchSpec(executeSpec, domainType, domainType)
+                .all()
+                .collectList();
+    }
+
     private PreparedOperation<Select> getQueryOperationByQuery(Query query) {
         StatementMapper.TypedStatementMapper<T> statementMapper = template.getDataAccessStrategy().getStatementMapper().forType(domainType);
         SqlIdentifier tableName = TableNameUtil.getTableName(domainType, args);
@@ -188,7 +229,7 @@ public class SelectSpecAdaptor<T> implements SelectOperation.SelectSpec<T> {
         if (criteria.isPresent()) {
             selectSpec = criteria.map(selectSpec::withCriteria).orElse(selectSpec);
         }
-        return MapperUtil.createSelectPreparedOperation(selectSpec, Objects.requireNonNull(statementMapper.getRenderContext()));
+        return MapperUtil.createSelectPreparedOperation(domainType, selectSpec, Objects.requireNonNull(statementMapper.getRenderContext()));
     }
 
     private <R> RowsFetchSpec<R> getRowsFetchSpec(DatabaseClient.GenericExecuteSpec executeSpec, Class<?> entityClass,
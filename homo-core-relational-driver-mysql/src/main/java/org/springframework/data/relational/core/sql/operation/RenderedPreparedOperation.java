@@ -0,0 +1,37 @@
+package org.springframework.data.relational.core.sql.operation;
+
+import org.springframework.r2dbc.core.PreparedOperation;
+import org.springframework.r2dbc.core.binding.BindTarget;
+import org.springframework.r2dbc.core.binding.Bindings;
+
+import java.util.function.Supplier;
+
+/**
+ * 命中渲染缓存时使用的PreparedOperation，直接使用缓存的SQL，只按需构建语法树
+ */
+public class RenderedPreparedOperation<T> implements PreparedOperation<T> {
+    private final String sql;
+    private final Supplier<T> sourceSupplier;
+    private final Bindings bindings;
+
+    public RenderedPreparedOperation(String sql, Supplier<T> sourceSupplier, Bindings bindings) {
+        this.sql = sql;
+        this.sourceSupplier = sourceSupplier;
+        this.bindings = bindings;
+    }
+
+    @Override
+    public T getSource() {
+        return sourceSupplier.get();
+    }
+
+    @Override
+    public void bindTo(BindTarget target) {
+        this.bindings.apply(target);
+    }
+
+    @Override
+    public String toQuery() {
+        return sql;
+    }
+}
@@ -1,5 +1,6 @@
 package org.springframework.data.relational.core.sql.operation;
 
+import com.homo.relational.driver.mysql.utils.SqlRenderCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.relational.core.sql.Select;
 import org.springframework.data.relational.core.sql.Visitable;
@@ -14,10 +15,23 @@ public class SelectPreparedOperation<T extends Visitable> implements PreparedOpe
     private final T source;
     private final RenderContext renderContext;
     private final Bindings bindings;
+    private final String renderKey;
+    /**
+     * 追加在语句末尾的分页子句（绑定占位符），source中不包含limit/offset
+     */
+    private final String pageClause;
+    private final boolean directBind;
     public SelectPreparedOperation(T source, RenderContext renderContext, Bindings bindings) {
+        this(source, renderContext, bindings, null, "", false);
+    }
+
+    public SelectPreparedOperation(T source, RenderContext renderContext, Bindings bindings, String renderKey, String pageClause, boolean directBind) {
         this.source = source;
         this.renderContext = renderContext;
         this.bindings = bindings;
+        this.renderKey = renderKey;
+        this.pageClause = pageClause;
+        this.directBind = directBind;
     }
     @Override
     public T getSource() {
@@ -34,7 +48,9 @@ public class SelectPreparedOperation<T extends Visitable> implements PreparedOpe
         if (this.source instanceof Select){
             SelectStatementVisitor visitor = new SelectStatementVisitor(this.renderContext);
             source.visit(visitor);
-            return visitor.getRenderedPart().toString();
+            String sql = visitor.getRenderedPart().toString() + pageClause;
+            SqlRenderCache.putRenderPlan(renderKey, sql, directBind);
+            return sql;
         }
         throw new IllegalStateException("Cannot render " + this.getSource());
     }
@@ -0,0 +1,69 @@
+package com.homo.relational.driver.mysql.utils;
+
+import com.homo.core.facade.relational.mapping.DefaultHomoTableDivideStrategy;
+import com.homo.core.facade.relational.mapping.HomoIndex;
+import com.homo.core.facade.relational.mapping.HomoTableDivideStrategy;
+import com.homo.core.facade.relational.schema.TableSchema;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TableNameUtilTest {
+    private static final AtomicInteger GEN_COUNT = new AtomicInteger();
+    private static final AtomicInteger MONTH = new AtomicInteger(1);
+
+    /**
+     * 模拟按月分表，结果随外部状态变化
+     */
+    public static class MonthDivideStrategy implements HomoTableDivideStrategy {
+        @Override
+        public String genTableName(String tableName, Object[] args) {
+            GEN_COUNT.incrementAndGet();
+            return tableName + "_" + MONTH.get();
+        }
+    }
+
+    public static class ModDivideStrategy implements HomoTableDivideStrategy {
+        @Override
+        public String genTableName(String tableName, Object[] args) {
+            GEN_COUNT.incrementAndGet();
+            return tableName + "_" + ((Integer) args[0] % 4);
+        }
+
+        @Override
+        public boolean cacheable() {
+            return true;
+        }
+    }
+
+    private static TableSchema table(String name, Class<? extends HomoTableDivideStrategy> strategy) throws Exception {
+        return new TableSchema(name, "mysql", null, Object.class, new HomoIndex[0], false, strategy, Collections.emptyList());
+    }
+
+    @Test
+    public void testNotCacheable() throws Exception {
+        TableSchema table = table("log", MonthDivideStrategy.class);
+        GEN_COUNT.set(0);
+        MONTH.set(1);
+        Object[] args = {1};
+        Assertions.assertEquals("log_1", TableNameUtil.getTableName(table, args).getReference());
+        //外部状态变化后得到新的分表名
+        MONTH.set(2);
+        Assertions.assertEquals("log_2", TableNameUtil.getTableName(table, args).getReference());
+        Assertions.assertEquals(2, GEN_COUNT.get());
+    }
+
+    @Test
+    public void testCacheable() throws Exception {
+        TableSchema table = table("user", ModDivideStrategy.class);
+        GEN_COUNT.set(0);
+        Assertions.assertEquals("user_1", TableNameUtil.getTableName(table, new Object[]{5}).getReference());
+        Assertions.assertEquals("user_1", TableNameUtil.getTableName(table, new Object[]{5}).getReference());
+        Assertions.assertEquals("user_2", TableNameUtil.getTableName(table, new Object[]{6}).getReference());
+        //相同参数只计算一次
+        Assertions.assertEquals(2, GEN_COUNT.get());
+        Assertions.assertTrue(new DefaultHomoTableDivideStrategy().cacheable());
+    }
+}
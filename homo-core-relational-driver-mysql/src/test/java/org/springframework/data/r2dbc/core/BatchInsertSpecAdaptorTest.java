@@ -0,0 +1,97 @@
+package org.springframework.data.r2dbc.core;
+
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.r2dbc.core.Parameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BatchInsertSpecAdaptorTest {
+    private static final SqlIdentifier ID = SqlIdentifier.unquoted("id");
+    private static final SqlIdentifier NAME = SqlIdentifier.unquoted("name");
+    private static final SqlIdentifier NICK = SqlIdentifier.unquoted("nick");
+
+    /**
+     * 按顺序记录绑定的值，null绑定记录为列类型
+     */
+    private static class RecordStatement implements Statement {
+        final List<Object> binds = new ArrayList<>();
+
+        @Override
+        public Statement add() {
+            return this;
+        }
+
+        @Override
+        public Statement bind(int index, Object value) {
+            Assertions.assertEquals(binds.size(), index);
+            binds.add(value);
+            return this;
+        }
+
+        @Override
+        public Statement bind(String name, Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Statement bindNull(int index, Class<?> type) {
+            Assertions.assertEquals(binds.size(), index);
+            binds.add(type);
+            return this;
+        }
+
+        @Override
+        public Statement bindNull(String name, Class<?> type) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Publisher<? extends Result> execute() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static OutboundRow row(long id, String name, String nick) {
+        OutboundRow row = new OutboundRow();
+        row.put(ID, Parameter.from(id));
+        row.put(NAME, Parameter.fromOrEmpty(name, String.class));
+        row.put(NICK, Parameter.fromOrEmpty(nick, String.class));
+        return row;
+    }
+
+    @Test
+    public void testInsertSkipNull() {
+        //插入时null列使用默认值，不写入
+        Assertions.assertEquals(Arrays.asList(ID, NAME), BatchInsertSpecAdaptor.columns(row(1, "a", null), false));
+        Assertions.assertEquals(Arrays.asList(ID, NAME, NICK), BatchInsertSpecAdaptor.columns(row(1, "a", "b"), false));
+    }
+
+    @Test
+    public void testUpsertWriteNull() {
+        //upsert时null列也写入，两行列相同可以在同一条语句中
+        OutboundRow first = row(1, "a", null);
+        OutboundRow second = row(2, null, "b");
+        List<SqlIdentifier> columns = BatchInsertSpecAdaptor.columns(first, true);
+        Assertions.assertEquals(Arrays.asList(ID, NAME, NICK), columns);
+        Assertions.assertEquals(columns, BatchInsertSpecAdaptor.columns(second, true));
+        RecordStatement statement = new RecordStatement();
+        BatchInsertSpecAdaptor.bind(statement, columns, Arrays.asList(first, second));
+        Assertions.assertEquals(Arrays.asList(1L, "a", String.class, 2L, String.class, "b"), statement.binds);
+    }
+
+    @Test
+    public void testBindValue() {
+        RecordStatement statement = new RecordStatement();
+        BatchInsertSpecAdaptor.bind(statement, Arrays.asList(ID, NAME), Collections.singletonList(row(3, "c", null)));
+        Assertions.assertEquals(Arrays.asList(3L, "c"), statement.binds);
+    }
+}
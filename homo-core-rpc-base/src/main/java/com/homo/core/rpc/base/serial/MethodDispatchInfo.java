@@ -8,10 +8,12 @@ import com.homo.core.facade.rpc.SerializeInfo;
 import com.homo.core.facade.security.RpcSecurity;
 import com.homo.core.rpc.base.security.AccessControl;
 import com.homo.core.utils.reflect.HomoTypeUtil;
+import com.homo.core.utils.serial.ClassIdConflictException;
 import com.homo.core.utils.serial.FSTSerializationProcessor;
 import com.homo.core.utils.serial.FastjsonSerializationProcessor;
 import com.homo.core.utils.serial.HomoSerializationProcessor;
 import com.homo.core.utils.serial.ProtoSerializationProcessor;
+import com.homo.core.utils.serial.ProtostuffSerializationProcessor;
 import com.homo.core.utils.upload.UploadFile;
 import io.homo.proto.client.ParameterMsg;
 import lombok.Data;
@@ -25,6 +27,12 @@ import java.util.function.BiPredicate;
 @Slf4j
 @Data
 public class MethodDispatchInfo implements RpcSecurity {
+    /**
+     * 非proto、非json参数的默认序列化方式，fst或protostuff，调用双方需要一致
+     * protostuff模式下导出方法的参数与返回类型在启动时注册，只写类id不写类名
+     */
+    private static final String fallbackSerialType = System.getProperty("rpc.serial.fallback", "fst");
+    private static final HomoSerializationProcessor fallbackProcessor = "protostuff".equals(fallbackSerialType) ? new ProtostuffSerializationProcessor() : new FSTSerializationProcessor();
     private Method method;
     private int paramCount;
     private SerializeInfo[] paramSerializeInfos;
@@ -47,6 +55,14 @@ public class MethodDispatchInfo implements RpcSecurity {
     }
 
     private void init() {
+        //先于导出注册，类id冲突直接抛出，不被导出过程的异常处理吞掉
+        for (Class<?> paramType : method.getParameterTypes()) {
+            registerIfFallback(paramType);
+        }
+        Type[] returnTypeArguments = HomoTypeUtil.getTypeArguments(method.getGenericReturnType());
+        if (returnTypeArguments != null && returnTypeArguments.length > 0) {
+            registerIfFallback(HomoTypeUtil.getClass(returnTypeArguments[0]));
+        }
         this.paramCount = exportParamCount();
         this.paramSerializeInfos = exportParamsSerializeInfo(method.getParameterTypes());
         this.returnSerializeInfo = exportrReturnSerializeInfo(method.getGenericReturnType());
@@ -69,7 +85,7 @@ public class MethodDispatchInfo implements RpcSecurity {
                 serializationProcessor = null;//todo
                 returnContent = new FileRpcContent();
             } else {
-                serializationProcessor = new FSTSerializationProcessor();
+                serializationProcessor = fallbackProcessor;
                 returnContent = new ByteRpcContent();
             }
             SerializeInfo serializeInfo = exportSerializeInfo(generateClass, serializationProcessor);
@@ -102,7 +118,7 @@ public class MethodDispatchInfo implements RpcSecurity {
                     paramContentType = RpcContentType.FILE;
                     paramContent = new FileRpcContent();
                 } else {
-                    serializationProcessor = new FSTSerializationProcessor();
+                    serializationProcessor = fallbackProcessor;
                 }
                 serializeInfos[i] = exportSerializeInfo(clazz, serializationProcessor);
             }
@@ -117,6 +133,27 @@ public class MethodDispatchInfo implements RpcSecurity {
         }
     }
 
+    private static void registerIfFallback(Class<?> clazz) {
+        if (clazz == null
+                || com.google.protobuf.GeneratedMessageV3.class.isAssignableFrom(clazz)
+                || JSONObject.class.isAssignableFrom(clazz) || JSONArray.class.isAssignableFrom(clazz)
+                || UploadFile.class.isAssignableFrom(clazz)) {
+            return;
+        }
+        registerFallbackClass(clazz);
+    }
+
+    /**
+     * protostuff模式下注册默认序列化的类（如实体类），需要在启动阶段调用，fst模式下忽略
+     *
+     * @throws ClassIdConflictException 类id冲突
+     */
+    public static void registerFallbackClass(Class<?>... classes) {
+        if (fallbackProcessor instanceof ProtostuffSerializationProcessor) {
+            ((ProtostuffSerializationProcessor) fallbackProcessor).registerClass(classes);
+        }
+    }
+
     private SerializeInfo exportSerializeInfo(Class<?> clazz, HomoSerializationProcessor serializationProcessor) {
         SerializeInfo serializeInfo = SerializeInfo.create(clazz, serializationProcessor);
         return serializeInfo;
@@ -4,6 +4,7 @@ import com.homo.core.facade.ability.EntityType;
 import com.homo.core.facade.service.InnerService;
 import com.homo.core.facade.service.ServiceExport;
 import com.homo.core.utils.reflect.HomoAnnotationUtil;
+import com.homo.core.utils.serial.ClassIdConflictException;
 import lombok.extern.slf4j.Slf4j;
 
 import java.lang.annotation.Annotation;
@@ -34,6 +35,10 @@ public class RpcHandleInfo {
                 MethodDispatchInfo methodDispatchInfo = MethodDispatchInfo.create(method);
                 log.info("exportMethodInfos rpcClazz {}  msgName {} ",rpcClazz,methodName);
                 methodDispatchInfoMap.put(methodName, methodDispatchInfo);
+            } catch (ClassIdConflictException e) {
+                //序列化类id冲突，启动失败
+                log.error("exportMethodInfos rpcClazz {} msgName {} class id conflict", rpcClazz, methodName, e);
+                throw e;
             } catch (Exception e) {
                 log.error("exportMethodInfos rpcClazz {} msgName {} error {}",rpcClazz, methodName, e);
             }
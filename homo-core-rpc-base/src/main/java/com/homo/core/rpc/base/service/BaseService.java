@@ -17,6 +17,9 @@ import com.homo.core.utils.rector.Homo;
 import com.homo.core.utils.spring.GetBeanUtil;
 import com.homo.core.utils.trace.ZipkinUtil;
 import io.homo.proto.client.ParameterMsg;
+import io.homo.proto.entity.EntityHandoffCommit;
+import io.homo.proto.entity.EntityHandoffRequest;
+import io.homo.proto.entity.EntityHandoffResponse;
 import io.homo.proto.entity.EntityRequest;
 import io.homo.proto.entity.EntityResponse;
 import io.homo.proto.entity.Ping;
@@ -155,4 +158,16 @@ public class BaseService implements Service, IEntityService, ServiceModule {
         }
         return Homo.result(Pong.newBuilder().setTime(System.currentTimeMillis()).build());
     }
+
+    @Override
+    public Homo<EntityHandoffResponse> entityHandoff(Integer podIndex, EntityHandoffRequest request) throws Exception {
+        log.info("entityHandoff podIndex {} srcName {} srcPodIndex {} count {}", podIndex, request.getSrcName(), request.getSrcPodIndex(), request.getEntityCount());
+        return callSystem.acceptHandoff(request);
+    }
+
+    @Override
+    public Homo<EntityHandoffResponse> entityHandoffCommit(Integer podIndex, EntityHandoffCommit request) throws Exception {
+        log.info("entityHandoffCommit podIndex {} srcName {} srcPodIndex {} committed {} aborted {}", podIndex, request.getSrcName(), request.getSrcPodIndex(), request.getCommittedCount(), request.getAbortedCount());
+        return callSystem.commitHandoff(request);
+    }
 }
@@ -1,6 +1,8 @@
 package com.homo.core.rpc.base.service;
 
 import com.homo.core.facade.rpc.RpcContent;
+import com.homo.core.facade.service.Service;
+import com.homo.core.facade.service.ServiceStateMgr;
 import com.homo.core.rpc.base.CallData;
 import com.homo.core.rpc.base.RpcInterceptor;
 import com.homo.core.rpc.base.serial.MethodDispatchInfo;
@@ -10,6 +12,7 @@ import com.homo.core.utils.concurrent.queue.IdCallQueue;
 import com.homo.core.utils.exception.HomoError;
 import com.homo.core.utils.exception.HomoException;
 import com.homo.core.utils.rector.Homo;
+import com.homo.core.utils.spring.GetBeanUtil;
 import io.homo.proto.client.ParameterMsg;
 import lombok.extern.slf4j.Slf4j;
 
@@ -48,6 +51,13 @@ public class CallDispatcher {
         }else {
             unSerializeParam = rpcHandleInfo.unSerializeParamForInvokeLocalMethod(funName, rpcContent, podId, parameterMsg);
         }
+        if (isStaleRoute(handler, unSerializeParam)) {
+            String userId = ((ParameterMsg) unSerializeParam[1]).getUserId();
+            String hostName = ((Service) handler).getHostName();
+            log.warn("callFun srcService {} funName {} userId {} linkEpoch {} stale route to {}", srcService, funName, userId,
+                    ((ParameterMsg) unSerializeParam[1]).getLinkEpoch(), hostName);
+            return Homo.error(HomoError.throwError(HomoError.linkStale, userId, hostName));
+        }
         Homo<CallData> callTask = Homo.result(new CallData(handler, methodDispatchInfo, unSerializeParam, queueId, srcService, locKQueue,
                 rpcContent,true, CallQueueMgr.DEFAULT_CHOICE_THREAD_STRATEGY));
         Homo retPromise;
@@ -59,6 +69,23 @@ public class CallDispatcher {
         return retPromise;
     }
 
+    /**
+     * 有状态服务收到的请求，调用方按过期的连接信息路由到了本pod（本pod收到的连接变化比调用方路由时的版本新）
+     */
+    private boolean isStaleRoute(Object handler, Object[] unSerializeParam) {
+        if (!(handler instanceof Service) || !((Service) handler).isStateful()) {
+            return false;
+        }
+        if (unSerializeParam == null || unSerializeParam.length < 2 || !(unSerializeParam[1] instanceof ParameterMsg)) {
+            return false;
+        }
+        ParameterMsg parameterMsg = (ParameterMsg) unSerializeParam[1];
+        String userId = parameterMsg.getUserId();
+        if (userId == null || userId.isEmpty()) {
+            return false;
+        }
+        return GetBeanUtil.getBean(ServiceStateMgr.class).isStaleRoute(userId, ((Service) handler).getHostName(), parameterMsg.getLinkEpoch());
+    }
 
     public void setInterceptor(RpcInterceptor interceptor) {
         if (this.interceptor != null) {
@@ -22,12 +22,18 @@ import org.springframework.context.annotation.Lazy;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -57,15 +63,33 @@ public class ServiceStateMgrImpl implements ServiceStateMgr {
     public static int AVAILABLE = 1;
     public static int UNAVAILABLE = 0;
     private String podName;
-    private Integer podIndex;
+    Integer podIndex;
     private long lastUpdateStateTime;
     private final String stateLogicType = "state";
     private final String POD_INDEX_CACHE = "%s-%s";
     /**
      * (user+service) : podIndex
-     * 请求用户服务的用户和服务对应的podIndex
+     * 请求用户服务的用户和服务对应的podIndex，开启连接变化通知时按版本号更新或失效
      */
-    private Cache<String, Integer> localUserServicePodCache;
+    private Cache<String, LinkEntry> localUserServicePodCache;
+    /**
+     * (user+service) : 最近一次连接变化
+     * 用于丢弃查询期间已经过期的结果，以及判断路由到本pod的请求是否过期
+     */
+    private Cache<String, LinkEntry> linkChangeCache;
+    /**
+     * 已观察到的最大连接版本号
+     */
+    private final AtomicLong linkEpoch = new AtomicLong(0);
+    /**
+     * 订阅断开或重新订阅的次数，期间开始的查询结果不缓存
+     */
+    private final AtomicLong linkResetCount = new AtomicLong(0);
+    private boolean linkInvalidateEnable;
+    /**
+     * 过期路由检查的豁免条件
+     */
+    private final List<Predicate<String>> staleRouteExemptions = new CopyOnWriteArrayList<>();
     private Supplier<Integer> loadFun = new Supplier<Integer>() {
         @Override
         public Integer get() {
@@ -81,6 +105,23 @@ public class ServiceStateMgrImpl implements ServiceStateMgr {
         localUserServicePodCache = Caffeine.newBuilder()
                 .expireAfterWrite(serverStateProperties.getLocalUserServicePodCacheSecond(), TimeUnit.SECONDS)
                 .build();
+        linkChangeCache = Caffeine.newBuilder()
+                .expireAfterWrite(serverStateProperties.getLocalUserServicePodCacheSecond(), TimeUnit.SECONDS)
+                .maximumSize(serverStateProperties.getLinkChangeCacheMaxSize())
+                .build();
+        if (statefulDriver != null && serverStateProperties.isLinkInvalidateEnable()) {
+            linkInvalidateEnable = statefulDriver.subscribeLinkChange(rootModule.getServerInfo().appId, rootModule.getServerInfo().namespace, stateLogicType, new StatefulDriver.LinkChangeListener() {
+                @Override
+                public void onLinkChange(String uid, String serviceName, int podId, long epoch) {
+                    ServiceStateMgrImpl.this.onLinkChange(uid, serviceName, podId, epoch);
+                }
+
+                @Override
+                public void onReset() {
+                    onLinkReset();
+                }
+            });
+        }
         if (!isStateful) {
             // 不是有状态服务器，不需要初始化状态管理
             return;
@@ -91,6 +132,55 @@ public class ServiceStateMgrImpl implements ServiceStateMgr {
         scheduleUpdateService();
     }
 
+    /**
+     * 连接变化通知，在驱动的io线程中执行
+     */
+    private void onLinkChange(String uid, String serviceName, int podId, long epoch) {
+        linkEpoch.accumulateAndGet(epoch, Math::max);
+        String key = String.format(POD_INDEX_CACHE, uid, serviceName);
+        LinkEntry change = new LinkEntry(podId, epoch);
+        linkChangeCache.asMap().merge(key, change, (old, cur) -> old.epoch >= cur.epoch ? old : cur);
+        localUserServicePodCache.asMap().computeIfPresent(key, (k, old) -> {
+            if (old.epoch >= epoch) {
+                return old;
+            }
+            return podId < 0 ? null : change;
+        });
+        log.trace("onLinkChange uid {} serviceName {} podId {} epoch {}", uid, serviceName, podId, epoch);
+    }
+
+    /**
+     * 订阅断开或重新订阅，期间的连接变化通知已经丢失，清空依赖通知的连接缓存
+     * 连接变化记录也清空，丢失的后续变化可能已经把连接改回本pod，保留会误判过期路由
+     */
+    void onLinkReset() {
+        linkResetCount.incrementAndGet();
+        localUserServicePodCache.invalidateAll();
+        linkChangeCache.invalidateAll();
+        log.warn("onLinkReset invalidate link cache resetCount {}", linkResetCount.get());
+    }
+
+    /**
+     * 缓存查询到的连接，查询期间收到过该连接的变化通知或订阅断开过时结果可能已经过期，不缓存
+     *
+     * @param startEpoch 查询开始时的连接版本号
+     * @param startReset 查询开始时的订阅重置次数
+     */
+    private void cacheLinkedPod(String key, Integer podIndex, long startEpoch, long startReset) {
+        if (linkResetCount.get() != startReset) {
+            return;
+        }
+        LinkEntry change = linkChangeCache.getIfPresent(key);
+        if (change != null && change.epoch > startEpoch) {
+            return;
+        }
+        localUserServicePodCache.asMap().merge(key, new LinkEntry(podIndex, startEpoch), (old, cur) -> old.epoch > cur.epoch ? old : cur);
+        if (linkResetCount.get() != startReset) {
+            //写入时订阅刚好被重置，可能错过了清空
+            localUserServicePodCache.invalidate(key);
+        }
+    }
+
     public void setLoadFun(Supplier<Integer> loadFun) {
         this.loadFun = loadFun;
     }
@@ -229,16 +319,34 @@ public class ServiceStateMgrImpl implements ServiceStateMgr {
         return statefulDriver.setLinkedPodIfAbsent(appId, regionId, logicType, uid, serviceName, podIndex, expireSecond);
     }
 
+    @Override
+    public Homo<Integer> transferUserLinkedPod(String uid, String serviceName, Integer fromPodIndex, Integer toPodIndex) {
+        String appId = rootModule.getServerInfo().appId;
+        String regionId = rootModule.getServerInfo().namespace;
+        String logicType = stateLogicType;
+        return statefulDriver.transferLinkedPod(appId, regionId, logicType, uid, serviceName, fromPodIndex, toPodIndex, serverStateProperties.getRemoteUserServicePodCacheSecond())
+                .consumerValue(ret -> {
+                    localUserServicePodCache.invalidate(String.format(POD_INDEX_CACHE, uid, serviceName));
+                    log.trace("transferUserLinkedPod uid {} serviceName {} fromPodIndex {} toPodIndex {} ret {}", uid, serviceName, fromPodIndex, toPodIndex, ret);
+                });
+    }
+
     @Override
     public Homo<Integer> getLinkedPod(String uid, String serviceName) {
         String key = String.format(POD_INDEX_CACHE, uid, serviceName);
-        Integer userPodIndex = localUserServicePodCache.getIfPresent(key);
-        if (userPodIndex != null) {
-            log.info("getLinkedPod getCache uid {} serviceName {} index {}", uid, serviceName, userPodIndex);
-            return Homo.result(userPodIndex);
+        LinkEntry linkEntry = localUserServicePodCache.getIfPresent(key);
+        if (linkEntry != null) {
+            log.info("getLinkedPod getCache uid {} serviceName {} index {}", uid, serviceName, linkEntry.podIndex);
+            return Homo.result(linkEntry.podIndex);
         }
+        long startEpoch = linkEpoch.get();
+        long startReset = linkResetCount.get();
         return getUserLinkedPodNoCache(uid, serviceName)
                 .consumerValue(ret -> {
+                    //有连接变化通知时缓存才不会过期
+                    if (linkInvalidateEnable && ret != null && ret >= 0) {
+                        cacheLinkedPod(key, ret, startEpoch, startReset);
+                    }
                     log.info("getLinkedPod getCache uid {} serviceName {} index {}", uid, serviceName, ret);
                 });
     }
@@ -267,8 +375,9 @@ public class ServiceStateMgrImpl implements ServiceStateMgr {
     public Homo<Integer> computeUserLinkedPodIfAbsent(String uid, String serviceName, Boolean persist) {
         String key = String.format(POD_INDEX_CACHE, uid, serviceName);
         String tag = persist ? key + persist : key;
-        Integer userPodIndex = localUserServicePodCache.getIfPresent(key);
-        if (userPodIndex != null) {
+        LinkEntry linkEntry = localUserServicePodCache.getIfPresent(key);
+        if (linkEntry != null) {
+            Integer userPodIndex = linkEntry.podIndex;
             if (!isPodAvailable(serviceName, userPodIndex)) {
                 log.error("computeLinkedPodIfAbsent 0 uid {}, serviceName {} pod {} is DEAD!, alive pods: {}",
                         uid, serviceName, userPodIndex, JSON.toJSONString(alivePods(serviceName)));
@@ -276,6 +385,8 @@ public class ServiceStateMgrImpl implements ServiceStateMgr {
             }
             return Homo.result(userPodIndex);
         }
+        long startEpoch = linkEpoch.get();
+        long startReset = linkResetCount.get();
         return choiceBestPod(serviceName)
                 .nextDo(choicePodIndex -> {
                     if (choicePodIndex != null) {
@@ -288,7 +399,7 @@ public class ServiceStateMgrImpl implements ServiceStateMgr {
                                         return Homo.result(null);
                                     } else {
                                         //返回的pod和选取的pod一致
-                                        localUserServicePodCache.put(key, currentPodIndex);
+                                        cacheLinkedPod(key, currentPodIndex, startEpoch, startReset);
                                         return Homo.result(currentPodIndex);
                                     }
                                 });
@@ -301,6 +412,100 @@ public class ServiceStateMgrImpl implements ServiceStateMgr {
                 .zipCalling(tag);
     }
 
+    /**
+     * 批量获取多个唯一id下指定服务的连接index
+     * 未命中本地缓存的id按选取策略依次分配候选pod，通过一次脚本调用获取或设置连接
+     *
+     * @param uids        唯一id
+     * @param serviceName 服务名
+     * @param persist     是否需要永久保留连接信息,同computeUserLinkedPodIfAbsent
+     */
+    @Override
+    public Homo<Map<String, Integer>> computeUsersLinkedPodIfAbsent(Collection<String> uids, String serviceName, Boolean persist) {
+        Map<String, Integer> result = new HashMap<>(uids.size());
+        Set<String> missUids = new LinkedHashSet<>();
+        for (String uid : uids) {
+            LinkEntry linkEntry = localUserServicePodCache.getIfPresent(String.format(POD_INDEX_CACHE, uid, serviceName));
+            if (linkEntry == null) {
+                missUids.add(uid);
+            } else if (!isPodAvailable(serviceName, linkEntry.podIndex)) {
+                log.error("computeUsersLinkedPodIfAbsent 0 uid {}, serviceName {} pod {} is DEAD!, alive pods: {}",
+                        uid, serviceName, linkEntry.podIndex, JSON.toJSONString(alivePods(serviceName)));
+            } else {
+                result.put(uid, linkEntry.podIndex);
+            }
+        }
+        if (missUids.isEmpty()) {
+            return Homo.result(result);
+        }
+        String appId = rootModule.getServerInfo().appId;
+        String regionId = rootModule.getServerInfo().namespace;
+        int expireSecond = persist ? StatefulDriver.PERSIST_FOREVER : serverStateProperties.getRemoteUserServicePodCacheSecond();
+        long startEpoch = linkEpoch.get();
+        long startReset = linkResetCount.get();
+        return choiceBestPod(serviceName)
+                .nextDo(firstPodIndex -> {
+                    if (firstPodIndex == null) {
+                        //没有可用的pod
+                        log.error("no best pod for uids {}, serviceName {}", missUids, serviceName);
+                        return Homo.result(result);
+                    }
+                    //每个id各自选取一次，与单个获取时的分布一致
+                    Map<String, Integer> uidPodMap = new HashMap<>(missUids.size());
+                    for (String uid : missUids) {
+                        Integer choicePodIndex = uidPodMap.isEmpty() ? firstPodIndex : choiceFun.apply(serviceName, goodServiceMap.get(serviceName));
+                        uidPodMap.put(uid, choicePodIndex != null ? choicePodIndex : firstPodIndex);
+                    }
+                    return statefulDriver.setLinkedPodsIfAbsent(appId, regionId, stateLogicType, uidPodMap, serviceName, expireSecond)
+                            .nextDo(linkedMap -> {
+                                linkedMap.forEach((uid, currentPodIndex) -> {
+                                    if (!isPodAvailable(serviceName, currentPodIndex)) {
+                                        log.error("computeUsersLinkedPodIfAbsent uid {}, serviceName {} pod {} is DEAD!, alive pods: {}",
+                                                uid, serviceName, currentPodIndex, JSON.toJSONString(alivePods(serviceName)));
+                                    } else {
+                                        cacheLinkedPod(String.format(POD_INDEX_CACHE, uid, serviceName), currentPodIndex, startEpoch, startReset);
+                                        result.put(uid, currentPodIndex);
+                                    }
+                                });
+                                return Homo.result(result);
+                            });
+                });
+    }
+
+    @Override
+    public void invalidateUserLinkedPod(String uid, String serviceName) {
+        localUserServicePodCache.invalidate(String.format(POD_INDEX_CACHE, uid, serviceName));
+    }
+
+    @Override
+    public long getLinkEpoch(String uid, String serviceName) {
+        LinkEntry linkEntry = localUserServicePodCache.getIfPresent(String.format(POD_INDEX_CACHE, uid, serviceName));
+        return linkEntry == null ? 0 : linkEntry.epoch;
+    }
+
+    @Override
+    public boolean isStaleRoute(String uid, String serviceName, long routeEpoch) {
+        if (!linkInvalidateEnable || podIndex == null) {
+            return false;
+        }
+        LinkEntry change = linkChangeCache.getIfPresent(String.format(POD_INDEX_CACHE, uid, serviceName));
+        //请求方路由时已经看到这次变化，连接信息不比本地旧
+        if (change == null || change.epoch <= routeEpoch || change.podIndex < 0 || change.podIndex == podIndex) {
+            return false;
+        }
+        for (Predicate<String> exemption : staleRouteExemptions) {
+            if (exemption.test(uid)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void addStaleRouteExemption(Predicate<String> exemption) {
+        staleRouteExemptions.add(exemption);
+    }
+
     /**
      * 移除唯一id下指定服务的连接index
      *
@@ -316,10 +521,24 @@ public class ServiceStateMgrImpl implements ServiceStateMgr {
         int persistTime = immediately ? StatefulDriver.DELETE_NOW : serverStateProperties.getRemoteUserServicePodDelayRemoveSecond();
         return statefulDriver.removeLinkedPod(appId, regionId, logicType, uid, serviceName, persistTime)
                 .consumerValue(ret -> {
+                    localUserServicePodCache.invalidate(String.format(POD_INDEX_CACHE, uid, serviceName));
                     log.trace("removeUserLinkedPod uid {} serviceName {} ret {}", uid, serviceName, ret);
                 });
     }
 
+    @Override
+    public Homo<Boolean> removeUserLinkedPodIfMatch(String uid, String serviceName, Integer podIndex, Boolean immediately) {
+        String appId = rootModule.getServerInfo().appId;
+        String regionId = rootModule.getServerInfo().namespace;
+        String logicType = stateLogicType;
+        int persistTime = immediately ? StatefulDriver.DELETE_NOW : serverStateProperties.getRemoteUserServicePodDelayRemoveSecond();
+        return statefulDriver.removeLinkedPodIfMatch(appId, regionId, logicType, uid, serviceName, podIndex, persistTime)
+                .consumerValue(ret -> {
+                    localUserServicePodCache.invalidate(String.format(POD_INDEX_CACHE, uid, serviceName));
+                    log.trace("removeUserLinkedPodIfMatch uid {} serviceName {} podIndex {} ret {}", uid, serviceName, podIndex, ret);
+                });
+    }
+
     /**
      * 获取唯一id下所有连接的服务
      *
@@ -519,4 +738,20 @@ public class ServiceStateMgrImpl implements ServiceStateMgr {
     public void setChoiceFun(BiFunction<String, List<Integer>, Integer> choiceFun) {
         this.choiceFun = choiceFun;
     }
+
+    /**
+     * 本地缓存的连接信息
+     */
+    static class LinkEntry {
+        final int podIndex;
+        /**
+         * 通知中的连接版本号，或查询开始时观察到的版本号
+         */
+        final long epoch;
+
+        LinkEntry(int podIndex, long epoch) {
+            this.podIndex = podIndex;
+            this.epoch = epoch;
+        }
+    }
 }
@@ -0,0 +1,103 @@
+package com.homo.core.rpc.base.state;
+
+import com.homo.core.configurable.rpc.ServerStateProperties;
+import com.homo.core.facade.service.StatefulDriver;
+import com.homo.core.utils.module.RootModule;
+import com.homo.core.utils.module.ServerInfo;
+import com.homo.core.utils.rector.Homo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.time.Duration;
+
+public class ServiceStateMgrImplTest {
+    private static final String SERVICE = "test-service";
+    private static final int SELF_POD = 1;
+    private static final int OTHER_POD = 2;
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    @Mock
+    RootModule rootModule;
+    @Mock
+    StatefulDriver statefulDriver;
+    @Spy
+    ServerStateProperties serverStateProperties = new ServerStateProperties();
+    @InjectMocks
+    ServiceStateMgrImpl stateMgr;
+    private AutoCloseable mocks;
+    private StatefulDriver.LinkChangeListener listener;
+
+    @BeforeEach
+    public void setUp() {
+        serverStateProperties.setLocalUserServicePodCacheSecond(60);
+        serverStateProperties.setLinkChangeCacheMaxSize(100);
+        serverStateProperties.setLinkInvalidateEnable(true);
+        mocks = MockitoAnnotations.openMocks(this);
+        Mockito.when(rootModule.getServerInfo()).thenReturn(new ServerInfo());
+        ArgumentCaptor<StatefulDriver.LinkChangeListener> captor = ArgumentCaptor.forClass(StatefulDriver.LinkChangeListener.class);
+        Mockito.when(statefulDriver.subscribeLinkChange(Mockito.any(), Mockito.any(), Mockito.any(), captor.capture())).thenReturn(true);
+        stateMgr.afterAllModuleInit();
+        stateMgr.podIndex = SELF_POD;
+        listener = captor.getValue();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    public void testStaleRouteByEpoch() {
+        listener.onLinkChange("u1", SERVICE, OTHER_POD, 5);
+        //调用方路由时的版本比连接变化旧才拒绝
+        Assertions.assertTrue(stateMgr.isStaleRoute("u1", SERVICE, 0));
+        Assertions.assertTrue(stateMgr.isStaleRoute("u1", SERVICE, 4));
+        Assertions.assertFalse(stateMgr.isStaleRoute("u1", SERVICE, 5));
+        Assertions.assertFalse(stateMgr.isStaleRoute("u1", SERVICE, 6));
+        //连接到本pod或被移除都不算过期
+        listener.onLinkChange("u2", SERVICE, SELF_POD, 6);
+        listener.onLinkChange("u3", SERVICE, -1, 7);
+        Assertions.assertFalse(stateMgr.isStaleRoute("u2", SERVICE, 0));
+        Assertions.assertFalse(stateMgr.isStaleRoute("u3", SERVICE, 0));
+        Assertions.assertFalse(stateMgr.isStaleRoute("u4", SERVICE, 0));
+        stateMgr.addStaleRouteExemption("u1"::equals);
+        Assertions.assertFalse(stateMgr.isStaleRoute("u1", SERVICE, 0));
+    }
+
+    @Test
+    public void testLinkEpoch() {
+        Mockito.when(statefulDriver.getLinkedPod(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.eq("u1"), Mockito.eq(SERVICE)))
+                .thenReturn(Homo.result(OTHER_POD));
+        listener.onLinkChange("u2", SERVICE, OTHER_POD, 3);
+        Assertions.assertEquals(0, stateMgr.getLinkEpoch("u1", SERVICE));
+        //查询结果的版本是查询开始时观察到的版本
+        Assertions.assertEquals(OTHER_POD, stateMgr.getLinkedPod("u1", SERVICE).block(TIMEOUT));
+        Assertions.assertEquals(3, stateMgr.getLinkEpoch("u1", SERVICE));
+        listener.onLinkChange("u1", SERVICE, 3, 7);
+        Assertions.assertEquals(3, stateMgr.getLinkedPod("u1", SERVICE).block(TIMEOUT));
+        Assertions.assertEquals(7, stateMgr.getLinkEpoch("u1", SERVICE));
+        Mockito.verify(statefulDriver, Mockito.times(1)).getLinkedPod(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.eq("u1"), Mockito.eq(SERVICE));
+    }
+
+    @Test
+    public void testResetClearLinkCache() {
+        Mockito.when(statefulDriver.getLinkedPod(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.eq("u1"), Mockito.eq(SERVICE)))
+                .thenReturn(Homo.result(OTHER_POD));
+        Assertions.assertEquals(OTHER_POD, stateMgr.getLinkedPod("u1", SERVICE).block(TIMEOUT));
+        listener.onLinkChange("u2", SERVICE, OTHER_POD, 5);
+        Assertions.assertTrue(stateMgr.isStaleRoute("u2", SERVICE, 0));
+        //订阅重置后丢失的通知可能改变了连接，连接缓存和变化记录都不能再用
+        listener.onReset();
+        Assertions.assertFalse(stateMgr.isStaleRoute("u2", SERVICE, 0));
+        Assertions.assertEquals(0, stateMgr.getLinkEpoch("u1", SERVICE));
+        Assertions.assertEquals(OTHER_POD, stateMgr.getLinkedPod("u1", SERVICE).block(TIMEOUT));
+        Mockito.verify(statefulDriver, Mockito.times(2)).getLinkedPod(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.eq("u1"), Mockito.eq(SERVICE));
+    }
+}
@@ -19,6 +19,8 @@ import com.homo.core.utils.rector.Homo;
 import com.homo.core.utils.reflect.HomoInterfaceUtil;
 import com.homo.core.utils.spring.GetBeanUtil;
 import com.homo.core.utils.trace.ZipkinUtil;
+import io.homo.proto.client.ParameterMsg;
+import io.homo.proto.entity.EntityRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
@@ -87,7 +89,8 @@ public class RpcProxy implements MethodInterceptor {
                             .nextDo(realHostName -> {
                                 if (!StringUtils.isEmpty(realHostName)) {
                                     boolean isStateful = ServiceUtil.isStatefulService(realHostName);
-                                    RpcContent rpcContent = rpcHandlerInfoForClient.serializeParamForInvokeRemoteMethod(methodName, params);
+                                    Object[] callParams = isStateful ? withLinkEpoch(serviceInfo, params) : params;
+                                    RpcContent rpcContent = rpcHandlerInfoForClient.serializeParamForInvokeRemoteMethod(methodName, callParams);
                                     rpcContent.setSpan(finalCurrentSpan);
                                     return rpcClientMgr
                                             .getAgentClient(realHostName, serviceInfo)
@@ -99,6 +102,10 @@ public class RpcProxy implements MethodInterceptor {
                                             })
                                             .catchError(throwable -> {
                                                 finalCurrentSpan.error((Throwable) throwable);
+                                                if (isStateful) {
+                                                    //连接可能已经变化，丢弃本地缓存，下次调用重新查询
+                                                    invalidateLinkedPod(serviceInfo, params);
+                                                }
                                                 log.error("rpc client call throwable {}", throwable);
                                                 HomoError.throwError(HomoError.rpcAgentTypeNotSupport);
                                             })
@@ -111,6 +118,40 @@ public class RpcProxy implements MethodInterceptor {
                 });
     }
 
+    /**
+     * 带上路由时使用的连接版本号，目标pod只按比它更新的连接变化拒绝请求
+     */
+    private Object[] withLinkEpoch(ServiceInfo serviceInfo, Object[] params) {
+        if (params.length < 2 || !(params[1] instanceof ParameterMsg)) {
+            return params;
+        }
+        ParameterMsg parameterMsg = (ParameterMsg) params[1];
+        long linkEpoch = serviceStateMgr.getLinkEpoch(parameterMsg.getUserId(), serviceInfo.getServerHost());
+        if (linkEpoch == parameterMsg.getLinkEpoch()) {
+            return params;
+        }
+        Object[] callParams = params.clone();
+        callParams[1] = parameterMsg.toBuilder().setLinkEpoch(linkEpoch).build();
+        return callParams;
+    }
+
+    private void invalidateLinkedPod(ServiceInfo serviceInfo, Object[] params) {
+        String uid = null;
+        if (params.length > 1 && params[1] instanceof ParameterMsg) {
+            uid = ((ParameterMsg) params[1]).getUserId();
+        } else {
+            for (Object param : params) {
+                if (param instanceof EntityRequest) {
+                    uid = ((EntityRequest) param).getId();
+                    break;
+                }
+            }
+        }
+        if (!StringUtils.isEmpty(uid)) {
+            serviceStateMgr.invalidateUserLinkedPod(uid, serviceInfo.getServerHost());
+        }
+    }
+
     @NotNull
     private Homo processReturn(String methodName, RpcContent rpcContent) throws HomoException {
         String msgId = rpcContent.getMsgId();
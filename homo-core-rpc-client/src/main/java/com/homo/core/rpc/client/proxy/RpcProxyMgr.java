@@ -1,11 +1,18 @@
 package com.homo.core.rpc.client.proxy;
 
+import com.homo.core.facade.service.ServiceExport;
 import com.homo.core.facade.service.ServiceStateMgr;
 import com.homo.core.rpc.base.service.ServiceMgr;
 import com.homo.core.rpc.client.RpcClientMgr;
+import com.homo.core.utils.exception.HomoError;
+import com.homo.core.utils.rector.Homo;
+import com.homo.core.utils.spring.GetBeanUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -24,4 +31,30 @@ public class RpcProxyMgr {
         T obj = (T) proxy;
         return obj;
     }
+
+    /**
+     * 按连接的pod对用户分组，用于有状态服务的扇出调用（公会、房间、广播等）
+     * 所有用户的连接通过一次存储往返获取，不存在连接的用户会路由到可用的pod
+     * 调用方对每个分组调用一次代理，第一个参数填podId即可直接路由到该pod
+     *
+     * @param interfaceType 有状态服务的接口
+     * @param uids          用户唯一标识
+     * @param persist       是否需要永久保留连接信息,同computeUserLinkedPodIfAbsent
+     * @return podId : 该pod上的用户，连接的pod不可用的用户不在结果中
+     */
+    public static Homo<Map<Integer, List<String>>> groupUsersByPod(Class<?> interfaceType, Collection<String> uids, boolean persist) {
+        ServiceExport serviceExport = interfaceType.getAnnotation(ServiceExport.class);
+        if (serviceExport == null || !serviceExport.isStateful()) {
+            return Homo.error(HomoError.throwError(HomoError.defaultError, interfaceType.getSimpleName() + " is not stateful service"));
+        }
+        ServiceStateMgr serviceStateMgr = GetBeanUtil.getBean(ServiceStateMgr.class);
+        return serviceStateMgr.getServiceInfo(serviceExport.tagName())
+                .nextDo(serviceInfo -> serviceStateMgr.computeUsersLinkedPodIfAbsent(uids, serviceInfo.getServerHost(), persist))
+                .nextDo(uidPodMap -> {
+                    Map<Integer, List<String>> podUidsMap = new HashMap<>();
+                    uidPodMap.forEach((uid, podId) -> podUidsMap.computeIfAbsent(podId, k -> new ArrayList<>()).add(uid));
+                    log.trace("groupUsersByPod interfaceType {} userCount {} podCount {}", interfaceType.getSimpleName(), uids.size(), podUidsMap.size());
+                    return Homo.result(podUidsMap);
+                });
+    }
 }
@@ -94,19 +94,34 @@ public class HttpServer {
      * @return
      */
     public Mono<DataBuffer> onJsonCall(String msgId, String data, ServerHttpResponse response) {
-        Span span = ZipkinUtil.getTracing().tracer().currentSpan();
         JsonRpcContent rpcContent = new JsonRpcContent();
+        rpcContent.setParam(data);
+        return onJsonCall(msgId, rpcContent, response);
+    }
+
+    /**
+     * for jsonData
+     * 返回的json直接以UTF-8写入响应的DataBuffer（由响应的bufferFactory分配，netty下为池化内存）
+     *
+     * @param msgId
+     * @param rpcContent
+     * @param response
+     * @return
+     */
+    public Mono<DataBuffer> onJsonCall(String msgId, JsonRpcContent rpcContent, ServerHttpResponse response) {
+        Span span = ZipkinUtil.getTracing().tracer().currentSpan();
         rpcContent.setMsgId(msgId);
         rpcContent.setSpan(span);
-        rpcContent.setParam(data);
         return rpcServer.onCall("HttpServer", msgId, rpcContent)
                 .nextDo(ret -> {
                     //这里对业务结果进行了封装，先不进行封装，
 //                    ResponseMsg msg = ResponseMsg.builder().msgId(msgId).codeDesc("ok").msgContent(ret).code(HttpStatus.OK.value()).build();
 //                    String resStr = JSON.toJSONString(msg);
-                    log.info("onCall success msgId {} responseMsg {}", msgId, ret);
-                    NettyDataBufferFactory dataBufferFactory = (NettyDataBufferFactory) response.bufferFactory();
-                    DataBuffer buffer = dataBufferFactory.wrap(ret.getBytes(StandardCharsets.UTF_8));
+                    if (log.isDebugEnabled()) {
+                        log.debug("onCall success msgId {} responseMsg {}", msgId, ret);
+                    }
+                    DataBuffer buffer = response.bufferFactory().allocateBuffer(ret.length());
+                    buffer.write(ret, StandardCharsets.UTF_8);
                     return Mono.just(buffer);
                 })
                 .onErrorContinue(throwable -> {
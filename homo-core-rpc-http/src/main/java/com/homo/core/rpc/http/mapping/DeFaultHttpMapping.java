@@ -1,12 +1,10 @@
 package com.homo.core.rpc.http.mapping;
 
 import brave.Span;
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
-import com.alibaba.fastjson.JSONValidator;
 import com.homo.core.rpc.base.serial.FileRpcContent;
 import com.homo.core.rpc.http.HttpServer;
+import com.homo.core.rpc.http.serial.HttpJsonRpcContent;
 import com.homo.core.utils.module.Module;
 import com.homo.core.utils.serial.FSTSerializationProcessor;
 import com.homo.core.utils.trace.ZipkinUtil;
@@ -34,7 +32,6 @@ import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -84,13 +81,11 @@ public class DeFaultHttpMapping extends AbstractHttpMapping implements Module, A
         Map<String, String> formDataParams = request.getHeaders().toSingleValueMap();
         Span span = ZipkinUtil.currentSpan();
         JSONObject headerInfo = exportHeaderInfo(request);
-        List<Object> list = new ArrayList<>();
-        list.add(formDataParams);
-        list.add(headerInfo);
-        String msg = JSON.toJSONString(list);
-        log.info("httpGet begin port {} msgId {} msg {}", port, msgId, msg);
+        if (log.isDebugEnabled()) {
+            log.debug("httpGet begin port {} msgId {} formDataParams {}", port, msgId, formDataParams);
+        }
         HttpServer httpServer = routerHttpServerMap.get(port);
-        Mono<DataBuffer> respBuffer = httpServer.onJsonCall(msgId, msg, response);
+        Mono<DataBuffer> respBuffer = httpServer.onJsonCall(msgId, new HttpJsonRpcContent(formDataParams, headerInfo), response);
         return response.writeAndFlushWith(Mono.just(respBuffer));
     }
 
@@ -117,33 +112,12 @@ public class DeFaultHttpMapping extends AbstractHttpMapping implements Module, A
                                         byte[] msgContent = new byte[dataBuffer.readableByteCount()];
                                         dataBuffer.read(msgContent);
                                         DataBufferUtils.release(dataBuffer);
-                                        String reqStr = new String(msgContent);
-                                        String msg;
-                                        JSONValidator.Type type = JSONValidator.from(reqStr).setSupportMultiValue(true).getType();
-                                        List<Object> list = new ArrayList<>();
-                                        list.add(headerInfo);
-                                        if (type == JSONValidator.Type.Array) {
-                                            //参数是列表(headerInfo,JSONArray)
-                                            JSONArray bodyArr = JSON.parseArray(reqStr);
-                                            list.add(bodyArr);
-                                            //参数是列表(headerInfo,json1,json2,...,)
-//                                            for (Object item : bodyArr) {
-//                                                list.add(item);
-//                                            }
-                                        } else if (type == JSONValidator.Type.Object) {
-                                            //参数是单个json (headerInfo,json)
-                                            JSONObject bodyJson = JSON.parseObject(reqStr);
-                                            list.add(bodyJson);
-                                        } else {
-                                            //参数是字符串(headerInfo,reqStr)
-                                            list.add(reqStr);
+                                        //参数格式(headerInfo,body)，body在分发时按目标方法的参数类型一次性解析
+                                        if (log.isDebugEnabled()) {
+                                            log.debug("httpJsonPost begin port {} msgId {} bodySize {}", port, msgId, msgContent.length);
                                         }
-
-
-                                        msg = JSON.toJSONString(list);
-                                        log.info("httpJsonPost begin port {} msgId {} msg {}", port, msgId, msg);
                                         HttpServer httpServer = routerHttpServerMap.get(port);
-                                        Mono<DataBuffer> bufferMono = httpServer.onJsonCall(msgId, msg, response);
+                                        Mono<DataBuffer> bufferMono = httpServer.onJsonCall(msgId, new HttpJsonRpcContent(headerInfo, msgContent), response);
                                         monoSink.success(bufferMono);
                                     } catch (Exception e) {
                                         monoSink.error(e);
@@ -0,0 +1,121 @@
+package com.homo.core.rpc.http.serial;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.homo.core.facade.rpc.SerializeInfo;
+import com.homo.core.rpc.base.serial.JsonRpcContent;
+import io.homo.proto.client.ParameterMsg;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * http json请求的RpcContent
+ * 参数项保持http层解析出的原始形态（消息头为JSONObject，请求体为原始字节），
+ * 分发时按目标方法的参数类型一次性绑定，不再经过 校验->解析->序列化->再解析 的过程
+ * 参数格式与JsonRpcContent一致，如(headerInfo,body)
+ */
+@Slf4j
+public class HttpJsonRpcContent extends JsonRpcContent {
+    private final Object[] items;
+
+    /**
+     * @param items 参数项，byte[]类型视为未解析的json文本，其余对象直接按参数类型转换
+     */
+    public HttpJsonRpcContent(Object... items) {
+        this.items = items;
+    }
+
+    /**
+     * 兼容需要json字符串的调用方，只在被调用时才生成
+     */
+    @Override
+    public String getParam() {
+        String param = super.getParam();
+        if (param == null) {
+            List<Object> list = new ArrayList<>(items.length);
+            for (Object item : items) {
+                list.add(item instanceof byte[] ? JSON.parse((byte[]) item) : item);
+            }
+            param = JSON.toJSONString(list);
+            setParam(param);
+        }
+        return param;
+    }
+
+    @Override
+    public Object[] unSerializeToActualParams(SerializeInfo[] paramSerializeInfoList, int frameParamOffset, Integer podId, ParameterMsg parameterMsg) {
+        int paramCount = paramSerializeInfoList.length;
+        if (paramCount <= 0) {
+            return null;
+        }
+        Object[] returnParams = new Object[paramCount];
+        if (frameParamOffset == 2) {
+            returnParams[0] = podId;
+            returnParams[1] = parameterMsg;
+        }
+        for (int i = 0; i < items.length && i + frameParamOffset < paramCount; i++) {
+            int paramIndex = i + frameParamOffset;
+            returnParams[paramIndex] = bind(items[i], paramSerializeInfoList[paramIndex].getParamType());
+        }
+        return returnParams;
+    }
+
+    private Object bind(Object item, Class<?> paramType) {
+        if (item == null) {
+            return null;
+        }
+        if (item instanceof byte[]) {
+            return bindBody((byte[]) item, paramType);
+        }
+        if (paramType.isInstance(item)) {
+            return item;
+        }
+        if (item instanceof Map) {
+            JSONObject jsonObject = item instanceof JSONObject ? (JSONObject) item : new JSONObject((Map<String, Object>) item);
+            //String参数得到json文本，与原先toJavaObject的结果一致
+            return String.class.equals(paramType) ? jsonObject.toJSONString() : jsonObject.toJavaObject(paramType);
+        }
+        return null;
+    }
+
+    /**
+     * 请求体直接反序列化为目标参数类型，非json对象或数组的请求体只能绑定到String参数
+     * json数组只能绑定到数组、集合或JSONArray参数，其他参数绑定为null
+     */
+    private Object bindBody(byte[] body, Class<?> paramType) {
+        if (body.length == 0) {
+            return null;
+        }
+        if (String.class.equals(paramType)) {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+        byte first = firstNonWhitespace(body);
+        if (first == '{') {
+            return JSON.parseObject(body, paramType);
+        }
+        if (first == '[') {
+            if (paramType.isArray() || Collection.class.isAssignableFrom(paramType) || paramType.isAssignableFrom(JSONArray.class)) {
+                return JSON.parseObject(body, paramType);
+            }
+            log.warn("HttpJsonRpcContent body is json array, can not bind to {}", paramType);
+            return null;
+        }
+        log.warn("HttpJsonRpcContent body is not json object or array, can not bind to {}", paramType);
+        return null;
+    }
+
+    private static byte firstNonWhitespace(byte[] body) {
+        for (byte b : body) {
+            if (!Character.isWhitespace(b)) {
+                return b;
+            }
+        }
+        return 0;
+    }
+}
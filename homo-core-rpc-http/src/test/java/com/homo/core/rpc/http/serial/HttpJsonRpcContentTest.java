@@ -0,0 +1,104 @@
+package com.homo.core.rpc.http.serial;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.homo.core.facade.rpc.SerializeInfo;
+import lombok.Data;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class HttpJsonRpcContentTest {
+
+    @Data
+    public static class Header {
+        private String uid;
+    }
+
+    @Data
+    public static class Body {
+        private int id;
+        private String name;
+    }
+
+    private static SerializeInfo[] types(Class<?>... classes) {
+        return Arrays.stream(classes).map(clazz -> SerializeInfo.create(clazz, null)).toArray(SerializeInfo[]::new);
+    }
+
+    private static JSONObject header() {
+        JSONObject header = new JSONObject();
+        header.put("uid", "u1");
+        return header;
+    }
+
+    private static Object[] bind(Object header, String body, Class<?>... classes) {
+        HttpJsonRpcContent content = new HttpJsonRpcContent(header, body.getBytes(StandardCharsets.UTF_8));
+        return content.unSerializeToActualParams(types(classes), 0, null, null);
+    }
+
+    @Test
+    public void testBindObjectBody() {
+        Object[] params = bind(header(), "{\"id\":1,\"name\":\"a\"}", Header.class, Body.class);
+        Assertions.assertEquals("u1", ((Header) params[0]).getUid());
+        Assertions.assertEquals(1, ((Body) params[1]).getId());
+        Assertions.assertEquals("a", ((Body) params[1]).getName());
+        params = bind(header(), "{\"id\":1}", JSONObject.class, JSONObject.class);
+        Assertions.assertSame(JSONObject.class, params[0].getClass());
+        Assertions.assertEquals(1, ((JSONObject) params[1]).getIntValue("id"));
+    }
+
+    @Test
+    public void testBindHeaderToString() {
+        //消息头绑定到String参数得到json文本
+        Object[] params = bind(header(), "{}", String.class, String.class);
+        Assertions.assertEquals("u1", JSON.parseObject((String) params[0]).getString("uid"));
+        Assertions.assertEquals("{}", params[1]);
+        //get请求的表单参数是普通Map
+        HttpJsonRpcContent content = new HttpJsonRpcContent(Collections.singletonMap("k", "v"), header());
+        params = content.unSerializeToActualParams(types(String.class, Map.class), 0, null, null);
+        Assertions.assertEquals("{\"k\":\"v\"}", params[0]);
+        Assertions.assertEquals("u1", ((Map<?, ?>) params[1]).get("uid"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBindArrayBody() {
+        Object[] params = bind(header(), "[{\"id\":1},{\"id\":2}]", Header.class, Body[].class);
+        Assertions.assertEquals(2, ((Body[]) params[1]).length);
+        params = bind(header(), "[1,2]", Header.class, List.class);
+        Assertions.assertEquals(Arrays.asList(1, 2), params[1]);
+        params = bind(header(), "[1,2]", Header.class, JSONArray.class);
+        Assertions.assertEquals(2, ((JSONArray) params[1]).size());
+        //数组请求体绑定到非集合参数时为null，不抛出异常
+        params = bind(header(), " [1,2]", Header.class, Body.class);
+        Assertions.assertNull(params[1]);
+        Assertions.assertEquals("u1", ((Header) params[0]).getUid());
+        params = bind(header(), "[1,2]", Header.class, String.class);
+        Assertions.assertEquals("[1,2]", params[1]);
+    }
+
+    @Test
+    public void testBindPlainBody() {
+        Object[] params = bind(header(), "hello", Header.class, String.class);
+        Assertions.assertEquals("hello", params[1]);
+        params = bind(header(), "hello", Header.class, Body.class);
+        Assertions.assertNull(params[1]);
+        params = bind(header(), "", Header.class, String.class);
+        Assertions.assertNull(params[1]);
+    }
+
+    @Test
+    public void testFrameParamOffset() {
+        HttpJsonRpcContent content = new HttpJsonRpcContent(header(), "{\"id\":3}".getBytes(StandardCharsets.UTF_8));
+        Object[] params = content.unSerializeToActualParams(types(Integer.class, Object.class, Header.class, Body.class), 2, 7, null);
+        Assertions.assertEquals(7, params[0]);
+        Assertions.assertEquals(3, ((Body) params[3]).getId());
+        Assertions.assertEquals("[{\"uid\":\"u1\"},{\"id\":3}]", content.getParam());
+    }
+}
@@ -12,7 +12,10 @@ import com.homo.core.utils.trace.ZipkinUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuples;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,14 +35,20 @@ public class StatefulDriverRedisImpl implements StatefulDriver {
     private static final String SERVICE_STATE_TEMP = "slug-state:{%s:%s:%s:%s}";//服务器负载信息
     private static final String USER_TEMP = "slug-lk:{%s:%s:%s:%s}";//用户与所有服务连接信息
     private static final String USER_SERVICE_TEMP = "slug-lk:{%s:%s:%s:%s:%s}";//用户与服务连接信息
+    private static final String LINK_EPOCH_TEMP = "slug-lk-epoch:{%s:%s:%s}";//连接版本号
+    private static final String LINK_CHANNEL_TEMP = "slug-lk-chg:{%s:%s:%s}";//连接变化通知频道
     public static String[] nullArgs = new String[]{};
+    /**
+     * 批量设置连接时单个脚本处理的用户数上限
+     */
+    static final int LINKS_BATCH_SIZE = 100;
 
     @Override
     public Homo<Boolean> setLinkedPod(String appId, String regionId, String logicType, String ownerId, String serviceName, int podId, int persistSeconds) {
         String uidSvcKey = String.format(USER_SERVICE_TEMP, appId, regionId, logicType, ownerId, serviceName);
         String uidKey = String.format(USER_TEMP, appId, regionId, logicType, ownerId);
-        String[] keys = {uidSvcKey, uidKey};
-        String[] args = {String.valueOf(serviceName), String.valueOf(podId), String.valueOf(persistSeconds)};
+        String[] keys = {uidSvcKey, uidKey, String.format(LINK_EPOCH_TEMP, appId, regionId, logicType)};
+        String[] args = {String.valueOf(serviceName), String.valueOf(podId), String.valueOf(persistSeconds), String.format(LINK_CHANNEL_TEMP, appId, regionId, logicType), ownerId};
         String statefulSetLink = LuaScriptHelper.statefulSetLink;
         CallQueue callQueue = CallQueueMgr.getInstance().getLocalQueue();
         Span span = ZipkinUtil.getTracing().tracer().nextSpan().name("setLinkedPod").tag("type","state").annotate(ZipkinUtil.CLIENT_SEND_TAG);
@@ -58,8 +67,8 @@ public class StatefulDriverRedisImpl implements StatefulDriver {
     public Homo<Integer> setLinkedPodIfAbsent(String appId, String regionId, String logicType, String ownerId, String serviceName, int podId, int persistSeconds) {
         String uidSvcKey = String.format(USER_SERVICE_TEMP, appId, regionId, logicType, ownerId, serviceName);
         String uidKey = String.format(USER_TEMP, appId, regionId, logicType, ownerId);
-        String[] keys = {uidSvcKey, uidKey};
-        String[] args = {String.valueOf(serviceName), String.valueOf(podId), String.valueOf(persistSeconds)};
+        String[] keys = {uidSvcKey, uidKey, String.format(LINK_EPOCH_TEMP, appId, regionId, logicType)};
+        String[] args = {String.valueOf(serviceName), String.valueOf(podId), String.valueOf(persistSeconds), String.format(LINK_CHANNEL_TEMP, appId, regionId, logicType), ownerId};
         String statefulSetLinkIfAbsent = LuaScriptHelper.statefulSetLinkIfAbsent;
         log.info("setLinkedPodIfAbsent start appId {} regionId {} logicType {} serviceName {} ownerId {} podId {} persistSeconds {} ", appId, regionId, logicType, serviceName, ownerId, podId, persistSeconds);
         CallQueue callQueue = CallQueueMgr.getInstance().getLocalQueue();
@@ -75,6 +84,76 @@ public class StatefulDriverRedisImpl implements StatefulDriver {
         return warp.switchThread(callQueue, span).consumerValue(ret -> span.finish());
     }
 
+    @Override
+    public Homo<Map<String, Integer>> setLinkedPodsIfAbsent(String appId, String regionId, String logicType, Map<String, Integer> uidPodMap, String serviceName, int persistSeconds) {
+        if (uidPodMap.isEmpty()) {
+            return Homo.result(new HashMap<>());
+        }
+        List<String> uids = new ArrayList<>(uidPodMap.keySet());
+        List<List<String>> batches = new ArrayList<>();
+        for (int from = 0; from < uids.size(); from += LINKS_BATCH_SIZE) {
+            batches.add(uids.subList(from, Math.min(from + LINKS_BATCH_SIZE, uids.size())));
+        }
+        String statefulSetLinksIfAbsent = LuaScriptHelper.statefulSetLinksIfAbsent;
+        log.info("setLinkedPodsIfAbsent start appId {} regionId {} logicType {} serviceName {} userCount {} batchCount {} persistSeconds {}", appId, regionId, logicType, serviceName, uids.size(), batches.size(), persistSeconds);
+        CallQueue callQueue = CallQueueMgr.getInstance().getLocalQueue();
+        Span span = ZipkinUtil.getTracing().tracer().nextSpan().name("setLinkedPodsIfAbsent").tag("type","state").annotate(ZipkinUtil.CLIENT_SEND_TAG);
+        //分批依次执行，单个脚本不会长时间阻塞redis
+        Homo<Map<String, Integer>> warp = Homo.warp(homoSink ->
+                Flux.fromIterable(batches)
+                        .concatMap(batch -> {
+                            String[] keys = new String[batch.size() * 2 + 1];
+                            String[] args = new String[batch.size() * 2 + 3];
+                            keys[0] = String.format(LINK_EPOCH_TEMP, appId, regionId, logicType);
+                            args[0] = serviceName;
+                            args[1] = String.valueOf(persistSeconds);
+                            args[2] = String.format(LINK_CHANNEL_TEMP, appId, regionId, logicType);
+                            for (int i = 0; i < batch.size(); i++) {
+                                String ownerId = batch.get(i);
+                                keys[i * 2 + 1] = String.format(USER_SERVICE_TEMP, appId, regionId, logicType, ownerId, serviceName);
+                                keys[i * 2 + 2] = String.format(USER_TEMP, appId, regionId, logicType, ownerId);
+                                args[i * 2 + 3] = ownerId;
+                                args[i * 2 + 4] = String.valueOf(uidPodMap.get(ownerId));
+                            }
+                            return asyncRedisPool.evalAsyncReactive(statefulSetLinksIfAbsent, keys, args)
+                                    .map(ret -> Tuples.of(batch, (List<String>) ret));
+                        })
+                        .reduce(new HashMap<String, Integer>(uids.size()), (map, batchRet) -> {
+                            List<String> batch = batchRet.getT1();
+                            List<String> rel = batchRet.getT2();
+                            for (int i = 0; i < batch.size(); i++) {
+                                map.put(batch.get(i), Integer.valueOf(rel.get(i)));
+                            }
+                            return map;
+                        })
+                        .subscribe(map -> {
+                            log.trace("setLinkedPodsIfAbsent end appId {} regionId {} logicType {} serviceName {} rel {}", appId, regionId, logicType, serviceName, map);
+                            span.annotate(ZipkinUtil.CLIENT_RECEIVE_TAG);
+                            homoSink.success(map);
+                        }, homoSink::error));
+        return warp.switchThread(callQueue, span).consumerValue(ret -> span.finish());
+    }
+
+    @Override
+    public Homo<Integer> transferLinkedPod(String appId, String regionId, String logicType, String ownerId, String serviceName, int fromPodId, int toPodId, int persistSeconds) {
+        String uidSvcKey = String.format(USER_SERVICE_TEMP, appId, regionId, logicType, ownerId, serviceName);
+        String uidKey = String.format(USER_TEMP, appId, regionId, logicType, ownerId);
+        String[] keys = {uidSvcKey, uidKey, String.format(LINK_EPOCH_TEMP, appId, regionId, logicType)};
+        String[] args = {String.valueOf(serviceName), String.valueOf(fromPodId), String.valueOf(toPodId), String.valueOf(persistSeconds), String.format(LINK_CHANNEL_TEMP, appId, regionId, logicType), ownerId};
+        String statefulTransferLink = LuaScriptHelper.statefulTransferLink;
+        CallQueue callQueue = CallQueueMgr.getInstance().getLocalQueue();
+        Span span = ZipkinUtil.getTracing().tracer().nextSpan().name("transferLinkedPod").tag("type","state").annotate(ZipkinUtil.CLIENT_SEND_TAG);
+        Homo<Integer> warp = Homo.warp(homoSink ->
+                asyncRedisPool.evalAsyncReactive(statefulTransferLink, keys, args)
+                        .subscribe(ret -> {
+                            String rel = (String) ((List) ret).get(0);
+                            log.info("transferLinkedPod appId {} regionId {} logicType {} serviceName {} ownerId {} fromPodId {} toPodId {} rel {}", appId, regionId, logicType, serviceName, ownerId, fromPodId, toPodId, rel);
+                            span.annotate(ZipkinUtil.CLIENT_RECEIVE_TAG);
+                            homoSink.success(Integer.parseInt(rel));
+                        }, homoSink::error));
+        return warp.switchThread(callQueue, span).consumerValue(ret -> span.finish());
+    }
+
     @Override
     public Homo<Integer> getLinkedPod(String appId, String regionId, String logicType, String ownerId, String serviceName) {
         String uidSvcKey = String.format(USER_SERVICE_TEMP, appId, regionId, logicType, ownerId, serviceName);
@@ -97,10 +176,19 @@ public class StatefulDriverRedisImpl implements StatefulDriver {
 
     @Override
     public Homo<Boolean> removeLinkedPod(String appId, String regionId, String logicType, String ownerId, String serviceName, int persistSeconds) {
+        return removeLinkedPod(appId, regionId, logicType, ownerId, serviceName, "", persistSeconds);
+    }
+
+    @Override
+    public Homo<Boolean> removeLinkedPodIfMatch(String appId, String regionId, String logicType, String ownerId, String serviceName, int podId, int persistSeconds) {
+        return removeLinkedPod(appId, regionId, logicType, ownerId, serviceName, String.valueOf(podId), persistSeconds);
+    }
+
+    private Homo<Boolean> removeLinkedPod(String appId, String regionId, String logicType, String ownerId, String serviceName, String expectPod, int persistSeconds) {
         String uidSvcKey = String.format(USER_SERVICE_TEMP, appId, regionId, logicType, ownerId, serviceName);
         String uidKey = String.format(USER_TEMP, appId, regionId, logicType, ownerId);
-        String[] keys = {uidSvcKey, uidKey};
-        String[] args = {String.valueOf(serviceName), String.valueOf(persistSeconds)};
+        String[] keys = {uidSvcKey, uidKey, String.format(LINK_EPOCH_TEMP, appId, regionId, logicType)};
+        String[] args = {String.valueOf(serviceName), String.valueOf(persistSeconds), String.format(LINK_CHANNEL_TEMP, appId, regionId, logicType), ownerId, expectPod};
         String statefulRemoveLink = LuaScriptHelper.statefulRemoveLink;
         CallQueue callQueue = CallQueueMgr.getInstance().getLocalQueue();
         Span span = ZipkinUtil.getTracing().tracer().nextSpan().name("removeLinkedPod").tag("type","state").annotate(ZipkinUtil.CLIENT_SEND_TAG);
@@ -115,7 +203,7 @@ public class StatefulDriverRedisImpl implements StatefulDriver {
                             } else {
                                 homoSink.success(false);
                             }
-                            log.info("removeLinkedPod  appId {} regionId {} logicType {} serviceName {} ownerId {} rel {}", appId, regionId, logicType, serviceName, ownerId, rel);
+                            log.info("removeLinkedPod  appId {} regionId {} logicType {} serviceName {} ownerId {} expectPod {} rel {}", appId, regionId, logicType, serviceName, ownerId, expectPod, rel);
 
                         }));
         return warp.switchThread(callQueue, span).consumerValue(ret -> span.finish());
@@ -201,4 +289,27 @@ public class StatefulDriverRedisImpl implements StatefulDriver {
         return warp.switchThread(callQueue, span).consumerValue(ret -> span.finish());
     }
 
+    @Override
+    public boolean subscribeLinkChange(String appId, String regionId, String logicType, LinkChangeListener listener) {
+        if (asyncRedisPool == null) {
+            return false;
+        }
+        String channel = String.format(LINK_CHANNEL_TEMP, appId, regionId, logicType);
+        asyncRedisPool.subscribe(channel, message -> {
+            //格式：epoch|serviceName|podId|ownerId，ownerId放在最后，允许包含分隔符
+            String[] split = message.split("\\|", 4);
+            if (split.length != 4) {
+                log.warn("subscribeLinkChange bad message channel {} message {}", channel, message);
+                return;
+            }
+            try {
+                listener.onLinkChange(split[3], split[1], Integer.parseInt(split[2]), Long.parseLong(split[0]));
+            } catch (Exception e) {
+                log.error("subscribeLinkChange listener error channel {} message {}", channel, message, e);
+            }
+        }, listener::onReset);
+        log.info("subscribeLinkChange channel {}", channel);
+        return true;
+    }
+
 }
@@ -0,0 +1,91 @@
+package com.homo.service.state.driver.redis;
+
+import brave.Tracing;
+import brave.sampler.Sampler;
+import com.homo.core.redis.facade.HomoAsyncRedisPool;
+import com.homo.core.utils.trace.ZipkinUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class StatefulDriverRedisImplTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    @Mock
+    HomoAsyncRedisPool asyncRedisPool;
+    @InjectMocks
+    StatefulDriverRedisImpl statefulDriver;
+    private AutoCloseable mocks;
+    private final List<String[]> batchKeys = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        if (ZipkinUtil.tracing == null) {
+            ZipkinUtil.tracing = Tracing.newBuilder().sampler(Sampler.NEVER_SAMPLE).build();
+        }
+        mocks = MockitoAnnotations.openMocks(this);
+        //已有连接的用户返回连接的pod，其余返回要设置的pod
+        Mockito.when(asyncRedisPool.evalAsyncReactive(Mockito.anyString(), Mockito.any(String[].class), Mockito.<String>any()))
+                .thenAnswer(invocation -> {
+                    String[] keys = invocation.getArgument(1);
+                    //变长参数展开在keys之后
+                    Object[] args = invocation.getArguments();
+                    batchKeys.add(keys);
+                    List<String> result = new ArrayList<>();
+                    for (int i = 0; i < (keys.length - 1) / 2; i++) {
+                        String ownerId = (String) args[i * 2 + 5];
+                        result.add(ownerId.endsWith("0") ? "9" : (String) args[i * 2 + 6]);
+                    }
+                    return Flux.just(result);
+                });
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    public void testSetLinksInBatches() {
+        int userCount = StatefulDriverRedisImpl.LINKS_BATCH_SIZE * 2 + 5;
+        Map<String, Integer> uidPodMap = new LinkedHashMap<>();
+        for (int i = 0; i < userCount; i++) {
+            uidPodMap.put("u" + i, i % 3);
+        }
+        Map<String, Integer> linked = statefulDriver.setLinkedPodsIfAbsent("app", "region", "state", uidPodMap, "svc", 60).block(TIMEOUT);
+        //按固定大小分批执行脚本，每批都带上版本号key
+        Assertions.assertEquals(3, batchKeys.size());
+        Assertions.assertEquals(StatefulDriverRedisImpl.LINKS_BATCH_SIZE * 2 + 1, batchKeys.get(0).length);
+        Assertions.assertEquals(StatefulDriverRedisImpl.LINKS_BATCH_SIZE * 2 + 1, batchKeys.get(1).length);
+        Assertions.assertEquals(5 * 2 + 1, batchKeys.get(2).length);
+        for (String[] keys : batchKeys) {
+            Assertions.assertEquals(batchKeys.get(0)[0], keys[0]);
+        }
+        Assertions.assertEquals(userCount, linked.size());
+        for (int i = 0; i < userCount; i++) {
+            Assertions.assertEquals(i % 10 == 0 ? 9 : i % 3, linked.get("u" + i));
+        }
+    }
+
+    @Test
+    public void testSetLinksSingleBatch() {
+        Map<String, Integer> uidPodMap = new LinkedHashMap<>();
+        uidPodMap.put("u1", 1);
+        uidPodMap.put("u10", 2);
+        Map<String, Integer> linked = statefulDriver.setLinkedPodsIfAbsent("app", "region", "state", uidPodMap, "svc", 60).block(TIMEOUT);
+        Assertions.assertEquals(1, batchKeys.size());
+        Assertions.assertEquals(Arrays.asList(1, 9), Arrays.asList(linked.get("u1"), linked.get("u10")));
+    }
+}
@@ -20,6 +20,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.util.CollectionUtils;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -223,6 +224,86 @@ public class MysqlRedisStorageDriverImpl implements StorageDriver {
         return warp.switchThread(callQueue,span);
     }
 
+    /**
+     * 批量更新多个owner的数据
+     * 每个owner的key带有各自的hash tag，集群下不一定在同一个slot，因此仍是每个owner一次脚本调用，
+     * 但所有调用同时发出，在同一个连接上流水线执行；全部返回后按脏表分组，每张脏表只打一次脏标记
+     */
+    @Override
+    public Homo<Map<String, Boolean>> asyncBatchUpdate(String appId, String regionId, String logicType, Map<String, Map<String, byte[]>> ownerDataMap) {
+        log.trace("asyncBatchUpdate start appId {} regionId {} logicType {} ownerCount {}", appId, regionId, logicType, ownerDataMap.size());
+        if (ownerDataMap.isEmpty()) {
+            return Homo.result(new HashMap<>());
+        }
+        String updateFieldsScript = LuaScriptHelper.updateFieldsScript;
+        byte[] expireTime = redisInfoHolder.getExpireTime().toString().getBytes(StandardCharsets.UTF_8);
+        List<Flux<String>> updateFluxList = new ArrayList<>(ownerDataMap.size());
+        for (Map.Entry<String, Map<String, byte[]>> ownerEntry : ownerDataMap.entrySet()) {
+            String ownerId = ownerEntry.getKey();
+            Map<String, byte[]> data = ownerEntry.getValue();
+            String redisKey = String.format(REDIS_KEY_TMPL, appId, regionId, logicType, ownerId);
+            String existKey = String.format(REDIS_EXIST_KEY_TMPL, appId, regionId, logicType, ownerId);
+            String[] keys = {redisKey, existKey};
+            byte[][] args = new byte[data.size() * 2 + 1][];//expireTime:field1,value1:field2,value2:field3...
+            args[0] = expireTime;
+            int index = 1;
+            for (Map.Entry<String, byte[]> dataEntry : data.entrySet()) {
+                args[index] = dataEntry.getKey().getBytes(StandardCharsets.UTF_8);
+                args[index + 1] = dataEntry.getValue();
+                index += 2;
+            }
+            //只返回成功的ownerId，单个owner失败不影响其他owner
+            updateFluxList.add(redisPool.evalAsyncReactive(updateFieldsScript, keys, args)
+                    .then(Mono.just(ownerId))
+                    .flux()
+                    .onErrorResume(throwable -> {
+                        log.error("asyncBatchUpdate error appId {} regionId {} logicType {} ownerId {}", appId, regionId, logicType, ownerId, throwable);
+                        return Flux.empty();
+                    }));
+        }
+        CallQueue callQueue = CallQueueMgr.getInstance().getLocalQueue();
+        Span span = ZipkinUtil.getTracing().tracer().nextSpan().name("asyncBatchUpdate").tag("type", "storage").annotate(ZipkinUtil.CLIENT_SEND_TAG);
+        Homo<Map<String, Boolean>> warp = Homo.warp(Flux.merge(Flux.fromIterable(updateFluxList), updateFluxList.size())
+                .collectList()
+                .flatMap(successOwners -> {
+                    TraceLogUtil.setTraceIdBySpan(span, "storage asyncBatchUpdate");
+                    Map<String, Boolean> retMap = new HashMap<>(ownerDataMap.size() * 2);
+                    for (String ownerId : ownerDataMap.keySet()) {
+                        retMap.put(ownerId, false);
+                    }
+                    //按脏表分组，同一张脏表的脏标记合并成一次hset
+                    Map<String, DirtyHelper> dirtyHelperMap = new HashMap<>();
+                    Map<String, List<String>> dirtyOwnerMap = new HashMap<>();
+                    for (String ownerId : successOwners) {
+                        String redisKey = String.format(REDIS_KEY_TMPL, appId, regionId, logicType, ownerId);
+                        String dirtyName = DirtyHelper.chooseDirtyMap(redisKey);
+                        DirtyHelper dirtyHelper = dirtyHelperMap.computeIfAbsent(dirtyName, name -> DirtyHelper.create(redisKey));
+                        for (String field : ownerDataMap.get(ownerId).keySet()) {
+                            dirtyHelper.update(appId, regionId, logicType, ownerId, field);
+                        }
+                        dirtyOwnerMap.computeIfAbsent(dirtyName, name -> new ArrayList<>()).add(ownerId);
+                    }
+                    return Flux.fromIterable(dirtyHelperMap.entrySet())
+                            .flatMap(dirtyEntry -> dirtyDriver.dirtyUpdate(dirtyEntry.getValue().build())
+                                    .then(Mono.just(dirtyEntry.getKey()))
+                                    .onErrorResume(throwable -> {
+                                        log.error("asyncBatchUpdate dirtyUpdate error dirtyName {} owners {}", dirtyEntry.getKey(), dirtyOwnerMap.get(dirtyEntry.getKey()), throwable);
+                                        return Mono.empty();
+                                    }))
+                            .doOnNext(dirtyName -> {
+                                for (String ownerId : dirtyOwnerMap.get(dirtyName)) {
+                                    retMap.put(ownerId, true);
+                                }
+                            })
+                            .then(Mono.fromSupplier(() -> {
+                                log.trace("asyncBatchUpdate finish appId {} regionId {} logicType {} ret {}", appId, regionId, logicType, retMap);
+                                span.annotate(ZipkinUtil.CLIENT_RECEIVE_TAG).finish();
+                                return retMap;
+                            }));
+                }));
+        return warp.switchThread(callQueue, span);
+    }
+
     @Override
     public Homo<Pair<Boolean, Map<String, Long>>> asyncIncr(String appId, String regionId, String logicType, String ownerId, Map<String, Long> incrData) {
         log.trace("asyncIncr start appId {} regionId {} logicType {} ownerId {} incrData {}", appId, regionId, logicType, ownerId, incrData);
@@ -30,6 +30,12 @@ public class ByteStorage implements Module {
     @Autowired(required = false)
     StorageDriver storageDriver;
 
+    /**
+     * 存储数据编解码（压缩），写入前编码，读取后解码
+     */
+    @Autowired(required = false)
+    StorageCodec storageCodec;
+
     /**
      * 根模块（用于获取应用 ID 和区域 ID）
      */
@@ -52,7 +58,7 @@ public class ByteStorage implements Module {
      * 更新存储数据（指定应用 ID 和区域 ID）
      */
     public Homo<Pair<Boolean, Map<String, byte[]>>> update(String appId, String regionId, String logicType, String ownerId, Map<String, byte[]> keyList) {
-        return storageDriver.asyncUpdate(appId, regionId, logicType, ownerId, keyList).errorContinue(Homo::error);
+        return storageDriver.asyncUpdate(appId, regionId, logicType, ownerId, encode(logicType, keyList)).errorContinue(Homo::error);
     }
 
     /**
@@ -68,11 +74,26 @@ public class ByteStorage implements Module {
     public Homo<Boolean> save(String appId, String regionId, String logicType, String ownerId, String key, byte[] data) {
         Map<String, byte[]> map = new HashMap<>();
         map.put(key, data);
-        return storageDriver.asyncUpdate(appId, regionId, logicType, ownerId, map)
+        return storageDriver.asyncUpdate(appId, regionId, logicType, ownerId, encode(logicType, map))
                 .nextDo(ret -> Homo.result(ret.getKey()))
                 .errorContinue(throwable -> Homo.error(new Exception(String.format("save error, logicType_%s, ownerId_%s, key_%s", logicType, ownerId, key))));
     }
 
+    /**
+     * 批量保存同一逻辑类型下多个owner的数据（指定应用 ID 和区域 ID）
+     *
+     * @param ownerDataMap ownerId -> 待保存数据
+     * @return ownerId -> 是否保存成功
+     */
+    public Homo<Map<String, Boolean>> batchUpdate(String appId, String regionId, String logicType, Map<String, Map<String, byte[]>> ownerDataMap) {
+        Map<String, Map<String, byte[]>> encoded = new HashMap<>(ownerDataMap.size() * 2);
+        for (Map.Entry<String, Map<String, byte[]>> entry : ownerDataMap.entrySet()) {
+            encoded.put(entry.getKey(), encode(logicType, entry.getValue()));
+        }
+        return storageDriver.asyncBatchUpdate(appId, regionId, logicType, encoded)
+                .errorContinue(throwable -> Homo.error(new Exception(String.format("batchUpdate error, logicType_%s, ownerCount_%s", logicType, ownerDataMap.size()), throwable)));
+    }
+
     /**
      * 获取单个数据
      */
@@ -87,7 +108,7 @@ public class ByteStorage implements Module {
         List<String> list = new ArrayList<>();
         list.add(key);
         return storageDriver.asyncGetByFields(appId, regionId, logicType, ownerId, list)
-                .nextDo(ret -> Homo.result(ret == null || !ret.containsKey(key) ? null : ret.get(key)))
+                .nextDo(ret -> Homo.result(ret == null || !ret.containsKey(key) ? null : decode(ret.get(key))))
                 .errorContinue(Homo::error);
     }
 
@@ -103,7 +124,7 @@ public class ByteStorage implements Module {
      */
     public Homo<Map<String, byte[]>> get(String appId, String regionId, String logicType, String ownerId, List<String> keyList) {
         return storageDriver.asyncGetByFields(appId, regionId, logicType, ownerId, keyList)
-                .nextDo(Homo::result)
+                .nextDo(ret -> Homo.result(decode(ret)))
                 .errorContinue(Homo::error);
     }
 
@@ -119,7 +140,7 @@ public class ByteStorage implements Module {
      */
     public Homo<Map<String, byte[]>> getAll(String appId, String regionId, String logicType, String ownerId) {
         return storageDriver.asyncGetAll(appId, regionId, logicType, ownerId)
-                .nextDo(Homo::result)
+                .nextDo(ret -> Homo.result(decode(ret)))
                 .errorContinue(Homo::error);
     }
 
@@ -170,4 +191,16 @@ public class ByteStorage implements Module {
                                 appId, regionId, logicType, ownerId, incrData))));
 
     }
+
+    private Map<String, byte[]> encode(String logicType, Map<String, byte[]> data) {
+        return storageCodec == null ? data : storageCodec.encode(logicType, data);
+    }
+
+    private Map<String, byte[]> decode(Map<String, byte[]> data) {
+        return storageCodec == null ? data : storageCodec.decode(data);
+    }
+
+    private byte[] decode(byte[] data) {
+        return storageCodec == null ? data : storageCodec.decode(data);
+    }
 }
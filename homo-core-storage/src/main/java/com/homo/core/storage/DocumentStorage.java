@@ -5,13 +5,16 @@ import com.homo.core.facade.document.DocumentStorageDriver;
 import com.homo.core.facade.lock.LockDriver;
 import com.homo.core.utils.callback.CallBack;
 import com.homo.core.utils.exception.LockException;
+import com.homo.core.utils.fun.FuncWithException;
 import com.homo.core.utils.module.Module;
 import com.homo.core.utils.module.RootModule;
 import com.homo.core.utils.rector.Homo;
+import com.homo.core.utils.rector.HomoFlux;
 import com.homo.core.utils.rector.HomoSink;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Flux;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -51,6 +54,31 @@ public class DocumentStorage<F, S, U, P> implements Module {
         return documentDriver.asyncQuery(filter, viewFilter, sort, limit, skip, viewClazz, clazz);
     }
 
+    /**
+     * 按_id游标流式查询，适合全表扫描、排行榜重建等大数据量场景
+     *
+     * @param filter    过滤条件
+     * @param batchSize 每批拉取数量
+     * @param clazz     文档对象类型
+     */
+    public <T> Flux<T> queryStream(F filter, Integer batchSize, Class<T> clazz) {
+        return documentDriver.asyncQueryStream(filter, batchSize, clazz);
+    }
+
+    /**
+     * 按_id游标分批查询，并在当前CallQueue上逐批消费，上一批消费完成后才拉取下一批
+     *
+     * @param filter    过滤条件
+     * @param batchSize 每批数量
+     * @param clazz     文档对象类型
+     * @param consumer  批次消费者
+     * @return 消费的总条数
+     */
+    public <T> Homo<Long> queryEach(F filter, Integer batchSize, Class<T> clazz, FuncWithException<List<T>, Homo<?>> consumer) {
+        int pageSize = batchSize == null ? 100 : batchSize;
+        return HomoFlux.consume(queryStream(filter, pageSize, clazz), pageSize, consumer);
+    }
+
     public <T> Homo<Boolean> findAndModify(String logicType,
                                            String ownerId,
                                            String key,
@@ -67,6 +95,13 @@ public class DocumentStorage<F, S, U, P> implements Module {
     }
 
 
+    public <T, V> Flux<V> aggregateStream(P pipeline,
+                                          Integer batchSize,
+                                          Class<V> viewClazz,
+                                          Class<T> clazz) {
+        return documentDriver.asyncAggregateStream(pipeline, batchSize, viewClazz, clazz);
+    }
+
     public <T> Homo<Boolean> update(String logicType, String ownerId, Class<T> clazz, Map<String, T> keyList) {
         return documentDriver.asyncUpdate(rootModule.getServerInfo().appId, rootModule.getServerInfo().regionId, logicType, ownerId, keyList, clazz);
     }
@@ -53,6 +53,21 @@ public class ObjStorage implements Module {
     }
 
 
+    /**
+     * 批量保存同一逻辑类型下多个owner的数据
+     * @param ownerDataMap ownerId -> 序列化后的数据
+     * @return ownerId -> 是否保存成功
+     */
+    public Homo<Map<String, Boolean>> batchSave(String appId, String regionId, String logicType, String key, Map<String, byte[]> ownerDataMap){
+        Map<String, Map<String, byte[]>> map = new HashMap<>(ownerDataMap.size() * 2);
+        for (Map.Entry<String, byte[]> entry : ownerDataMap.entrySet()) {
+            Map<String, byte[]> data = new HashMap<>();
+            data.put(key, entry.getValue());
+            map.put(entry.getKey(), data);
+        }
+        return storage.batchUpdate(warpAppId(appId), regionId, logicType, map);
+    }
+
     public <T extends SaveObject> Homo<T> load(String logicType, String ownerId,Class<T> clazz) {
         return load(warpAppId(rootModule.getServerInfo().getAppId()), rootModule.getServerInfo().getRegionId(), logicType, ownerId, OBJECT_KEY,clazz);
     }
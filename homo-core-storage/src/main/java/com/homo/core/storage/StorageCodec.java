@@ -0,0 +1,295 @@
+package com.homo.core.storage;
+
+import com.homo.core.configurable.storage.StorageProperties;
+import com.homo.core.utils.exception.HomoError;
+import com.homo.core.utils.exception.HomoException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.BlockLZ4CompressorOutputStream;
+import org.apache.commons.compress.utils.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 存储数据编解码
+ * 只有压缩后的数据带头部：3字节魔数 + 1字节压缩方式 + 4字节原始长度 + 压缩数据，
+ * 未压缩的数据原样存储，与编码前的格式一致，默认不压缩时升级和回滚都不影响已存储的数据
+ * 原数据恰好以魔数开头时（正常序列化数据不会出现）加上 魔数 + 未压缩标记 的头部，避免读取时被误判
+ * 读取时按魔数识别，没有魔数的数据原样返回，因此开启、关闭或切换压缩方式都不影响已存储数据的读取
+ * 解压前校验原始长度不超过maxDecodedLength，且不超过压缩数据长度的maxRatio倍，避免按损坏的长度分配内存
+ * 带魔数但无法解码的数据抛出storageDecodeError，不会当作业务数据返回
+ */
+@Slf4j
+public class StorageCodec {
+    public static final String TYPE_NONE = "none";
+    public static final String TYPE_LZ4 = "lz4";
+    public static final String TYPE_DEFLATE = "deflate";
+    static final byte[] MAGIC = {(byte) 0xF1, (byte) 0xC0, (byte) 0xDE};
+    static final byte NONE_MARK = 0;
+    static final byte LZ4_MARK = 1;
+    static final byte DEFLATE_MARK = 2;
+    static final int MARK_LENGTH = MAGIC.length + 1;
+    static final int HEAD_LENGTH = MARK_LENGTH + 4;
+    private static final String DICTIONARY_SUFFIX = ".dict";
+
+    private final String type;
+    private final int threshold;
+    private final int maxDecodedLength;
+    private final int maxRatio;
+    private final ThreadLocal<Deflater> localDeflater;
+    private final ThreadLocal<Inflater> localInflater = ThreadLocal.withInitial(Inflater::new);
+    /**
+     * logicType -> 当前字典
+     */
+    private final Map<String, byte[]> dictionaryMap = new HashMap<>();
+    /**
+     * 字典校验和 -> 字典，用于解压
+     */
+    private final Map<Integer, byte[]> adlerDictionaryMap = new HashMap<>();
+
+    public StorageCodec(StorageProperties storageProperties) {
+        this.type = storageProperties.getCompressType() == null ? TYPE_NONE : storageProperties.getCompressType().toLowerCase();
+        this.threshold = storageProperties.getCompressThreshold();
+        this.maxDecodedLength = storageProperties.getCompressMaxDecodedLength();
+        this.maxRatio = storageProperties.getCompressMaxRatio();
+        int level = storageProperties.getCompressLevel();
+        this.localDeflater = ThreadLocal.withInitial(() -> new Deflater(level));
+        loadDictionaries(storageProperties.getCompressDictionaryDir());
+        log.info("StorageCodec init type {} threshold {} level {} dictionaries {}", type, threshold, level, dictionaryMap.keySet());
+    }
+
+    private void loadDictionaries(String dir) {
+        if (dir == null || dir.isEmpty()) {
+            return;
+        }
+        File[] files = new File(dir).listFiles((parent, name) -> name.endsWith(DICTIONARY_SUFFIX));
+        if (files == null) {
+            log.warn("StorageCodec dictionary dir {} not exist", dir);
+            return;
+        }
+        for (File file : files) {
+            try {
+                byte[] dictionary = Files.readAllBytes(file.toPath());
+                Adler32 adler32 = new Adler32();
+                adler32.update(dictionary);
+                adlerDictionaryMap.put((int) adler32.getValue(), dictionary);
+                String name = file.getName();
+                String logicType = name.substring(0, name.length() - DICTIONARY_SUFFIX.length());
+                dictionaryMap.put(logicType, dictionary);
+            } catch (IOException e) {
+                log.error("StorageCodec load dictionary {} error", file, e);
+            }
+        }
+    }
+
+    public Map<String, byte[]> encode(String logicType, Map<String, byte[]> data) {
+        if (data == null) {
+            return null;
+        }
+        Map<String, byte[]> encoded = new HashMap<>(data.size() * 2);
+        for (Map.Entry<String, byte[]> entry : data.entrySet()) {
+            encoded.put(entry.getKey(), encode(logicType, entry.getValue()));
+        }
+        return encoded;
+    }
+
+    /**
+     * 编码数据，未达到阈值或压缩后没有变小时原样返回
+     */
+    public byte[] encode(String logicType, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length < threshold || data.length <= HEAD_LENGTH || TYPE_NONE.equals(type)) {
+            return raw(data);
+        }
+        try {
+            byte[] encoded;
+            if (TYPE_LZ4.equals(type)) {
+                encoded = lz4(data);
+            } else if (TYPE_DEFLATE.equals(type)) {
+                encoded = deflate(logicType, data);
+            } else {
+                log.warn("StorageCodec unknown compress type {}", type);
+                return raw(data);
+            }
+            return encoded == null || encoded.length > data.length ? raw(data) : encoded;
+        } catch (IOException e) {
+            log.error("StorageCodec encode error logicType {} length {}", logicType, data.length, e);
+            return raw(data);
+        }
+    }
+
+    public Map<String, byte[]> decode(Map<String, byte[]> data) {
+        if (data == null) {
+            return null;
+        }
+        Map<String, byte[]> decoded = new HashMap<>(data.size() * 2);
+        for (Map.Entry<String, byte[]> entry : data.entrySet()) {
+            decoded.put(entry.getKey(), decode(entry.getValue()));
+        }
+        return decoded;
+    }
+
+    /**
+     * 解码数据，不带魔数的数据原样返回
+     *
+     * @throws HomoException 带魔数但压缩方式未知、长度超出限制或解压失败
+     */
+    public byte[] decode(byte[] data) {
+        if (!hasMagic(data)) {
+            return data;
+        }
+        byte mark = data[MAGIC.length];
+        if (mark == NONE_MARK) {
+            byte[] decoded = new byte[data.length - MARK_LENGTH];
+            System.arraycopy(data, MARK_LENGTH, decoded, 0, decoded.length);
+            return decoded;
+        }
+        if ((mark != LZ4_MARK && mark != DEFLATE_MARK) || data.length <= HEAD_LENGTH) {
+            throw HomoError.throwError(HomoError.storageDecodeError, data.length, "bad head mark " + mark);
+        }
+        int length = ((data[MARK_LENGTH] & 0xFF) << 24) | ((data[MARK_LENGTH + 1] & 0xFF) << 16)
+                | ((data[MARK_LENGTH + 2] & 0xFF) << 8) | (data[MARK_LENGTH + 3] & 0xFF);
+        if (length <= 0 || length > maxDecodedLength || (long) length > (long) (data.length - HEAD_LENGTH) * maxRatio) {
+            throw HomoError.throwError(HomoError.storageDecodeError, data.length, "decoded length " + length + " out of limit");
+        }
+        byte[] decoded;
+        try {
+            decoded = mark == LZ4_MARK ? unLz4(data, length) : inflate(data, length);
+        } catch (IOException | DataFormatException | RuntimeException e) {
+            log.error("StorageCodec decode fail length {} mark {}", data.length, mark, e);
+            throw HomoError.throwError(HomoError.storageDecodeError, data.length, e.getMessage());
+        }
+        if (decoded == null) {
+            throw HomoError.throwError(HomoError.storageDecodeError, data.length, "decoded length mismatch " + length);
+        }
+        return decoded;
+    }
+
+    private static boolean hasMagic(byte[] data) {
+        if (data == null || data.length < MARK_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 未压缩的数据原样返回，只有以魔数开头时才加上未压缩头部
+     */
+    private static byte[] raw(byte[] data) {
+        if (!hasMagic(data)) {
+            return data;
+        }
+        byte[] encoded = new byte[data.length + MARK_LENGTH];
+        System.arraycopy(MAGIC, 0, encoded, 0, MAGIC.length);
+        encoded[MAGIC.length] = NONE_MARK;
+        System.arraycopy(data, 0, encoded, MARK_LENGTH, data.length);
+        return encoded;
+    }
+
+    private byte[] lz4(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + HEAD_LENGTH);
+        writeHead(out, LZ4_MARK, data.length);
+        try (BlockLZ4CompressorOutputStream lz4Out = new BlockLZ4CompressorOutputStream(out)) {
+            lz4Out.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] unLz4(byte[] data, int length) throws IOException {
+        byte[] decoded = new byte[length];
+        try (BlockLZ4CompressorInputStream lz4In = new BlockLZ4CompressorInputStream(new ByteArrayInputStream(data, HEAD_LENGTH, data.length - HEAD_LENGTH))) {
+            if (IOUtils.readFully(lz4In, decoded) != length || lz4In.read() != -1) {
+                return null;
+            }
+        }
+        return decoded;
+    }
+
+    private byte[] deflate(String logicType, byte[] data) {
+        Deflater deflater = localDeflater.get();
+        deflater.reset();
+        byte[] dictionary = dictionaryMap.get(logicType);
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(data);
+        deflater.finish();
+        //压缩后不小于原数据就不压缩，输出缓冲区只需原数据大小
+        byte[] out = new byte[data.length];
+        writeHead(out, DEFLATE_MARK, data.length);
+        int len = HEAD_LENGTH;
+        while (!deflater.finished()) {
+            if (len >= out.length) {
+                return null;
+            }
+            len += deflater.deflate(out, len, out.length - len);
+        }
+        byte[] encoded = new byte[len];
+        System.arraycopy(out, 0, encoded, 0, len);
+        return encoded;
+    }
+
+    private byte[] inflate(byte[] data, int length) throws DataFormatException {
+        Inflater inflater = localInflater.get();
+        inflater.reset();
+        inflater.setInput(data, HEAD_LENGTH, data.length - HEAD_LENGTH);
+        byte[] decoded = new byte[length];
+        int len = 0;
+        while (len < length) {
+            int count = inflater.inflate(decoded, len, length - len);
+            if (count == 0) {
+                if (inflater.needsDictionary()) {
+                    byte[] dictionary = adlerDictionaryMap.get(inflater.getAdler());
+                    if (dictionary == null) {
+                        throw new DataFormatException("dictionary not found adler " + inflater.getAdler());
+                    }
+                    inflater.setDictionary(dictionary);
+                    continue;
+                }
+                if (inflater.finished() || inflater.needsInput()) {
+                    break;
+                }
+            }
+            len += count;
+        }
+        if (len != length) {
+            return null;
+        }
+        if (!inflater.finished() && (inflater.inflate(new byte[1]) != 0 || !inflater.finished())) {
+            return null;
+        }
+        return decoded;
+    }
+
+    private static void writeHead(ByteArrayOutputStream out, byte mark, int length) {
+        byte[] head = new byte[HEAD_LENGTH];
+        writeHead(head, mark, length);
+        out.write(head, 0, HEAD_LENGTH);
+    }
+
+    private static void writeHead(byte[] out, byte mark, int length) {
+        System.arraycopy(MAGIC, 0, out, 0, MAGIC.length);
+        out[MAGIC.length] = mark;
+        out[MARK_LENGTH] = (byte) (length >>> 24);
+        out[MARK_LENGTH + 1] = (byte) (length >>> 16);
+        out[MARK_LENGTH + 2] = (byte) (length >>> 8);
+        out[MARK_LENGTH + 3] = (byte) length;
+    }
+}
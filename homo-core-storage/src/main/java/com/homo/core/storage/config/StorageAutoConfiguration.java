@@ -1,18 +1,30 @@
 package com.homo.core.storage.config;
 
+import com.homo.core.configurable.storage.StorageProperties;
 import com.homo.core.storage.ByteStorage;
 import com.homo.core.storage.ObjStorage;
 import com.homo.core.storage.DocumentStorage;
+import com.homo.core.storage.StorageCodec;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Import;
 
 
 @AutoConfiguration
 @Slf4j
+@Import(StorageProperties.class)
 public class StorageAutoConfiguration {
 
+    /**
+     * 不压缩时数据原样写入，始终注册以便关闭压缩后仍能读取已压缩的数据
+     */
+    @Bean("storageCodec")
+    public StorageCodec storageCodec(StorageProperties storageProperties){
+        return new StorageCodec(storageProperties);
+    }
+
     @Bean("byteStorage")
     @DependsOn("storageDriver")
     public ByteStorage byteStorage(){
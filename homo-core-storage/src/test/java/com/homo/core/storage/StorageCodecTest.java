@@ -0,0 +1,153 @@
+package com.homo.core.storage;
+
+import com.homo.core.configurable.storage.StorageProperties;
+import com.homo.core.utils.exception.HomoError;
+import com.homo.core.utils.exception.HomoException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class StorageCodecTest {
+
+    private static StorageCodec codec(String type) {
+        StorageProperties properties = new StorageProperties();
+        properties.setCompressType(type);
+        properties.setCompressThreshold(64);
+        properties.setCompressLevel(1);
+        properties.setCompressMaxDecodedLength(1024 * 1024);
+        properties.setCompressMaxRatio(1100);
+        return new StorageCodec(properties);
+    }
+
+    private static byte[] compressible(int length) {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < length) {
+            builder.append("{\"name\":\"role\",\"level\":").append(builder.length() % 97).append('}');
+        }
+        return builder.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] random(int length) {
+        byte[] data = new byte[length];
+        new Random(1).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        for (String type : new String[]{StorageCodec.TYPE_NONE, StorageCodec.TYPE_LZ4, StorageCodec.TYPE_DEFLATE}) {
+            StorageCodec codec = codec(type);
+            for (byte[] data : new byte[][]{new byte[0], "short".getBytes(StandardCharsets.UTF_8), compressible(10000), random(4096)}) {
+                byte[] encoded = codec.encode("role", data);
+                Assertions.assertArrayEquals(data, codec.decode(encoded), type);
+            }
+            Assertions.assertNull(codec.encode("role", (byte[]) null));
+            Assertions.assertNull(codec.decode((byte[]) null));
+        }
+    }
+
+    private static byte[] head(byte mark, int length, int... body) {
+        byte[] data = new byte[StorageCodec.HEAD_LENGTH + body.length];
+        System.arraycopy(StorageCodec.MAGIC, 0, data, 0, StorageCodec.MAGIC.length);
+        data[StorageCodec.MAGIC.length] = mark;
+        data[StorageCodec.MARK_LENGTH] = (byte) (length >>> 24);
+        data[StorageCodec.MARK_LENGTH + 1] = (byte) (length >>> 16);
+        data[StorageCodec.MARK_LENGTH + 2] = (byte) (length >>> 8);
+        data[StorageCodec.MARK_LENGTH + 3] = (byte) length;
+        for (int i = 0; i < body.length; i++) {
+            data[StorageCodec.HEAD_LENGTH + i] = (byte) body[i];
+        }
+        return data;
+    }
+
+    @Test
+    public void testCompress() {
+        byte[] data = compressible(10000);
+        byte[] lz4 = codec(StorageCodec.TYPE_LZ4).encode("role", data);
+        Assertions.assertEquals(StorageCodec.LZ4_MARK, lz4[StorageCodec.MAGIC.length]);
+        Assertions.assertTrue(lz4.length < data.length);
+        byte[] deflate = codec(StorageCodec.TYPE_DEFLATE).encode("role", data);
+        Assertions.assertEquals(StorageCodec.DEFLATE_MARK, deflate[StorageCodec.MAGIC.length]);
+        Assertions.assertTrue(deflate.length < data.length);
+        //不可压缩或未达到阈值的数据原样写入
+        byte[] incompressible = random(4096);
+        Assertions.assertSame(incompressible, codec(StorageCodec.TYPE_LZ4).encode("role", incompressible));
+        byte[] small = compressible(32);
+        Assertions.assertSame(small, codec(StorageCodec.TYPE_DEFLATE).encode("role", small));
+    }
+
+    @Test
+    public void testNoneKeepFormat() {
+        //默认不压缩时写入的数据与编码前完全一致，回滚到旧版本可以直接读取
+        StorageCodec codec = codec(StorageCodec.TYPE_NONE);
+        for (byte[] data : new byte[][]{compressible(10000), random(4096), new byte[]{(byte) 0xF0, 1, 2}, new byte[]{(byte) 0xF1, 1, 2, 3, 4, 5}}) {
+            Assertions.assertSame(data, codec.encode("role", data));
+        }
+        //恰好以魔数开头的数据加上未压缩头部，读取时还原
+        byte[] magic = new byte[]{StorageCodec.MAGIC[0], StorageCodec.MAGIC[1], StorageCodec.MAGIC[2], StorageCodec.LZ4_MARK, 9};
+        byte[] encoded = codec.encode("role", magic);
+        Assertions.assertEquals(magic.length + StorageCodec.MARK_LENGTH, encoded.length);
+        Assertions.assertArrayEquals(magic, codec.decode(encoded));
+    }
+
+    @Test
+    public void testSwitchType() {
+        byte[] data = compressible(10000);
+        Map<String, byte[]> stored = new HashMap<>();
+        stored.put("lz4", codec(StorageCodec.TYPE_LZ4).encode("role", data));
+        stored.put("deflate", codec(StorageCodec.TYPE_DEFLATE).encode("role", data));
+        stored.put("none", codec(StorageCodec.TYPE_NONE).encode("role", data));
+        for (String type : new String[]{StorageCodec.TYPE_NONE, StorageCodec.TYPE_LZ4, StorageCodec.TYPE_DEFLATE}) {
+            Map<String, byte[]> decoded = codec(type).decode(stored);
+            for (byte[] value : decoded.values()) {
+                Assertions.assertArrayEquals(data, value, type);
+            }
+        }
+    }
+
+    @Test
+    public void testLegacyData() {
+        StorageCodec codec = codec(StorageCodec.TYPE_DEFLATE);
+        //编码前写入的旧数据没有魔数，原样返回
+        byte[] json = "{\"name\":\"role\"}".getBytes(StandardCharsets.UTF_8);
+        Assertions.assertArrayEquals(json, codec.decode(json));
+        byte[] shortData = new byte[]{1, 2, 3};
+        Assertions.assertArrayEquals(shortData, codec.decode(shortData));
+        Assertions.assertArrayEquals(new byte[0], codec.decode(new byte[0]));
+        //首字节为0xF0~0xF2的旧数据不再被误判
+        for (byte first : new byte[]{(byte) 0xF0, (byte) 0xF1, (byte) 0xF2}) {
+            byte[] legacy = new byte[]{first, 0, 0, 0, 16, 1, 2, 3, 4, 5};
+            Assertions.assertArrayEquals(legacy.clone(), codec.decode(legacy));
+        }
+        byte[] fst = random(300);
+        fst[0] = (byte) 0xF0;
+        Assertions.assertArrayEquals(fst.clone(), codec.decode(fst));
+        //此前写入的压缩数据格式不变，仍可读取
+        byte[] data = compressible(2000);
+        Assertions.assertArrayEquals(data, codec.decode(codec(StorageCodec.TYPE_LZ4).encode("role", data)));
+    }
+
+    @Test
+    public void testRejectBrokenData() {
+        StorageCodec codec = codec(StorageCodec.TYPE_LZ4);
+        //记录的原始长度远超限制，不分配内存，直接报错
+        Assertions.assertThrows(HomoException.class, () -> codec.decode(head(StorageCodec.LZ4_MARK, 0x7FFFFFFF, 1, 2, 3)));
+        //未超过最大长度但超过压缩比
+        Assertions.assertThrows(HomoException.class, () -> codec.decode(head(StorageCodec.DEFLATE_MARK, 0x000F0000, 1, 2, 3)));
+        //未知的压缩方式
+        Assertions.assertThrows(HomoException.class, () -> codec.decode(head((byte) 7, 16, 1, 2, 3)));
+        //长度合法但数据损坏，不会把压缩数据当作业务数据返回
+        byte[] encoded = codec.encode("role", compressible(10000));
+        byte[] broken = new byte[encoded.length / 2];
+        System.arraycopy(encoded, 0, broken, 0, broken.length);
+        HomoException exception = Assertions.assertThrows(HomoException.class, () -> codec.decode(broken));
+        Assertions.assertEquals(HomoError.storageDecodeError.getCode(), exception.getCode());
+        byte[] deflate = codec(StorageCodec.TYPE_DEFLATE).encode("role", compressible(10000));
+        deflate[deflate.length / 2] ^= 0x5A;
+        Assertions.assertThrows(HomoException.class, () -> codec.decode(deflate));
+    }
+}
@@ -1,90 +1,103 @@
 package com.homo.core.utils.callback;
 
 import com.google.common.util.concurrent.*;
+import com.homo.core.utils.concurrent.queue.CallQueue;
+import com.homo.core.utils.concurrent.queue.CallQueueMgr;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 回调任务调度器
+ * 任务提交即执行，完成时由监听器触发回调，不再由轮询线程定时扫描队列
+ * 回调切回提交任务时所在的CallQueue执行（不在CallQueue线程中提交则直接在执行线程回调）
+ * 工作队列有界，队列满时由提交线程直接执行(caller-runs)，线程池关闭后的提交记为拒绝
+ */
 @Slf4j
-public class CallbackTaskScheduler extends Thread {
-    private ConcurrentLinkedQueue<CallbackTask> executeTaskQueue = new ConcurrentLinkedQueue<>();
-    private AtomicInteger atomicInteger = new AtomicInteger();
-    private ThreadFactory threadFactory = new ThreadFactory() {
+public class CallbackTaskScheduler {
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+    private final AtomicInteger atomicInteger = new AtomicInteger();
+    private final AtomicLong callerRunsCount = new AtomicLong();
+    private final AtomicLong rejectCount = new AtomicLong();
+    private final ThreadFactory threadFactory = new ThreadFactory() {
         @Override
         public Thread newThread(Runnable r) {
             int index = atomicInteger.incrementAndGet();
             Thread t = new Thread(r, "homo-task" + index);
+            t.setDaemon(true);
             return t;
         }
     };
 
-    private ExecutorService jPool = new ThreadPoolExecutor(1, Runtime.getRuntime().availableProcessors(),
+    private final ThreadPoolExecutor jPool = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(),
             60L, TimeUnit.SECONDS,
-            new SynchronousQueue<Runnable>(),threadFactory, new ThreadPoolExecutor.AbortPolicy());
-
-    ListeningExecutorService gPool = MoreExecutors.listeningDecorator(jPool);
+            new LinkedBlockingQueue<>(DEFAULT_QUEUE_SIZE), threadFactory, new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                long count = rejectCount.incrementAndGet();
+                log.error("CallbackTaskScheduler reject task, executor is shutdown, rejectCount {}", count);
+                throw new RejectedExecutionException("CallbackTaskScheduler is shutdown");
+            }
+            long count = callerRunsCount.incrementAndGet();
+            log.warn("CallbackTaskScheduler queue is full, run in caller thread {}, callerRunsCount {}", Thread.currentThread().getName(), count);
+            r.run();
+        }
+    });
 
-    private long sleepTime = 200;// 线程休眠时间
+    private final ListeningExecutorService gPool = MoreExecutors.listeningDecorator(jPool);
 
     private static class SingletonHolder {
         private static final CallbackTaskScheduler INSTANCE = new CallbackTaskScheduler();
     }
 
-    public static final CallbackTaskScheduler getInstance(){
+    public static final CallbackTaskScheduler getInstance() {
         return SingletonHolder.INSTANCE;
     }
 
     private CallbackTaskScheduler() {
-        this.start();
-    }
-
-    public static <T> void add(CallbackTask<T> callbackTask){
-        getInstance().executeTaskQueue.add(callbackTask);
+        jPool.allowCoreThreadTimeOut(true);
     }
 
-    @Override
-    public void run() {
-        while (true) {
-            handleTask();// 处理任务
-            threadSleep(sleepTime);
-        }
-    }
-
-    /**
-     * 处理任务队列，检查其中是否有任务
-     */
-    private void handleTask() {
-
-        CallbackTask executeTask = null;
-        while (executeTaskQueue.peek() != null) {
-            executeTask = executeTaskQueue.poll();
-            handleTask(executeTask);
-        }
+    public static <T> void add(CallbackTask<T> callbackTask) {
+        getInstance().handleTask(callbackTask);
     }
 
     /**
      * 执行任务操作
      */
     private <R> void handleTask(CallbackTask<R> executeTask) {
-        ListenableFuture<R> future = gPool.submit(executeTask::execute);
-
+        CallQueue callQueue = CallQueueMgr.getInstance().getLocalQueue();
+        ListenableFuture<R> future;
+        try {
+            future = gPool.submit(executeTask::execute);
+        } catch (RejectedExecutionException e) {
+            executeTask.onError(e);
+            return;
+        }
+        Executor callbackExecutor = callQueue == null ? MoreExecutors.directExecutor() : runnable -> callQueue.addEvent(runnable::run);
         Futures.addCallback(future, new FutureCallback<R>() {
             public void onSuccess(R r) {
                 executeTask.onBack(r);
             }
+
             public void onFailure(Throwable t) {
                 executeTask.onError(t);
             }
-        });
+        }, callbackExecutor);
+    }
 
+    public int getWaitCount() {
+        return jPool.getQueue().size();
     }
 
-    private void threadSleep(long time) {
-        try {
-            sleep(time);
-        } catch (InterruptedException e) {
-            log.error("线程等待异常:",e);
-        }
+    public long getCallerRunsCount() {
+        return callerRunsCount.get();
+    }
+
+    public long getRejectCount() {
+        return rejectCount.get();
     }
 }
@@ -0,0 +1,161 @@
+package com.homo.core.utils.concurrent.lock;
+
+import com.homo.core.utils.concurrent.queue.CallQueue;
+import com.homo.core.utils.concurrent.queue.CallQueueMgr;
+import com.homo.core.utils.fun.SupplierWithException;
+import com.homo.core.utils.rector.Homo;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步id锁
+ * 与IdLocker不同，持锁期间可以跨越异步Homo，等待时不阻塞线程：
+ * 1. acquire返回Homo<Permit>，同一个id同时只有一个Permit，其余请求按先来后到排队
+ * 2. 排队的请求拿到锁后回到发起请求时所在的CallQueue继续执行
+ * 3. 某个id没有持有者也没有等待者时自动回收
+ * 不支持重入，持锁期间再次acquire同一个id会一直等待
+ */
+@Slf4j
+public class AsyncIdLocker {
+    private static final int WAITING = 0;
+    private static final int GRANTED = 1;
+    private static final int CANCELLED = 2;
+
+    private static class LockBlock {
+        ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    }
+
+    private final Map<String, LockBlock> idLockMap = new ConcurrentHashMap<>();
+
+    /**
+     * 获取id锁，使用完必须调用Permit.release
+     *
+     * @param id 锁id
+     */
+    public Homo<Permit> acquire(String id) {
+        return Homo.warp(Mono.create(sink -> {
+            Waiter waiter = new Waiter(id, sink, CallQueueMgr.getInstance().getLocalQueue());
+            sink.onCancel(waiter::cancel);
+            boolean[] free = new boolean[1];
+            idLockMap.compute(id, (key, lockBlock) -> {
+                if (lockBlock == null) {
+                    free[0] = true;
+                    return new LockBlock();
+                }
+                lockBlock.waiters.add(waiter);
+                return lockBlock;
+            });
+            if (free[0]) {
+                waiter.grant(false);
+            } else if (log.isDebugEnabled()) {
+                log.debug("AsyncIdLocker acquire id {} waiting", id);
+            }
+        }));
+    }
+
+    /**
+     * 持有id锁执行一个异步任务，任务完成（成功、失败或取消）后释放锁
+     *
+     * @param id       锁id
+     * @param supplier 异步任务
+     */
+    public <T> Homo<T> lock(String id, SupplierWithException<Homo<T>> supplier) {
+        return acquire(id)
+                .nextDo(permit -> Homo.fromSupplier(supplier)
+                        .finallySignal(signalType -> permit.release()));
+    }
+
+    /**
+     * id是否被持有
+     */
+    public boolean isLocked(String id) {
+        return idLockMap.containsKey(id);
+    }
+
+    /**
+     * 当前被持有或等待中的id数量
+     */
+    public int getLockCount() {
+        return idLockMap.size();
+    }
+
+    private void release(String id) {
+        Waiter[] next = new Waiter[1];
+        idLockMap.computeIfPresent(id, (key, lockBlock) -> {
+            next[0] = lockBlock.waiters.poll();
+            return next[0] == null ? null : lockBlock;
+        });
+        if (next[0] != null) {
+            next[0].grant(true);
+        } else if (log.isTraceEnabled()) {
+            log.trace("AsyncIdLocker remove id {}", id);
+        }
+    }
+
+    private class Waiter {
+        final String id;
+        final MonoSink<Permit> sink;
+        final CallQueue callQueue;
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        final Permit permit;
+
+        Waiter(String id, MonoSink<Permit> sink, CallQueue callQueue) {
+            this.id = id;
+            this.sink = sink;
+            this.callQueue = callQueue;
+            this.permit = new Permit(id);
+        }
+
+        /**
+         * @param resume 是否由其他持有者释放触发，是则回到发起请求的CallQueue执行，避免在释放者的调用栈上递归执行
+         */
+        void grant(boolean resume) {
+            if (!state.compareAndSet(WAITING, GRANTED)) {
+                //已取消，直接交给下一个等待者
+                release(id);
+                return;
+            }
+            if (resume && callQueue != null) {
+                callQueue.addEvent(() -> sink.success(permit));
+            } else {
+                sink.success(permit);
+            }
+        }
+
+        void cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                //已经拿到锁但订阅者不再需要，归还
+                permit.release();
+            }
+        }
+    }
+
+    /**
+     * 锁凭证，重复release只生效一次
+     */
+    public class Permit {
+        private final String id;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                AsyncIdLocker.this.release(id);
+            }
+        }
+    }
+}
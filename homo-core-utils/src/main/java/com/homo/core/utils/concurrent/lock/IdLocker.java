@@ -24,9 +24,9 @@ public class IdLocker {
         }
         try {
             lockBlock.lock.lock();
-            log.info("lock id {} idLock {} begin",lockBlock, id);
+            log.debug("lock id {} idLock {} begin",lockBlock, id);
             runnable.run();
-            log.info("lock id {} idLock {} end",lockBlock, id);
+            log.debug("lock id {} idLock {} end",lockBlock, id);
         }catch (Throwable throwable){
             log.error("lock id {} catch error!", id, throwable);
         }finally {
@@ -50,7 +50,7 @@ public class IdLocker {
         try {
             T rel;
             lockBlock.lock.lock();
-            log.info("lock id {} idLock {} begin", id,lockBlock.count);
+            log.debug("lock id {} idLock {} begin", id,lockBlock.count);
             //rel是异步Homo清空下不能保证串行
             rel= callable.call();
             return rel;
@@ -61,10 +61,10 @@ public class IdLocker {
             synchronized (this){
                 if (lockBlock.count.decrementAndGet() == 0) {
                     idLockMap.remove(id);
-                    log.info("lock remove id {} idLockMap !", id);
+                    log.debug("lock remove id {} idLockMap !", id);
                 }
             }
-            log.info("lock id {} idLock {} end", id,lockBlock.count);
+            log.debug("lock id {} idLock {} end", id,lockBlock.count);
             lockBlock.lock.unlock();
 
         }
@@ -9,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 @Slf4j
@@ -20,6 +21,14 @@ public class CallQueue {
     volatile boolean running = false;
     volatile boolean isShutDown = false;
     LinkedBlockingDeque<Event> eventQueue;
+    /**
+     * 弹性模式下当前负责该队列的工作线程，非弹性模式下为null
+     */
+    volatile ElasticCallQueueWorker owner;
+    /**
+     * 弹性模式下是否有线程正在处理该队列的事件，同一时刻只允许一个线程处理，保证事件顺序
+     */
+    final AtomicBoolean processing = new AtomicBoolean(false);
 
     public CallQueue(int id) {
         this.id = id;
@@ -61,6 +70,10 @@ public class CallQueue {
         } else {
             eventQueue.add(e);
         }
+        ElasticCallQueueWorker worker = owner;
+        if (worker != null) {
+            worker.onEvent(this);
+        }
     }
 
     public void start(CallQueueMgr callQueueMgr) {
@@ -87,6 +100,15 @@ public class CallQueue {
         });
     }
 
+    /**
+     * 弹性模式下由工作线程驱动，不单独占用线程
+     */
+    void startElastic(ElasticCallQueueWorker worker) {
+        log.info("CallQueue[{}] start elastic worker {}!", id, worker.getId());
+        owner = worker;
+        running = true;
+    }
+
     public void shutdown() {
         isShutDown = true;
     }
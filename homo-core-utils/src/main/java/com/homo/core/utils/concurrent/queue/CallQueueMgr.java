@@ -7,12 +7,18 @@ import com.homo.core.utils.rector.Homo;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 
 
@@ -23,17 +29,33 @@ import java.util.function.BiFunction;
 public class CallQueueMgr {
     public static final String DEFAULT_CHOICE_THREAD_STRATEGY = "defaultPloyType";
     private volatile static CallQueueMgr instance = null;
-    private static final int queueCount = Integer.parseInt(System.getProperty("call.queue.count", "4"));
+    /**
+     * 弹性模式：队列数多于线程数，队列作为亲和组由工作线程调度，空闲线程整组窃取繁忙线程的队列
+     */
+    private static final boolean elastic = Boolean.parseBoolean(System.getProperty("call.queue.elastic", "false"));
+    private static final int elasticWorkerCount = Integer.parseInt(System.getProperty("call.queue.elastic.workers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+    private static final int elasticBatchSize = Integer.parseInt(System.getProperty("call.queue.elastic.batch", "32"));
+    private static final int elasticMinWorkerCount = Integer.parseInt(System.getProperty("call.queue.elastic.minWorkers", "1"));
+    private static final long elasticIdleRetireMillis = Long.parseLong(System.getProperty("call.queue.elastic.idleRetireMillis", "60000"));
+    private static final int queueCount = Integer.parseInt(System.getProperty("call.queue.count", elastic ? String.valueOf(Math.max(4, elasticWorkerCount * 4)) : "4"));
     private static final int waitNum = Integer.parseInt(System.getProperty("call.queue.maxWaitNum", "10000"));
     private static final int keepLive = Integer.parseInt(System.getProperty("call.queue.maxWaitNum", "10"));
     static Map<String, BiFunction<Event, Object, Integer>> ployFunMap = new ConcurrentHashMap<>();
     CallQueue[] callQueues;
+    List<ElasticCallQueueWorker> elasticWorkers = new ArrayList<>();
+    /**
+     * 挂起中的弹性工作线程，繁忙线程的队列积压时从这里唤醒一个来窃取
+     */
+    final Deque<ElasticCallQueueWorker> idleWorkers = new ConcurrentLinkedDeque<>();
+    private final int batchSize;
+    private final int minWorkerCount;
+    private final long idleRetireMillis;
     public ExecutorService executorService;
     ThreadLocal<CallQueue> localQueue = new ThreadLocal<>();
     public static final int frame_queue_id = 0;
     public static final int user_queue_id = 1;
     public static final BiFunction<Event, Object, Integer> robinPloyFun = new BiFunction<Event, Object, Integer>() {
-        int index = 0;
+        final AtomicInteger index = new AtomicInteger(0);
 
         @Override
         public Integer apply(Event event, Object param) {
@@ -53,16 +75,20 @@ public class CallQueueMgr {
                     log.warn("getQueueId warn in event [{}] :", param);
                 }
             }
-            if (index >= queueCount) {
-                //绕开主线程 0 和框架线程 1 //todo 分队列优先级
-                index = 1;
-            }
-            return index++;
+            //绕开主线程 0 //todo 分队列优先级
+            return index.getAndUpdate(i -> i + 1 >= queueCount ? 1 : i + 1);
         }
     };
 
 
     private CallQueueMgr() {
+        this(elasticBatchSize, elasticMinWorkerCount, elasticIdleRetireMillis);
+    }
+
+    CallQueueMgr(int batchSize, int minWorkerCount, long idleRetireMillis) {
+        this.batchSize = batchSize;
+        this.minWorkerCount = Math.max(1, minWorkerCount);
+        this.idleRetireMillis = idleRetireMillis;
     }
 
     public void init() {
@@ -84,16 +110,133 @@ public class CallQueueMgr {
     }
 
     private void start(BiFunction<Event, Object, Integer> ployFun) {
-        callQueues = new CallQueue[queueCount];
         registerPloy(DEFAULT_CHOICE_THREAD_STRATEGY, robinPloyFun);
-        executorService = ThreadPoolFactory.newThreadPool("CallQueueMgrPool", queueCount, keepLive);
+        if (elastic) {
+            startElastic(queueCount, elasticWorkerCount);
+        } else {
+            callQueues = new CallQueue[queueCount];
+            executorService = ThreadPoolFactory.newThreadPool("CallQueueMgrPool", queueCount, keepLive);
+            for (int i = 0; i < queueCount; i++) {
+                CallQueue callQueue = new CallQueue(i, waitNum);
+                callQueue.start(this);
+                callQueues[i] = callQueue;
+            }
+        }
+        setLocalQueue(callQueues[0]);//将0号队列也分配给main主线程
+        checkInitFinish();
+    }
+
+    void startElastic(int queueCount, int workerCount) {
+        workerCount = Math.max(1, Math.min(workerCount, queueCount));
+        log.info("CallQueueMgr start elastic queueCount {} workerCount {} minWorkerCount {} batchSize {} idleRetireMillis {}", queueCount, workerCount, minWorkerCount, batchSize, idleRetireMillis);
+        callQueues = new CallQueue[queueCount];
+        executorService = ThreadPoolFactory.newThreadPool("CallQueueMgrPool", workerCount, keepLive);
+        //退役线程归还给线程池后超时退出
+        ((ThreadPoolExecutor) executorService).allowCoreThreadTimeOut(true);
+        List<ElasticCallQueueWorker> workers = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new ElasticCallQueueWorker(i, this, batchSize, idleRetireMillis));
+        }
         for (int i = 0; i < queueCount; i++) {
             CallQueue callQueue = new CallQueue(i, waitNum);
-            callQueue.start(this);
+            ElasticCallQueueWorker worker = workers.get(i % workerCount);
+            worker.callQueues.add(callQueue);
+            callQueue.startElastic(worker);
             callQueues[i] = callQueue;
         }
-        setLocalQueue(callQueues[0]);//将0号队列也分配给main主线程
-        checkInitFinish();
+        elasticWorkers = workers;
+        for (ElasticCallQueueWorker worker : workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * 唤醒一个挂起的工作线程来窃取繁忙线程的队列，没有挂起线程时重新启用一个退役线程
+     */
+    void wakeIdleWorker(ElasticCallQueueWorker busyWorker) {
+        ElasticCallQueueWorker idleWorker = idleWorkers.poll();
+        if (idleWorker != null) {
+            idleWorker.signal();
+            return;
+        }
+        if (busyWorker.getBusyQueueNum() < 2) {
+            return;
+        }
+        for (ElasticCallQueueWorker worker : elasticWorkers) {
+            if (worker.retired && reviveWorker(worker)) {
+                return;
+            }
+        }
+    }
+
+    private synchronized boolean reviveWorker(ElasticCallQueueWorker worker) {
+        if (!worker.retired) {
+            return false;
+        }
+        worker.retired = false;
+        log.info("CallQueueMgr revive elastic worker {}", worker.getId());
+        worker.start();
+        return true;
+    }
+
+    /**
+     * 空闲超时的工作线程退役，名下队列转给队列最少的在役线程
+     * 至少保留minWorkerCount个在役线程
+     *
+     * @return 是否退役
+     */
+    synchronized boolean tryRetire(ElasticCallQueueWorker worker) {
+        ElasticCallQueueWorker target = null;
+        int aliveCount = 0;
+        for (ElasticCallQueueWorker other : elasticWorkers) {
+            if (other.retired) {
+                continue;
+            }
+            aliveCount++;
+            if (other != worker && (target == null || other.callQueues.size() < target.callQueues.size())) {
+                target = other;
+            }
+        }
+        if (target == null || aliveCount <= minWorkerCount || worker.getWaitingTasksNum() > 0) {
+            return false;
+        }
+        for (CallQueue callQueue : worker.callQueues) {
+            if (!worker.moveQueue(callQueue, target)) {
+                return false;
+            }
+        }
+        if (!worker.callQueues.isEmpty()) {
+            return false;
+        }
+        worker.retired = true;
+        return true;
+    }
+
+    /**
+     * 弹性模式下在役（未退役）的工作线程数
+     */
+    public int getActiveWorkerCount() {
+        int count = 0;
+        for (ElasticCallQueueWorker worker : elasticWorkers) {
+            if (!worker.retired) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 停止所有队列和弹性工作线程
+     */
+    public void shutdown() {
+        log.info("CallQueueMgr shutdown");
+        for (CallQueue callQueue : callQueues) {
+            callQueue.shutdown();
+        }
+        for (ElasticCallQueueWorker worker : elasticWorkers) {
+            worker.shutdown();
+        }
+        executorService.shutdown();
     }
 
     void checkInitFinish() {
@@ -133,6 +276,17 @@ public class CallQueueMgr {
         log.info("CallQueueMgr setLocalQueue currentThread {} queueId {}", Thread.currentThread().getName(), callQueue.getId());
     }
 
+    /**
+     * 弹性模式下工作线程在每批事件前后切换当前队列，不打印日志
+     */
+    void bindLocalQueue(CallQueue callQueue) {
+        if (callQueue == null) {
+            localQueue.remove();
+        } else {
+            localQueue.set(callQueue);
+        }
+    }
+
     public CallQueue getLocalQueue() {
         CallQueue queue = localQueue.get();
         if (queue == null) {
@@ -141,6 +295,13 @@ public class CallQueueMgr {
         return queue;
     }
 
+    /**
+     * 当前线程是否正在执行CallQueue中的事件
+     */
+    public boolean isInCallQueue() {
+        return localQueue.get() != null;
+    }
+
     public static void registerPloy(String ployType, BiFunction<Event, Object, Integer> ployFun) {
         ployFunMap.put(ployType, ployFun);
     }
@@ -160,7 +321,7 @@ public class CallQueueMgr {
     }
 
     //根据seed选择QueueId
-    synchronized int choiceQueueIdByPloy(@NonNull BiFunction<Event, Object, Integer> ployFun, Event e, Object param) {
+    int choiceQueueIdByPloy(@NonNull BiFunction<Event, Object, Integer> ployFun, Event e, Object param) {
         return Math.abs(ployFun.apply(e, param));
     }
 
@@ -307,6 +468,21 @@ public class CallQueueMgr {
         );
     }
 
+    public boolean isElastic() {
+        return elastic;
+    }
+
+    /**
+     * 弹性模式下各工作线程累计窃取队列的次数
+     */
+    public long getStealCount() {
+        long count = 0;
+        for (ElasticCallQueueWorker worker : elasticWorkers) {
+            count += worker.getStealCount();
+        }
+        return count;
+    }
+
     public int getAllWaitCount() {
         int count = 0;
         for (CallQueue callQueue : callQueues) {
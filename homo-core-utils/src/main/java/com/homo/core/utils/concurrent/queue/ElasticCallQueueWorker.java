@@ -0,0 +1,232 @@
+package com.homo.core.utils.concurrent.queue;
+
+import com.homo.core.utils.concurrent.event.Event;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 弹性模式下的队列工作线程
+ * 每个CallQueue作为一个亲和组（按id哈希分桶），同一时刻只归属一个工作线程，
+ * 工作线程轮流处理自己名下的队列，空闲时从积压最多的工作线程整组窃取一个队列。
+ * 队列只在两个事件之间迁移（需先抢到processing标记），因此同一队列内的事件始终串行、有序
+ * 没有事件时线程挂起等待唤醒，不轮询；空闲超过idleRetireMillis时把队列交给其他线程并退出，繁忙时再重新启用
+ */
+@Slf4j
+class ElasticCallQueueWorker {
+    @Getter
+    private final int id;
+    private final CallQueueMgr callQueueMgr;
+    private final int batchSize;
+    private final long idleRetireMillis;
+    final List<CallQueue> callQueues = new CopyOnWriteArrayList<>();
+    private final Semaphore signal = new Semaphore(0);
+    private volatile boolean isShutDown = false;
+    /**
+     * 是否正在处理某个队列的事件
+     */
+    private volatile boolean busy = false;
+    /**
+     * 已退役，线程已退出，名下没有队列
+     */
+    @Getter
+    volatile boolean retired = false;
+    @Getter
+    private volatile long stealCount = 0;
+
+    ElasticCallQueueWorker(int id, CallQueueMgr callQueueMgr, int batchSize, long idleRetireMillis) {
+        this.id = id;
+        this.callQueueMgr = callQueueMgr;
+        this.batchSize = batchSize;
+        this.idleRetireMillis = idleRetireMillis;
+    }
+
+    void signal() {
+        signal.release();
+    }
+
+    /**
+     * 名下队列收到事件
+     * 本线程正在处理其他队列时，该队列需要等待，唤醒一个空闲线程来窃取
+     */
+    void onEvent(CallQueue callQueue) {
+        signal.release();
+        if (busy && !callQueue.processing.get()) {
+            callQueueMgr.wakeIdleWorker(this);
+        }
+    }
+
+    void start() {
+        log.info("ElasticCallQueueWorker[{}] start!", id);
+        callQueueMgr.executorService.submit(() -> {
+            while (!isShutDown) {
+                try {
+                    boolean worked = false;
+                    for (CallQueue callQueue : callQueues) {
+                        worked |= runQueue(callQueue);
+                    }
+                    if (worked || steal()) {
+                        continue;
+                    }
+                    if (park()) {
+                        continue;
+                    }
+                    if (callQueueMgr.tryRetire(this)) {
+                        log.info("ElasticCallQueueWorker[{}] retire after idle {} ms", id, idleRetireMillis);
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    log.warn("ElasticCallQueueWorker[{}] interrupted", id);
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    log.error("ElasticCallQueueWorker[{}] run error cause:", id, e);
+                }
+            }
+            log.info("ElasticCallQueueWorker[{}] shutdown", id);
+        });
+    }
+
+    /**
+     * 挂起直到名下队列有事件或被唤醒窃取
+     *
+     * @return false 空闲超时
+     */
+    private boolean park() throws InterruptedException {
+        callQueueMgr.idleWorkers.add(this);
+        try {
+            if (signal.tryAcquire(idleRetireMillis, TimeUnit.MILLISECONDS)) {
+                signal.drainPermits();
+                return true;
+            }
+            return false;
+        } finally {
+            callQueueMgr.idleWorkers.remove(this);
+        }
+    }
+
+    void shutdown() {
+        isShutDown = true;
+        signal();
+    }
+
+    /**
+     * 处理一个队列中的至多batchSize个事件
+     *
+     * @return 是否处理了事件
+     */
+    private boolean runQueue(CallQueue callQueue) {
+        if (callQueue.owner != this || callQueue.isShutDown || callQueue.eventQueue.isEmpty()) {
+            return false;
+        }
+        if (!callQueue.processing.compareAndSet(false, true)) {
+            return false;
+        }
+        int count = 0;
+        busy = true;
+        //挂起期间积压的其他队列不会触发onEvent中的唤醒，开始处理前补一次
+        if (getBusyQueueNum() >= 2) {
+            callQueueMgr.wakeIdleWorker(this);
+        }
+        try {
+            callQueueMgr.bindLocalQueue(callQueue);
+            Event event;
+            while (count < batchSize && (event = callQueue.eventQueue.poll()) != null) {
+                count++;
+                try {
+                    event.doProcess();
+                } catch (Exception e) {
+                    log.error("CallQueue[{}] run error cause:", callQueue.getId(), e);
+                }
+            }
+        } finally {
+            callQueueMgr.bindLocalQueue(null);
+            callQueue.processing.set(false);
+            busy = false;
+        }
+        return count > 0;
+    }
+
+    int getWaitingTasksNum() {
+        int count = 0;
+        for (CallQueue callQueue : callQueues) {
+            count += callQueue.getWaitingTasksNum();
+        }
+        return count;
+    }
+
+    int getBusyQueueNum() {
+        int busyCount = 0;
+        for (CallQueue callQueue : callQueues) {
+            if (callQueue.getWaitingTasksNum() > 0 || callQueue.processing.get()) {
+                busyCount++;
+            }
+        }
+        return busyCount;
+    }
+
+    /**
+     * 把队列转给另一个工作线程，需要先抢到processing标记
+     *
+     * @return 是否转移成功
+     */
+    boolean moveQueue(CallQueue callQueue, ElasticCallQueueWorker target) {
+        if (!callQueue.processing.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            if (callQueue.owner != this) {
+                return false;
+            }
+            callQueue.owner = target;
+            callQueues.remove(callQueue);
+            target.callQueues.add(callQueue);
+        } finally {
+            callQueue.processing.set(false);
+        }
+        //迁移期间加入的事件可能通知了原线程
+        if (!callQueue.eventQueue.isEmpty()) {
+            target.signal();
+        }
+        return true;
+    }
+
+    /**
+     * 从积压最多的工作线程窃取一个有积压且未在处理中的队列
+     * 只有该线程名下至少两个队列有积压时才窃取，避免队列在线程间来回迁移
+     *
+     * @return 是否窃取成功
+     */
+    private boolean steal() {
+        ElasticCallQueueWorker victim = null;
+        int maxWaiting = 0;
+        for (ElasticCallQueueWorker worker : callQueueMgr.elasticWorkers) {
+            if (worker == this || worker.getBusyQueueNum() < 2) {
+                continue;
+            }
+            int waiting = worker.getWaitingTasksNum();
+            if (waiting > maxWaiting) {
+                maxWaiting = waiting;
+                victim = worker;
+            }
+        }
+        if (victim == null) {
+            return false;
+        }
+        for (CallQueue callQueue : victim.callQueues) {
+            if (callQueue.getWaitingTasksNum() <= 0 || callQueue.owner != victim) {
+                continue;
+            }
+            if (victim.moveQueue(callQueue, this)) {
+                stealCount++;
+                log.debug("ElasticCallQueueWorker[{}] steal CallQueue[{}] from worker {} waiting {}", id, callQueue.getId(), victim.getId(), maxWaiting);
+                return true;
+            }
+        }
+        return false;
+    }
+}
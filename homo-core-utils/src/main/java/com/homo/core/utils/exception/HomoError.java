@@ -22,6 +22,10 @@ public enum HomoError implements HomoThrowable {
     broadcastError(110, "broadcastError"),
     spanError(111, "spanError"),
     callMethodNotFound(112, "call fun not found"),
+    linkStale(113, "uid %s service %s linked to other pod"),
+    gateRateLimit(114, "gate rate limit, retry later"),
+    gateOverload(115, "gate overload, retry later"),
+    storageDecodeError(116, "storage decode error length %s reason %s"),
     ;
     private int code;
     private String message;
@@ -0,0 +1,59 @@
+package com.homo.core.utils.rector;
+
+import com.homo.core.utils.concurrent.queue.CallQueue;
+import com.homo.core.utils.concurrent.queue.CallQueueMgr;
+import com.homo.core.utils.fun.FuncWithException;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+/**
+ * Flux与CallQueue的桥接
+ * 流式数据按批拉取，每批切回发起方所在的CallQueue消费，上一批消费完成后才请求下一批（有界需求）
+ */
+@Slf4j
+public class HomoFlux {
+
+    /**
+     * 将CallQueue包装成Scheduler，任务以事件的方式投递到该队列执行
+     *
+     * @param callQueue 目标队列
+     */
+    public static Scheduler callQueueScheduler(CallQueue callQueue) {
+        return Schedulers.fromExecutor(runnable -> callQueue.addEvent(runnable::run));
+    }
+
+    /**
+     * 分批消费一个流，批次在当前CallQueue上串行执行
+     *
+     * @param flux      数据流
+     * @param batchSize 每批数量
+     * @param consumer  批次消费者，返回的Homo完成后才会拉取下一批
+     * @return 消费的总条数
+     */
+    public static <T> Homo<Long> consume(Flux<T> flux, int batchSize, FuncWithException<List<T>, Homo<?>> consumer) {
+        return Homo.warp(() -> {
+            CallQueue callQueue = CallQueueMgr.getInstance().getLocalQueue();
+            Flux<List<T>> batches = flux.buffer(batchSize);
+            if (callQueue != null) {
+                batches = batches.publishOn(callQueueScheduler(callQueue), 1);
+            }
+            return batches
+                    .concatMap(batch -> {
+                        try {
+                            Homo<?> homo = consumer.apply(batch);
+                            Mono<?> done = homo == null ? Mono.empty() : homo;
+                            return done.then(Mono.just((long) batch.size()));
+                        } catch (Exception e) {
+                            log.error("HomoFlux consume batch error!", e);
+                            return Mono.<Long>error(e);
+                        }
+                    }, 1)
+                    .reduce(0L, Long::sum);
+        });
+    }
+}
@@ -0,0 +1,11 @@
+package com.homo.core.utils.serial;
+
+/**
+ * 序列化类id冲突，两个不同的类得到相同的类id
+ */
+public class ClassIdConflictException extends IllegalStateException {
+
+    public ClassIdConflictException(String message) {
+        super(message);
+    }
+}
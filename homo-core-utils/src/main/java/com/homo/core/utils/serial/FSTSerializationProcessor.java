@@ -6,9 +6,13 @@ import org.nustaq.serialization.FSTClazzNameRegistry;
 import org.nustaq.serialization.FSTConfiguration;
 import org.nustaq.serialization.FSTDecoder;
 import org.nustaq.serialization.FSTEncoder;
+import org.nustaq.serialization.FSTObjectOutput;
 import org.nustaq.serialization.coders.FSTStreamDecoder;
 import org.nustaq.serialization.coders.FSTStreamEncoder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 
 public class FSTSerializationProcessor implements HomoSerializationProcessor{
@@ -52,6 +56,29 @@ public class FSTSerializationProcessor implements HomoSerializationProcessor{
         throw new RuntimeException("Not support!");
     }
 
+    /**
+     * 复用fst线程内缓存的FSTObjectOutput直接写入输出流
+     */
+    @Override
+    public void writeTo(Object obj, OutputStream out) {
+        try {
+            FSTObjectOutput objectOutput = fst.getObjectOutput(out);
+            objectOutput.writeObject(obj);
+            objectOutput.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("serial failed! " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public <T> T readFrom(InputStream in, Class<T> clazz) {
+        try {
+            return (T) fst.getObjectInput(in).readObject();
+        } catch (Exception e) {
+            throw new RuntimeException("unSerial failed! " + e.getMessage(), e);
+        }
+    }
+
     static ThreadLocal input = new ThreadLocal();
     static ThreadLocal output = new ThreadLocal();
 
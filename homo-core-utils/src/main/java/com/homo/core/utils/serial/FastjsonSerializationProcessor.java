@@ -3,6 +3,12 @@ package com.homo.core.utils.serial;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.parser.ParserConfig;
 import com.alibaba.fastjson.serializer.SerializerFeature;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * 基于fastjson序列化和反序列化处理器
@@ -48,4 +54,37 @@ public class FastjsonSerializationProcessor implements HomoSerializationProcesso
     public <T> T readValue(String obj, HomoTypeReference<T> reference) {
         return JSON.parseObject(obj,reference.type);
     }
+
+    @Override
+    public void writeTo(Object obj, OutputStream out) {
+        try {
+            if (obj instanceof SubtypeSerialization) {
+                JSON.writeJSONString(out, obj, SerializerFeature.WriteClassName);
+            } else {
+                JSON.writeJSONString(out, obj);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("serial failed! " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public <T> T readFrom(InputStream in, Class<T> clazz) {
+        try {
+            return JSON.parseObject(in, clazz);
+        } catch (IOException e) {
+            throw new RuntimeException("unSerial failed! " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public <T> T readFrom(ByteBuf buf, Class<T> clazz) {
+        if (!buf.hasArray()) {
+            return HomoSerializationProcessor.super.readFrom(buf, clazz);
+        }
+        int len = buf.readableBytes();
+        T value = JSON.parseObject(buf.array(), buf.arrayOffset() + buf.readerIndex(), len, StandardCharsets.UTF_8, clazz);
+        buf.skipBytes(len);
+        return value;
+    }
 }
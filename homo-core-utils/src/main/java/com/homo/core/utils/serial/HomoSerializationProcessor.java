@@ -1,7 +1,18 @@
 package com.homo.core.utils.serial;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  * 序列化工具接口
+ * 除字节数组外还提供流与ByteBuf的读写，实现类可以直接写入传输层的缓冲区，避免生成中间字节数组
  */
 public interface HomoSerializationProcessor {
     /**
@@ -53,4 +64,75 @@ public interface HomoSerializationProcessor {
      * @return 反序列化结果对象
      */
     <T> T readValue(String obj,HomoTypeReference<T> reference);
+
+    /**
+     * 序列化对象到输出流，不关闭输出流
+     * @param obj 对象
+     * @param out 输出流
+     */
+    default void writeTo(Object obj, OutputStream out) {
+        try {
+            out.write(writeByte(obj));
+        } catch (IOException e) {
+            throw new RuntimeException("serial failed! " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 序列化对象到ByteBuf，从writerIndex开始写入
+     * @param obj 对象
+     * @param buf 目标缓冲区
+     */
+    default void writeTo(Object obj, ByteBuf buf) {
+        writeTo(obj, new ByteBufOutputStream(buf));
+    }
+
+    /**
+     * 从分配器申请缓冲区并序列化对象，调用方负责释放返回的ByteBuf
+     * @param obj 对象
+     * @param allocator 缓冲区分配器，一般使用channel的alloc()
+     * @return 序列化结果
+     */
+    default ByteBuf writeBuf(Object obj, ByteBufAllocator allocator) {
+        ByteBuf buf = allocator.buffer();
+        try {
+            writeTo(obj, buf);
+            return buf;
+        } catch (RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 从输入流反序列化对象，读取到流结束，不关闭输入流
+     * @param in 输入流
+     * @param clazz 对象类型信息
+     * @param <T> 对象泛型信息
+     * @return 反序列结果对象
+     */
+    default <T> T readFrom(InputStream in, Class<T> clazz) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 32));
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return readValue(out.toByteArray(), clazz);
+        } catch (IOException e) {
+            throw new RuntimeException("unSerial failed! " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 从ByteBuf的可读部分反序列化对象，读取后readerIndex移到writerIndex，不释放ByteBuf
+     * @param buf 源缓冲区
+     * @param clazz 对象类型信息
+     * @param <T> 对象泛型信息
+     * @return 反序列结果对象
+     */
+    default <T> T readFrom(ByteBuf buf, Class<T> clazz) {
+        return readFrom(new ByteBufInputStream(buf), clazz);
+    }
 }
@@ -1,13 +1,18 @@
 package com.homo.core.utils.serial;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import io.netty.buffer.ByteBuf;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 
 /**
@@ -124,4 +129,40 @@ public class JacksonSerializationProcessor implements HomoSerializationProcessor
             throw new RuntimeException("unSerial failed! " + e.getMessage());
         }
     }
+
+    @Override
+    public void writeTo(Object obj, OutputStream out) {
+        try {
+            getMapper().writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, obj);
+        } catch (IOException e) {
+            log.error("JacksonSerializationProcessor writeTo failed! ", e);
+            throw new RuntimeException("serial failed! " + e.getMessage());
+        }
+    }
+
+    @Override
+    public <T> T readFrom(InputStream in, Class<T> clazz) {
+        try {
+            return getMapper().readerFor(clazz).without(JsonParser.Feature.AUTO_CLOSE_SOURCE).readValue(in);
+        } catch (IOException e) {
+            log.error("JacksonSerializationProcessor readFrom failed! ", e);
+            throw new RuntimeException("unSerial failed! " + e.getMessage());
+        }
+    }
+
+    @Override
+    public <T> T readFrom(ByteBuf buf, Class<T> clazz) {
+        if (!buf.hasArray()) {
+            return HomoSerializationProcessor.super.readFrom(buf, clazz);
+        }
+        try {
+            int len = buf.readableBytes();
+            T value = getMapper().readValue(buf.array(), buf.arrayOffset() + buf.readerIndex(), len, clazz);
+            buf.skipBytes(len);
+            return value;
+        } catch (IOException e) {
+            log.error("JacksonSerializationProcessor readFrom failed! ", e);
+            throw new RuntimeException("unSerial failed! " + e.getMessage());
+        }
+    }
 }
@@ -1,16 +1,23 @@
 package com.homo.core.utils.serial;
 
 import com.google.protobuf.GeneratedMessageV3;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 @Slf4j
 public class ProtoSerializationProcessor implements HomoSerializationProcessor {
     public static Map<Class<?>, Method> cacheUnSerialMap = new HashMap<>();
+    public static Map<Class<?>, Method> cacheStreamUnSerialMap = new ConcurrentHashMap<>();
 
     @Override
     public byte[] writeByte(Object obj) {
@@ -86,4 +93,43 @@ public class ProtoSerializationProcessor implements HomoSerializationProcessor {
     public <T> T readValue(String obj, HomoTypeReference<T> reference) {
         throw new RuntimeException("Not support");
     }
+
+    @Override
+    public void writeTo(Object obj, OutputStream out) {
+        GeneratedMessageV3 protoObj = (com.google.protobuf.GeneratedMessageV3) obj;
+        try {
+            protoObj.writeTo(out);
+        } catch (IOException e) {
+            throw new RuntimeException("serial failed! " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按序列化后的大小预先扩容，写入过程中不再扩容
+     */
+    @Override
+    public void writeTo(Object obj, ByteBuf buf) {
+        GeneratedMessageV3 protoObj = (com.google.protobuf.GeneratedMessageV3) obj;
+        buf.ensureWritable(protoObj.getSerializedSize());
+        writeTo(protoObj, new ByteBufOutputStream(buf));
+    }
+
+    @Override
+    public <T> T readFrom(InputStream in, Class<T> clazz) {
+        if (!com.google.protobuf.GeneratedMessageV3.class.isAssignableFrom(clazz)) {
+            log.error("ProtoSerializationProcessor readFrom clazz {} is not proto message", clazz);
+            return null;
+        }
+        try {
+            Method unSerialMethod = cacheStreamUnSerialMap.get(clazz);
+            if (unSerialMethod == null) {
+                unSerialMethod = clazz.getMethod("parseFrom", InputStream.class);
+                cacheStreamUnSerialMap.put(clazz, unSerialMethod);
+            }
+            return (T) unSerialMethod.invoke(null, in);
+        } catch (Exception e) {
+            log.error("ProtoSerializationProcessor readFrom clazz {} error {}", clazz, e);
+            return null;
+        }
+    }
 }
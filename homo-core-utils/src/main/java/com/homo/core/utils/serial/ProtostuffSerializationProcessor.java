@@ -0,0 +1,212 @@
+package com.homo.core.utils.serial;
+
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于protostuff的序列化和反序列化处理器
+ * 1. 注册过的类只写入4字节的类id（类名的FNV-1a哈希，与注册顺序无关，各进程一致），不写完整类名，
+ *    类id冲突在注册时直接抛错，调用方应在启动阶段注册全部类
+ * 2. 未注册的类或非pojo根对象（字符串、集合、数组等）包装后写入，仍带类名
+ * 3. 字段按声明顺序（或@Tag）编号，末尾新增字段、@Deprecated保留废弃字段都可以前后兼容
+ * 4. 每个线程复用一个LinkedBuffer
+ * 格式：1字节标记 + [类id] + 数据
+ */
+@Slf4j
+public class ProtostuffSerializationProcessor implements HomoSerializationProcessor {
+    private static final byte NULL_MARK = 0;
+    private static final byte REGISTERED_MARK = 1;
+    private static final byte WRAPPED_MARK = 2;
+    private static final int BUFFER_SIZE = 512;
+    private static final ThreadLocal<LinkedBuffer> localBuffer = ThreadLocal.withInitial(() -> LinkedBuffer.allocate(BUFFER_SIZE));
+    private static final Schema<ObjectWrapper> wrapperSchema = RuntimeSchema.getSchema(ObjectWrapper.class);
+    private final Map<Class<?>, Integer> classToId = new ConcurrentHashMap<>();
+    private final Map<Integer, Class<?>> idToClass = new ConcurrentHashMap<>();
+
+    /**
+     * 根对象不是pojo时的包装
+     */
+    static class ObjectWrapper {
+        Object value;
+    }
+
+    /**
+     * 注册类，非pojo类型（基础类型、集合、数组、接口、抽象类、jdk类等）忽略
+     * 序列化双方都需要注册同一个类才能使用类id，否则读取时报错
+     *
+     * @throws ClassIdConflictException 与已注册的类id冲突
+     */
+    public void registerClass(Class<?>... classes) {
+        for (Class<?> clazz : classes) {
+            if (!isPojo(clazz) || classToId.containsKey(clazz)) {
+                continue;
+            }
+            int id = classId(clazz);
+            Class<?> exist = idToClass.putIfAbsent(id, clazz);
+            if (exist != null && exist != clazz) {
+                throw new ClassIdConflictException(String.format("ProtostuffSerializationProcessor class id conflict %s %s id %s", exist, clazz, id));
+            }
+            classToId.put(clazz, id);
+            //提前构建schema
+            RuntimeSchema.getSchema(clazz);
+            log.debug("ProtostuffSerializationProcessor registerClass {} id {}", clazz, id);
+        }
+    }
+
+    /**
+     * 类id，类名UTF-8字节的FNV-1a哈希，比String.hashCode分布更均匀（后者如"Aa"与"BB"相同）
+     */
+    static int classId(Class<?> clazz) {
+        int hash = 0x811c9dc5;
+        for (byte b : clazz.getName().getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    public boolean isRegistered(Class<?> clazz) {
+        return classToId.containsKey(clazz);
+    }
+
+    static boolean isPojo(Class<?> clazz) {
+        return clazz != null && !clazz.isPrimitive() && !clazz.isArray() && !clazz.isEnum() && !clazz.isInterface()
+                && !Modifier.isAbstract(clazz.getModifiers()) && !clazz.getName().startsWith("java.");
+    }
+
+    @Override
+    public byte[] writeByte(Object obj) {
+        if (obj == null) {
+            return new byte[]{NULL_MARK};
+        }
+        Integer id = classToId.get(obj.getClass());
+        LinkedBuffer buffer = localBuffer.get();
+        byte[] body;
+        try {
+            body = id != null ? ProtostuffIOUtil.toByteArray(obj, schemaOf(obj), buffer) : ProtostuffIOUtil.toByteArray(wrap(obj), wrapperSchema, buffer);
+        } finally {
+            buffer.clear();
+        }
+        int headLen = id != null ? 5 : 1;
+        byte[] bytes = new byte[headLen + body.length];
+        if (id != null) {
+            bytes[0] = REGISTERED_MARK;
+            bytes[1] = (byte) (id >>> 24);
+            bytes[2] = (byte) (id >>> 16);
+            bytes[3] = (byte) (id >>> 8);
+            bytes[4] = (byte) id.intValue();
+        } else {
+            bytes[0] = WRAPPED_MARK;
+        }
+        System.arraycopy(body, 0, bytes, headLen, body.length);
+        return bytes;
+    }
+
+    @Override
+    public void writeTo(Object obj, OutputStream out) {
+        LinkedBuffer buffer = localBuffer.get();
+        try {
+            DataOutputStream dataOut = new DataOutputStream(out);
+            if (obj == null) {
+                dataOut.writeByte(NULL_MARK);
+                return;
+            }
+            Integer id = classToId.get(obj.getClass());
+            if (id != null) {
+                dataOut.writeByte(REGISTERED_MARK);
+                dataOut.writeInt(id);
+                ProtostuffIOUtil.writeTo(out, obj, schemaOf(obj), buffer);
+            } else {
+                dataOut.writeByte(WRAPPED_MARK);
+                ProtostuffIOUtil.writeTo(out, wrap(obj), wrapperSchema, buffer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("serial failed! " + e.getMessage(), e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public String writeString(Object obj) {
+        throw new RuntimeException("Not support!");
+    }
+
+    @Override
+    public <T> T readValue(byte[] obj, Class<T> clazz) {
+        if (obj == null || obj.length == 0) {
+            return null;
+        }
+        return readFrom(new ByteArrayInputStream(obj), clazz);
+    }
+
+    @Override
+    public <T> T readValue(byte[] obj, HomoTypeReference<T> reference) {
+        return (T) readValue(obj, Object.class);
+    }
+
+    @Override
+    public <T> T readFrom(InputStream in, Class<T> clazz) {
+        try {
+            DataInputStream dataIn = new DataInputStream(in);
+            byte mark = dataIn.readByte();
+            if (mark == NULL_MARK) {
+                return null;
+            }
+            if (mark == WRAPPED_MARK) {
+                ObjectWrapper wrapper = wrapperSchema.newMessage();
+                ProtostuffIOUtil.mergeFrom(in, wrapper, wrapperSchema);
+                return (T) wrapper.value;
+            }
+            if (mark != REGISTERED_MARK) {
+                throw new IOException("unknown mark " + mark);
+            }
+            int id = dataIn.readInt();
+            Class<?> registered = idToClass.get(id);
+            if (registered == null) {
+                throw new IOException(String.format("class id %s not registered, read as %s", id, clazz));
+            }
+            Schema<Object> schema = (Schema<Object>) RuntimeSchema.getSchema(registered);
+            Object message = schema.newMessage();
+            ProtostuffIOUtil.mergeFrom(in, message, schema);
+            return (T) message;
+        } catch (IOException e) {
+            log.error("ProtostuffSerializationProcessor readFrom clazz {} failed! ", clazz, e);
+            throw new RuntimeException("unSerial failed! " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public <T> T readValue(String obj, Class<T> clazz) {
+        throw new RuntimeException("Not support!");
+    }
+
+    @Override
+    public <T> T readValue(String obj, HomoTypeReference<T> reference) {
+        throw new RuntimeException("Not support!");
+    }
+
+    private static Schema<Object> schemaOf(Object obj) {
+        return (Schema<Object>) RuntimeSchema.getSchema(obj.getClass());
+    }
+
+    private static ObjectWrapper wrap(Object obj) {
+        ObjectWrapper wrapper = new ObjectWrapper();
+        wrapper.value = obj;
+        return wrapper;
+    }
+}
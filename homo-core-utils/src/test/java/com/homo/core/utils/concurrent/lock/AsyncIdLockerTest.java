@@ -0,0 +1,119 @@
+package com.homo.core.utils.concurrent.lock;
+
+import com.homo.core.utils.concurrent.queue.CallQueue;
+import com.homo.core.utils.concurrent.queue.CallQueueMgr;
+import com.homo.core.utils.rector.Homo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AsyncIdLockerTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    public void testFifoOrder() throws InterruptedException {
+        AsyncIdLocker locker = new AsyncIdLocker();
+        AsyncIdLocker.Permit permit = locker.acquire("id").block(TIMEOUT);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            int index = i;
+            locker.lock("id", () -> {
+                order.add(index);
+                return Homo.result(index);
+            }).finallySignal(signalType -> latch.countDown()).start();
+        }
+        //其他id不受影响
+        Assertions.assertNotNull(locker.acquire("other").block(TIMEOUT));
+        Assertions.assertTrue(order.isEmpty());
+        permit.release();
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(i, order.get(i));
+        }
+        Assertions.assertEquals(1, locker.getLockCount());
+    }
+
+    @Test
+    public void testCancelWaiter() throws InterruptedException {
+        AsyncIdLocker locker = new AsyncIdLocker();
+        AsyncIdLocker.Permit permit = locker.acquire("id").block(TIMEOUT);
+        AtomicBoolean cancelledRun = new AtomicBoolean(false);
+        Disposable cancelled = locker.lock("id", () -> {
+            cancelledRun.set(true);
+            return Homo.result(null);
+        }).start();
+        CountDownLatch latch = new CountDownLatch(1);
+        locker.lock("id", () -> {
+            latch.countDown();
+            return Homo.result(null);
+        }).start();
+        cancelled.dispose();
+        permit.release();
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertFalse(cancelledRun.get());
+        Assertions.assertEquals(0, locker.getLockCount());
+    }
+
+    @Test
+    public void testReleaseOnError() {
+        AsyncIdLocker locker = new AsyncIdLocker();
+        Assertions.assertThrows(IllegalStateException.class, () -> locker.lock("id", () -> Homo.error(new IllegalStateException("fail"))).block(TIMEOUT));
+        Assertions.assertEquals(0, locker.getLockCount());
+        Assertions.assertThrows(IllegalStateException.class, () -> locker.lock("id", () -> {
+            throw new IllegalStateException("throw");
+        }).block(TIMEOUT));
+        Assertions.assertEquals(0, locker.getLockCount());
+        Assertions.assertEquals("ok", locker.lock("id", () -> Homo.result("ok")).block(TIMEOUT));
+        Assertions.assertEquals(0, locker.getLockCount());
+    }
+
+    @Test
+    public void testPermitReleaseOnce() throws InterruptedException {
+        AsyncIdLocker locker = new AsyncIdLocker();
+        AsyncIdLocker.Permit permit = locker.acquire("id").block(TIMEOUT);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<AsyncIdLocker.Permit> next = new AtomicReference<>();
+        locker.acquire("id").consumerValue(nextPermit -> {
+            next.set(nextPermit);
+            latch.countDown();
+        }).start();
+        permit.release();
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        //重复release不会释放其他持有者的锁
+        permit.release();
+        CountDownLatch acquired = new CountDownLatch(1);
+        locker.acquire("id").consumerValue(p -> acquired.countDown()).start();
+        Assertions.assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        //主线程可能绑定了0号队列，拿到锁后异步回到该队列执行
+        next.get().release();
+        Assertions.assertTrue(acquired.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testResumeOnCallerQueue() throws InterruptedException {
+        AsyncIdLocker locker = new AsyncIdLocker();
+        AsyncIdLocker.Permit permit = locker.acquire("id").block(TIMEOUT);
+        CallQueue callQueue = CallQueueMgr.getInstance().getQueue(0);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<CallQueue> resumeQueue = new AtomicReference<>();
+        callQueue.addEvent(() -> locker.lock("id", () -> {
+            resumeQueue.set(CallQueueMgr.getInstance().getLocalQueue());
+            latch.countDown();
+            return Homo.result(null);
+        }).start());
+        Thread.sleep(50);
+        permit.release();
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assertions.assertSame(callQueue, resumeQueue.get());
+    }
+}
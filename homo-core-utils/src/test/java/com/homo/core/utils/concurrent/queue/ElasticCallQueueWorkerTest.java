@@ -0,0 +1,130 @@
+package com.homo.core.utils.concurrent.queue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class ElasticCallQueueWorkerTest {
+    private CallQueueMgr callQueueMgr;
+
+    @AfterEach
+    public void shutdown() throws InterruptedException {
+        if (callQueueMgr != null) {
+            callQueueMgr.shutdown();
+            Assertions.assertTrue(callQueueMgr.getExecutorService().awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void testQueueOrderAndExclusive() throws InterruptedException {
+        callQueueMgr = new CallQueueMgr(4, 4, 60000);
+        int queueCount = 8;
+        int eventPerQueue = 200;
+        callQueueMgr.startElastic(queueCount, 4);
+        List<List<Integer>> results = new ArrayList<>();
+        List<AtomicBoolean> running = new ArrayList<>();
+        AtomicInteger overlap = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(queueCount * eventPerQueue);
+        for (int i = 0; i < queueCount; i++) {
+            results.add(Collections.synchronizedList(new ArrayList<>()));
+            running.add(new AtomicBoolean(false));
+        }
+        for (int seq = 0; seq < eventPerQueue; seq++) {
+            for (int i = 0; i < queueCount; i++) {
+                int queueId = i;
+                int value = seq;
+                callQueueMgr.getQueue(queueId).addEvent(() -> {
+                    if (!running.get(queueId).compareAndSet(false, true)) {
+                        overlap.incrementAndGet();
+                    }
+                    //前两个队列处理较慢，制造积压触发窃取
+                    if (queueId < 2) {
+                        busyWait(200_000);
+                    }
+                    Assertions.assertSame(callQueueMgr.getQueue(queueId), callQueueMgr.getLocalQueue());
+                    results.get(queueId).add(value);
+                    running.get(queueId).set(false);
+                    latch.countDown();
+                });
+            }
+        }
+        Assertions.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, overlap.get());
+        for (List<Integer> result : results) {
+            Assertions.assertEquals(eventPerQueue, result.size());
+            for (int seq = 0; seq < eventPerQueue; seq++) {
+                Assertions.assertEquals(seq, result.get(seq));
+            }
+        }
+    }
+
+    @Test
+    public void testIdleWorkerSteal() throws InterruptedException {
+        callQueueMgr = new CallQueueMgr(1, 2, 60000);
+        //worker0: queue0 queue2, worker1: queue1 queue3
+        callQueueMgr.startElastic(4, 2);
+        CountDownLatch latch = new CountDownLatch(40);
+        for (int i = 0; i < 20; i++) {
+            callQueueMgr.getQueue(0).addEvent(() -> sleep(latch));
+            callQueueMgr.getQueue(2).addEvent(() -> sleep(latch));
+        }
+        Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(callQueueMgr.getStealCount() > 0);
+    }
+
+    @Test
+    public void testRetireAndRevive() throws InterruptedException {
+        callQueueMgr = new CallQueueMgr(1, 1, 100);
+        callQueueMgr.startElastic(4, 4);
+        waitUntil(() -> callQueueMgr.getActiveWorkerCount() == 1, 5000);
+        //退役线程的队列都转给了在役线程，事件仍然被处理
+        CountDownLatch latch = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            callQueueMgr.getQueue(i).addEvent(latch::countDown);
+        }
+        Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        //在役线程的多个队列积压时重新启用退役线程
+        CountDownLatch busyLatch = new CountDownLatch(40);
+        for (int i = 0; i < 10; i++) {
+            for (int queueId = 0; queueId < 4; queueId++) {
+                callQueueMgr.getQueue(queueId).addEvent(() -> sleep(busyLatch));
+            }
+        }
+        waitUntil(() -> callQueueMgr.getActiveWorkerCount() > 1, 5000);
+        Assertions.assertTrue(busyLatch.await(10, TimeUnit.SECONDS));
+        waitUntil(() -> callQueueMgr.getActiveWorkerCount() == 1, 5000);
+    }
+
+    private static void sleep(CountDownLatch latch) {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        latch.countDown();
+    }
+
+    private static void busyWait(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.homo.core.utils.serial;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProtostuffSerializationProcessorTest {
+
+    static class Role {
+        String name;
+        int level;
+        List<String> items = new ArrayList<>();
+    }
+
+    static class Aa {
+    }
+
+    static class BB {
+    }
+
+    @Test
+    public void testRegisteredRoundTrip() {
+        ProtostuffSerializationProcessor processor = new ProtostuffSerializationProcessor();
+        processor.registerClass(Role.class);
+        Assertions.assertTrue(processor.isRegistered(Role.class));
+        Role role = new Role();
+        role.name = "role";
+        role.level = 3;
+        role.items.add("sword");
+        byte[] bytes = processor.writeByte(role);
+        //注册过的类不写类名
+        Assertions.assertFalse(new String(bytes).contains(Role.class.getName()));
+        Role read = processor.readValue(bytes, Role.class);
+        Assertions.assertEquals("role", read.name);
+        Assertions.assertEquals(3, read.level);
+        Assertions.assertEquals(role.items, read.items);
+    }
+
+    @Test
+    public void testUnregisteredRoundTrip() {
+        ProtostuffSerializationProcessor processor = new ProtostuffSerializationProcessor();
+        Assertions.assertEquals("text", processor.readValue(processor.writeByte("text"), String.class));
+        Role role = new Role();
+        role.name = "role";
+        Role read = processor.readValue(processor.writeByte(role), Role.class);
+        Assertions.assertEquals("role", read.name);
+        Assertions.assertNull(processor.readValue(processor.writeByte(null), Role.class));
+    }
+
+    @Test
+    public void testReadUnregisteredId() {
+        ProtostuffSerializationProcessor writer = new ProtostuffSerializationProcessor();
+        writer.registerClass(Role.class);
+        byte[] bytes = writer.writeByte(new Role());
+        Assertions.assertThrows(RuntimeException.class, () -> new ProtostuffSerializationProcessor().readValue(bytes, Role.class));
+    }
+
+    @Test
+    public void testClassId() {
+        //类名hashCode相同的类，类id不同
+        Assertions.assertEquals(Aa.class.getName().hashCode(), BB.class.getName().hashCode());
+        Assertions.assertNotEquals(ProtostuffSerializationProcessor.classId(Aa.class), ProtostuffSerializationProcessor.classId(BB.class));
+        ProtostuffSerializationProcessor processor = new ProtostuffSerializationProcessor();
+        processor.registerClass(Aa.class, BB.class, Aa.class);
+        Assertions.assertTrue(processor.isRegistered(Aa.class));
+        Assertions.assertTrue(processor.isRegistered(BB.class));
+        Assertions.assertEquals(ProtostuffSerializationProcessor.classId(Role.class), ProtostuffSerializationProcessor.classId(Role.class));
+    }
+}